@@ -0,0 +1,35 @@
+-- Creates the AGI.IO tables in an embedded H2 database, if they don't exist.
+-- Example usage, in the node properties:
+--   database-driver-class=org.h2.Driver
+--   database-url=jdbc:h2:./agidb;INIT=RUNSCRIPT FROM 'bin/db/agidb-h2.sql'
+-- The script runs whenever a connection is opened, so it must be idempotent.
+-- Unlike PostgreSQL, H2 text is a CLOB, which cannot be indexed or compared, so keys are varchar.
+
+CREATE TABLE IF NOT EXISTS nodes(
+   id SERIAL PRIMARY KEY NOT NULL,
+   name varchar,
+   host text,
+   port integer,
+   weight real DEFAULT 1
+);
+
+ALTER TABLE nodes ADD COLUMN IF NOT EXISTS weight real DEFAULT 1;
+
+CREATE TABLE IF NOT EXISTS entities(
+   id SERIAL PRIMARY KEY NOT NULL,
+   type text,
+   node text,
+   parent varchar,
+   config text,
+   name varchar NOT NULL UNIQUE
+);
+
+CREATE INDEX IF NOT EXISTS entities_parent ON entities( parent );
+
+CREATE TABLE IF NOT EXISTS data(
+   id SERIAL PRIMARY KEY NOT NULL,
+   name varchar NOT NULL UNIQUE,
+   ref_name text,
+   sizes text,
+   elements text
+);
@@ -32,7 +32,8 @@ CREATE TABLE nodes(
    id SERIAL PRIMARY KEY NOT NULL,
    name text,
    host text,
-   port integer
+   port integer,
+   weight real DEFAULT 1
 );
 
 CREATE TABLE entities(
@@ -44,6 +45,8 @@ CREATE TABLE entities(
    name text NOT NULL UNIQUE
 );
 
+CREATE INDEX entities_parent ON entities( parent );
+
 CREATE TABLE data(
    id SERIAL PRIMARY KEY NOT NULL,
    name text NOT NULL UNIQUE,
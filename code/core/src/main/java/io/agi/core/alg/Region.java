@@ -24,6 +24,7 @@ import io.agi.core.ann.unsupervised.GrowingNeuralGas;
 import io.agi.core.data.Data;
 import io.agi.core.data.Data2d;
 import io.agi.core.data.DataSize;
+import io.agi.core.data.IntSet;
 import io.agi.core.data.Ranking;
 import io.agi.core.math.Geometry;
 import io.agi.core.orm.NamedObject;
@@ -78,9 +79,11 @@ public class Region extends NamedObject {
     public Data _hebbianPredictorWeights;
 
     // Sparse structures
-    public HashSet< Integer > _ffInputActive;
-    public HashSet< Integer > _fbInputActive;
+    public IntSet _ffInputActive = new IntSet(); // reused, refilled by updateSparseInput()
+    public IntSet _fbInputActive = new IntSet();
     public ArrayList< Integer > _regionActive;
+    protected IntSet _activeBits = new IntSet(); // reused by unfold()
+    protected IntSet _activeContext = new IntSet(); // reused by updatePrediction()
 
     public HashMap< Integer, ArrayList< Integer > > _ffInputActiveClassifier = new HashMap< Integer, ArrayList< Integer > >();
 
@@ -191,8 +194,8 @@ public class Region extends NamedObject {
     }
 
     public void reset() {
-        _ffInputActive = null;
-        _fbInputActive = null;
+        _ffInputActive.clear();
+        _fbInputActive.clear();
         _regionActive = null;
         _ffInputActiveClassifier.clear();
 
@@ -287,9 +290,10 @@ public class Region extends NamedObject {
 
         int weights = ffInput.getSize();
 
-        HashSet< Integer > activeBits = region.indicesMoreThan( 0.f ); // find all the active bits.
+        region.indicesMoreThan( 0.f, _activeBits ); // find all the active bits.
 
-        for( Integer i : activeBits ) {
+        for( int b = 0; b < _activeBits._size; ++b ) {
+            int i = _activeBits._elements[ b ];
 
             Point xyRegion = _rc.getRegionGivenOffset( i );
             Point xyOrganizer = _rc.getOrganizerCoordinateGivenRegionCoordinate( xyRegion.x, xyRegion.y );
@@ -319,8 +323,13 @@ public class Region extends NamedObject {
      * @param prefix
      */
     public void printSet( Data d, String prefix ) {
-        Collection< Integer > c = d.indicesMoreThan( 0.f ); // find all the active bits.
-        printSet( c, prefix );
+        System.err.println( prefix + "{" );
+        for( int i = 0; i < d._values.length; ++i ) {
+            if( d._values[ i ] > 0.f ) { // the active bits, in order
+                System.err.print( i + ", " );
+            }
+        }
+        System.err.println( prefix + "}" );
     }
 
     /**
@@ -342,8 +351,8 @@ public class Region extends NamedObject {
 
     public void updateSparseInput() {
         // Find the sparse input bits:
-        _ffInputActive = _ffInput.indicesMoreThan( 0.f ); // find all the active bits.
-        _fbInputActive = _fbInput.indicesMoreThan( 0.f ); // find all the active bits.
+        _ffInput.indicesMoreThan( 0.f, _ffInputActive ); // find all the active bits.
+        _fbInput.indicesMoreThan( 0.f, _fbInputActive ); // find all the active bits.
     }
 
     /**
@@ -363,8 +372,6 @@ public class Region extends NamedObject {
             return; // can't train, ignore blank patterns.
         }
 
-        Object[] activeInput = _ffInputActive.toArray();
-
         Data inputValues = _organizer.getInput();
 
         Point inputSize = Data2d.getSize( _ffInput );
@@ -378,7 +385,7 @@ public class Region extends NamedObject {
 
             int sample = _rc._r.nextInt( nbrActiveInput );
 
-            Integer offset = ( Integer ) activeInput[ sample ];
+            int offset = _ffInputActive.get( sample );
 
             Point p = Data2d.getXY( _ffInput._dataSize, offset );
 
@@ -431,7 +438,8 @@ public class Region extends NamedObject {
 
         Ranking r = new Ranking();
 
-        for( Integer i : _ffInputActive ) {
+        for( int b = 0; b < _ffInputActive._size; ++b ) {
+            int i = _ffInputActive._elements[ b ];
             Point p = Data2d.getXY( _ffInput._dataSize, i );
 
             float d = Geometry.distanceEuclidean2d( ( float ) p.getX(), ( float ) p.getY(), rf_x, rf_y );
@@ -606,7 +614,10 @@ public class Region extends NamedObject {
         Data output = _predictor.getOutput();
 */
         // Create active context bits:
-        HashSet< Integer > activeContext = new HashSet< Integer >();
+        int regionSizeCells = _rc.getRegionAreaCells();
+        IntSet activeContext = _activeContext;
+        activeContext.clear();
+        activeContext.setCapacity( regionSizeCells + _fbInput.getSize() );
 
         // put the local cells first:
         for( Integer i : _regionActive ) { // this is the latest set of active cells, used for a new prediction
@@ -615,9 +626,8 @@ public class Region extends NamedObject {
         }
 
         // copy feedback:
-        int regionSizeCells = _rc.getRegionAreaCells();
-        for( Integer i : _fbInputActive ) {
-            int j = i + regionSizeCells;
+        for( int b = 0; b < _fbInputActive._size; ++b ) {
+            int j = _fbInputActive._elements[ b ] + regionSizeCells;
             activeContext.add( j );
         }
 
@@ -87,6 +87,11 @@ public class RegionLayer extends NamedObject {
 
     // Sparse structures (temporary)
     protected RegionLayerTransient _transient;
+    protected IntSet _regionBits = new IntSet(); // reused by unfold()
+    protected IntSet _ffInput1Bits = new IntSet(); // reused by updateSparseInput()
+    protected IntSet _ffInput2Bits = new IntSet();
+    protected IntSet _fbInputBits = new IntSet();
+    protected IntSet _activeContext = new IntSet(); // reused by updatePrediction()
 
     // Member objects
     public RegionLayerFactory _rf;
@@ -269,13 +274,13 @@ public class RegionLayer extends NamedObject {
 //        unfold( _regionActivityNew, _outputUnfoldedActivity );
 
         // Remove unchanged cols from current state reconstruction.
-        HashSet< Integer > regionBits = _regionActivityNew.indicesMoreThan( 0.f ); // find all the active bits.
+        _regionActivityNew.indicesMoreThan( 0.f, _regionBits ); // find all the active bits.
 
         for( Integer c : _transient._unchangedCells ) {
-            regionBits.remove( c );
+            _regionBits.remove( c );
         }
 
-        unfold( regionBits          , _output1UnfoldedActivityRaw  , _output2UnfoldedActivityRaw );
+        unfold( _regionBits         , _output1UnfoldedActivityRaw  , _output2UnfoldedActivityRaw );
         unfold( _regionPredictionNew, _output1UnfoldedPredictionRaw, _output2UnfoldedPredictionRaw );
 
         // now threshold:
@@ -312,12 +317,12 @@ public class RegionLayer extends NamedObject {
 
 //        float threshold = 0.5f; // this is as meaningful as anything else..
 
-        HashSet< Integer > regionBits = region.indicesMoreThan( 0.f ); // find all the active bits.
+        region.indicesMoreThan( 0.f, _regionBits ); // find all the active bits.
 
-        unfold( regionBits, ffInput1, ffInput2 );
+        unfold( _regionBits, ffInput1, ffInput2 );
     }
 
-    public void unfold( HashSet< Integer > regionBits, Data ffInput1, Data ffInput2 ) {
+    public void unfold( IntSet regionBits, Data ffInput1, Data ffInput2 ) {
 
         ffInput1.set( 0.f );
         ffInput2.set( 0.f );
@@ -332,7 +337,8 @@ public class RegionLayer extends NamedObject {
 
 //        float bitWeight = 1.f / (float)regionBits.size();
 
-        for( Integer i : regionBits ) {
+        for( int b = 0; b < regionBits._size; ++b ) {
+            int i = regionBits._elements[ b ];
 
             Point xyRegion     = _rc.getRegionGivenOffset( i );
             Point xyOrganizer  = _rc.getOrganizerCoordinateGivenRegionCoordinate( xyRegion.x, xyRegion.y );
@@ -365,9 +371,12 @@ public class RegionLayer extends NamedObject {
 
     protected void updateSparseInput() {
         // Find the sparse input bits:
-        _transient._ffInput1Active = _ffInput1.indicesMoreThan( 0.f ); // find all the active bits.
-        _transient._ffInput2Active = _ffInput2.indicesMoreThan( 0.f ); // find all the active bits.
-        _transient._fbInputActive = _fbInput.indicesMoreThan( 0.f ); // find all the active bits.
+        _ffInput1.indicesMoreThan( 0.f, _ffInput1Bits ); // find all the active bits.
+        _ffInput2.indicesMoreThan( 0.f, _ffInput2Bits ); // find all the active bits.
+        _fbInput.indicesMoreThan( 0.f, _fbInputBits ); // find all the active bits.
+        _transient._ffInput1Active = _ffInput1Bits;
+        _transient._ffInput2Active = _ffInput2Bits;
+        _transient._fbInputActive = _fbInputBits;
     }
 
     public    int _organizerIntervalsInput1X = 3; // 3 * 2 = 6
@@ -441,36 +450,27 @@ public class RegionLayer extends NamedObject {
             return; // don't do anything.
         }
 
-        HashSet< Integer > ffInputActive1 = _transient._ffInput1Active;
-        HashSet< Integer > ffInputActive2 = _transient._ffInput2Active;
+        IntSet ffInputActive1 = _transient._ffInput1Active;
+        IntSet ffInputActive2 = _transient._ffInput2Active;
 
         // If we only train on change, remove any bits that WERE already active.
+        // Backwards, as removing a member moves the last member into its place.
         if( _rc.getOrganizerTrainOnChange() ) {
-            HashSet< Integer > remove1 = new HashSet< Integer >();
-
-            for( Integer i : ffInputActive1 ) {
+            for( int b = ffInputActive1._size - 1; b >= 0; --b ) {
+                int i = ffInputActive1._elements[ b ];
                 float old = _ffInput1Old._values[ i ];
                 if( old > 0.f ) {
-                    remove1.add( i );
+                    ffInputActive1.remove( i );
                 }
             }
 
-            for( Integer i : remove1 ) {
-                ffInputActive1.remove( i );
-            }
-
-            HashSet< Integer > remove2 = new HashSet< Integer >();
-
-            for( Integer i : ffInputActive2 ) {
+            for( int b = ffInputActive2._size - 1; b >= 0; --b ) {
+                int i = ffInputActive2._elements[ b ];
                 float old = _ffInput2Old._values[ i ];
                 if( old > 0.f ) {
-                    remove2.add( i );
+                    ffInputActive2.remove( i );
                 }
             }
-
-            for( Integer i : remove2 ) {
-                ffInputActive2.remove( i );
-            }
         }
 
         int nbrActiveInput1 = ffInputActive1.size();
@@ -480,9 +480,6 @@ public class RegionLayer extends NamedObject {
             return; // can't train, ignore blank patterns.
         }
 
-        Object[] activeInput1 = ffInputActive1.toArray();
-        Object[] activeInput2 = ffInputActive2.toArray();
-
         Data inputValues = _organizer.getInput();
 
         Point input1Size = Data2d.getSize( _ffInput1 );
@@ -500,8 +497,8 @@ public class RegionLayer extends NamedObject {
 
             // pick a pair of points: one from each receptive field
             // we are targeting clusters of inputs, which will occur more due to relative frequency
-            Point.Float sample1 = getSample( activeInput1, _ffInput1._dataSize, input1Size );
-            Point.Float sample2 = getSample( activeInput2, _ffInput2._dataSize, input2Size );
+            Point.Float sample1 = getSample( ffInputActive1, _ffInput1._dataSize, input1Size );
+            Point.Float sample2 = getSample( ffInputActive2, _ffInput2._dataSize, input2Size );
 
             inputValues._values[ 0 ] = sample1.x;
             inputValues._values[ 1 ] = sample1.y;
@@ -512,15 +509,15 @@ public class RegionLayer extends NamedObject {
         }
     }
 
-    protected Point.Float getSample( Object[] activeInput, DataSize dataSize, Point dataSize2d ) {
-        int length = activeInput.length;
+    protected Point.Float getSample( IntSet activeInput, DataSize dataSize, Point dataSize2d ) {
+        int length = activeInput.size();
 
         float xUnit = 0.5f;
         float yUnit = 0.5f; // the centre of the input, so will make it more compatible with other samplings
 
         if( length > 0 ) {
             int sample = _rc._r.nextInt( length );
-            Integer offset = ( Integer ) activeInput[ sample ];
+            int offset = activeInput.get( sample );
             Point p = Data2d.getXY( dataSize, offset );
 
             xUnit = ( float ) p.x / ( float ) dataSize2d.x;
@@ -621,10 +618,11 @@ public class RegionLayer extends NamedObject {
         rankClassifierReceptiveField( xClassifier, yClassifier, _ffInput2, _transient._ffInput2Active, xField2, yField2, inputOffset2 );
     }
 
-    protected void rankClassifierReceptiveField( int xClassifier, int yClassifier, Data ffInput, HashSet< Integer > ffInputActive, float xField, float yField, int inputOffset ) {
+    protected void rankClassifierReceptiveField( int xClassifier, int yClassifier, Data ffInput, IntSet ffInputActive, float xField, float yField, int inputOffset ) {
         int classifierOffset = _rc.getOrganizerOffset( xClassifier, yClassifier );
 
-        for( Integer i : ffInputActive ) {
+        for( int b = 0; b < ffInputActive._size; ++b ) {
+            int i = ffInputActive._elements[ b ];
             Point p = Data2d.getXY( ffInput._dataSize, i );
 
             float d = Geometry.distanceEuclidean2d( ( float ) p.getX(), ( float ) p.getY(), xField, yField );
@@ -1001,7 +999,10 @@ public class RegionLayer extends NamedObject {
         // That will scale well...
 
         // Create active context bits:
-        HashSet< Integer > activeContext = new HashSet< Integer >();
+        int regionSizeCells = _rc.getRegionAreaCells();
+        IntSet activeContext = _activeContext;
+        activeContext.clear();
+        activeContext.setCapacity( regionSizeCells + _fbInput.getSize() );
 
         // put the local cells first:
         for( Integer i : _transient._regionActiveCells ) { // this is the latest set of active cells, used for a new prediction
@@ -1010,9 +1011,8 @@ public class RegionLayer extends NamedObject {
         }
 
         // copy feedback:
-        int regionSizeCells = _rc.getRegionAreaCells();
-        for( Integer i : _transient._fbInputActive ) {
-            int j = i + regionSizeCells;
+        for( int b = 0; b < _transient._fbInputActive._size; ++b ) {
+            int j = _transient._fbInputActive._elements[ b ] + regionSizeCells;
             activeContext.add( j );
         }
 
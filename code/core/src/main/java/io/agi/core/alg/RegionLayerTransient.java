@@ -19,11 +19,11 @@
 
 package io.agi.core.alg;
 
+import io.agi.core.data.IntSet;
 import io.agi.core.data.Ranking;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.TreeMap;
 
 /**
@@ -35,9 +35,9 @@ import java.util.TreeMap;
  */
 public class RegionLayerTransient {
 
-    public HashSet< Integer > _ffInput1Active;
-    public HashSet< Integer > _ffInput2Active;
-    public HashSet< Integer > _fbInputActive;
+    public IntSet _ffInput1Active; // reused from step to step by RegionLayer, but refilled every step
+    public IntSet _ffInput2Active;
+    public IntSet _fbInputActive;
 
     public ArrayList< Integer > _regionActiveCells = new ArrayList< Integer >();
 
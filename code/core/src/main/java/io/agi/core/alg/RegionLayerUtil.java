@@ -38,8 +38,13 @@ public class RegionLayerUtil {
      * @param prefix
      */
     public void printSet( Data d, String prefix ) {
-        Collection< Integer > c = d.indicesMoreThan( 0.f ); // find all the active bits.
-        printSet( c, prefix );
+        System.err.println( prefix + "{" );
+        for( int i = 0; i < d._values.length; ++i ) {
+            if( d._values[ i ] > 0.f ) { // the active bits, in order
+                System.err.print( i + ", " );
+            }
+        }
+        System.err.println( prefix + "}" );
     }
 
     /**
@@ -24,10 +24,6 @@ import io.agi.core.ann.convolutional.ConvolutionalNetworkLayerConfig;
 import io.agi.core.ann.unsupervised.LifetimeSparseAutoencoder;
 import io.agi.core.data.*;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.TreeMap;
-
 /**
  * Created by dave on 19/08/17.
  */
@@ -41,6 +37,9 @@ public class AutoencoderConvolutionalNetworkLayer extends ConvolutionalNetworkLa
     public Data _poolError;
     public Data _poolBest;
 
+    protected IntSet _spikes = new IntSet(); // of the classifier, at each position
+    protected TopKSelector _selector = new TopKSelector(); // for inverting, reused each call
+
     public AutoencoderConvolutionalNetworkLayer() {
 
     }
@@ -143,14 +142,14 @@ public class AutoencoderConvolutionalNetworkLayer extends ConvolutionalNetworkLa
                 _classifier.update( train );
 
                 // foreach( model in the kernel ): copy classifier output
-                HashSet< Integer > spikes = _classifier._cellSpikes.indicesMoreThan( 0f );
+                _classifier._cellSpikes.indicesMoreThan( 0f, _spikes );
 
                 for( int cz = 0; cz < _config._depth; ++cz ) {
 
                     int convOffset = ConvolutionData3d.getOffset( cx, cy, cz, _config._width, _config._height, _config._depth );
 
                     float bestValue = 0f;
-                    if( spikes.contains( cz ) ) {
+                    if( _spikes.contains( cz ) ) {
                         float hiddenLayerValue = _classifier._cellWeightedSum._values[ cz ];
                         bestValue = hiddenLayerValue;
                     }
@@ -178,6 +177,9 @@ public class AutoencoderConvolutionalNetworkLayer extends ConvolutionalNetworkLa
 
         Data inputInverted = new Data( _input._dataSize );
 
+        TopKSelector selector = _selector;
+        int[] activeOffsets = new int[ config._depth ];
+
         // 2. find the max model z at each conv. x,y, and invert it.
         for( int cy = 0; cy < _config._height; cy++ ) {
             for( int cx = 0; cx < _config._width; cx++ ) {
@@ -185,7 +187,7 @@ public class AutoencoderConvolutionalNetworkLayer extends ConvolutionalNetworkLa
                 // foreach( model in the kernel )
 //                float max = 0f;
 //                int maxAt = -1;
-                TreeMap< Float, ArrayList< Integer > > ranking = new TreeMap< Float, ArrayList< Integer > >();
+                int activeCount = 0;
 
                 for( int cz = 0; cz < config._depth; ++cz ) {
 
@@ -193,7 +195,8 @@ public class AutoencoderConvolutionalNetworkLayer extends ConvolutionalNetworkLa
                     float c = convInverted._values[ convolvedOffset ];
 
                     if( c > 0f ) {
-                        Ranking.add( ranking, c, cz );
+                        activeOffsets[ activeCount ] = convolvedOffset;
+                        ++activeCount;
                     }
 //                    if( c >= max ) { // over threshold
 //                        max = c;
@@ -202,16 +205,15 @@ public class AutoencoderConvolutionalNetworkLayer extends ConvolutionalNetworkLa
                 }
 
 //                if( maxAt < 0 ) {
-                if( Ranking.isEmpty( ranking ) ) {
+                if( activeCount == 0 ) {
                     continue; // nothing to invert, in spiky case
                 }
 
-                HashSet< Integer > bestCells = new HashSet< Integer >();
                 int sparsity = _classifier._c.getSparsity();
                 int maxRank = sparsity;
                 boolean findMaxima = true; // biggest activity
 
-                Ranking.getBestValuesRandomTieBreak( ranking, findMaxima, maxRank, bestCells, _config._r );
+                int bestCount = selector.selectRandomTieBreak( convInverted._values, activeOffsets, activeCount, maxRank, findMaxima, _config._r );
 
                 //int cz = maxAt;
                 // invert cz:
@@ -220,8 +222,11 @@ public class AutoencoderConvolutionalNetworkLayer extends ConvolutionalNetworkLa
 //                Data classifierInput = CompetitiveLearning.invert( cz, dataSizeClassifierInput, _classifier._cellWeights );
                 Data classifierOutput = new Data( _classifier._cellSpikes._dataSize );
 
-                for( Integer cz : bestCells ) {
-                    int convolvedOffset = ConvolutionData3d.getOffset( cx, cy, cz, config._width, config._height, config._depth );
+                int convolvedOffset0 = ConvolutionData3d.getOffset( cx, cy, 0, config._width, config._height, config._depth );
+
+                for( int i = 0; i < bestCount; ++i ) {
+                    int convolvedOffset = selector._indices[ i ];
+                    int cz = convolvedOffset - convolvedOffset0;
                     float c = convInverted._values[ convolvedOffset ];
                     classifierOutput._values[ cz ] = c;
                 }
@@ -20,6 +20,7 @@
 package io.agi.core.ann.supervised;
 
 import io.agi.core.data.FloatArray;
+import io.agi.core.data.FloatMatrix;
 import io.agi.core.math.Useful;
 
 /**
@@ -182,8 +183,9 @@ public abstract class BackPropagation {
     /**
      * Trains by gradient descent towards a local minima. A single layer is trained.
      *
-s     * @param errorBatch The derivative of the cost function with respect to the weighted sum z (by mini batch)
+     * @param errorBatch The derivative of the cost function with respect to the weighted sum z (by mini batch)
      * @param weights The weights of the layer
+     * @param weightGradients Workspace the size of the weights, for the mean gradient of each weight over the batch
      * @param biases The biases of the layer
      * @param inputBatch The inputs to the layer (by mini batch)
      * @param miniBatchSize
@@ -193,6 +195,7 @@ s     * @param errorBatch The derivative of the cost function with respect to th
     public static void StochasticGradientDescent(
             FloatArray errorBatch,
             FloatArray weights,
+            FloatArray weightGradients,
             FloatArray biases,
             FloatArray inputBatch,
             int miniBatchSize,
@@ -208,54 +211,40 @@ s     * @param errorBatch The derivative of the cost function with respect to th
 
         assert ( biases.getSize() == J );
         assert ( weights.getSize() == ( K * J ) );
+        assert ( weightGradients.getSize() == ( K * J ) );
 
         // w_jk = w_jk - learningRate * d_j * input_k
         // b_j = b_j - learningRate * d_j
 
-        // foreach( cell )
-        for( int j = 0; j < J; ++j ) {
-
-            // foreach( input )
-            for( int k = 0; k < K; ++k ) {
-
-                // foreach( batch sample )
-                float sumErrorGradient = 0f;
-
-                for( int b = 0; b < B; ++b ) {
-
-                    int inputOffset = b * K + k;
-                    float a = inputBatch._values[ inputOffset ];
+        // dw_jk = 1/B * sum_b( d_bj * input_bk ), i.e. the sum of the outer products of each sample's d and input
+        FloatMatrix.OuterProducts( errorBatch._values, inputBatch._values, weightGradients._values, B, J, K, miniBatchNorm, 0f );
 
-                    int errorOffset = b * J + j;
-                    float errorGradient = errorBatch._values[ errorOffset ] * a;
-
-                    sumErrorGradient = errorGradient;
-                }
+        for( int wOffset = 0; wOffset < J * K; ++wOffset ) {
+            float errorGradient = weightGradients._values[ wOffset ];
+            errorGradient = BackPropagation.ClipErrorGradient( errorGradient, BackPropagation.AbsMaxErrorGradient );
 
-                float errorGradient = sumErrorGradient * miniBatchNorm;
-                errorGradient = BackPropagation.ClipErrorGradient( errorGradient, BackPropagation.AbsMaxErrorGradient );
+            float wOld = weights._values[ wOffset ];
 
-                    int wOffset = j * K + k;
-                    float wOld = weights._values[ wOffset ];
+            float wDelta = learningRate * errorGradient;
+            float wOldRescaled = l2RegularizationTerm * wOld; // weight is unchanged when regularization is zero
+            float wNew = wOldRescaled - wDelta;
 
-                    float wDelta = learningRate * errorGradient;// * a;
-                    float wOldRescaled = l2RegularizationTerm * wOld; // weight is unchanged when regularization is zero
-                    float wNew = wOldRescaled - wDelta;
+            // http://neuralnetworksanddeeplearning.com/chap3.html#overfitting_and_regularization
+            // R = 1− ( ( η * λ ) / n )
+            // w = R * w - η * d
 
-                    // http://neuralnetworksanddeeplearning.com/chap3.html#overfitting_and_regularization
-                    // R = 1− ( ( η * λ ) / n )
-                    // w = R * w - η * d
+            // weight clipping
+            //                float wMax = 1.f;
+            //                if( wNew > wMax ) wNew = wMax;
+            //                if( wNew < -wMax ) wNew = -wMax;
 
-                    // weight clipping
-                    //                float wMax = 1.f;
-                    //                if( wNew > wMax ) wNew = wMax;
-                    //                if( wNew < -wMax ) wNew = -wMax;
+            Useful.IsBad( wNew );
 
-                    Useful.IsBad( wNew );
+            weights._values[ wOffset ] = wNew;
+        }
 
-                    weights._values[ wOffset ] = wNew;
-//                }
-            }
+        // foreach( cell )
+        for( int j = 0; j < J; ++j ) {
 
             // foreach( batch sample )
             float sumErrorGradient = 0f;
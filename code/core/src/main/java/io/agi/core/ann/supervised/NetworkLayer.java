@@ -50,6 +50,7 @@ public class NetworkLayer extends NamedObject {
     public Data _inputs; // x
     public Data _batchInputs; // x
     public Data _weights; // w
+    public Data _weightGradients; // dC / dw, mean over the batch
     public Data _biases; // b
     public Data _weightedSums; // z = sum of w * i +b
     public Data _outputs; // a = f( z )
@@ -70,6 +71,7 @@ public class NetworkLayer extends NamedObject {
         _inputs = new Data( inputs );
         _batchInputs = new Data( inputs, batchSize );
         _weights = new Data( inputs, cells );
+        _weightGradients = new Data( inputs, cells );
         _biases = new Data( cells );
         _weightedSums = new Data( cells );
         _outputs = new Data( cells );
@@ -206,6 +208,6 @@ public class NetworkLayer extends NamedObject {
         float regularization = _c.getRegularization();
         int miniBatchSize = _c.getBatchSize();
         //BackPropagation.train( _inputs, _weights, _biases, _costGradients, learningRate, l2R );
-        BackPropagation.StochasticGradientDescent( _batchErrorGradients, _weights, _biases, _batchInputs, miniBatchSize, learningRate, regularization );
+        BackPropagation.StochasticGradientDescent( _batchErrorGradients, _weights, _weightGradients, _biases, _batchInputs, miniBatchSize, learningRate, regularization );
     }
 }
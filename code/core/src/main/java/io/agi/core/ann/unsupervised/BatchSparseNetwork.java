@@ -21,16 +21,13 @@ package io.agi.core.ann.unsupervised;
 
 import io.agi.core.ann.supervised.BackPropagation;
 import io.agi.core.data.Data;
-import io.agi.core.data.Ranking;
+import io.agi.core.data.FloatArray;
+import io.agi.core.data.TopKSelector;
 import io.agi.core.math.Useful;
 import io.agi.core.orm.ObjectMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.TreeMap;
-
 /**
  * Derived from the LifetimeSparseAutoencoder but now using a sparse coding approximation to perform arbitrary functions.
  * Created by dave on 16/10/17.
@@ -53,6 +50,8 @@ public class BatchSparseNetwork extends CompetitiveLearning {
     public Data _cellBiases2;
     public Data _cellWeights1Velocity;
     public Data _cellWeights2Velocity;
+    public Data _cellWeights1Gradients; // workspace
+    public Data _cellWeights2Gradients; // workspace
     public Data _cellBiases1Velocity;
     public Data _cellBiases2Velocity;
 //    public Data _cellErrors;
@@ -100,6 +99,8 @@ public class BatchSparseNetwork extends CompetitiveLearning {
         _cellBiases2 = new Data( outputs ); // 1 bias per output
         _cellWeights1Velocity = new Data( inputs, cells );
         _cellWeights2Velocity = new Data( cells, outputs );
+        _cellWeights1Gradients = new Data( inputs, cells );
+        _cellWeights2Gradients = new Data( cells, outputs );
         _cellBiases1Velocity = new Data( w, h );
 //        _cellBiases2Velocity = new Data( inputs );
         _cellBiases2Velocity = new Data( outputs );
@@ -168,31 +169,16 @@ public class BatchSparseNetwork extends CompetitiveLearning {
             Data cellWeights,
             Data cellBiases,
             Data layerInputs,
-            Data output,
-            TreeMap< Float, ArrayList< Integer > > ranking ) {
+            Data output ) {
 
         for( int i = 0; i < nbrLayerOutputs; ++i ) {
-            float sum = 0.f;
-
-            for( int j = 0; j < nbrLayerInputs; ++j ) {
-
-                float layerInput = layerInputs._values[ j ];
-
-                int offset = i * nbrLayerInputs +j;
-                float weight = cellWeights._values[ offset ];
-                float product = layerInput * weight;
-                sum += product;
-            }
+            float sum = FloatArray.Dot( layerInputs._values, 0, cellWeights._values, i * nbrLayerInputs, nbrLayerInputs );
 
             float bias = cellBiases._values[ i ];
 
             sum += bias;
 
             output._values[ i ] = sum;
-
-            if( ranking != null ) {
-                Ranking.add( ranking, sum, i );
-            }
         }
 
     }
@@ -206,28 +192,28 @@ public class BatchSparseNetwork extends CompetitiveLearning {
             Data cellWeightedSum, // hidden
             Data cellSpikes, // hidden
             Data outputValues, // output
-            int sparsity ) {
+            int sparsity,
+            TopKSelector selector ) {
         // Hidden layer (forward pass)
-        TreeMap< Float, ArrayList< Integer > > ranking = new TreeMap< Float, ArrayList< Integer > >();
-
         int inputs = inputValues.getSize();
         int outputs = outputValues.getSize();
         int cells = cellSpikes.getSize();
 
-        feedForwardLayer( inputs, cells, cellWeights1, cellBiases1, inputValues, cellWeightedSum, ranking );
+        feedForwardLayer( inputs, cells, cellWeights1, cellBiases1, inputValues, cellWeightedSum );
 
         // Hidden Layer Nonlinearity: Make all except top k cells zero.
         boolean findMaxima = true;
         int maxRank = sparsity;
-        ArrayList< Integer > activeCells = Ranking.getBestValues( ranking, findMaxima, maxRank );
+        int activeCount = selector.select( cellWeightedSum._values, 0, cells, maxRank, findMaxima );
         cellSpikes.set( 0.f );
-        for( Integer c : activeCells ) {
+        for( int i = 0; i < activeCount; ++i ) {
+            int c = selector._indices[ i ];
             float transfer = cellWeightedSum._values[ c ]; // otherwise zero
             cellSpikes._values[ c ] = transfer;
         }
 
         // now produce an output
-        feedForwardLayer( cells, outputs, cellWeights2, cellBiases2, cellSpikes, outputValues, null );
+        feedForwardLayer( cells, outputs, cellWeights2, cellBiases2, cellSpikes, outputValues );
     }
 
     public void update() {
@@ -245,7 +231,8 @@ public class BatchSparseNetwork extends CompetitiveLearning {
             _testingHiddenWeightedSum,
             _testingHiddenSpikes, // hidden layer
             _testingOutputValues, // output layer
-            sparsity );
+            sparsity,
+            _selector );
 
         // don't go any further unless learning is enabled
         if( !learn ) {
@@ -268,7 +255,8 @@ public class BatchSparseNetwork extends CompetitiveLearning {
                 hiddenLayerWeightedSum, //_testingHiddenWeightedSum,
                 outputLayerInput,//_testingHiddenSpikes,
                 outputLayerOutput, // not actually used?
-                sparsity );
+                sparsity,
+                _selector );
 
         int batchSize = _c.getBatchSize();
         int batchCount = _c.getBatchCount();
@@ -313,7 +301,8 @@ public class BatchSparseNetwork extends CompetitiveLearning {
                 hiddenLayerWeightedSumBatch, // raw unfiltered output of hidden layer cells
                 outputLayerInputBatch, // original winning cells
                 outputLayerInputBatchLifetime, // calculated: original winning cells AND lifetime sparsity winning cells
-                outputLayerOutputBatch ); // calculated: output given superset of winning cells
+                outputLayerOutputBatch, // calculated: output given superset of winning cells
+                _selector );
 
         batchBackpropagateError( // OK
                 _c,
@@ -330,6 +319,8 @@ public class BatchSparseNetwork extends CompetitiveLearning {
                 _cellWeights2,
                 _cellWeights1Velocity,
                 _cellWeights2Velocity,
+                _cellWeights1Gradients,
+                _cellWeights2Gradients,
                 _cellBiases1,
                 _cellBiases2,
                 _cellBiases1Velocity,
@@ -360,6 +351,8 @@ public class BatchSparseNetwork extends CompetitiveLearning {
             Data cellWeights2,
             Data cellWeights1Velocity,
             Data cellWeights2Velocity,
+            Data cellWeights1Gradients,
+            Data cellWeights2Gradients,
             Data cellBiases1,
             Data cellBiases2,
             Data cellBiases1Velocity,
@@ -384,7 +377,7 @@ public class BatchSparseNetwork extends CompetitiveLearning {
         KSparseAutoencoder.StochasticGradientDescent(
                 inputSize, layerSize, batchSize, learningRate, momentum, weightsInputMajor,
                 outputLayerInputBatch, outputLayerErrorBatch,
-                cellWeights2, cellWeights2Velocity, cellBiases2, cellBiases2Velocity );
+                cellWeights2, cellWeights2Velocity, cellWeights2Gradients, cellBiases2, cellBiases2Velocity );
 
         // now gradient descent in the input->hidden layer. can't skip this because we need to update the biases
         inputSize = inputs;
@@ -394,7 +387,7 @@ public class BatchSparseNetwork extends CompetitiveLearning {
         KSparseAutoencoder.StochasticGradientDescent(
                 inputSize, layerSize, batchSize, learningRate, momentum, weightsInputMajor,
                 hiddenLayerInputBatch, hiddenLayerErrorBatch,
-                cellWeights1, cellWeights1Velocity, cellBiases1, cellBiases1Velocity );
+                cellWeights1, cellWeights1Velocity, cellWeights1Gradients, cellBiases1, cellBiases1Velocity );
 
 //        System.err.println( "Age: " + this._c.getAge() + " Sparsity: " + k  + " vMax = " + vMax );
     }
@@ -527,7 +520,8 @@ public class BatchSparseNetwork extends CompetitiveLearning {
             Data hiddenLayerActivityBatch, // pre-binarization of winners ie weighted sums
             Data hiddenLayerSpikesBatch, // original winning cells
             Data outputLayerInputBatch, // calculated
-            Data outputLayerOutputBatch ) { // calculated
+            Data outputLayerOutputBatch, // calculated
+            TopKSelector selector ) {
 
         // filter all except top-k activations for
         //int inputs = config.getNbrInputs();
@@ -552,36 +546,22 @@ public class BatchSparseNetwork extends CompetitiveLearning {
         }
 
         // accumulate the error gradients and inputs over the batch
-        for( int i = 0; i < cells; ++i ) {
-
-            // find the top k
-            TreeMap< Float, ArrayList< Integer > > ranking = new TreeMap< Float, ArrayList< Integer > >();
 
-            for( int b = 0; b < batchSize; ++b ) {
-                int batchOffset = b * cells + i;
-                float r = hiddenLayerActivityBatch._values[ batchOffset ];
-                Ranking.add( ranking, r, b );
-            }
+        for( int i = 0; i < cells; ++i ) {
 
-            // rank the batch responses for this hidden unit
-            HashSet< Integer > bestBatchIndices = new HashSet< Integer >();
+            // find the top k: rank the batch responses for this hidden unit
             int maxRank = sparsityLifetime;
             boolean findMaxima = true; // biggest activity
-            Ranking.getBestValuesRandomTieBreak( ranking, findMaxima, maxRank, bestBatchIndices, config._r );
+            int bestCount = selector.selectRandomTieBreak( hiddenLayerActivityBatch._values, i, cells, batchSize, maxRank, findMaxima, config._r );
 
             // Set hidden activation to zero for all other batch indices, and 1 for the best
-            for( int b = 0; b < batchSize; ++b ) {
+            // should get the old value here.. ie the winner PLUS the lifetime sparsity bits
+            for( int j = 0; j < bestCount; ++j ) {
+                int b = selector._indices[ j ];
                 int batchOffset = b * cells + i;
-                float oldActivity = outputLayerInputBatch._values[ batchOffset ];
-                float newActivity = oldActivity;
-                if( bestBatchIndices.contains( b ) ) {
-                    float transfer = hiddenLayerActivityBatch._values[ batchOffset ];
-//                    newActivity = 1f;
-                    newActivity = transfer;
-                }
-
-                // should get the old value here.. ie the winner PLUS the lifetime sparsity bits
-                outputLayerInputBatch._values[ batchOffset ] = newActivity;
+                float transfer = hiddenLayerActivityBatch._values[ batchOffset ];
+//                newActivity = 1f;
+                outputLayerInputBatch._values[ batchOffset ] = transfer;
             }
         }
 
@@ -594,7 +574,7 @@ public class BatchSparseNetwork extends CompetitiveLearning {
             int offsetThat = b * cells;
             outputLayerInput.copyRange( outputLayerInputBatch, offsetThis, offsetThat, cells );
             //decode( config, cellWeights, cellBiases2, outputLayerInput, outputLayerOutput ); // for output
-            feedForwardLayer( cells, outputs, cellWeights2, cellBiases2, outputLayerInput, outputLayerOutput, null );
+            feedForwardLayer( cells, outputs, cellWeights2, cellBiases2, outputLayerInput, outputLayerOutput );
             offsetThis = b * outputs;//b * inputs;
             offsetThat = 0;
             outputLayerOutputBatch.copyRange( outputLayerOutput, offsetThis, offsetThat, outputs );
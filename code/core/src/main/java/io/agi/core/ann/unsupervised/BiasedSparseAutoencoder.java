@@ -69,7 +69,7 @@ public class BiasedSparseAutoencoder extends LifetimeSparseAutoencoder {
     public void update( boolean learn ) {
 //        encode();
         int sparsityOutput = _c.getSparsityOutput();
-        encode( _inputValues, _cellWeights, _cellBiases1, _cellWeightedSum, _cellSpikes, sparsityOutput );
+        encode( _inputValues, _cellWeights, _cellBiases1, _cellWeightedSum, _cellSpikes, sparsityOutput, _selector );
 
         // Output layer (forward pass)
         // dont really need to do this if not learning.
@@ -86,7 +86,7 @@ public class BiasedSparseAutoencoder extends LifetimeSparseAutoencoder {
         int sparsityTraining = _c.getSparsity();
         Data cellWeightedSumOld = new Data( _cellWeightedSum._dataSize );
         Data cellSpikesOld = new Data( _cellSpikes._dataSize );
-        encode( _inputValuesOld, _cellWeights, _cellBiases1, cellWeightedSumOld, cellSpikesOld, sparsityTraining );
+        encode( _inputValuesOld, _cellWeights, _cellBiases1, cellWeightedSumOld, cellSpikesOld, sparsityTraining, _selector );
 
         Data inputLearningRate = _inputLearningRate; // new value of input learning rate
         Data hiddenLayerInput = _inputValuesOld; // old values of input i.e. delayed feedback
@@ -156,7 +156,8 @@ public class BiasedSparseAutoencoder extends LifetimeSparseAutoencoder {
                 hiddenLayerWeightedSumBatch, // raw unfiltered output of hidden layer cells
                 outputLayerInputBatch, // original winning cells
                 outputLayerInputBatchLifetime, // calculated: original winning cells AND lifetime sparsity winning cells
-                outputLayerOutputBatch ); //
+                outputLayerOutputBatch,
+                _selector );
 
         batchBackpropagateError(
                 _c,
@@ -190,6 +191,7 @@ public class BiasedSparseAutoencoder extends LifetimeSparseAutoencoder {
                 _c,
                 _cellWeights,
                 _cellWeightsVelocity,
+                _cellWeightsGradients,
                 _cellBiases1,
                 _cellBiases2,
                 _cellBiases1Velocity,
@@ -21,7 +21,6 @@ package io.agi.core.ann.unsupervised;
 
 import io.agi.core.data.Data;
 import io.agi.core.data.FloatArray;
-import io.agi.core.data.Ranking;
 import io.agi.core.math.Unit;
 import io.agi.core.math.Useful;
 import io.agi.core.orm.ObjectMap;
@@ -30,7 +29,6 @@ import org.apache.logging.log4j.Logger;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.TreeMap;
 
 /**
  * An implementation of K-Sparse Autoencoders by Alireza Makhzani and Brendan Frey
@@ -199,29 +197,14 @@ public class CompetitiveKSparseAutoencoder extends CompetitiveLearning {
         int cells = _c.getNbrCells();
 
         // Hidden layer (forward pass)
-        TreeMap< Float, ArrayList< Integer > > ranking = new TreeMap< Float, ArrayList< Integer > >();
-        TreeMap< Float, ArrayList< Integer > > rankingWithPromotion = new TreeMap< Float, ArrayList< Integer > >();
-
         for( int c = 0; c < cells; ++c ) {
-            float sum = 0.f;
-
-            for( int i = 0; i < inputs; ++i ) {
-
-                int offset = c * inputs +i;
-
-                float input = _inputValues._values[ i ];
-                float weight = _cellWeights._values[ offset ];
-                float product = input * weight;
-                sum += product;
-            }
+            float sum = FloatArray.Dot( _inputValues._values, 0, _cellWeights._values, c * inputs, inputs );
 
             float bias = _cellBiases1._values[ c ];
 
             sum += bias;
 
             _cellWeightedSum._values[ c ] = sum;
-
-            Ranking.add( ranking, sum, c );
         }
 
         // Hidden Layer Nonlinearity: Make all except top k cells zero.
@@ -230,9 +213,10 @@ public class CompetitiveKSparseAutoencoder extends CompetitiveLearning {
 
         // ka used for OUTPUT
         int maxRank = ka;
-        ArrayList< Integer > activeCellsKA = Ranking.getBestValues( ranking, findMaxima, maxRank );
+        int activeCountKA = _selector.select( _cellWeightedSum._values, 0, cells, maxRank, findMaxima );
         _cellSpikesTopKA.set( 0.f );
-        for( Integer c : activeCellsKA ) {
+        for( int i = 0; i < activeCountKA; ++i ) {
+            int c = _selector._indices[ i ];
             float transfer = _cellWeightedSum._values[ c ]; // otherwise zero
             _cellSpikesTopKA._values[ c ] = transfer;
         }
@@ -240,9 +224,10 @@ public class CompetitiveKSparseAutoencoder extends CompetitiveLearning {
         // now restrict to just k. This set is used for learning.
         // OUTPUT K
         maxRank = k;
-        ArrayList< Integer > activeCellsK = Ranking.getBestValues( ranking, findMaxima, maxRank );
+        int activeCountK = _selector.select( _cellWeightedSum._values, 0, cells, maxRank, findMaxima );
         _cellSpikesTopK.set( 0f );
-        for( Integer c : activeCellsK ) {
+        for( int i = 0; i < activeCountK; ++i ) {
+            int c = _selector._indices[ i ];
             float transfer = _cellWeightedSum._values[ c ]; // otherwise zero
             _cellSpikesTopK._values[ c ] = transfer;
         }
@@ -260,6 +245,11 @@ public class CompetitiveKSparseAutoencoder extends CompetitiveLearning {
             return;
         }
 
+        ArrayList< Integer > activeCellsK = new ArrayList< Integer >( activeCountK );
+        for( int i = 0; i < activeCountK; ++i ) {
+            activeCellsK.add( _selector._indices[ i ] );
+        }
+
         updateRates( activeCellsK );
         updateCorrelation( activeCellsK );
 
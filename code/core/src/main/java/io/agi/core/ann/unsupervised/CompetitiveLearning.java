@@ -23,6 +23,7 @@ import io.agi.core.data.Data;
 import io.agi.core.data.DataSize;
 import io.agi.core.data.FloatArray;
 import io.agi.core.data.Ranking;
+import io.agi.core.data.TopKSelector;
 import io.agi.core.orm.Callback;
 import io.agi.core.orm.NamedObject;
 import io.agi.core.orm.ObjectMap;
@@ -37,6 +38,8 @@ import java.util.TreeMap;
  */
 public abstract class CompetitiveLearning extends NamedObject implements Callback {
 
+    protected TopKSelector _selector = new TopKSelector(); // for selecting the winning cells, reused each update
+
     public CompetitiveLearning( String name, ObjectMap om ) {
         super( name, om );
     }
@@ -181,6 +184,70 @@ public abstract class CompetitiveLearning extends NamedObject implements Callbac
         }
     }
 
+    /**
+     * Selects the best live cells, as the other findBestNCells() do. Where the last rank is tied, the cells with larger
+     * indices are selected.
+     *
+     * @return the number of cells selected, whose indices are in the selector, best first.
+     */
+    public static int findBestNCells(
+            CompetitiveLearningConfig c,
+            FloatArray cellMask,  // Size = cells
+            FloatArray cellValues, // ie less is better
+            FloatArray cellRanked, // a 1 if within top N ranks
+            int maxRank, // max rank to keep, 0 based
+            boolean findMaxima, // if false, rank minima
+            TopKSelector selector ) {
+        int w = c.getWidthCells();
+        int h = c.getHeightCells();
+        return findBestNCells( w, h, cellMask, cellValues, cellRanked, maxRank, findMaxima, selector );
+    }
+
+    public static int findBestNCells(
+            int w,
+            int h,
+            FloatArray cellMask,  // Size = cells
+            FloatArray cellValues, // ie less is better
+            FloatArray cellRanked, // a 1 if within top N ranks
+            int maxRank, // max rank to keep, 0 based
+            boolean findMaxima, // if false, rank minima
+            TopKSelector selector ) {
+        int cells = w * h;
+
+        // candidates in descending order, as Ranking.truncate() removes the earliest of equal values
+        int[] liveCells = new int[ cells ];
+        int liveCount = 0;
+
+        for( int cell = cells - 1; cell >= 0; --cell ) {
+            if( cellMask != null ) {
+                if( cellMask._values[ cell ] < 1.f ) { // not a live cell
+                    continue; // not a live cell
+                }
+            }
+
+            cellRanked._values[ cell ] = 0.f;
+
+            if( findMaxima ) {
+                if( cellValues._values[ cell ] <= 0.f ) {
+                    continue;
+                }
+            }
+
+            liveCells[ liveCount ] = cell;
+            ++liveCount;
+        }
+
+        int bestCount = selector.select( cellValues._values, liveCells, liveCount, maxRank, findMaxima );
+
+        // now set the winning values mask for each winner:
+        for( int i = 0; i < bestCount; ++i ) {
+            int cell = selector._indices[ i ];
+            cellRanked._values[ cell ] = 1.f;
+        }
+
+        return bestCount;
+    }
+
     public static void findBestNCells(
             CompetitiveLearningConfig c,
             FloatArray cellMask,  // Size = cells
@@ -20,7 +20,6 @@
 package io.agi.core.ann.unsupervised;
 
 import io.agi.core.data.Data;
-import io.agi.core.data.Ranking;
 import io.agi.core.orm.AbstractPair;
 import io.agi.core.orm.ObjectMap;
 import org.apache.logging.log4j.LogManager;
@@ -30,7 +29,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.stream.IntStream;
 
 /**
@@ -123,17 +121,15 @@ public class GrowingNeuralGas extends CompetitiveLearning {
         // Get the top 2 cells, A and B
         int maxRank = 2;
         boolean findMaxima = false; // find minima
-        TreeMap< Float, ArrayList< Integer > > ranking = new TreeMap<>();
         _cellActivity.set( 0.f );
-        findBestNCells( _c, _cellMask, _cellErrors, _cellActivity, maxRank, findMaxima, ranking ); // activity is whether ranked
-        ArrayList< Integer > bestValues = Ranking.getBestValues( ranking, findMaxima, maxRank );
-        if( bestValues.size() < 2 ) {
+        int bestCount = findBestNCells( _c, _cellMask, _cellErrors, _cellActivity, maxRank, findMaxima, _selector ); // activity is whether ranked
+        if( bestCount < 2 ) {
             // This can happen when we have a local cell mask; we just need to assign two cells.
             return;
         }
 
-        _bestCell = bestValues.get( 0 );
-        _2ndBestCell = bestValues.get( 1 );
+        _bestCell = _selector._indices[ 0 ];
+        _2ndBestCell = _selector._indices[ 1 ];
 
         // don't age or do learning/maintenance when input isn't changing. This is achieved by setting learning to false
         // when this occurs
@@ -26,9 +26,6 @@ import io.agi.core.orm.ObjectMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.TreeMap;
 
 /**
  * An implementation of K-Sparse Autoencoders by Alireza Makhzani and Brendan Frey
@@ -57,12 +54,14 @@ public class KSparseAutoencoder extends CompetitiveLearning {
 //    public ArrayList< Integer > _sparseUnitInput;
 //    public ArrayList< Integer > _sparseUnitInput;
     public Data _inputValues;
+    public ConcatenatedFloatArray _inputSegments; // if not null, the input instead of _inputValues, e.g. several Data that weren't concatenated
     public Data _inputReconstructionKA;
     public Data _inputReconstructionK;
     public Data _cellWeights;
     public Data _cellBiases1;
     public Data _cellBiases2;
     public Data _cellWeightsVelocity;
+    public Data _cellWeightsGradients; // workspace
     public Data _cellBiases1Velocity;
     public Data _cellBiases2Velocity;
     public Data _cellErrors;
@@ -99,6 +98,7 @@ public class KSparseAutoencoder extends CompetitiveLearning {
         _cellBiases1 = new Data( w, h );
         _cellBiases2 = new Data( inputs );
         _cellWeightsVelocity = new Data( w, h, inputs );
+        _cellWeightsGradients = new Data( w, h, inputs );
         _cellBiases1Velocity = new Data( w, h );
         _cellBiases2Velocity = new Data( inputs );
         _cellErrors = new Data( w, h );
@@ -158,7 +158,7 @@ public class KSparseAutoencoder extends CompetitiveLearning {
         }
     }
 
-    public void updateAges( Collection< Integer > activeCells, float ageFactor, boolean learn ) {
+    public void updateAges( int[] activeCells, int activeCount, float ageFactor, boolean learn ) {
         if( !learn ) {
             return;
         }
@@ -173,7 +173,8 @@ public class KSparseAutoencoder extends CompetitiveLearning {
         }
 
         // zero the ages of active cells
-        for( Integer c : activeCells ) {
+        for( int i = 0; i < activeCount; ++i ) {
+            int c = activeCells[ i ];
             float age = _cellAges._values[ c ];
             age *= ageFactor;
             _cellAges._values[ c ] = age;
@@ -216,12 +217,35 @@ public class KSparseAutoencoder extends CompetitiveLearning {
 
     public void setInput( Data input ) {
         _inputValues.copy( input );
+        _inputSegments = null;
     }
 
+    /**
+     * Returns the input as one vector. If it is held as segments, they are copied into _inputValues first.
+     *
+     * @return
+     */
     public Data getInput() {
+        if( _inputSegments != null ) {
+            _inputSegments.copyTo( _inputValues );
+        }
+
         return _inputValues;
     }
 
+    /**
+     * Returns the input as segments, which are iterated without copying them into one vector.
+     *
+     * @return
+     */
+    public ConcatenatedFloatArray getInputSegments() {
+        if( _inputSegments != null ) {
+            return _inputSegments;
+        }
+
+        return new ConcatenatedFloatArray( _inputValues );
+    }
+
     public void update() {
         // don't go any further unless learning is enabled
         boolean learn = _c.getLearn();
@@ -264,29 +288,16 @@ public class KSparseAutoencoder extends CompetitiveLearning {
 //        FloatArray weightsT = FloatMatrix.transpose( _cellWeights, rows, cols );
 
         // Hidden layer (forward pass)
-        TreeMap< Float, ArrayList< Integer > > ranking = new TreeMap< Float, ArrayList< Integer > >();
-        TreeMap< Float, ArrayList< Integer > > rankingWithPromotion = new TreeMap< Float, ArrayList< Integer > >();
+        ConcatenatedFloatArray input = getInputSegments();
 
         for( int c = 0; c < cells; ++c ) {
-            float sum = 0.f;
-
-            for( int i = 0; i < inputs; ++i ) {
-
-                int offset = c * inputs +i;
-
-                float input = _inputValues._values[ i ];
-                float weight = _cellWeights._values[ offset ];
-                float product = input * weight;
-                sum += product;
-            }
+            float sum = input.dotProduct( _cellWeights, c * inputs ); // over each segment of the input
 
             float bias = _cellBiases1._values[ c ];
 
             sum += bias;
 
             _cellWeightedSum._values[ c ] = sum;
-
-            Ranking.add( ranking, sum, c );
         }
 
         // Hidden Layer Nonlinearity: Make all except top k cells zero.
@@ -295,28 +306,30 @@ public class KSparseAutoencoder extends CompetitiveLearning {
 
         // ka used for OUTPUT
         int maxRank = ka;
-        ArrayList< Integer > activeCellsKA = Ranking.getBestValues( ranking, findMaxima, maxRank );
+        int activeCountKA = _selector.select( _cellWeightedSum._values, 0, cells, maxRank, findMaxima );
         _cellSpikesTopKA.set( 0.f );
-        for( Integer c : activeCellsKA ) {
+        for( int i = 0; i < activeCountKA; ++i ) {
+            int c = _selector._indices[ i ];
             float transfer = _cellWeightedSum._values[ c ]; // otherwise zero
             _cellSpikesTopKA._values[ c ] = transfer;
         }
 
+        // NOTE: Update ages with the *non* promoted ranking, to require a "natural" win indicating the weights have learned to be useful to zero the age
+        // NOTE: I tried the above, but it just got fixated. Seems like you have to learn it once, then remove the promotion.
+        float ageFactor = 0f;
+        updateAges( _selector._indices, activeCountKA, ageFactor, learn ); // make ages zero on firing
+
         // now restrict to just k. This set is used for learning.
         // OUTPUT K
         maxRank = k;
-        ArrayList< Integer > activeCellsK = Ranking.getBestValues( ranking, findMaxima, maxRank );
+        int activeCountK = _selector.select( _cellWeightedSum._values, 0, cells, maxRank, findMaxima );
         _cellSpikesTopK.set( 0f );
-        for( Integer c : activeCellsK ) {
+        for( int i = 0; i < activeCountK; ++i ) {
+            int c = _selector._indices[ i ];
             float transfer = _cellWeightedSum._values[ c ]; // otherwise zero
             _cellSpikesTopK._values[ c ] = transfer;
         }
 
-        // NOTE: Update ages with the *non* promoted ranking, to require a "natural" win indicating the weights have learned to be useful to zero the age
-        // NOTE: I tried the above, but it just got fixated. Seems like you have to learn it once, then remove the promotion.
-        float ageFactor = 0f;
-        updateAges( activeCellsKA, ageFactor, learn ); // make ages zero on firing
-
 
         // Output layer (forward pass)
         // dont really need to do this if not learning.
@@ -350,22 +363,28 @@ public class KSparseAutoencoder extends CompetitiveLearning {
         //FloatArray dHidden = new FloatArray( cells ); // zeroes
 
         Data outputInput = _cellSpikesTopK;
-        Data hiddenInput = _inputValues;
+        ConcatenatedFloatArray hiddenInput = input;
 //        float minValE = 0f;
 //        float maxValE = 0f;
 
         // d output layer
-        for( int i = 0; i < inputs; ++i ) {
-            float target = _inputValues._values[ i ]; // y
-            float output = _inputReconstructionK._values[ i ]; // a
-            float error = output - target; // == d^L
-            //float weightedSum = output; // z
-            float derivative = 1f;//(float)TransferFunction.logisticSigmoidDerivative( weightedSum );
-//            maxValE = Math.max( maxValE, error );
-//            minValE = Math.min( minValE, error );
-
-            //dOutput._values[ i ] = error * derivative; // eqn 30
-            _outputErrors._values[ i ] = error * derivative; // eqn 30
+        for( int si = 0; si < input.getSegments(); ++si ) {
+            float[] segment = input.getSegment( si );
+            int segmentOffset = input.getSegmentOffset( si );
+
+            for( int j = 0; j < segment.length; ++j ) {
+                int i = segmentOffset + j;
+                float target = segment[ j ]; // y
+                float output = _inputReconstructionK._values[ i ]; // a
+                float error = output - target; // == d^L
+                //float weightedSum = output; // z
+                float derivative = 1f;//(float)TransferFunction.logisticSigmoidDerivative( weightedSum );
+//                maxValE = Math.max( maxValE, error );
+//                minValE = Math.min( minValE, error );
+
+                //dOutput._values[ i ] = error * derivative; // eqn 30
+                _outputErrors._values[ i ] = error * derivative; // eqn 30
+            }
         }
 
 //        System.err.println( "Batch gradient E range : " + minValE + " / " + maxValE );
@@ -435,10 +454,10 @@ public class KSparseAutoencoder extends CompetitiveLearning {
             _outputInputBatch._values[ batchOffset ] = r;
         }
 
-        for( int i = 0; i < inputs; ++i ) {
-            float r = hiddenInput._values[ i ];
-            int batchOffset = b * inputs + i;
-            _hiddenInputBatch._values[ batchOffset ] = r;
+        for( int si = 0; si < hiddenInput.getSegments(); ++si ) {
+            float[] segment = hiddenInput.getSegment( si );
+            int batchOffset = b * inputs + hiddenInput.getSegmentOffset( si );
+            System.arraycopy( segment, 0, _hiddenInputBatch._values, batchOffset, segment.length );
         }
 
         // decide whether to learn or accumulate more gradients first (mini batch)
@@ -457,7 +476,7 @@ public class KSparseAutoencoder extends CompetitiveLearning {
         StochasticGradientDescent(
                 inputSize, layerSize, batchSize, learningRate, momentum, weightsInputMajor,
                 _outputInputBatch, _outputErrorsBatch,
-                _cellWeights, _cellWeightsVelocity, _cellBiases2, _cellBiases2Velocity );
+                _cellWeights, _cellWeightsVelocity, _cellWeightsGradients, _cellBiases2, _cellBiases2Velocity );
 
         // now gradient descent in the input->hidden layer. can't skip this because we need to update the biases
         inputSize = inputs;
@@ -467,7 +486,7 @@ public class KSparseAutoencoder extends CompetitiveLearning {
         StochasticGradientDescent(
                 inputSize, layerSize, batchSize, learningRate, momentum, weightsInputMajor,
                 _hiddenInputBatch, _hiddenErrorsBatch,
-                _cellWeights, _cellWeightsVelocity, _cellBiases1, _cellBiases1Velocity );
+                _cellWeights, _cellWeightsVelocity, _cellWeightsGradients, _cellBiases1, _cellBiases1Velocity );
 
 //        System.err.println( "Age: " + this._c.getAge() + " Sparsity: " + k  + " vMax = " + vMax );
 
@@ -480,6 +499,23 @@ public class KSparseAutoencoder extends CompetitiveLearning {
         _hiddenErrorsBatch.set( 0f );
     }
 
+    /**
+     * Trains one layer by gradient descent, with the mean gradient of each weight and bias over the mini-batch.
+     *
+     * @param inputSize
+     * @param layerSize
+     * @param batchSize
+     * @param learningRate
+     * @param momentum if 0, the velocities aren't used
+     * @param weightsInputMajor if true, weights are indexed [ input, cell ], else [ cell, input ]
+     * @param batchInput batchSize x inputSize
+     * @param batchErrors batchSize x layerSize
+     * @param weights
+     * @param weightsVelocity
+     * @param weightsGradients Workspace the size of the weights, for the mean gradient of each weight over the batch
+     * @param biases
+     * @param biasesVelocity
+     */
     public static void StochasticGradientDescent(
             int inputSize,
             int layerSize,
@@ -491,6 +527,7 @@ public class KSparseAutoencoder extends CompetitiveLearning {
             Data batchErrors,
             Data weights,
             Data weightsVelocity,
+            Data weightsGradients,
             Data biases,
             Data biasesVelocity ) {
         boolean useMomentum = false;
@@ -500,78 +537,55 @@ public class KSparseAutoencoder extends CompetitiveLearning {
 
         float miniBatchNorm = 1f / (float)batchSize;
 
-        for( int c = 0; c < layerSize; ++c ) { // computing error for each "input"
-
-            for( int i = 0; i < inputSize; ++i ) {
-
-                // foreach( batch sample )
-                float sumErrorGradient = 0f;
+        // dw = 1/B * sum_b( d_b * input_b ), as the sum of the outer products of each sample, in the order of the weights
+        if( weightsInputMajor ) {
+            FloatMatrix.OuterProducts( batchInput._values, batchErrors._values, weightsGradients._values, batchSize, inputSize, layerSize, miniBatchNorm, 0f );
+        }
+        else {
+            FloatMatrix.OuterProducts( batchErrors._values, batchInput._values, weightsGradients._values, batchSize, layerSize, inputSize, miniBatchNorm, 0f );
+        }
 
-                for( int b = 0; b < batchSize; ++b ) {
+        int nbrWeights = inputSize * layerSize;
 
-                    // tied weights
-//                    int weightsOffset = c * inputSize + i;
-//                    if( weightsInputMajor ) {
-//                        weightsOffset = i * layerSize + c;
-//                    }
-//
-                    int inputOffset = b * inputSize + i;
-                    int errorOffset = b * layerSize + c;
+        for( int weightsOffset = 0; weightsOffset < nbrWeights; ++weightsOffset ) {
+            float errorGradient = weightsGradients._values[ weightsOffset ];
+            errorGradient = BackPropagation.ClipErrorGradient( errorGradient, BackPropagation.AbsMaxErrorGradient );
 
-                    float a = batchInput._values[ inputOffset ];
+            float wOld = weights._values[ weightsOffset ];
+            float wDelta = learningRate * errorGradient;
 
-                    //float errorGradient = _cellGradients._values[ c ];
-                    float errorGradient = batchErrors._values[ errorOffset ] * a;
+            if( useMomentum ) {
+                if( wDelta != 0f ) { // don't update momentum when we're not updating the weights
+                    // Momentum
+                    float vOld = weightsVelocity._values[ weightsOffset ];
+                    float vNew = ( vOld * momentum ) - wDelta;
+                    float wNew = wOld + vNew;
+
+                    if( Useful.IsBad( wNew ) ) {
+                        String error = "Autoencoder weight update produced a bad value: " + wNew;
+                        logger.error( error );
+                        logger.traceExit();
+                        System.exit( -1 );
+                    }
 
-                    sumErrorGradient += errorGradient;
+                    weights._values[ weightsOffset ] = wNew;
+                    weightsVelocity._values[ weightsOffset ] = vNew;
                 }
+            } else {
+                float wNew = wOld - wDelta;
 
-                float errorGradient = miniBatchNorm * sumErrorGradient;
-                errorGradient = BackPropagation.ClipErrorGradient( errorGradient, BackPropagation.AbsMaxErrorGradient );
-
-//                for( int b = 0; b < batchSize; ++b ) {
-
-                    int weightsOffset = c * inputSize + i;
-                    if( weightsInputMajor ) {
-                        weightsOffset = i * layerSize + c;
-                    }
+                if( Useful.IsBad( wNew ) ) {
+                    String error = "Autoencoder weight update produced a bad value: " + wNew;
+                    logger.error( error );
+                    logger.traceExit();
+                    System.exit( -1 );
+                }
 
-                    //float a = _inputValues._values[ i ];
-                    float wOld = weights._values[ weightsOffset ];
-                    float wDelta = learningRate * errorGradient;// * a;
-
-                    if( useMomentum ) {
-                        if( wDelta != 0f ) { // don't update momentum when we're not updating the weights
-                            // Momentum
-                            float vOld = weightsVelocity._values[ weightsOffset ];
-                            float vNew = ( vOld * momentum ) - wDelta;
-                            float wNew = wOld + vNew;
-
-                            if( Useful.IsBad( wNew ) ) {
-                                String error = "Autoencoder weight update produced a bad value: " + wNew;
-                                logger.error( error );
-                                logger.traceExit();
-                                System.exit( -1 );
-                            }
-
-                            weights._values[ weightsOffset ] = wNew;
-                            weightsVelocity._values[ weightsOffset ] = vNew;
-                        }
-                    } else {
-                        float wNew = wOld - wDelta;
-
-                        if( Useful.IsBad( wNew ) ) {
-                            String error = "Autoencoder weight update produced a bad value: " + wNew;
-                            logger.error( error );
-                            logger.traceExit();
-                            System.exit( -1 );
-                        }
-
-                        weights._values[ weightsOffset ] = wNew;
-                    } // momentum
-//                } // batch
-            } // inputs
+                weights._values[ weightsOffset ] = wNew;
+            } // momentum
+        }
 
+        for( int c = 0; c < layerSize; ++c ) {
             float sumErrorGradient = 0f;
 
             for( int b = 0; b < batchSize; ++b ) {
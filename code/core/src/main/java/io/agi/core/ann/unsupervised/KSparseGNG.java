@@ -21,12 +21,10 @@ package io.agi.core.ann.unsupervised;
 
 import io.agi.core.data.Data;
 import io.agi.core.data.FloatArray;
-import io.agi.core.data.Ranking;
 import io.agi.core.orm.ObjectMap;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.TreeMap;
 
 /**
  * Produces a sparse set of K active cells with maximal overlap with the input. Overlap differs from the Sum of Squared
@@ -107,10 +105,13 @@ public class KSparseGNG extends GrowingNeuralGas {
         int maxRank = Math.max( 2, (int)( area * sparsity ) ); // can't have less than 2 active cells
 
         boolean findMaxima = true; // find minima
-        TreeMap< Float, ArrayList< Integer > > ranking = new TreeMap<>();
         _cellActivity.set( 0.f );
-        findBestNCells( _c, _cellMask, _cellOverlap, _cellActivity, maxRank, findMaxima, ranking ); // activity is whether ranked
-        ArrayList< Integer > bestCells = Ranking.getBestValues( ranking, findMaxima, maxRank );
+        int bestCount = findBestNCells( _c, _cellMask, _cellOverlap, _cellActivity, maxRank, findMaxima, _selector ); // activity is whether ranked
+        ArrayList< Integer > bestCells = new ArrayList< Integer >( bestCount );
+        for( int i = 0; i < bestCount; ++i ) {
+            bestCells.add( _selector._indices[ i ] );
+        }
+
         if( bestCells.size() < 2 ) {
             // This can happen when we have a local cell mask; we just need to assign two cells.
             return;
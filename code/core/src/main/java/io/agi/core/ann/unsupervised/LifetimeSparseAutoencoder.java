@@ -21,16 +21,13 @@ package io.agi.core.ann.unsupervised;
 
 import io.agi.core.ann.supervised.BackPropagation;
 import io.agi.core.data.Data;
-import io.agi.core.data.Ranking;
+import io.agi.core.data.FloatArray;
+import io.agi.core.data.TopKSelector;
 import io.agi.core.math.Useful;
 import io.agi.core.orm.ObjectMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.TreeMap;
 
 /**
  * A variation on "Winner-Take-All Autoencoders" by Alireza Makhzani, Brendan Frey. Their system is a convolutional
@@ -53,6 +50,7 @@ public class LifetimeSparseAutoencoder extends CompetitiveLearning {
     public Data _cellBiases1;
     public Data _cellBiases2;
     public Data _cellWeightsVelocity;
+    public Data _cellWeightsGradients; // workspace
     public Data _cellBiases1Velocity;
     public Data _cellBiases2Velocity;
     public Data _cellErrors;
@@ -97,6 +95,7 @@ public class LifetimeSparseAutoencoder extends CompetitiveLearning {
         _cellBiases1 = new Data( w, h );
         _cellBiases2 = new Data( inputs );
         _cellWeightsVelocity = new Data( w, h, inputs );
+        _cellWeightsGradients = new Data( w, h, inputs );
         _cellBiases1Velocity = new Data( w, h );
         _cellBiases2Velocity = new Data( inputs );
         _cellErrors = new Data( w, h );
@@ -166,84 +165,70 @@ public class LifetimeSparseAutoencoder extends CompetitiveLearning {
 //        encode( _inputValues, _cellWeights, _cellBiases1, _cellWeightedSum, _cellSpikes, sparsity );
 //    }
 
-    public static Collection< Integer > encode(
+    /**
+     * @return the number of active cells, which are the first indices of the selector.
+     */
+    public static int encode(
         Data inputValues,
         Data cellWeights,
         Data cellBiases1,
         Data cellWeightedSum,
         Data cellSpikes,
-        int sparsity
+        int sparsity,
+        TopKSelector selector
     ) {
         // Hidden layer (forward pass)
-        TreeMap< Float, ArrayList< Integer > > ranking = new TreeMap< Float, ArrayList< Integer > >();
-
         int inputs = inputValues.getSize();//_c.getNbrInputs();
         int cells = cellSpikes.getSize();//_c.getNbrCells();
 //        int sparsity = _c.getSparsity();
 
         for( int c = 0; c < cells; ++c ) {
-            float sum = 0.f;
-
-            for( int i = 0; i < inputs; ++i ) {
-
-                int offset = c * inputs +i;
-
-                float input = inputValues._values[ i ];
-                float weight = cellWeights._values[ offset ];
-                float product = input * weight;
-                sum += product;
-            }
+            float sum = FloatArray.Dot( inputValues._values, 0, cellWeights._values, c * inputs, inputs );
 
             float bias = cellBiases1._values[ c ];
 
             sum += bias;
 
             cellWeightedSum._values[ c ] = sum;
-
-            Ranking.add( ranking, sum, c );
         }
 
         // Hidden Layer Nonlinearity: Make all except top k cells zero.
         boolean findMaxima = true;
         int maxRank = sparsity;
-        ArrayList< Integer > activeCells = Ranking.getBestValues( ranking, findMaxima, maxRank );
+        int activeCount = selector.select( cellWeightedSum._values, 0, cells, maxRank, findMaxima );
         cellSpikes.set( 0.f );
-        for( Integer c : activeCells ) {
+        for( int i = 0; i < activeCount; ++i ) {
+            int c = selector._indices[ i ];
             float transfer = cellWeightedSum._values[ c ]; // otherwise zero
             cellSpikes._values[ c ] = transfer;
         }
 
-        return activeCells;
+        return activeCount;
     }
 
-    public static Collection< Integer > encodeWithMask(
+    /**
+     * @return the number of active cells, which are the first indices of the selector.
+     */
+    public static int encodeWithMask(
             Data inputValues,
             Data cellMask,
             Data cellWeights,
             Data cellBiases1,
             Data cellWeightedSum,
             Data cellSpikes,
-            int sparsity
+            int sparsity,
+            TopKSelector selector
     ) {
         // Hidden layer (forward pass)
-        TreeMap< Float, ArrayList< Integer > > ranking = new TreeMap< Float, ArrayList< Integer > >();
-
         int inputs = inputValues.getSize();//_c.getNbrInputs();
         int cells = cellSpikes.getSize();//_c.getNbrCells();
 //        int sparsity = _c.getSparsity();
 
-        for( int c = 0; c < cells; ++c ) {
-            float sum = 0.f;
-
-            for( int i = 0; i < inputs; ++i ) {
-
-                int offset = c * inputs +i;
+        int[] maskedCells = new int[ cells ];
+        int maskedCount = 0;
 
-                float input = inputValues._values[ i ];
-                float weight = cellWeights._values[ offset ];
-                float product = input * weight;
-                sum += product;
-            }
+        for( int c = 0; c < cells; ++c ) {
+            float sum = FloatArray.Dot( inputValues._values, 0, cellWeights._values, c * inputs, inputs );
 
             float bias = cellBiases1._values[ c ];
 
@@ -254,27 +239,29 @@ public class LifetimeSparseAutoencoder extends CompetitiveLearning {
             // only rank the values of cells that are masked-in
             float maskValue = cellMask._values[ c ];
             if( maskValue > 0f ) {
-                Ranking.add( ranking, sum, c );
+                maskedCells[ maskedCount ] = c;
+                ++maskedCount;
             }
         }
 
         // Hidden Layer Nonlinearity: Make all except top k cells zero.
         boolean findMaxima = true;
         int maxRank = sparsity;
-        ArrayList< Integer > activeCells = Ranking.getBestValues( ranking, findMaxima, maxRank );
+        int activeCount = selector.select( cellWeightedSum._values, maskedCells, maskedCount, maxRank, findMaxima );
         cellSpikes.set( 0.f );
-        for( Integer c : activeCells ) {
+        for( int i = 0; i < activeCount; ++i ) {
+            int c = selector._indices[ i ];
             float transfer = cellWeightedSum._values[ c ]; // otherwise zero
             cellSpikes._values[ c ] = transfer;
         }
 
-        return activeCells;
+        return activeCount;
     }
 
     public void update( boolean learn ) {
 //        encode();
         int sparsityOutput = _c.getSparsityOutput();
-        encode( _inputValues, _cellWeights, _cellBiases1, _cellWeightedSum, _cellSpikes, sparsityOutput );
+        encode( _inputValues, _cellWeights, _cellBiases1, _cellWeightedSum, _cellSpikes, sparsityOutput, _selector );
 
 
         // Output layer (forward pass)
@@ -290,7 +277,7 @@ public class LifetimeSparseAutoencoder extends CompetitiveLearning {
         int sparsityTraining = _c.getSparsity();
         Data cellWeightedSumTraining = new Data( _cellWeightedSum._dataSize );
         Data cellSpikesTraining = new Data( _cellSpikes._dataSize );
-        encode( _inputValues, _cellWeights, _cellBiases1, cellWeightedSumTraining, cellSpikesTraining, sparsityTraining );
+        encode( _inputValues, _cellWeights, _cellBiases1, cellWeightedSumTraining, cellSpikesTraining, sparsityTraining, _selector );
 
         Data hiddenLayerInput = _inputValues;
         Data hiddenLayerWeightedSum = cellWeightedSumTraining;//_cellWeightedSum;
@@ -345,7 +332,8 @@ public class LifetimeSparseAutoencoder extends CompetitiveLearning {
                     hiddenLayerWeightedSumBatch, // raw unfiltered output of hidden layer cells
                     outputLayerInputBatch, // original winning cells
                     outputLayerInputBatchLifetime, // calculated: original winning cells AND lifetime sparsity winning cells
-                    outputLayerOutputBatch ); //
+                    outputLayerOutputBatch,
+                    this._selector );
         }
         else {
             // batch select max error
@@ -376,6 +364,7 @@ public class LifetimeSparseAutoencoder extends CompetitiveLearning {
                 _c,
                 _cellWeights,
                 _cellWeightsVelocity,
+                _cellWeightsGradients,
                 _cellBiases1,
                 _cellBiases2,
                 _cellBiases1Velocity,
@@ -405,6 +394,7 @@ public class LifetimeSparseAutoencoder extends CompetitiveLearning {
             LifetimeSparseAutoencoderConfig config,
             Data cellWeights,
             Data cellWeightsVelocity,
+            Data cellWeightsGradients,
             Data cellBiases1,
             Data cellBiases2,
             Data cellBiases1Velocity,
@@ -428,7 +418,7 @@ public class LifetimeSparseAutoencoder extends CompetitiveLearning {
         KSparseAutoencoder.StochasticGradientDescent(
                 inputSize, layerSize, batchSize, learningRate, momentum, weightsInputMajor,
                 outputLayerInputBatch, outputLayerErrorBatch,
-                cellWeights, cellWeightsVelocity, cellBiases2, cellBiases2Velocity );
+                cellWeights, cellWeightsVelocity, cellWeightsGradients, cellBiases2, cellBiases2Velocity );
 
         // now gradient descent in the input->hidden layer. can't skip this because we need to update the biases
         inputSize = inputs;
@@ -438,7 +428,7 @@ public class LifetimeSparseAutoencoder extends CompetitiveLearning {
         KSparseAutoencoder.StochasticGradientDescent(
                 inputSize, layerSize, batchSize, learningRate, momentum, weightsInputMajor,
                 hiddenLayerInputBatch, hiddenLayerErrorBatch,
-                cellWeights, cellWeightsVelocity, cellBiases1, cellBiases1Velocity );
+                cellWeights, cellWeightsVelocity, cellWeightsGradients, cellBiases1, cellBiases1Velocity );
 
 //        System.err.println( "Age: " + this._c.getAge() + " Sparsity: " + k  + " vMax = " + vMax );
     }
@@ -502,21 +492,46 @@ public class LifetimeSparseAutoencoder extends CompetitiveLearning {
 //        float minValW = 0f;
 //        float maxValW = 0f;
 
-        for( int b = 0; b < batchSize; ++b ) {
+        // OUTPUT LAYER
+        // d output layer
+        float maxError = 0f;
+
+        for( int batchOffset = 0; batchOffset < batchSize * inputs; ++batchOffset ) {
+            float target = hiddenLayerInputBatch._values[ batchOffset ]; // y
+            float output = outputLayerOutputBatch._values[ batchOffset ]; // a
+            float error = output - target; // == d^L
+            //float weightedSum = output; // z
+            float derivative = 1f;//(float)TransferFunction.logisticSigmoidDerivative( weightedSum );
+            float d = error * derivative; // eqn 30
+            outputLayerErrorBatch._values[ batchOffset ] = d;
+            maxError = Math.max( maxError, Math.abs( d ) ); // NaN if any is NaN
+        }
 
-            // OUTPUT LAYER
-            // d output layer
-            for( int i = 0; i < inputs; ++i ) {
-                int batchOffset = b * inputs + i;
-                float target = hiddenLayerInputBatch._values[ batchOffset ]; // y
-                float output = outputLayerOutputBatch._values[ batchOffset ]; // a
-                float error = output - target; // == d^L
-                //float weightedSum = output; // z
-                float derivative = 1f;//(float)TransferFunction.logisticSigmoidDerivative( weightedSum );
-                outputLayerErrorBatch._values[ batchOffset ] = error * derivative; // eqn 30
-//                maxValE = Math.max( maxValE, error );
-//                minValE = Math.min( minValE, error );
+        // HIDDEN LAYER
+        // compute gradient in hidden units. Derivative is either 1 or 0 depending whether the cell was filtered.
+        // Each product d * w is clipped. When none can reach the clip, each active cell's sum is a dot product of the
+        // errors and its weights. Only the active cells are computed, as the layer is sparse.
+        float maxWeight = cellWeights.maxAbs();
+        float clip = 10.f;
+
+        if( ( maxError * maxWeight ) <= clip ) { // false if either is NaN or infinite
+            for( int b = 0; b < batchSize; ++b ) {
+                for( int c = 0; c < cells; ++c ) {
+                    int batchOffsetCell = b * cells + c;
+                    float sum = 0f; // derivative is zero when filtered
+
+                    float transferTopK = outputLayerInputBatch._values[ batchOffsetCell ];
+                    if( transferTopK > 0f ) { // if was cell active
+                        sum = FloatArray.Dot( outputLayerErrorBatch._values, b * inputs, cellWeights._values, c * inputs, inputs );
+                    }
+
+                    hiddenLayerErrorBatch._values[ batchOffsetCell ] = sum;
+                }
             }
+            return;
+        }
+
+        for( int b = 0; b < batchSize; ++b ) {
 
             // HIDDEN LAYER
             // compute gradient in hidden units. Derivative is either 1 or 0 depending whether the cell was filtered.
@@ -536,11 +551,7 @@ public class LifetimeSparseAutoencoder extends CompetitiveLearning {
                         int batchOffsetInput = b * inputs + i;
                         float d = outputLayerErrorBatch._values[ batchOffsetInput ]; // d_j i.e. partial derivative of loss fn with respect to the activation of j
                         float product = d * w;// + ( l2R * w );
-//                        maxValD = Math.max( maxValD, d );
-//                        minValD = Math.min( minValD, d );
-//                        maxValW = Math.max( maxValW, w );
-//                        minValW = Math.min( minValW, w );
-                        product = BackPropagation.ClipErrorGradient( product, 10.f );
+                        product = BackPropagation.ClipErrorGradient( product, clip );
 
                         // TODO add gradient clipping
                         if( Useful.IsBad( product ) ) {
@@ -562,7 +573,6 @@ public class LifetimeSparseAutoencoder extends CompetitiveLearning {
                 hiddenLayerErrorBatch._values[ batchOffsetCell ] = sum;
             } // cells
         } // batch index
-//        System.err.println( "Batch gradient E range : " + minValE + " / " + maxValE + " W range: " + minValW + " / " + maxValW + " D range: " + minValD + " / " + maxValD );
     }
 
     public static void backpropagateError(
@@ -645,6 +655,7 @@ public class LifetimeSparseAutoencoder extends CompetitiveLearning {
      * @param hiddenLayerSpikesBatch
      * @param outputLayerInputBatch
      * @param outputLayerOutputBatch
+     * @param selector reused for each cell
      */
     public static void batchSelectHiddenCells(
             LifetimeSparseAutoencoderConfig config,
@@ -653,7 +664,8 @@ public class LifetimeSparseAutoencoder extends CompetitiveLearning {
             Data hiddenLayerActivityBatch, // pre-binarization of winners ie weighted sums
             Data hiddenLayerSpikesBatch, // original winning cells
             Data outputLayerInputBatch, // calculated
-            Data outputLayerOutputBatch ) { // calculated
+            Data outputLayerOutputBatch, // calculated
+            TopKSelector selector ) {
 
         // filter all except top-k activations for
         int inputs = config.getNbrInputs();
@@ -680,34 +692,19 @@ public class LifetimeSparseAutoencoder extends CompetitiveLearning {
         if( sparsityLifetime > 0 ) {
             for( int i = 0; i < cells; ++i ) {
 
-                // find the top k
-                TreeMap< Float, ArrayList< Integer > > ranking = new TreeMap< Float, ArrayList< Integer > >();
-
-                for( int b = 0; b < batchSize; ++b ) {
-                    int batchOffset = b * cells + i;
-                    float r = hiddenLayerActivityBatch._values[ batchOffset ];
-                    Ranking.add( ranking, r, b );
-                }
-
-                // rank the batch responses for this hidden unit
-                HashSet< Integer > bestBatchIndices = new HashSet< Integer >();
+                // find the top k: rank the batch responses for this hidden unit
                 int maxRank = sparsityLifetime;
                 boolean findMaxima = true; // biggest activity
-                Ranking.getBestValuesRandomTieBreak( ranking, findMaxima, maxRank, bestBatchIndices, config._r );
+                int bestCount = selector.selectRandomTieBreak( hiddenLayerActivityBatch._values, i, cells, batchSize, maxRank, findMaxima, config._r );
 
                 // Set hidden activation to zero for all other batch indices, and 1 for the best
-                for( int b = 0; b < batchSize; ++b ) {
+                // should get the old value here.. ie the winner PLUS the lifetime sparsity bits
+                for( int j = 0; j < bestCount; ++j ) {
+                    int b = selector._indices[ j ];
                     int batchOffset = b * cells + i;
-                    float oldActivity = outputLayerInputBatch._values[ batchOffset ];
-                    float newActivity = oldActivity;
-                    if( bestBatchIndices.contains( b ) ) {
-                        float transfer = hiddenLayerActivityBatch._values[ batchOffset ];
-                        //                    newActivity = 1f;
-                        newActivity = transfer;
-                    }
-
-                    // should get the old value here.. ie the winner PLUS the lifetime sparsity bits
-                    outputLayerInputBatch._values[ batchOffset ] = newActivity;
+                    float transfer = hiddenLayerActivityBatch._values[ batchOffset ];
+                    //                    newActivity = 1f;
+                    outputLayerInputBatch._values[ batchOffset ] = transfer;
                 }
             }
         }
@@ -765,7 +762,7 @@ public class LifetimeSparseAutoencoder extends CompetitiveLearning {
 
         // work out which inputs in the batch caused the greatest reconstruction error.
         // these are our targets for idle cells
-        TreeMap< Float, ArrayList< Integer > > sumReconstructionErrorRanking = new TreeMap< Float, ArrayList< Integer > >();
+        float[] sumReconstructionError = new float[ batchSize ];
         for( int b = 0; b < batchSize; ++b ) {
             float sumErrorSq = 0f;
 
@@ -777,13 +774,14 @@ public class LifetimeSparseAutoencoder extends CompetitiveLearning {
                 float errorSq = ( inputValue - outputValue ) * ( inputValue - outputValue );
                 sumErrorSq += errorSq;
             }
-            Ranking.add( sumReconstructionErrorRanking, sumErrorSq, b );
+            sumReconstructionError[ b ] = sumErrorSq;
         }
 
-        ArrayList< Integer > maxErrorBatchIndices = new ArrayList< Integer >();
+        TopKSelector selector = encoder._selector;
         int maxRank1 = batchSize;//sparsityLifetime; // i.e. up to X inputs will be trained for by all inactive or underactive cells
         boolean findMaxima1 = true; // find max error
-        Ranking.getBestValuesRandomTieBreak( sumReconstructionErrorRanking, findMaxima1, maxRank1, maxErrorBatchIndices, config._r );
+        int maxErrorCount = selector.selectRandomTieBreak( sumReconstructionError, 0, batchSize, maxRank1, findMaxima1, config._r );
+        int[] maxErrorBatchIndices = selector._indices;
 
 
         // train all idle cells towards all the inputs that had the worst reconstruction error
@@ -811,8 +809,8 @@ public class LifetimeSparseAutoencoder extends CompetitiveLearning {
             int leastActiveIdx = 0;
 
             while( extraWins > 0 ) {
-                for( ; leastActiveIdx < maxErrorBatchIndices.size(); ++leastActiveIdx ) {
-                    int b = maxErrorBatchIndices.get( leastActiveIdx );
+                for( ; leastActiveIdx < maxErrorCount; ++leastActiveIdx ) {
+                    int b = maxErrorBatchIndices[ leastActiveIdx ];
                     int batchOffset = b * cells + cell;
 
                     // mask cells that can't respond to this input
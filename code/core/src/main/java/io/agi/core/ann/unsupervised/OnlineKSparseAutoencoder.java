@@ -22,15 +22,12 @@ package io.agi.core.ann.unsupervised;
 import io.agi.core.ann.supervised.ActivationFunction;
 import io.agi.core.data.Data;
 import io.agi.core.data.FloatArray;
-import io.agi.core.data.Ranking;
 import io.agi.core.math.Useful;
 import io.agi.core.orm.ObjectMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.TreeMap;
 
 /**
  * A derivation of K-Sparse Autoencoders for online, continuous or progressive learning. The input statistics can be
@@ -226,7 +223,7 @@ public class OnlineKSparseAutoencoder extends CompetitiveLearning {
         }
     }
 
-    public void updateAges( Collection< Integer > activeCells, float ageFactor, boolean learn ) {
+    public void updateAges( int[] activeCells, int activeCount, float ageFactor, boolean learn ) {
         if( !learn ) {
             return;
         }
@@ -241,14 +238,15 @@ public class OnlineKSparseAutoencoder extends CompetitiveLearning {
         }
 
         // zero the ages of active cells
-        for( Integer c : activeCells ) {
+        for( int i = 0; i < activeCount; ++i ) {
+            int c = activeCells[ i ];
             float age = _cellAges._values[ c ];
             age *= ageFactor;
             _cellAges._values[ c ] = age;
         }
     }
 
-    public void updateRates( Collection< Integer > activeCells, boolean learn ) {
+    public void updateRates( int[] activeCells, int activeCount, boolean learn ) {
         if( !learn ) {
             return;
         }
@@ -257,17 +255,18 @@ public class OnlineKSparseAutoencoder extends CompetitiveLearning {
         float memoryRate = 1f - learningRate;
         int cells = _c.getNbrCells();
 
-        // increment all ages
+        // decay all rates
         for( int c = 0; c < cells; ++c ) {
-            float rate = 0f;
-            if( activeCells.contains( c ) ) {
-                rate = 1f;
-            }
-
             float oldRate = _cellRates._values[ c ];
-            float newRate = oldRate * memoryRate + rate * learningRate;
+            float newRate = oldRate * memoryRate;
             _cellRates._values[ c ] = newRate;
         }
+
+        // and increase the rates of active cells
+        for( int i = 0; i < activeCount; ++i ) {
+            int c = activeCells[ i ];
+            _cellRates._values[ c ] += learningRate;
+        }
     }
 
     public void update() {
@@ -303,21 +302,8 @@ public class OnlineKSparseAutoencoder extends CompetitiveLearning {
         updatePromotion();
 
         // Hidden layer (forward pass)
-        TreeMap< Float, ArrayList< Integer > > ranking = new TreeMap< Float, ArrayList< Integer > >();
-        TreeMap< Float, ArrayList< Integer > > rankingWithPromotion = new TreeMap< Float, ArrayList< Integer > >();
-
         for( int c = 0; c < cells; ++c ) {
-            float sum = 0.f;
-
-            for( int i = 0; i < inputs; ++i ) {
-
-                int offset = c * inputs +i;
-
-                float input = _inputValues._values[ i ];
-                float weight = _cellWeights._values[ offset ];
-                float product = input * weight;
-                sum += product;
-            }
+            float sum = FloatArray.Dot( _inputValues._values, 0, _cellWeights._values, c * inputs, inputs );
 
             float bias = _cellBiases1._values[ c ];
 
@@ -327,18 +313,14 @@ public class OnlineKSparseAutoencoder extends CompetitiveLearning {
 
             float transfer = (float) ActivationFunction.logisticSigmoid(sum);
 
-            _cellTransfer._values[ c ] = transfer;
-
-            Ranking.add( ranking, transfer, c ); // this is the new output
+            _cellTransfer._values[ c ] = transfer; // this is the new output
 
             float promotion  = _cellPromotion._values[ c ];
 //            float inhibition = _cellInhibition._values[ c ];
             float transferPromoted = transfer * promotion;// * inhibition;
 //            float transferPromoted = sum;//transfer * promotion;// * inhibition;
 
-            _cellTransferPromoted._values[ c ] = transferPromoted;
-
-            Ranking.add( rankingWithPromotion, transferPromoted, c ); // this is the new output
+            _cellTransferPromoted._values[ c ] = transferPromoted; // this is the new output
         }
 
         // Hidden Layer Nonlinearity: Make all except top k cells zero.
@@ -347,10 +329,11 @@ public class OnlineKSparseAutoencoder extends CompetitiveLearning {
 
         // ka used for OUTPUT
         int maxRank = ka;
-        ArrayList< Integer > activeCellsKA = Ranking.getBestValues( ranking, findMaxima, maxRank );
+        int activeCountKA = _selector.select( _cellTransfer._values, 0, cells, maxRank, findMaxima );
         _cellSpikesTopKA.set( 0.f );
         _cellTransferTopKA.set( 0f );
-        for( Integer c : activeCellsKA ) {
+        for( int i = 0; i < activeCountKA; ++i ) {
+            int c = _selector._indices[ i ];
             _cellSpikesTopKA._values[ c ] = 1f;
             _cellTransferTopKA._values[ c ] = _cellTransfer._values[ c ];
         }
@@ -359,11 +342,12 @@ public class OnlineKSparseAutoencoder extends CompetitiveLearning {
         // OUTPUT K
         // NOTE: Use the promoted transfer value for training
         maxRank = k;
-        ArrayList< Integer > activeCellsK = Ranking.getBestValues( rankingWithPromotion, findMaxima, maxRank );
+        int activeCountK = _selector.select( _cellTransferPromoted._values, 0, cells, maxRank, findMaxima );
         _cellSpikesTopK.set( 0f );
         _cellWeightedSumTopK.set( 0f );
         _cellTransferTopK.set( 0f );
-        for( Integer c : activeCellsK ) {
+        for( int i = 0; i < activeCountK; ++i ) {
+            int c = _selector._indices[ i ];
             _cellSpikesTopK._values[ c ] = 1f;
             _cellWeightedSumTopK._values[ c ] = _cellWeightedSum._values[ c ];
             _cellTransferTopK._values[ c ] = _cellTransfer._values[ c ];
@@ -374,8 +358,8 @@ public class OnlineKSparseAutoencoder extends CompetitiveLearning {
 
         // NOTE: Update ages with the *non* promoted ranking, to require a "natural" win indicating the weights have learned to be useful to zero the age
         // NOTE: I tried the above, but it just got fixated. Seems like you have to learn it once, then remove the promotion.
-        updateAges( activeCellsK, ageTruncation, learn );
-        updateRates( activeCellsK, learn );
+        updateAges( _selector._indices, activeCountK, ageTruncation, learn );
+        updateRates( _selector._indices, activeCountK, learn );
 
 
         // Output layer (forward pass)
@@ -20,12 +20,10 @@
 package io.agi.core.ann.unsupervised;
 
 import io.agi.core.data.Data;
-import io.agi.core.data.Ranking;
 import io.agi.core.orm.ObjectMap;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.TreeMap;
 
 /**
  * Basic concept:
@@ -101,22 +99,18 @@ public class PlasticNeuralGas extends CompetitiveLearning {
         int maxRank = _c.getNbrCells() +1; // keep em all
         boolean findMaxima = false; // find minima
 
-        TreeMap< Float, ArrayList< Integer > > ranking1 = new TreeMap< Float, ArrayList< Integer > >();
-        findBestNCells( _c, _cellMask, _cellErrors, _cellActivity, maxRank, findMaxima, ranking1 ); // activity is whether ranked
-        ArrayList< Integer > bestValues1 = Ranking.getBestValues( ranking1, findMaxima, maxRank );
+        findBestNCells( _c, _cellMask, _cellErrors, _cellActivity, maxRank, findMaxima, _selector ); // activity is whether ranked
 
-        int bestCell1 = bestValues1.get( 0 );
+        int bestCell1 = _selector._indices[ 0 ];
 
         float relativeStress = getRelativeStress( bestCell1, liveCells );
 
         // Re-rank all cells with promotion of old cells
         promoteOldCells( liveCells, maxAge, ageScale, relativeStress );
 
-        TreeMap< Float, ArrayList< Integer > > ranking2 = new TreeMap< Float, ArrayList< Integer > >();
-        findBestNCells( _c, _cellMask, _cellErrors, _cellActivity, maxRank, findMaxima, ranking2 ); // activity is whether ranked
-        ArrayList< Integer > bestValues2 = Ranking.getBestValues( ranking2, findMaxima, maxRank );
+        int ranks = findBestNCells( _c, _cellMask, _cellErrors, _cellActivity, maxRank, findMaxima, _selector ); // activity is whether ranked
 
-        _bestCell = bestValues2.get( 0 );
+        _bestCell = _selector._indices[ 0 ];
 
         _cellActivity.set( 0.f );
         _cellActivity._values[ _bestCell ] = 1.f;
@@ -136,10 +130,9 @@ public class PlasticNeuralGas extends CompetitiveLearning {
         int w = _c.getWidthCells();
         int h = _c.getHeightCells();
         int cells = w * h;
-        int ranks = bestValues2.size();
 
         for( int rank = 0; rank < ranks; ++rank ) {
-            int cell = bestValues2.get( rank );
+            int cell = _selector._indices[ rank ];
 
             updateAge( cell, cells, rank, maxAge, ageDecay );
 
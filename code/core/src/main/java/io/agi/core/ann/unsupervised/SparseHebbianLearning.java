@@ -21,6 +21,7 @@ package io.agi.core.ann.unsupervised;
 
 import io.agi.core.data.Data;
 import io.agi.core.data.DataSize;
+import io.agi.core.data.IntSet;
 import io.agi.core.math.Unit;
 
 import java.util.Collection;
@@ -231,6 +232,16 @@ public class SparseHebbianLearning {
         }
     }
 
+    /**
+     * Accumulate any bits seen during the state transition, as they may occur asynchronously
+     * @param activeContext
+     */
+    public void updateContext( IntSet activeContext ) {
+        for( int b = 0; b < activeContext._size; ++b ) {
+            _context._values[ activeContext._elements[ b ] ] = 1.f;
+        }
+    }
+
     /**
      * Call this when there is a state change.
      */
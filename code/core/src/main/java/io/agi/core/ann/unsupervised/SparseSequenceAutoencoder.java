@@ -187,12 +187,12 @@ public class SparseSequenceAutoencoder extends CompetitiveLearning {
         int sparsityF = _encoderF._c.getSparsity();
         int sparsityB = _encoderB._c.getSparsity();
 
-        Collection< Integer > activeCellsF = _encoderF.encode(
+        int activeCountF = _encoderF.encode(
                 _encoderF._inputValues,
                 _encoderF._cellWeights,
                 _encoderF._cellBiases1,
                 _encoderF._cellWeightedSum,
-                _encoderF._cellSpikes, sparsityF );
+                _encoderF._cellSpikes, sparsityF, _selector );
 
         // build the mask of allowed cells B:
         _cellMaskB.set( 0f );
@@ -207,7 +207,8 @@ public class SparseSequenceAutoencoder extends CompetitiveLearning {
 
             mappedCells.put( cellB, mappedCellsF );
 
-            for( Integer cellF : activeCellsF ) {
+            for( int i = 0; i < activeCountF; ++i ) {
+                int cellF = _selector._indices[ i ];
                 if( mappedCellsF.contains( cellF ) ) {
                     maskedCellsB.add( cellB );
                     _cellMaskB._values[ cellB ] = 1f; // allowed cells
@@ -215,17 +216,18 @@ public class SparseSequenceAutoencoder extends CompetitiveLearning {
             }
         }
 
-        Collection< Integer > activeCellsB = _encoderF.encodeWithMask(
+        int activeCountB = _encoderF.encodeWithMask(
                 _encoderB._inputValues,
                 _cellMaskB,
                 _encoderB._cellWeights,
                 _encoderB._cellBiases1,
                 _encoderB._cellWeightedSum,
-                _encoderB._cellSpikes, sparsityB );
+                _encoderB._cellSpikes, sparsityB, _selector );
 
         // binarize the output
         _output.set( 0f );
-        for( Integer cellB : activeCellsB ) {
+        for( int i = 0; i < activeCountB; ++i ) {
+            int cellB = _selector._indices[ i ];
             _output._values[ cellB ] = 1f;
         }
 
@@ -371,6 +373,7 @@ public class SparseSequenceAutoencoder extends CompetitiveLearning {
                 encoder._c,
                 encoder._cellWeights,
                 encoder._cellWeightsVelocity,
+                encoder._cellWeightsGradients,
                 encoder._cellBiases1,
                 encoder._cellBiases2,
                 encoder._cellBiases1Velocity,
@@ -481,6 +484,7 @@ public class SparseSequenceAutoencoder extends CompetitiveLearning {
                 batchSize,
                 encoder._cellWeights,
                 encoder._cellWeightsVelocity,
+                encoder._cellWeightsGradients,
                 encoder._cellBiases1,
                 encoder._cellBiases2,
                 encoder._cellBiases1Velocity,
@@ -496,6 +500,7 @@ public class SparseSequenceAutoencoder extends CompetitiveLearning {
             int batchSize,
             Data cellWeights,
             Data cellWeightsVelocity,
+            Data cellWeightsGradients,
             Data cellBiases1,
             Data cellBiases2,
             Data cellBiases1Velocity,
@@ -519,7 +524,7 @@ public class SparseSequenceAutoencoder extends CompetitiveLearning {
         KSparseAutoencoder.StochasticGradientDescent(
                 inputSize, layerSize, batchSize, learningRate, momentum, weightsInputMajor,
                 outputLayerInputBatch, outputLayerErrorBatch,
-                cellWeights, cellWeightsVelocity, cellBiases2, cellBiases2Velocity );
+                cellWeights, cellWeightsVelocity, cellWeightsGradients, cellBiases2, cellBiases2Velocity );
 
         // now gradient descent in the input->hidden layer. can't skip this because we need to update the biases
         inputSize = inputs;
@@ -529,7 +534,7 @@ public class SparseSequenceAutoencoder extends CompetitiveLearning {
         KSparseAutoencoder.StochasticGradientDescent(
                 inputSize, layerSize, batchSize, learningRate, momentum, weightsInputMajor,
                 hiddenLayerInputBatch, hiddenLayerErrorBatch,
-                cellWeights, cellWeightsVelocity, cellBiases1, cellBiases1Velocity );
+                cellWeights, cellWeightsVelocity, cellWeightsGradients, cellBiases1, cellBiases1Velocity );
 
 //        System.err.println( "Age: " + this._c.getAge() + " Sparsity: " + k  + " vMax = " + vMax );
     }
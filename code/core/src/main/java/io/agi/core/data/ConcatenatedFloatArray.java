@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.core.data;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A read-only view of several FloatArrays as one vector, in order, without copying them.
+ *
+ * Element access by index needs a search, so loops should iterate over the segments instead:
+ *
+ *   for( int s = 0; s < v.getSegments(); ++s ) {
+ *       float[] values = v.getSegment( s );
+ *       int offset = v.getSegmentOffset( s );
+ *       for( int j = 0; j < values.length; ++j ) {
+ *           // element offset + j is values[ j ]
+ *       }
+ *   }
+ *
+ * The view reflects later changes to the elements of the arrays, but not to their size.
+ */
+public class ConcatenatedFloatArray {
+
+    protected float[][] _segments;
+    protected int[] _offsets; // of each segment, plus the total size at the end
+
+    public ConcatenatedFloatArray( FloatArray... arrays ) {
+        this( Arrays.asList( arrays ) );
+    }
+
+    public ConcatenatedFloatArray( Collection< ? extends FloatArray > arrays ) {
+        _segments = new float[ arrays.size() ][];
+        _offsets = new int[ arrays.size() + 1 ];
+
+        int s = 0;
+        int offset = 0;
+
+        for( FloatArray fa : arrays ) {
+            _segments[ s ] = ( fa._values == null ) ? new float[ 0 ] : fa._values;
+            _offsets[ s ] = offset;
+            offset += _segments[ s ].length;
+            ++s;
+        }
+
+        _offsets[ s ] = offset;
+    }
+
+    public int getSize() {
+        return _offsets[ _segments.length ];
+    }
+
+    public int getSegments() {
+        return _segments.length;
+    }
+
+    /**
+     * @param s
+     * @return the elements of the segment, which mustn't be modified.
+     */
+    public float[] getSegment( int s ) {
+        return _segments[ s ];
+    }
+
+    public int getSegmentOffset( int s ) {
+        return _offsets[ s ];
+    }
+
+    public float get( int offset ) {
+        int s = Arrays.binarySearch( _offsets, 0, _segments.length, offset );
+        if( s < 0 ) {
+            s = -s - 2; // the segment before the insertion point
+        }
+        else {
+            while( _segments[ s ].length == 0 ) {
+                ++s; // skip empty segments at the same offset
+            }
+        }
+
+        return _segments[ s ][ offset - _offsets[ s ] ];
+    }
+
+    /**
+     * Copy all the elements into the array, which is resized if necessary.
+     *
+     * @param fa
+     */
+    public void copyTo( FloatArray fa ) {
+        int size = getSize();
+        if( fa.getSize() != size ) {
+            fa.setSize( size );
+        }
+
+        for( int s = 0; s < _segments.length; ++s ) {
+            System.arraycopy( _segments[ s ], 0, fa._values, _offsets[ s ], _segments[ s ].length );
+        }
+    }
+
+    /**
+     * Returns the dot product with a range of the array, beginning at the offset.
+     *
+     * @param fa
+     * @param offset
+     * @return
+     */
+    public float dotProduct( FloatArray fa, int offset ) {
+        float sum = 0.f;
+
+        for( int s = 0; s < _segments.length; ++s ) {
+            float[] values = _segments[ s ];
+            int offsetThat = offset + _offsets[ s ];
+
+            sum += FloatArray.Dot( values, 0, fa._values, offsetThat, values.length );
+        }
+
+        return sum;
+    }
+
+}
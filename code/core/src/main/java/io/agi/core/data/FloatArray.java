@@ -43,6 +43,10 @@ import java.util.*;
  */
 public class FloatArray {
 
+    public static final String PROPERTY_FLOAT_ARRAY_LANES = "float-array-lanes";
+
+    protected static boolean _lanes = false; // see FloatArrayLanes
+
     public float[] _values = null;
 
     public FloatArray() {
@@ -68,6 +72,38 @@ public class FloatArray {
         return ( _values != null );
     }
 
+    /**
+     * Selects the implementation of the sums and dot products: explicit loops over SIMD lanes (FloatArrayLanes), or
+     * the plain scalar loops. The results may differ in the last bits between the two.
+     *
+     * @param lanes
+     */
+    public static void SetLanes( boolean lanes ) {
+        _lanes = lanes;
+    }
+
+    public static boolean GetLanes() {
+        return _lanes;
+    }
+
+    /**
+     * The dot product of x[ offsetX ... offsetX + length - 1 ] and y[ offsetY ... ], over lanes or in a scalar loop as
+     * selected by SetLanes(). For the weighted sums of layers and the matrix kernels, which don't use whole arrays.
+     */
+    public static float Dot( float[] x, int offsetX, float[] y, int offsetY, int length ) {
+        if( _lanes ) {
+            return FloatArrayLanes.Dot( x, offsetX, y, offsetY, length );
+        }
+
+        float sum = 0.f;
+
+        for( int i = 0; i < length; ++i ) {
+            sum += x[ offsetX + i ] * y[ offsetY + i ];
+        }
+
+        return sum;
+    }
+
     public String toCsv() {
         StringBuilder sb = new StringBuilder( 128 );
         toCsv( sb, "\n"  );
@@ -156,6 +192,26 @@ public class FloatArray {
         return Arrays.equals( _values, fa._values );
     }
 
+    /**
+     * Returns a 64 bit hash of a range of the values, to detect changes without keeping a copy. A change to any one value
+     * always changes the checksum; several changes could cancel out, but this is very unlikely.
+     *
+     * @param offset
+     * @param length
+     * @return
+     */
+    public long getChecksum( int offset, int length ) {
+        long checksum = 0xcbf29ce484222325L; // FNV-1a, a 32 bit word at a time
+
+        for( int i = 0; i < length; ++i ) {
+            checksum ^= Float.floatToRawIntBits( _values[ offset + i ] ) & 0xffffffffL;
+            checksum *= 0x100000001b3L;
+        }
+
+        checksum ^= length;
+        return checksum;
+    }
+
     /**
      * Will resize and copy array as necessary.
      *
@@ -484,6 +540,20 @@ public class FloatArray {
         return max;
     }
 
+    /**
+     * @return the largest absolute value, or NaN if any value is NaN.
+     */
+    public float maxAbs() {
+
+        float max = 0.0f;
+
+        for( int offset = 0; offset < _values.length; ++offset ) {
+            max = Math.max( max, Math.abs( _values[ offset ] ) );
+        }
+
+        return max;
+    }
+
     public FloatArray getHistogram( int precision ) {
         Point.Float r = getMinMax();
         return getHistogram( precision, r.x, r.y );
@@ -555,6 +625,10 @@ public class FloatArray {
 //            return 0.f;
 //        }
 
+        if( _lanes ) {
+            return FloatArrayLanes.Dot( _values, 0, fa._values, 0, _values.length );
+        }
+
         float sum = 0.f;
         int offset = 0;
 
@@ -590,6 +664,10 @@ public class FloatArray {
      */
     public float sumSq() {
 
+        if( _lanes ) {
+            return FloatArrayLanes.Dot( _values, 0, _values, 0, _values.length );
+        }
+
         float sum = 0.f;
         int offset = 0;
 
@@ -608,6 +686,10 @@ public class FloatArray {
 
     public float sum() {
 
+        if( _lanes ) {
+            return FloatArrayLanes.Sum( _values, _values.length );
+        }
+
         float sum = 0.0f;
 
         int offset = 0;
@@ -622,6 +704,10 @@ public class FloatArray {
 
     public float sumAbs() {
 
+        if( _lanes ) {
+            return FloatArrayLanes.SumAbs( _values, _values.length );
+        }
+
         float sum = 0.0f;
 
         int offset = 0;
@@ -1046,6 +1132,56 @@ public class FloatArray {
         return hs;
     }
 
+    /**
+     * As indicesMoreThan(), but the indices are written to a set that can be reused, rather than a new HashSet.
+     *
+     * @param threshold
+     * @param indices cleared first
+     */
+    public void indicesMoreThan( float threshold, IntSet indices ) {
+        indices.clear();
+        indices.setCapacity( _values.length );
+
+        for( int offset = 0; offset < _values.length; ++offset ) {
+            if( _values[ offset ] > threshold ) {
+                indices.add( offset );
+            }
+        }
+    }
+
+    public void indicesMoreThanEqual( float threshold, IntSet indices ) {
+        indices.clear();
+        indices.setCapacity( _values.length );
+
+        for( int offset = 0; offset < _values.length; ++offset ) {
+            if( _values[ offset ] >= threshold ) {
+                indices.add( offset );
+            }
+        }
+    }
+
+    public void indicesLessThan( float threshold, IntSet indices ) {
+        indices.clear();
+        indices.setCapacity( _values.length );
+
+        for( int offset = 0; offset < _values.length; ++offset ) {
+            if( _values[ offset ] < threshold ) {
+                indices.add( offset );
+            }
+        }
+    }
+
+    public void indicesLessThanEqual( float threshold, IntSet indices ) {
+        indices.clear();
+        indices.setCapacity( _values.length );
+
+        for( int offset = 0; offset < _values.length; ++offset ) {
+            if( _values[ offset ] <= threshold ) {
+                indices.add( offset );
+            }
+        }
+    }
+
     /**
      * Makes this a masked version of arg fa. Any element in mask with value
      * maskValue has the equivalent element in fa replaced with maskedValue.
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.core.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Holds the values of a FloatArray outside the Java heap, in a direct or memory-mapped buffer, e.g. while a large Data
+ * isn't in use. Algorithms still work on the FloatArray's float[]; values are moved in and out with a bulk copy, so
+ * there is no serialization.
+ *
+ * A direct store is native memory, freed when the store is collected. A mapped store is a file, paged in and out by
+ * the OS, so it can exceed physical memory; the file is deleted when the store is released. A store holds at most
+ * MAX_SIZE floats, as a buffer is indexed by int.
+ */
+public class FloatBufferStore {
+
+    public static final int MAX_SIZE = Integer.MAX_VALUE / 4;
+
+    protected ByteBuffer _buffer;
+    protected FloatBuffer _floats;
+    protected File _file; // if mapped
+
+    protected FloatBufferStore( ByteBuffer buffer, File file ) {
+        _buffer = buffer;
+        _floats = buffer.order( ByteOrder.nativeOrder() ).asFloatBuffer();
+        _file = file;
+    }
+
+    /**
+     * @param size floats
+     * @return a store in native memory
+     */
+    public static FloatBufferStore Direct( int size ) {
+        CheckSize( size );
+        return new FloatBufferStore( ByteBuffer.allocateDirect( size * 4 ), null );
+    }
+
+    /**
+     * @param file created or truncated to fit
+     * @param size floats
+     * @return a store in a memory-mapped file
+     * @throws IOException
+     */
+    public static FloatBufferStore Mapped( File file, int size ) throws IOException {
+        CheckSize( size );
+
+        RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+        try {
+            raf.setLength( size * 4L );
+            ByteBuffer buffer = raf.getChannel().map( FileChannel.MapMode.READ_WRITE, 0, size * 4L ); // the mapping outlives the channel
+            return new FloatBufferStore( buffer, file );
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    protected static void CheckSize( int size ) {
+        if( ( size < 0 ) || ( size > MAX_SIZE ) ) {
+            throw new IllegalArgumentException( "Can't store " + size + " floats in a buffer." );
+        }
+    }
+
+    public int getSize() {
+        return _floats.capacity();
+    }
+
+    public boolean isMapped() {
+        return _file != null;
+    }
+
+    /**
+     * Copy the values into the store.
+     *
+     * @param values of the store's size
+     */
+    public void put( float[] values ) {
+        FloatBuffer floats = _floats.duplicate();
+        floats.clear();
+        floats.put( values );
+    }
+
+    /**
+     * Copy the values out of the store.
+     *
+     * @param values of the store's size
+     */
+    public void get( float[] values ) {
+        FloatBuffer floats = _floats.duplicate();
+        floats.clear();
+        floats.get( values );
+    }
+
+    /**
+     * @return a new FloatArray with the values in the store.
+     */
+    public FloatArray get() {
+        FloatArray fa = new FloatArray( getSize() );
+        get( fa._values );
+        return fa;
+    }
+
+    /**
+     * Flush a mapped store to disk.
+     */
+    public void force() {
+        if( _buffer instanceof MappedByteBuffer ) {
+            ( ( MappedByteBuffer ) _buffer ).force();
+        }
+    }
+
+    /**
+     * Stop using the store. The memory is freed when the store is collected, and a mapped store's file is deleted. The
+     * values can still be read until then, e.g. by a thread that was already reading them.
+     */
+    public void release() {
+        if( _file != null ) {
+            _file.delete(); // if it fails, e.g. still mapped on some platforms, FloatBufferStoreFactory deletes it on exit
+        }
+    }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.core.data;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates the FloatBufferStores for the Data keys that have opted in to being held off the heap. A key opts in if it
+ * was added, e.g. by the Entity that owns the Data (see Entity.setDataOffHeap()), or if it ends with one of the
+ * suffixes added, e.g. "-weights" for the weights of every Entity.
+ *
+ * Stores are direct (native memory) or mapped (files in a new directory, created on first use and deleted on exit).
+ */
+public class FloatBufferStoreFactory {
+
+    private static final Logger _logger = LogManager.getLogger();
+
+    public static final String TYPE_DIRECT = "direct";
+    public static final String TYPE_MAPPED = "mapped";
+    public static final String PREFIX = "agief-store-";
+    public static final String SUFFIX = ".floats";
+
+    protected String _type = TYPE_DIRECT;
+    protected String _path = System.getProperty( "java.io.tmpdir" );
+    protected File _directory;
+    protected Set< String > _keys = ConcurrentHashMap.newKeySet();
+    protected Set< String > _suffixes = ConcurrentHashMap.newKeySet();
+    protected AtomicLong _files = new AtomicLong( 0 ); // so that files are never reused
+
+    public FloatBufferStoreFactory() {
+    }
+
+    /**
+     * @param type TYPE_DIRECT or TYPE_MAPPED
+     * @param suffixes comma separated, e.g. -weights,-biases
+     * @param path the directory in which to create the directory of mapped stores.
+     */
+    public void setup( String type, String suffixes, String path ) {
+        if( TYPE_MAPPED.equals( type ) ) {
+            _type = TYPE_MAPPED;
+        }
+        else {
+            if( !TYPE_DIRECT.equals( type ) ) {
+                _logger.error( "Unknown store type " + type + ", using " + TYPE_DIRECT );
+            }
+            _type = TYPE_DIRECT;
+        }
+
+        if( path != null ) {
+            _path = path;
+        }
+
+        if( suffixes != null ) {
+            for( String suffix : suffixes.split( "," ) ) {
+                addKeySuffix( suffix );
+            }
+        }
+    }
+
+    /**
+     * Opt in the Data with this key.
+     *
+     * @param key
+     */
+    public void addKey( String key ) {
+        _keys.add( key );
+    }
+
+    public void removeKey( String key ) {
+        _keys.remove( key );
+    }
+
+    /**
+     * Opt in the Data whose keys end with the suffix.
+     *
+     * @param suffix
+     */
+    public void addKeySuffix( String suffix ) {
+        suffix = suffix.trim();
+        if( !suffix.isEmpty() ) {
+            _suffixes.add( suffix );
+        }
+    }
+
+    public void removeKeySuffix( String suffix ) {
+        _suffixes.remove( suffix.trim() );
+    }
+
+    /**
+     * @param key
+     * @return true if the Data has opted in.
+     */
+    public boolean isOffHeap( String key ) {
+        if( _keys.contains( key ) ) {
+            return true;
+        }
+
+        if( _suffixes.isEmpty() ) {
+            return false;
+        }
+
+        for( String suffix : _suffixes ) {
+            if( key.endsWith( suffix ) ) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param key of the Data
+     * @param size floats
+     * @return a new store for the Data
+     * @throws IOException
+     */
+    public FloatBufferStore create( String key, int size ) throws IOException {
+        if( TYPE_MAPPED.equals( _type ) ) {
+            String name = _files.incrementAndGet() + "-" + URLEncoder.encode( key, "UTF-8" ) + SUFFIX;
+            File f = new File( getDirectory(), name );
+            return FloatBufferStore.Mapped( f, size );
+        }
+
+        return FloatBufferStore.Direct( size );
+    }
+
+    protected synchronized File getDirectory() throws IOException {
+        if( _directory == null ) {
+            File parent = new File( _path );
+            parent.mkdirs();
+            _directory = Files.createTempDirectory( Paths.get( _path ), PREFIX ).toFile();
+
+            // Files are deleted when their stores are released, so this only removes any left over. Registering each
+            // file with deleteOnExit() instead would keep a name per store until exit.
+            final File directory = _directory;
+            Runtime.getRuntime().addShutdownHook( new Thread( new Runnable() {
+                @Override
+                public void run() {
+                    DeleteDirectory( directory );
+                }
+            }, "store-cleanup" ) );
+
+            _logger.info( "Storing off-heap Data in " + _directory );
+        }
+        return _directory;
+    }
+
+    /**
+     * Delete the directory and the files in it.
+     *
+     * @param directory
+     */
+    protected static void DeleteDirectory( File directory ) {
+        File[] files = directory.listFiles();
+        if( files != null ) {
+            for( File f : files ) {
+                f.delete();
+            }
+        }
+        directory.delete();
+    }
+
+}
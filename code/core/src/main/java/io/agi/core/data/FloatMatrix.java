@@ -25,13 +25,53 @@
 
 package io.agi.core.data;
 
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
  * Basic Matrix functions for a 2D matrix stored as a FloatArray.
  *
+ * Also dense linear algebra kernels in the style of BLAS: Gemv(), GemvTransposed(), Gemm(), Ger() and OuterProducts().
+ * Matrices are row-major float[], as in Data and FloatArray (see getOffset()), with the number of columns as the
+ * leading dimension. The loops are blocked to keep the operands in cache. Dot products use FloatArray.Dot(), which has
+ * a partial sum per lane if FloatArray.SetLanes( true ); the JIT can't do that, as it must keep the order of float
+ * additions.
+ * If a pool is given to SetPool(), kernels above a threshold of multiply-adds split the rows of the result across it;
+ * each element of the result is still computed by one thread, so the result doesn't depend on the split. The pool is
+ * separate from the one that runs Entity updates, and bounded by the float-matrix-threads property of the Node.
+ *
  * @author dave
  */
 public class FloatMatrix {
 
+    public static final String PROPERTY_FLOAT_MATRIX_THREADS = "float-matrix-threads";
+
+    public static final int DEFAULT_THREADS = 1; // i.e. kernels run on the calling thread
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 18; // multiply-adds, below which a kernel runs on the calling thread
+    public static final int TASKS_PER_THREAD = 4; // so that uneven tasks still balance
+    public static final int BLOCK_INNER = 256; // of the inner (summed) dimension, per pass over a block of the result
+    public static final int BLOCK_COLS = 256; // cols of the result per pass; a block of B is BLOCK_INNER x BLOCK_COLS
+
+    protected static volatile ForkJoinPool _pool = null; // if null, kernels run on the calling thread
+    protected static volatile int _parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    /**
+     * Sets the pool that the kernels split their work across, once at startup. Kernels are called from Entity updates,
+     * so the pool should be dedicated and bounded, so that the total number of threads is too.
+     *
+     * @param pool if null, kernels run on the calling thread
+     * @param parallelThreshold multiply-adds, below which a kernel runs on the calling thread
+     */
+    public static void SetPool( ForkJoinPool pool, int parallelThreshold ) {
+        _parallelThreshold = parallelThreshold;
+        _pool = pool;
+    }
+
+    public static ForkJoinPool GetPool() {
+        return _pool;
+    }
+
     /**
      * Matrix multiplication with precision error handling.
      *
@@ -249,4 +289,293 @@ public class FloatMatrix {
         return m3;
     }
 
+    /**
+     * y = alpha * A * x + beta * y
+     *
+     * @param a rows x cols
+     * @param rows
+     * @param cols
+     * @param x cols
+     * @param y rows
+     * @param alpha
+     * @param beta if 0, y needn't be initialized
+     */
+    public static void Gemv( final float[] a, final int rows, final int cols, final float[] x, final float[] y, final float alpha, final float beta ) {
+        RowKernel kernel = new RowKernel() {
+            @Override
+            public void rows( int row1, int row2 ) {
+                for( int i = row1; i < row2; ++i ) {
+                    float sum = alpha * FloatArray.Dot( a, i * cols, x, 0, cols );
+                    if( beta != 0f ) {
+                        sum += beta * y[ i ];
+                    }
+                    y[ i ] = sum;
+                }
+            }
+        };
+
+        Run( kernel, rows, ( long ) rows * cols );
+    }
+
+    /**
+     * y = alpha * A^T * x + beta * y
+     *
+     * @param a rows x cols
+     * @param rows
+     * @param cols
+     * @param x rows
+     * @param y cols
+     * @param alpha
+     * @param beta if 0, y needn't be initialized
+     */
+    public static void GemvTransposed( final float[] a, final int rows, final int cols, final float[] x, final float[] y, final float alpha, final float beta ) {
+        RowKernel kernel = new RowKernel() {
+            @Override
+            public void rows( int col1, int col2 ) { // the rows of the result are the cols of A
+                Scale( y, col1, col2 - col1, beta );
+
+                for( int i = 0; i < rows; ++i ) {
+                    float xi = alpha * x[ i ];
+                    if( xi != 0f ) {
+                        Axpy( xi, a, i * cols + col1, y, col1, col2 - col1 );
+                    }
+                }
+            }
+        };
+
+        Run( kernel, cols, ( long ) rows * cols );
+    }
+
+    /**
+     * C = alpha * op( A ) * op( B ) + beta * C, where op( X ) is X or X^T.
+     *
+     * @param a m x k, or k x m if transposeA
+     * @param transposeA
+     * @param b k x n, or n x k if transposeB
+     * @param transposeB
+     * @param c m x n
+     * @param m rows of the result
+     * @param n cols of the result
+     * @param k the dimension summed over
+     * @param alpha
+     * @param beta if 0, C needn't be initialized
+     */
+    public static void Gemm(
+            final float[] a, final boolean transposeA,
+            final float[] b, final boolean transposeB,
+            final float[] c,
+            final int m, final int n, final int k,
+            final float alpha, final float beta ) {
+        RowKernel kernel = new RowKernel() {
+            @Override
+            public void rows( int row1, int row2 ) {
+                if( transposeB ) {
+                    GemmDot( a, transposeA, b, c, m, n, k, alpha, beta, row1, row2 );
+                }
+                else {
+                    GemmAxpy( a, transposeA, b, c, m, n, k, alpha, beta, row1, row2 );
+                }
+            }
+        };
+
+        Run( kernel, m, ( long ) m * n * k );
+    }
+
+    /**
+     * Rank-1 update, A = A + alpha * x * y^T
+     *
+     * @param a rows x cols
+     * @param rows
+     * @param cols
+     * @param x rows
+     * @param y cols
+     * @param alpha
+     */
+    public static void Ger( final float[] a, final int rows, final int cols, final float[] x, final float[] y, final float alpha ) {
+        RowKernel kernel = new RowKernel() {
+            @Override
+            public void rows( int row1, int row2 ) {
+                for( int i = row1; i < row2; ++i ) {
+                    float xi = alpha * x[ i ];
+                    if( xi != 0f ) {
+                        Axpy( xi, y, 0, a, i * cols, cols );
+                    }
+                }
+            }
+        };
+
+        Run( kernel, rows, ( long ) rows * cols );
+    }
+
+    /**
+     * The sum of the outer products of a batch of pairs of vectors, A = alpha * sum_b( x_b * y_b^T ) + beta * A, e.g.
+     * the weight gradients of a layer over a mini-batch. Equivalent to Gemm( x^T, y ).
+     *
+     * @param x batchSize x rows, each row a vector
+     * @param y batchSize x cols, each row a vector
+     * @param a rows x cols
+     * @param batchSize
+     * @param rows
+     * @param cols
+     * @param alpha
+     * @param beta if 0, A needn't be initialized
+     */
+    public static void OuterProducts( float[] x, float[] y, float[] a, int batchSize, int rows, int cols, float alpha, float beta ) {
+        Gemm( x, true, y, false, a, rows, cols, batchSize, alpha, beta );
+    }
+
+    /**
+     * C[ i, : ] = alpha * sum_p( op( A )[ i, p ] * B[ p, : ] ) + beta * C[ i, : ], for rows i from row1 to row2-1.
+     * Each pass adds a block of B's rows into a block of C's row, which stays in cache.
+     */
+    protected static void GemmAxpy(
+            float[] a, boolean transposeA, float[] b, float[] c,
+            int m, int n, int k, float alpha, float beta, int row1, int row2 ) {
+        for( int i = row1; i < row2; ++i ) {
+            Scale( c, i * n, n, beta );
+        }
+
+        for( int j1 = 0; j1 < n; j1 += BLOCK_COLS ) {
+            int cols = Math.min( BLOCK_COLS, n - j1 );
+
+            for( int p1 = 0; p1 < k; p1 += BLOCK_INNER ) {
+                int p2 = Math.min( p1 + BLOCK_INNER, k );
+
+                for( int i = row1; i < row2; ++i ) {
+                    int offsetC = i * n + j1;
+
+                    for( int p = p1; p < p2; ++p ) {
+                        float aip = transposeA ? a[ p * m + i ] : a[ i * k + p ];
+                        if( aip != 0f ) { // sparse activity is common
+                            Axpy( alpha * aip, b, p * n + j1, c, offsetC, cols );
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * C[ i, j ] = alpha * dot( op( A )[ i, : ], B[ j, : ] ) + beta * C[ i, j ], for rows i from row1 to row2-1, where B
+     * is stored n x k. Blocks of the rows of B are reused for each row of C.
+     */
+    protected static void GemmDot(
+            float[] a, boolean transposeA, float[] b, float[] c,
+            int m, int n, int k, float alpha, float beta, int row1, int row2 ) {
+        float[] row = null;
+        if( transposeA ) {
+            row = new float[ k ]; // gather the column of A, so the dot products are contiguous
+        }
+
+        int blockRows = Math.max( 1, ( BLOCK_INNER * BLOCK_COLS ) / Math.max( 1, k ) ); // of B, that fit in cache
+
+        for( int j1 = 0; j1 < n; j1 += blockRows ) {
+            int j2 = Math.min( j1 + blockRows, n );
+
+            for( int i = row1; i < row2; ++i ) {
+                float[] ai = a;
+                int offsetA = i * k;
+
+                if( transposeA ) {
+                    for( int p = 0; p < k; ++p ) {
+                        row[ p ] = a[ p * m + i ];
+                    }
+                    ai = row;
+                    offsetA = 0;
+                }
+
+                for( int j = j1; j < j2; ++j ) {
+                    int offsetC = i * n + j;
+                    float sum = alpha * FloatArray.Dot( ai, offsetA, b, j * k, k );
+                    if( beta != 0f ) {
+                        sum += beta * c[ offsetC ];
+                    }
+                    c[ offsetC ] = sum;
+                }
+            }
+        }
+    }
+
+    /**
+     * y[ offsetY ... offsetY + length - 1 ] += alpha * x[ offsetX ... ]. A plain loop, which the JIT vectorises;
+     * unrolling it by hand prevents that.
+     */
+    public static void Axpy( float alpha, float[] x, int offsetX, float[] y, int offsetY, int length ) {
+        for( int i = 0; i < length; ++i ) {
+            y[ offsetY + i ] += alpha * x[ offsetX + i ];
+        }
+    }
+
+    /**
+     * x[ offset ... offset + length - 1 ] *= beta, where 0 sets them to 0 as in BLAS, so NaNs aren't kept.
+     */
+    protected static void Scale( float[] x, int offset, int length, float beta ) {
+        if( beta == 1f ) {
+            return;
+        }
+
+        if( beta == 0f ) {
+            Arrays.fill( x, offset, offset + length, 0f );
+            return;
+        }
+
+        for( int i = offset; i < offset + length; ++i ) {
+            x[ i ] *= beta;
+        }
+    }
+
+    /**
+     * Computes a range of rows of a result.
+     */
+    protected interface RowKernel {
+        void rows( int row1, int row2 );
+    }
+
+    protected static class RowTask extends RecursiveAction {
+
+        protected RowKernel _kernel;
+        protected int _row1;
+        protected int _row2;
+        protected int _grain;
+
+        public RowTask( RowKernel kernel, int row1, int row2, int grain ) {
+            _kernel = kernel;
+            _row1 = row1;
+            _row2 = row2;
+            _grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if( ( _row2 - _row1 ) <= _grain ) {
+                _kernel.rows( _row1, _row2 );
+                return;
+            }
+
+            int middle = ( _row1 + _row2 ) >>> 1;
+            invokeAll( new RowTask( _kernel, _row1, middle, _grain ), new RowTask( _kernel, middle, _row2, _grain ) );
+        }
+    }
+
+    /**
+     * Runs the kernel over all the rows, in parallel on the pool if there is one and enough work.
+     *
+     * @param kernel
+     * @param rows of the result
+     * @param work multiply-adds
+     */
+    protected static void Run( RowKernel kernel, int rows, long work ) {
+        ForkJoinPool pool = _pool;
+
+        if( ( pool == null ) || ( work < _parallelThreshold ) || ( rows < 2 ) || ( pool.getParallelism() < 2 ) ) {
+            kernel.rows( 0, rows );
+            return;
+        }
+
+        int tasks = pool.getParallelism() * TASKS_PER_THREAD;
+        int grain = Math.max( 1, rows / tasks );
+
+        pool.invoke( new RowTask( kernel, 0, rows, grain ) );
+    }
+
 }
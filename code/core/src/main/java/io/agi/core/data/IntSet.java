@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.core.data;
+
+/**
+ * A set of indices from 0 to capacity-1, e.g. the active bits of a sparse binary Data, without boxing.
+ *
+ * The members are held densely in _elements (in the order added, until one is removed), and each index's position in
+ * _elements is held in a sparse array, as in Briggs and Torczon's sparse set. Add, remove, contains and clear take
+ * constant time, and iterating takes time proportional to the size rather than the capacity, so a set can be cleared
+ * and refilled each step without allocating. Iterate as:
+ *
+ *   for( int i = 0; i < set._size; ++i ) {
+ *       int index = set._elements[ i ];
+ *   }
+ */
+public class IntSet {
+
+    public int[] _elements = new int[ 0 ]; // the members, up to _size
+    public int _size = 0;
+    protected int[] _positions = new int[ 0 ]; // of each index in _elements, if a member
+
+    public IntSet() {
+    }
+
+    public IntSet( int capacity ) {
+        setCapacity( capacity );
+    }
+
+    public int getCapacity() {
+        return _positions.length;
+    }
+
+    /**
+     * Allows indices up to capacity-1. The set keeps its members, and never shrinks.
+     *
+     * @param capacity
+     */
+    public void setCapacity( int capacity ) {
+        if( capacity <= _positions.length ) {
+            return;
+        }
+
+        int[] elements = new int[ capacity ];
+        int[] positions = new int[ capacity ];
+        System.arraycopy( _elements, 0, elements, 0, _size );
+        System.arraycopy( _positions, 0, positions, 0, _positions.length );
+        _elements = elements;
+        _positions = positions;
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    public void clear() {
+        _size = 0; // stale positions are ignored, see contains()
+    }
+
+    /**
+     * @param i
+     * @return the i'th member
+     */
+    public int get( int i ) {
+        return _elements[ i ];
+    }
+
+    public boolean contains( int index ) {
+        if( ( index < 0 ) || ( index >= _positions.length ) ) {
+            return false;
+        }
+
+        int position = _positions[ index ];
+        return ( position < _size ) && ( _elements[ position ] == index );
+    }
+
+    /**
+     * @param index must be less than the capacity
+     * @return true if it wasn't a member
+     */
+    public boolean add( int index ) {
+        if( contains( index ) ) {
+            return false;
+        }
+
+        _positions[ index ] = _size;
+        _elements[ _size ] = index;
+        ++_size;
+        return true;
+    }
+
+    /**
+     * The last member takes the place of the one removed.
+     *
+     * @param index
+     * @return true if it was a member
+     */
+    public boolean remove( int index ) {
+        if( !contains( index ) ) {
+            return false;
+        }
+
+        int position = _positions[ index ];
+        --_size;
+
+        int last = _elements[ _size ];
+        _elements[ position ] = last;
+        _positions[ last ] = position;
+        return true;
+    }
+
+    /**
+     * Makes this a copy of that.
+     *
+     * @param that
+     */
+    public void copy( IntSet that ) {
+        clear();
+        setCapacity( that.getCapacity() );
+
+        for( int i = 0; i < that._size; ++i ) {
+            add( that._elements[ i ] );
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder( _size * 4 + 2 );
+        sb.append( "[" );
+
+        for( int i = 0; i < _size; ++i ) {
+            if( i > 0 ) {
+                sb.append( ", " );
+            }
+            sb.append( _elements[ i ] );
+        }
+
+        sb.append( "]" );
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,398 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.core.data;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Selects the k largest (or smallest) of a set of values, without boxing or allocating per call.
+ *
+ * Gives the same result as adding each index to a Ranking in ascending order and calling Ranking.getBestValues() or
+ * Ranking.getBestValuesRandomTieBreak() with the same Random: values are compared as Float keys are (Float.compare),
+ * the indices are best first, and equal values are in ascending index order. The random tie-break draws the same
+ * random numbers as Ranking, so results are reproducible with either. The one difference is that k <= 0 selects
+nothing, where Ranking returns the best value.
+ *
+ * A heap of the k best seen so far is kept, with the worst at the root, so selecting k of n costs O( n log k ). The
+ * arrays grow to the largest k (and the largest tie) asked of the selector, and are reused. Not thread safe; use one
+ * selector per thread.
+ *
+ * The selected indices are in _indices, up to the count returned.
+ */
+public class TopKSelector {
+
+    public int[] _indices = new int[ 0 ]; // the selection, best first
+    protected int[] _heap = new int[ 0 ]; // positions, worst at the root
+    protected int[] _ties = new int[ 0 ];
+
+    // the values being selected from, for the duration of a call:
+    protected float[] _values;
+    protected int _offset;
+    protected int _stride;
+    protected int[] _candidates;
+    protected boolean _max;
+
+    public TopKSelector() {
+    }
+
+    /**
+     * @param capacity the largest k expected; more is allocated when needed.
+     */
+    public TopKSelector( int capacity ) {
+        _indices = new int[ capacity ];
+        _heap = new int[ capacity ];
+    }
+
+    public int[] getIndices() {
+        return _indices;
+    }
+
+    /**
+     * Select from values[ offset ] to values[ offset + length - 1 ].
+     *
+     * @param values
+     * @param offset
+     * @param length
+     * @param k the number to select
+     * @param max true to select the largest values, false for the smallest
+     * @return the number selected, min( k, length ). The indices are relative to offset.
+     */
+    public int select( float[] values, int offset, int length, int k, boolean max ) {
+        return select( values, offset, 1, length, k, max );
+    }
+
+    /**
+     * Select from every stride'th value, e.g. a column of a matrix.
+     *
+     * @param values
+     * @param offset of the first value
+     * @param stride between values
+     * @param length number of values
+     * @param k the number to select
+     * @param max true to select the largest values, false for the smallest
+     * @return the number selected, min( k, length ). Index i refers to values[ offset + i * stride ].
+     */
+    public int select( float[] values, int offset, int stride, int length, int k, boolean max ) {
+        begin( values, offset, stride, null, max );
+        try {
+            return selectSorted( length, k );
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Select from some of the values, e.g. those of live cells. Where the selection must end part way through a set of
+     * equal values, the candidates that come first are selected.
+     *
+     * @param values
+     * @param candidates indices of the values to select from
+     * @param count number of candidates
+     * @param k the number to select
+     * @param max true to select the largest values, false for the smallest
+     * @return the number selected, min( k, count ). The indices are those of the values.
+     */
+    public int select( float[] values, int[] candidates, int count, int k, boolean max ) {
+        begin( values, 0, 1, candidates, max );
+        try {
+            return selectSorted( count, k );
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * As select(), but equal values are selected in random order, as by Ranking.getBestValuesRandomTieBreak().
+     */
+    public int selectRandomTieBreak( float[] values, int offset, int length, int k, boolean max, Random random ) {
+        return selectRandomTieBreak( values, offset, 1, length, k, max, random );
+    }
+
+    /**
+     * As select(), but equal values are selected in random order, as by Ranking.getBestValuesRandomTieBreak().
+     */
+    public int selectRandomTieBreak( float[] values, int offset, int stride, int length, int k, boolean max, Random random ) {
+        begin( values, offset, stride, null, max );
+        try {
+            return selectRandom( length, k, random );
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * As select(), but equal values are selected in random order, as by Ranking.getBestValuesRandomTieBreak(). The
+     * candidates should be in ascending order, as the random draws depend on the order of equal values.
+     */
+    public int selectRandomTieBreak( float[] values, int[] candidates, int count, int k, boolean max, Random random ) {
+        begin( values, 0, 1, candidates, max );
+        try {
+            return selectRandom( count, k, random );
+        }
+        finally {
+            end();
+        }
+    }
+
+    protected void begin( float[] values, int offset, int stride, int[] candidates, boolean max ) {
+        _values = values;
+        _offset = offset;
+        _stride = stride;
+        _candidates = candidates;
+        _max = max;
+    }
+
+    protected void end() {
+        _values = null; // don't keep them
+        _candidates = null;
+    }
+
+    /**
+     * @param count
+     * @param k
+     * @return the number selected. _indices holds them, best first and equal values in ascending index order.
+     */
+    protected int selectSorted( int count, int k ) {
+        int n = selectPositions( count, k );
+
+        int start = 0;
+        for( int i = 0; i < n; ++i ) {
+            int position = _indices[ i ];
+            _indices[ i ] = getIndex( position );
+
+            if( _candidates == null ) {
+                continue; // positions are in index order already
+            }
+
+            boolean endOfTie = ( i == n - 1 ) || ( Float.compare( getValue( position ), getValue( _indices[ i + 1 ] ) ) != 0 );
+            if( endOfTie ) {
+                if( ( i - start ) > 0 ) {
+                    Arrays.sort( _indices, start, i + 1 );
+                }
+                start = i + 1;
+            }
+        }
+
+        return n;
+    }
+
+    /**
+     * Each set of equal values is drawn in random order, best first, until k have been drawn. All the values equal to
+     * the last one selected are drawn from, not only those that select() would choose.
+     *
+     * @param count
+     * @param k
+     * @param random
+     * @return the number selected
+     */
+    protected int selectRandom( int count, int k, Random random ) {
+        int n = selectSorted( count, k );
+        if( n == 0 ) {
+            return 0;
+        }
+
+        // the last set of equal values, including any that weren't selected
+        float last = getValueOfIndex( _indices[ n - 1 ] );
+
+        int lastStart = n - 1;
+        while( ( lastStart > 0 ) && ( Float.compare( getValueOfIndex( _indices[ lastStart - 1 ] ), last ) == 0 ) ) {
+            --lastStart;
+        }
+
+        int start = 0;
+        while( start < lastStart ) {
+            float value = getValueOfIndex( _indices[ start ] );
+            int end = start + 1;
+            while( Float.compare( getValueOfIndex( _indices[ end ] ), value ) == 0 ) {
+                ++end;
+            }
+
+            int ties = end - start;
+            ensureTies( ties );
+            System.arraycopy( _indices, start, _ties, 0, ties );
+            draw( ties, start, n, random );
+            start = end;
+        }
+
+        ensureTies( count );
+
+        int ties = 0;
+        for( int p = 0; p < count; ++p ) {
+            if( Float.compare( getValue( p ), last ) == 0 ) {
+                _ties[ ties ] = getIndex( p );
+                ++ties;
+            }
+        }
+
+        if( _candidates != null ) {
+            Arrays.sort( _ties, 0, ties );
+        }
+
+        draw( ties, lastStart, n, random );
+        return n;
+    }
+
+    /**
+     * Draws from _ties as Ranking does: pick one at random, remove it, repeat.
+     */
+    protected void draw( int ties, int i, int n, Random random ) {
+        while( ( ties > 0 ) && ( i < n ) ) {
+            int r = random.nextInt( ties );
+            _indices[ i ] = _ties[ r ];
+            ++i;
+
+            --ties;
+            System.arraycopy( _ties, r + 1, _ties, r, ties - r );
+        }
+    }
+
+    /**
+     * @param count
+     * @param k
+     * @return the number selected. _indices holds their positions, best first and equal values in position order.
+     */
+    protected int selectPositions( int count, int k ) {
+        int n = Math.min( Math.max( 0, k ), count );
+        if( n == 0 ) {
+            return 0;
+        }
+
+        ensureCapacity( n );
+
+        int size = 0;
+
+        for( int p = 0; p < count; ++p ) {
+            if( size < n ) {
+                _heap[ size ] = p;
+                siftUp( size );
+                ++size;
+            }
+            else if( isWorse( _heap[ 0 ], p ) ) {
+                _heap[ 0 ] = p;
+                siftDown( 0, size );
+            }
+        }
+
+        // remove the worst until empty
+        while( size > 0 ) {
+            --size;
+            _indices[ size ] = _heap[ 0 ];
+            _heap[ 0 ] = _heap[ size ];
+            siftDown( 0, size );
+        }
+
+        return n;
+    }
+
+    /**
+     * @return true if the value at position p1 ranks below the value at p2. Of equal values the later ranks below.
+     */
+    protected boolean isWorse( int p1, int p2 ) {
+        int c = Float.compare( getValue( p1 ), getValue( p2 ) );
+        if( !_max ) {
+            c = -c;
+        }
+
+        if( c == 0 ) {
+            return p1 > p2;
+        }
+        return c < 0;
+    }
+
+    protected void siftUp( int i ) {
+        while( i > 0 ) {
+            int parent = ( i - 1 ) >> 1;
+            if( !isWorse( _heap[ i ], _heap[ parent ] ) ) {
+                break;
+            }
+
+            swap( i, parent );
+            i = parent;
+        }
+    }
+
+    protected void siftDown( int i, int size ) {
+        while( true ) {
+            int child = ( i << 1 ) + 1;
+            if( child >= size ) {
+                break;
+            }
+
+            int right = child + 1;
+            if( ( right < size ) && isWorse( _heap[ right ], _heap[ child ] ) ) {
+                child = right;
+            }
+
+            if( !isWorse( _heap[ child ], _heap[ i ] ) ) {
+                break;
+            }
+
+            swap( i, child );
+            i = child;
+        }
+    }
+
+    protected void swap( int i1, int i2 ) {
+        int p = _heap[ i1 ];
+        _heap[ i1 ] = _heap[ i2 ];
+        _heap[ i2 ] = p;
+    }
+
+    protected int getIndex( int position ) {
+        if( _candidates != null ) {
+            return _candidates[ position ];
+        }
+        return position;
+    }
+
+    protected float getValue( int position ) {
+        if( _candidates != null ) {
+            return _values[ _candidates[ position ] ];
+        }
+        return _values[ _offset + position * _stride ];
+    }
+
+    protected float getValueOfIndex( int index ) {
+        if( _candidates != null ) {
+            return _values[ index ];
+        }
+        return _values[ _offset + index * _stride ];
+    }
+
+    protected void ensureCapacity( int capacity ) {
+        if( _heap.length < capacity ) {
+            _heap = new int[ capacity ];
+        }
+        if( _indices.length < capacity ) {
+            _indices = new int[ capacity ];
+        }
+    }
+
+    protected void ensureTies( int capacity ) {
+        if( _ties.length < capacity ) {
+            _ties = new int[ capacity ];
+        }
+    }
+
+}
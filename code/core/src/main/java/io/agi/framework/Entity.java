@@ -19,7 +19,7 @@
 
 package io.agi.framework;
 
-import com.google.gson.Gson;
+import io.agi.core.data.ConcatenatedFloatArray;
 import io.agi.core.data.Data;
 import io.agi.core.data.DataSize;
 import io.agi.core.math.FastRandom;
@@ -55,8 +55,13 @@ public abstract class Entity extends NamedObject implements EntityListener {
     protected EntityConfig _config = null;
     protected FastRandom _r;
     protected HashSet< String > _childrenWaiting = new HashSet<>();
+    protected HashMap< String, HashSet< String > > _childrenProducers = new HashMap<>(); // siblings each child is waiting for
     protected HashMap< String, Data > _data = new HashMap<>();
     protected DataFlags _dataFlags = new DataFlags();
+    protected HashSet< String > _sharedData = new HashSet<>(); // keys of inputs that share storage with Data of other Entities; copied on write
+    protected HashMap< String, DataRef > _unresolvedData = new HashMap<>(); // inputs that combine several Data; only combined if needed, see getDataSegments()
+    protected HashSet< String > _dataModified = new HashSet<>(); // keys of Data set since fetched; other outputs aren't persisted
+    protected HashSet< String > _dataReadOnly = new HashSet<>(); // keys of Data only handed out read-only since fetched; setting it back unchanged isn't a modification
 //    protected DataMap _dataCopy = new DataMap(); // used to check for data changes since load.
 //    protected boolean _flushChildren = false;
     protected boolean _resetChildren = false;
@@ -113,6 +118,27 @@ public abstract class Entity extends NamedObject implements EntityListener {
      */
     public abstract void getOutputAttributes( Collection< String > attributes, DataFlags flags );
 
+    /**
+     * Returns the keys of all the Data that is output, e.g. to move them with the Entity to another Node.
+     *
+     * @return
+     */
+    public Collection< String > getOutputKeys() {
+        if( _config == null ) {
+            _config = createConfig(); // some Entities' outputs depend on their config
+        }
+
+        Collection< String > attributes = new ArrayList< String >();
+        getOutputAttributes( attributes, new DataFlags() );
+
+        Collection< String > keys = new ArrayList< String >();
+        for( String attribute : attributes ) {
+            keys.add( getKey( attribute ) );
+        }
+
+        return keys;
+    }
+
     /**
      * Override to add data refs at run time, to connect entities.
      * @param input2refs
@@ -147,12 +173,19 @@ public abstract class Entity extends NamedObject implements EntityListener {
      */
     public EntityConfig createConfig() {
         Class configClass = getConfigClass();
-        Gson gson = new Gson();
-        String configString = _model.config;
-        if( ( configString == null ) || ( configString.length() == 0 ) ) {
-            configString = "{}";
-        }
-        EntityConfig config = ( EntityConfig ) gson.fromJson( configString, configClass );
+        EntityConfig config = EntityConfigCache.Deserialize( _model.config, configClass );
+        return config;
+    }
+
+    /**
+     * Get the config object for an update, reusing the object from the previous update if the persisted config hasn't
+     * changed since.
+     *
+     * @return the populated config object
+     */
+    protected EntityConfig fetchConfig() {
+        EntityConfigCache ecc = _n.getEntityConfigCache();
+        EntityConfig config = ecc.take( _name, _model.config, getConfigClass() );
         return config;
     }
 
@@ -161,7 +194,7 @@ public abstract class Entity extends NamedObject implements EntityListener {
 
     public void update() {
 
-        _config = createConfig();
+        _config = fetchConfig();
 
         beforeUpdate();
 
@@ -184,17 +217,30 @@ public abstract class Entity extends NamedObject implements EntityListener {
             PersistenceUtil.SetConfig( childName, SUFFIX_RESET, String.valueOf( _resetChildren ) );
         }
 
+        // Children that read the output of a sibling must be updated after it. Others can be updated concurrently.
+        HashMap< String, HashSet< String > > childrenProducers = _n.getEntityDataflow().getDependencies( _name, childNames, _n.getDataRefMap() );
+        ArrayList< String > childrenReady = new ArrayList<>();
+
         // Now wait for all children to update
         synchronized( _childrenWaiting ) {
             _childrenWaiting.addAll( childNames );
+            _childrenProducers = childrenProducers;
 
             // add self as listener for these children
             for( String childName : childNames ) {
                 _n.addEntityListener( childName, this );
+
+                if( !childrenProducers.containsKey( childName ) ) {
+                    childrenReady.add( childName );
+                }
             }
         }
 
-        // update all the children (Note, they will update on other Nodes potentially, and definitely in another thread.
+        // update the children (Note, they will update on other Nodes potentially, and definitely in another thread.
+        requestChildUpdates( childrenReady );
+    }
+
+    protected void requestChildUpdates( Collection< String > childNames ) {
         for( String childName : childNames ) {
             _logger.debug( "Request update of child: " + childName );
             _n.requestUpdate( childName ); // schedule an update, may have already occurred
@@ -218,6 +264,9 @@ public abstract class Entity extends NamedObject implements EntityListener {
 
     public void onEntityUpdated( String entityName ) {
         _logger.debug( "Entity: " + getName() + " being notified about: " + entityName );
+
+        ArrayList< String > childrenReady = new ArrayList<>();
+
         synchronized( _childrenWaiting ) {
             _childrenWaiting.remove( entityName );
 
@@ -227,11 +276,25 @@ public abstract class Entity extends NamedObject implements EntityListener {
             //}
             //System.err.println();
 
+            // release any children that were waiting for this one
+            Iterator< Map.Entry< String, HashSet< String > > > i = _childrenProducers.entrySet().iterator();
+            while( i.hasNext() ) {
+                Map.Entry< String, HashSet< String > > e = i.next();
+                HashSet< String > producers = e.getValue();
+                producers.remove( entityName );
+                if( producers.isEmpty() ) {
+                    childrenReady.add( e.getKey() );
+                    i.remove();
+                }
+            }
+
             if( _childrenWaiting.isEmpty() ) {
                 afterUpdate();
             }
             // else: wait for other children
         }
+
+        requestChildUpdates( childrenReady );
     }
 
     /**
@@ -262,6 +325,8 @@ public abstract class Entity extends NamedObject implements EntityListener {
         Collection< String > outputAttributes = new ArrayList<>();
         getOutputAttributes( outputAttributes, _dataFlags );
         fetchData( outputAttributes );
+        _dataModified.clear();
+        _dataReadOnly.clear();
 
 
         // Set the random number generator, with the current time (i.e. random), if not loaded.
@@ -304,13 +369,13 @@ public abstract class Entity extends NamedObject implements EntityListener {
     }
 
     public static String SerializeConfig( EntityConfig entityConfig ) {
-        Gson gson = new Gson();
-        String config = gson.toJson( entityConfig );
+        String config = EntityConfigCache.Serialize( entityConfig );
         return config;
     }
 
     protected void persistConfig() {
-        _model.config = SerializeConfig( _config );
+        EntityConfigCache ecc = _n.getEntityConfigCache();
+        _model.config = ecc.put( _name, _config ); // kept for the next update
         Persistence p = _n.getPersistence();
         p.persistEntity( _model );
     }
@@ -322,6 +387,25 @@ public abstract class Entity extends NamedObject implements EntityListener {
      */
     private void fetchData( Collection< String > attributes ) {
         DataRefMap dc = _n.getDataRefMap();
+
+        // Fetch any remote Data in bulk first, including the Data that references refer to
+        ArrayList< String > keys = new ArrayList< String >();
+        for( String attribute : attributes ) {
+            keys.add( getKey( attribute ) );
+        }
+
+        dc.prefetchData( keys );
+
+        ArrayList< String > refKeys = new ArrayList< String >();
+        for( String key : keys ) {
+            DataRef d = dc.getData( key );
+            if( ( d != null ) && d.isReference() ) {
+                refKeys.addAll( DataRefResolver.GetRefKeys( d._refKeys ) );
+            }
+        }
+
+        dc.prefetchData( refKeys );
+
         for( String attribute : attributes ) {
 
             String inputKey;
@@ -332,17 +416,42 @@ public abstract class Entity extends NamedObject implements EntityListener {
                 continue;
             }
 
-            DataRefResolver dataRefResolver = getDaraRefResolver( inputKey );
-            Data data = d.getData( _n, dataRefResolver );
-            _data.put( inputKey, data );
+            if( d.isReference() && ( DataRefResolver.GetRefKeys( d._refKeys ).size() > 1 ) ) {
+                _unresolvedData.put( inputKey, d );
+                continue;
+            }
+
+            resolveData( inputKey, d );
         }
     }
 
+    protected void resolveData( String key, DataRef d ) {
+        DataRefResolver dataRefResolver = getDaraRefResolver( key );
+        Data data = dataRefResolver.getDataView( _n, d ); // not copied until modified, see getData()
+        _data.put( key, data );
+
+        if( DataRefResolver.IsShared( _n, d, data ) ) {
+            _sharedData.add( key );
+        }
+    }
+
+    /**
+     * Write the Data to the DataRefMap, which notifies other Nodes. Data that hasn't been set since it was fetched is
+     * skipped, as the DataRefMap and the other Nodes already have it. Data that is modified must therefore be set, even
+     * if it's modified in place.
+     *
+     * @param attributes
+     */
     public void persistData( Collection< String > attributes ) {
         DataRefMap dc = _n.getDataRefMap();
         for( String keySuffix : attributes ) {
             String inputKey = getKey( keySuffix );
-            Data d = _data.get( inputKey ); // the final version of the data after modifications
+
+            if( !_dataModified.contains( inputKey ) && ( _data.get( inputKey ) != null ) ) {
+                continue; // unchanged
+            }
+
+            Data d = getMutableData( inputKey ); // the final version of the data after modifications
 
             String encoding = DataJsonSerializer.ENCODING_DENSE;
 
@@ -355,9 +464,22 @@ public abstract class Entity extends NamedObject implements EntityListener {
 
             DataRef dataRef = new DataRef( inputKey, encoding, null, d );
             dc.setData( inputKey, dataRef );
+            _dataModified.remove( inputKey );
         }
     }
 
+    /**
+     * Opt in the Data to being held off the heap when it is evicted from the cache, e.g. large Data that is only used
+     * now and then, so it is read back with a bulk copy. Data used on every update is rarely the least recently used,
+     * so it is seldom evicted. Only matters if the Node has a cache budget.
+     *
+     * @param attribute
+     */
+    protected void setDataOffHeap( String attribute ) {
+        String key = getKey( attribute );
+        _n.getDataRefMap().getStoreFactory().addKey( key );
+    }
+
     /**
      * Update the local member copy of the data, which will be persisted later.
      *
@@ -365,7 +487,16 @@ public abstract class Entity extends NamedObject implements EntityListener {
      * @param output
      */
     public void setData( String attribute, Data output ) {
-        _data.put( getKey( attribute ), output );
+        String key = getKey( attribute );
+        if( _dataReadOnly.contains( key ) && ( _data.get( key ) == output ) ) {
+            return; // handed out read-only, so unchanged
+        }
+
+        _data.put( key, output );
+        _dataModified.add( key );
+        _dataReadOnly.remove( key );
+        _sharedData.remove( key );
+        _unresolvedData.remove( key );
     }
 
 //    /**
@@ -386,8 +517,75 @@ public abstract class Entity extends NamedObject implements EntityListener {
 //        return ModelData.ENCODING_DENSE;
 //    }
 
+    /**
+     * Returns the Data, which the caller may modify. Inputs that refer to the Data of another Entity are copied now, if
+     * they haven't been already.
+     *
+     * @param keySuffix
+     * @return
+     */
     public Data getData( String keySuffix ) {
-        return _data.get( getKey( keySuffix ) );
+        return getMutableData( getKey( keySuffix ) );
+    }
+
+    /**
+     * Returns the Data without copying it. The caller mustn't modify it, as it may be the Data of another Entity.
+     *
+     * @param keySuffix
+     * @return
+     */
+    public Data getDataReadOnly( String keySuffix ) {
+        String key = getKey( keySuffix );
+        DataRef d = _unresolvedData.remove( key );
+        if( d != null ) {
+            resolveData( key, d );
+        }
+
+        Data data = _data.get( key );
+        if( ( data != null ) && !_dataModified.contains( key ) ) {
+            _dataReadOnly.add( key );
+        }
+
+        return data;
+    }
+
+    /**
+     * Returns the Data as segments, without copying or combining them. An input that refers to several Data has a
+     * segment for each. The caller mustn't modify them.
+     *
+     * @param keySuffix
+     * @return
+     */
+    public ConcatenatedFloatArray getDataSegments( String keySuffix ) {
+        String key = getKey( keySuffix );
+        DataRef d = _unresolvedData.get( key );
+        if( d != null ) {
+            return getDaraRefResolver( key ).getDataSegments( _n, d );
+        }
+
+        Data data = _data.get( key );
+        if( data == null ) {
+            return null;
+        }
+
+        return new ConcatenatedFloatArray( data );
+    }
+
+    protected Data getMutableData( String key ) {
+        DataRef dataRef = _unresolvedData.remove( key );
+        if( dataRef != null ) {
+            resolveData( key, dataRef );
+        }
+
+        Data d = _data.get( key );
+        _dataReadOnly.remove( key ); // the caller may modify it, and must set it if it does
+
+        if( ( d != null ) && _sharedData.remove( key ) ) {
+            d = new Data( d ); // copy on write
+            _data.put( key, d );
+        }
+
+        return d;
     }
 
     /**
@@ -399,7 +597,7 @@ public abstract class Entity extends NamedObject implements EntityListener {
      */
     public Data getData( String attribute, DataSize defaultSize ) {
         String key = getKey( attribute );
-        Data d = _data.get( key );
+        Data d = getMutableData( key );
 
         if( d == null ) {
             d = new Data( defaultSize );
@@ -420,7 +618,7 @@ public abstract class Entity extends NamedObject implements EntityListener {
      */
     public Data getDataLazyResize( String attribute, DataSize defaultSize ) {
         String key = getKey( attribute );
-        Data d = _data.get( key );
+        Data d = getMutableData( key );
 
         if( d == null ) {
             d = new Data( defaultSize );
@@ -431,6 +629,26 @@ public abstract class Entity extends NamedObject implements EntityListener {
         return d;
     }
 
+    /**
+     * As getDataLazyResize(), unless the caller won't modify the Data, e.g. the weights of a layer that isn't learning.
+     * Then Data that exists with this size is returned as by getDataReadOnly(), and isn't persisted again when it's set.
+     *
+     * @param attribute
+     * @param defaultSize
+     * @param modify      whether the caller may modify the Data
+     * @return
+     */
+    public Data getDataLazyResize( String attribute, DataSize defaultSize, boolean modify ) {
+        if( !modify ) {
+            Data d = getDataReadOnly( attribute );
+            if( ( d != null ) && d._dataSize.isSameAs( defaultSize ) ) {
+                return d;
+            }
+        }
+
+        return getDataLazyResize( attribute, defaultSize );
+    }
+
     public static Collection< String > getEntityNames( String configValue ) {
 
         Collection< String > c = new ArrayList<>();
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonPrimitive;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the typed config object of each Entity between updates, with the serialized form that was last persisted.
+ *
+ * An Entity takes its config at the start of an update, and puts it back when the config is persisted. If the
+ * persisted string is unchanged when the config is next taken, the same object is reused and the JSON isn't parsed.
+ * Any other change to the persisted config (e.g. an edit via HTTP) makes the cached object stale, and it is parsed
+ * again. An Entity that fails during update doesn't put the config back, so a half-modified object is never reused.
+ *
+ * Config is (de)serialized with a single shared Gson, so the reflective type adapter for each config class is built
+ * once rather than per update.
+ */
+public class EntityConfigCache {
+
+    private static final Logger _logger = LogManager.getLogger();
+
+    public static final Gson _gson = new Gson(); // thread safe
+
+    protected static class Entry {
+        public String _configString;
+        public EntityConfig _config;
+
+        public Entry( String configString, EntityConfig config ) {
+            _configString = configString;
+            _config = config;
+        }
+    }
+
+    protected ConcurrentHashMap< String, Entry > _entries = new ConcurrentHashMap< String, Entry >();
+
+    public EntityConfigCache() {
+    }
+
+    /**
+     * Parse a config string as the specified class.
+     *
+     * @param configString
+     * @param configClass
+     * @return
+     */
+    public static EntityConfig Deserialize( String configString, Class configClass ) {
+        if( ( configString == null ) || ( configString.length() == 0 ) ) {
+            configString = "{}";
+        }
+        return ( EntityConfig ) _gson.fromJson( configString, configClass );
+    }
+
+    public static String Serialize( EntityConfig config ) {
+        return _gson.toJson( config );
+    }
+
+    /**
+     * Take ownership of the config object of an Entity, which will be the cached object if it matches the persisted
+     * config string, or a newly parsed object otherwise.
+     *
+     * @param entityName
+     * @param configString the persisted config
+     * @param configClass
+     * @return
+     */
+    public EntityConfig take( String entityName, String configString, Class configClass ) {
+        Entry e = _entries.remove( entityName );
+
+        if( e != null ) {
+            if( ( e._config.getClass() == configClass ) && e._configString.equals( configString ) ) {
+                return e._config;
+            }
+        }
+
+        return Deserialize( configString, configClass );
+    }
+
+    /**
+     * Serialize the config of an Entity for persistence, and keep the object for the next update.
+     *
+     * @param entityName
+     * @param config
+     * @return the serialized config, which should be persisted.
+     */
+    public String put( String entityName, EntityConfig config ) {
+        String configString = Serialize( config );
+        _entries.put( entityName, new Entry( configString, config ) );
+        return configString;
+    }
+
+    /**
+     * Forget the config of an Entity.
+     *
+     * @param entityName
+     */
+    public void remove( String entityName ) {
+        _entries.remove( entityName );
+    }
+
+    /**
+     * Modify a single property of the cached config of an Entity, without parsing the config string.
+     *
+     * @param entityName
+     * @param configString the persisted config
+     * @param configPath dot-separated path to the property
+     * @param value
+     * @return the new config string (which is the same object as configString if the value didn't change), or null if
+     * the config isn't cached, or the path couldn't be found in the config class.
+     */
+    public String setProperty( String entityName, String configString, String configPath, Object value ) {
+        Entry e = _entries.remove( entityName ); // take ownership while modifying
+        if( e == null ) {
+            return null;
+        }
+
+        if( !e._configString.equals( configString ) ) {
+            return null; // stale, so discard
+        }
+
+        try {
+            Object parent = e._config;
+            String[] pathParts = configPath.split( "[.]" );
+            int maxIndex = pathParts.length - 1;
+
+            for( int i = 0; i < maxIndex; ++i ) {
+                parent = parent.getClass().getField( pathParts[ i ] ).get( parent );
+            }
+
+            Field field = parent.getClass().getField( pathParts[ maxIndex ] );
+            Object oldValue = field.get( parent );
+            Object newValue = _gson.fromJson( new JsonPrimitive( String.valueOf( value ) ), field.getGenericType() );
+
+            if( ( newValue == null ) ? ( oldValue == null ) : newValue.equals( oldValue ) ) {
+                _entries.put( entityName, e );
+                return configString; // no change
+            }
+
+            field.set( parent, newValue );
+        }
+        catch( Exception ex ) {
+            _logger.debug( "Config path " + configPath + " not found in cached config of " + entityName + ": " + ex.toString() );
+            _entries.put( entityName, e ); // not modified
+            return null;
+        }
+
+        return put( entityName, e._config );
+    }
+
+}
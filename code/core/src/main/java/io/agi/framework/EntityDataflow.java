@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework;
+
+import io.agi.core.orm.Keys;
+import io.agi.framework.references.DataRefMap;
+import io.agi.framework.references.DataRefResolver;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Derives the data dependencies between sibling Entities from the Data references that connect them (see
+ * DataRefUtil.SetDataReference). If an input of one sibling refers to an output of another, the consumer must be
+ * updated after the producer; siblings without a dependency can be updated concurrently.
+ *
+ * Cycles (e.g. recurrent connections, where a sibling reads the previous output of another) are broken by ignoring the
+ * dependencies of the first Entity in name order that would otherwise never be ready. The result is always a DAG.
+ *
+ * Only references known to this Node are used. Siblings whose references are unknown are treated as independent,
+ * which is how all siblings were updated before.
+ */
+public class EntityDataflow {
+
+    protected static class Dependencies {
+        public int _referencesVersion;
+        public HashSet< String > _siblings;
+        public HashMap< String, HashSet< String > > _producers;
+    }
+
+    protected ConcurrentHashMap< String, Dependencies > _cache = new ConcurrentHashMap< String, Dependencies >(); // by parent
+
+    public EntityDataflow() {
+    }
+
+    /**
+     * Returns the siblings that each sibling depends on. Siblings without dependencies are omitted.
+     *
+     * @param parent
+     * @param siblings
+     * @param map
+     * @return a new map, which the caller may modify.
+     */
+    public HashMap< String, HashSet< String > > getDependencies( String parent, Collection< String > siblings, DataRefMap map ) {
+        int version = map.getReferencesVersion();
+        HashSet< String > siblingSet = new HashSet< String >( siblings );
+
+        Dependencies d = _cache.get( parent );
+        if( ( d == null ) || ( d._referencesVersion != version ) || !d._siblings.equals( siblingSet ) ) {
+            d = new Dependencies();
+            d._referencesVersion = version;
+            d._siblings = siblingSet;
+            d._producers = GetDependencies( siblings, map.getReferences() );
+            _cache.put( parent, d );
+        }
+
+        HashMap< String, HashSet< String > > producers = new HashMap< String, HashSet< String > >();
+        for( Map.Entry< String, HashSet< String > > e : d._producers.entrySet() ) {
+            producers.put( e.getKey(), new HashSet< String >( e.getValue() ) );
+        }
+
+        return producers;
+    }
+
+    /**
+     * Derive an acyclic set of dependencies between siblings from references.
+     *
+     * @param siblings
+     * @param references Data key to referenced keys.
+     * @return
+     */
+    public static HashMap< String, HashSet< String > > GetDependencies( Collection< String > siblings, Map< String, String > references ) {
+        ArrayList< String > names = new ArrayList< String >( siblings );
+        Collections.sort( names ); // deterministic cycle breaking
+
+        HashMap< String, HashSet< String > > producers = new HashMap< String, HashSet< String > >();
+
+        for( Map.Entry< String, String > e : references.entrySet() ) {
+            String consumer = GetOwner( e.getKey(), names );
+            if( consumer == null ) {
+                continue;
+            }
+
+            for( String refKey : DataRefResolver.GetRefKeys( e.getValue() ) ) {
+                String producer = GetOwner( refKey, names );
+                if( ( producer == null ) || producer.equals( consumer ) ) {
+                    continue;
+                }
+
+                HashSet< String > hs = producers.get( consumer );
+                if( hs == null ) {
+                    hs = new HashSet< String >();
+                    producers.put( consumer, hs );
+                }
+                hs.add( producer );
+            }
+        }
+
+        RemoveCycles( names, producers );
+
+        return producers;
+    }
+
+    /**
+     * Returns the sibling whose name is the longest prefix of the Data key, or null if none.
+     *
+     * @param key
+     * @param siblings
+     * @return
+     */
+    protected static String GetOwner( String key, Collection< String > siblings ) {
+        String owner = null;
+
+        for( String sibling : siblings ) {
+            if( key.startsWith( Keys.concatenate( sibling, "" ) ) ) {
+                if( ( owner == null ) || ( sibling.length() > owner.length() ) ) {
+                    owner = sibling;
+                }
+            }
+        }
+
+        return owner;
+    }
+
+    /**
+     * Simulate updating the siblings in dependency order. Whenever none are ready, forget the dependencies of the first
+     * remaining sibling.
+     *
+     * @param names sorted
+     * @param producers modified
+     */
+    protected static void RemoveCycles( ArrayList< String > names, HashMap< String, HashSet< String > > producers ) {
+        LinkedHashSet< String > remaining = new LinkedHashSet< String >( names );
+
+        while( !remaining.isEmpty() ) {
+            ArrayList< String > ready = new ArrayList< String >();
+
+            for( String name : remaining ) {
+                HashSet< String > hs = producers.get( name );
+                if( ( hs == null ) || Collections.disjoint( hs, remaining ) ) {
+                    ready.add( name );
+                }
+            }
+
+            if( ready.isEmpty() ) {
+                String name = remaining.iterator().next();
+                HashSet< String > hs = producers.get( name );
+                hs.removeAll( remaining ); // break the cycle here
+                if( hs.isEmpty() ) {
+                    producers.remove( name );
+                }
+                ready.add( name );
+            }
+
+            remaining.removeAll( ready );
+        }
+    }
+
+}
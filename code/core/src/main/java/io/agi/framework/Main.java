@@ -19,6 +19,9 @@
 
 package io.agi.framework;
 
+import io.agi.core.data.FloatArray;
+import io.agi.core.data.FloatBufferStoreFactory;
+import io.agi.core.data.FloatMatrix;
 import io.agi.core.orm.ObjectMap;
 import io.agi.core.util.MemoryUtil;
 import io.agi.core.util.PropertiesUtil;
@@ -30,7 +33,11 @@ import io.agi.framework.persistence.Persistence;
 import io.agi.framework.persistence.PersistenceFactory;
 import io.agi.framework.persistence.PersistenceUtil;
 import io.agi.framework.persistence.models.ModelNode;
+import io.agi.framework.placement.EntityPlacement;
+import io.agi.framework.references.DataRefMap;
 import io.agi.framework.references.DataRefUtil;
+import io.agi.framework.scheduling.UpdateScheduler;
+import io.agi.framework.scheduling.UpdateSchedulerFactory;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -38,6 +45,7 @@ import org.apache.logging.log4j.io.IoBuilder;
 
 import java.io.FileInputStream;
 import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
 
 
 /**
@@ -83,6 +91,7 @@ public class Main {
         // Create persistence & Node now so you can Create entities in code that are hosted and persisted on the Node.
         _p =  PersistenceFactory.createPersistence ( properties );
         _c = CoordinationFactory.createCoordination( properties );
+        UpdateScheduler s = UpdateSchedulerFactory.createUpdateScheduler( properties );
 
         // Create Node object
         String nodeName = PropertiesUtil.get( properties, PROPERTY_NODE_NAME, "node-1" );
@@ -92,9 +101,35 @@ public class Main {
 
         // The persistent description of this Node
         Node node = Node.NodeInstance();
-        node.setup( _om, _modelNode._name, _modelNode._host, _modelNode._port, ef, _c, _p );
+        node.setup( _om, _modelNode._name, _modelNode._host, _modelNode._port, ef, _c, _p, s );
         _n = node;
 
+        // Limit the memory used by Data cached at this Node
+        long cacheBudget = Long.valueOf( PropertiesUtil.get( properties, DataRefMap.PROPERTY_DATA_CACHE_BUDGET, String.valueOf( DataRefMap.DEFAULT_CACHE_BUDGET ) ) );
+        String spillPath = PropertiesUtil.get( properties, DataRefMap.PROPERTY_DATA_CACHE_SPILL_PATH, System.getProperty( "java.io.tmpdir" ) );
+        node.getDataRefMap().setCacheBudget( cacheBudget, spillPath );
+
+        // Data that is held off the heap when evicted
+        String storeType = PropertiesUtil.get( properties, DataRefMap.PROPERTY_DATA_CACHE_STORE_TYPE, FloatBufferStoreFactory.TYPE_DIRECT );
+        String storeKeys = PropertiesUtil.get( properties, DataRefMap.PROPERTY_DATA_CACHE_STORE_KEYS, "" );
+        node.getDataRefMap().getStoreFactory().setup( storeType, storeKeys, spillPath );
+
+        // How long to wait for updates to finish when stopping
+        long stopTimeout = Long.valueOf( PropertiesUtil.get( properties, Node.PROPERTY_STOP_TIMEOUT, String.valueOf( Node.DEFAULT_STOP_TIMEOUT ) ) );
+        node.setStopTimeout( stopTimeout );
+
+        // Relative share of Entities placed at each registered Node, persisted so that all Nodes use it
+        node.getEntityPlacement().setWeights( PropertiesUtil.get( properties, EntityPlacement.PROPERTY_PLACEMENT_WEIGHTS, "" ) );
+
+        // FloatArray sums and dot products over explicit SIMD lanes, or scalar loops
+        FloatArray.SetLanes( Boolean.valueOf( PropertiesUtil.get( properties, FloatArray.PROPERTY_FLOAT_ARRAY_LANES, "false" ) ) );
+
+        // Threads that FloatMatrix kernels split large products across, apart from the update threads
+        int matrixThreads = Integer.valueOf( PropertiesUtil.get( properties, FloatMatrix.PROPERTY_FLOAT_MATRIX_THREADS, String.valueOf( FloatMatrix.DEFAULT_THREADS ) ) );
+        if( matrixThreads > 1 ) {
+            FloatMatrix.SetPool( new ForkJoinPool( matrixThreads ), FloatMatrix.DEFAULT_PARALLEL_THRESHOLD );
+        }
+
         ef.setNode( node );
     }
 
@@ -128,6 +163,14 @@ public class Main {
                 //c.setNode( _n );
                 c.start();
             }
+
+            // Stop in an orderly way when the process is terminated, e.g. to restart it
+            Runtime.getRuntime().addShutdownHook( new Thread( new Runnable() {
+                @Override
+                public void run() {
+                    _n.shutdown();
+                }
+            }, "node-shutdown" ) );
         }
         catch( Exception e ) {
             _logger.error( "Could not setup HttpCoordination in Main.run()" );
@@ -21,15 +21,24 @@ package io.agi.framework;
 
 import io.agi.core.orm.ObjectMap;
 import io.agi.framework.coordination.Coordination;
+import io.agi.framework.coordination.http.HttpCoordination;
+import io.agi.framework.persistence.DataPersistence;
 import io.agi.framework.persistence.Persistence;
 import io.agi.framework.persistence.models.ModelData;
 import io.agi.framework.persistence.models.ModelEntity;
+import io.agi.framework.placement.EntityPlacement;
+import io.agi.framework.references.DataRef;
 import io.agi.framework.references.DataRefMap;
+import io.agi.framework.scheduling.PooledUpdateScheduler;
+import io.agi.framework.scheduling.UpdateScheduler;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Semaphore;
+import java.util.function.BiFunction;
 
 /**
  * A container in which the program can execute.
@@ -43,6 +52,10 @@ public class Node {
 
     public static final String KEY_NODE = "node";
 
+    public static final String PROPERTY_STOP_TIMEOUT = "node-stop-timeout";
+    public static final long DEFAULT_STOP_TIMEOUT = 60000; // ms
+    public static final long STOP_POLL_INTERVAL = 100; // ms
+
     protected ObjectMap _om;
     protected String _name;
     protected String _host;
@@ -51,8 +64,15 @@ public class Node {
     protected Coordination _c;
     protected Persistence _p;
     protected DataRefMap _dataRefMap = new DataRefMap();
+    protected EntityConfigCache _entityConfigCache = new EntityConfigCache();
+    protected EntityDataflow _entityDataflow = new EntityDataflow();
+    protected EntityPlacement _entityPlacement = new EntityPlacement();
+    protected UpdateScheduler _updateScheduler;
+    protected long _stopTimeout = DEFAULT_STOP_TIMEOUT;
+    protected volatile boolean _stopping = false;
+    protected boolean _stopped = false;
 
-    protected HashMap< String, ArrayList< EntityListener > > _entityListeners = new HashMap< String, ArrayList< EntityListener > >();
+    protected ConcurrentHashMap< String, ArrayList< EntityListener > > _entityListeners = new ConcurrentHashMap< String, ArrayList< EntityListener > >(); // each list only changed inside the map's compute methods
 
     static protected Node _node = null;
 
@@ -60,14 +80,113 @@ public class Node {
     }
 
     /**
-     * Stops the Node. TODO: Make it check nothing is happening (e.g. no pending updates to complete?)
-     *
+     * Stops the Node in an orderly way (see shutdown()) and then ends the process.
      */
     public void stop() {
         logger.info( "Stopping process on request." );
+        shutdown();
         System.exit( 0 );
     }
 
+    /**
+     * Stops the Node without ending the process. New updates are refused, except those of the children of Entities
+     * that are updating here, so that an update already under way completes. When all the updates have finished, or the
+     * timeout expires, everything persisted is made durable and coordination is closed. A restarted Node then resumes
+     * from its persisted state. Calls after the first wait for it to finish, and then return.
+     *
+     * @return true if all the updates finished before the timeout.
+     */
+    public synchronized boolean shutdown() {
+        if( _stopped ) {
+            return true;
+        }
+
+        _stopping = true;
+
+        logger.info( "Waiting up to " + _stopTimeout + "ms for updates to finish." );
+
+        boolean drained = drain( _stopTimeout );
+        if( !drained ) {
+            logger.warn( "Stopping with " + _updateScheduler.getQueueDepth() + " queued and " + _updateScheduler.getActiveUpdates() + " active updates." );
+        }
+
+        _updateScheduler.stop();
+
+        checkpoint();
+
+        if( _c instanceof HttpCoordination ) {
+            ( ( HttpCoordination ) _c ).stop();
+        }
+
+        _stopped = true;
+
+        logger.info( "Stopped." );
+        return drained;
+    }
+
+    /**
+     * Sets how long shutdown() waits for updates to finish.
+     *
+     * @param timeout in milliseconds
+     */
+    public void setStopTimeout( long timeout ) {
+        _stopTimeout = timeout;
+    }
+
+    /**
+     * @return true if the Node is stopping, and refusing new updates.
+     */
+    public boolean isStopping() {
+        return _stopping;
+    }
+
+    /**
+     * Wait until there are no updates scheduled, running, or waiting for their children.
+     *
+     * @param timeout in milliseconds
+     * @return false if the timeout expired first.
+     */
+    protected boolean drain( long timeout ) {
+        long deadline = System.currentTimeMillis() + timeout;
+
+        while( ( _updateScheduler.getQueueDepth() > 0 ) || ( _updateScheduler.getActiveUpdates() > 0 ) || isAnyLocked() ) {
+            if( System.currentTimeMillis() >= deadline ) {
+                return false;
+            }
+
+            try {
+                Thread.sleep( STOP_POLL_INTERVAL );
+            }
+            catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * While the Node is stopping, only updates that are part of an update already under way here are accepted, i.e.
+     * of the children of locked Entities.
+     *
+     * @param entityName
+     * @return true if the update should go ahead.
+     */
+    protected boolean isUpdateAccepted( String entityName ) {
+        if( !_stopping ) {
+            return true;
+        }
+
+        ModelEntity modelEntity = _p.getEntity( entityName );
+        if( ( modelEntity != null ) && ( modelEntity.parent != null ) && isLocked( modelEntity.parent ) ) {
+            return true;
+        }
+
+        logger.warn( "Node is stopping, refused update of " + entityName );
+        return false;
+    }
+
     /**
      * Sets up the interfaces, which cannot be modified afterwards.
      */
@@ -79,6 +198,21 @@ public class Node {
             EntityFactory ef,
             Coordination c,
             Persistence p ) {
+        setup( om, name, host, port, ef, c, p, new PooledUpdateScheduler( Runtime.getRuntime().availableProcessors() ) );
+    }
+
+    /**
+     * Sets up the interfaces, which cannot be modified afterwards.
+     */
+    public void setup(
+            ObjectMap om,
+            String name,
+            String host,
+            int port,
+            EntityFactory ef,
+            Coordination c,
+            Persistence p,
+            UpdateScheduler s ) {
 
         _om = om;
         _om.put( KEY_NODE, this );
@@ -90,9 +224,12 @@ public class Node {
         _ef = ef;
         _c = c;
         _p = p;
+        _updateScheduler = s;
 
         _c.setNode( this );
         _dataRefMap.setNode( this );
+        _dataRefMap.restoreData();
+        _entityPlacement.setNode( this );
 //        ModelNode jn = new ModelNode( _name, _host, _port );
 //        _p.persistNode(jn);
     }
@@ -146,11 +283,52 @@ public class Node {
         return _dataRefMap;
     }
 
+    public EntityConfigCache getEntityConfigCache() {
+        return _entityConfigCache;
+    }
+
+    public EntityDataflow getEntityDataflow() {
+        return _entityDataflow;
+    }
+
+    /**
+     * Returns the service that decides which Node hosts each Entity.
+     *
+     * @return
+     */
+    public EntityPlacement getEntityPlacement() {
+        return _entityPlacement;
+    }
+
+    /**
+     * Returns the scheduler that runs Entity updates on this Node.
+     *
+     * @return
+     */
+    public UpdateScheduler getUpdateScheduler() {
+        return _updateScheduler;
+    }
+
 //    public void notifySetData( String dataName ) {
 //        _c.onSetData( dataName );
 //    }
 
 
+    /**
+     * Make all persisted state durable, if the persistence layer supports it.
+     *
+     * @return true if a checkpoint was made.
+     */
+    public boolean checkpoint() {
+        if( !( _p instanceof DataPersistence ) ) {
+            return false;
+        }
+
+        logger.info( "Checkpoint." );
+        ( ( DataPersistence ) _p ).checkpoint();
+        return true;
+    }
+
     /**
      * A callback that is called when an Entity has been updated, including all its children.
      *
@@ -184,6 +362,10 @@ public class Node {
      * @param entityName
      */
     public void requestUpdate( String entityName ) {
+        if( !isUpdateAccepted( entityName ) ) {
+            return;
+        }
+
         _c.doUpdate( entityName );
     }
 
@@ -194,6 +376,10 @@ public class Node {
      */
     public void doUpdate( String entityName ) {
 
+        if( !isUpdateAccepted( entityName ) ) {
+            return;
+        }
+
         ModelEntity modelEntity = _p.getEntity( entityName );
 
         if( modelEntity == null ) {
@@ -208,12 +394,12 @@ public class Node {
     }
 
     /**
-     * Creates a thread to actually do the work of updating the entity
+     * Asks the scheduler to actually do the work of updating the entity, in another thread.
      *
      * @param entityName
      */
     protected void forkUpdate( String entityName ) {
-        Thread t = new Thread( new Runnable() {
+        _updateScheduler.schedule( entityName, new Runnable() {
             @Override
             public void run() {
                 // block forked thread forking until entity can be updated.
@@ -230,7 +416,6 @@ public class Node {
                 e.update();
             }
         } );
-        t.start();
     }
 
     /**
@@ -250,6 +435,15 @@ public class Node {
         _dataRefMap.onSetData( key, nodeName );
     }
 
+    /**
+     * Called by Coordination when an Entity has moved from the specified Node to another, which may be this one.
+     * @param entityName
+     * @param nodeName the Node it moved from
+     */
+    public void onPlaced( String entityName, String nodeName ) {
+        _entityPlacement.onPlaced( entityName, nodeName );
+    }
+
     /**
      * Called by Coordination when a Data has been fetched from a remote Node.
      * @param key
@@ -267,20 +461,53 @@ public class Node {
      * @param node
      * @return
      */
-    public ModelData doGetData( String key, String node ) {
-        ModelData modelData = _c.getData( key, node );
-        return modelData;
+    public DataRef doGetData( String key, String node ) {
+        DataRef dataRef = _c.getData( key, node );
+        return dataRef;
     }
 
+    public Collection< DataRef > doGetData( Collection< String > keys, String node ) {
+        Collection< DataRef > dataRefs = _c.getData( keys, node );
+        return dataRefs;
+    }
+
+    /**
+     * Wait until the Entity isn't locked, and lock it, e.g. for an update. Blocks, but lets a ForkJoinPool add a thread
+     * meanwhile.
+     *
+     * @param entityName
+     * @return false if interrupted while waiting.
+     */
     public boolean lock( String entityName ) {
-        Semaphore s = getLock( entityName );
+        final Semaphore s = useLock( entityName );
 
         logger.debug( "Thread " + Thread.currentThread().hashCode() + " waiting for " + entityName );
         try {
-            s.acquire();
+            // If we're in a pooled thread, let the pool add a thread while this one waits.
+            ForkJoinPool.managedBlock( new ForkJoinPool.ManagedBlocker() {
+                boolean _acquired = false;
+
+                @Override
+                public boolean block() throws InterruptedException {
+                    if( !_acquired ) {
+                        s.acquire();
+                        _acquired = true;
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    if( !_acquired ) {
+                        _acquired = s.tryAcquire();
+                    }
+                    return _acquired;
+                }
+            } );
         }
         catch( InterruptedException ie ) {
             logger.debug( "Thread " + Thread.currentThread().hashCode() + " cant get lock for " + entityName );
+            unuseLock( entityName );
             return false;
         }
 
@@ -289,27 +516,84 @@ public class Node {
         return true;
     }
 
-    public Semaphore getLock( String entityName ) {
-        synchronized( _entityNameSemaphores ) {
-            Semaphore l = _entityNameSemaphores.get( entityName );
-            if( l == null ) {
-                l = new Semaphore( 1 ); // binary
-                _entityNameSemaphores.put( entityName, l );
-            }
+    /**
+     * @param entityName
+     * @return true if the Entity is locked, i.e. updating.
+     */
+    public boolean isLocked( String entityName ) {
+        EntityLock l = _entityLocks.get( entityName );
+        return ( l != null ) && ( l._semaphore.availablePermits() == 0 );
+    }
 
-            return l;
+    /**
+     * @return true if any Entity is locked.
+     */
+    public boolean isAnyLocked() {
+        for( EntityLock l : _entityLocks.values() ) {
+            if( l._semaphore.availablePermits() == 0 ) {
+                return true;
+            }
         }
+        return false;
     }
 
     public void unlock( String entityName ) {
-        Semaphore l = getLock( entityName );
+        EntityLock l = _entityLocks.get( entityName );
+        if( l == null ) {
+            logger.warn( "Unlock of " + entityName + ", which isn't locked." );
+            return;
+        }
 
-        //System.err.println("Thread " + Thread.currentThread().hashCode() + " about to unlock " + entityName);
+        l._semaphore.release();
+        unuseLock( entityName );
+    }
 
-        l.release();
+    /**
+     * The lock of an Entity. It only exists while it is held or waited for, so the locks of all the Entities that have
+     * ever been updated aren't kept.
+     */
+    protected static class EntityLock {
+        public Semaphore _semaphore = new Semaphore( 1 ); // binary
+        public int _users = 0; // holding or waiting; only changed inside the map's compute methods
     }
 
-    public HashMap< String, Semaphore > _entityNameSemaphores = new HashMap< String, Semaphore >();
+    protected ConcurrentHashMap< String, EntityLock > _entityLocks = new ConcurrentHashMap< String, EntityLock >();
+
+    /**
+     * Register the intent to lock an Entity, creating its lock if necessary.
+     *
+     * @param entityName
+     * @return
+     */
+    protected Semaphore useLock( String entityName ) {
+        EntityLock l = _entityLocks.compute( entityName, new BiFunction< String, EntityLock, EntityLock >() {
+            @Override
+            public EntityLock apply( String k, EntityLock l ) {
+                if( l == null ) {
+                    l = new EntityLock();
+                }
+                ++l._users;
+                return l;
+            }
+        } );
+
+        return l._semaphore;
+    }
+
+    /**
+     * Undo useLock(), after unlocking or giving up. The lock is discarded when nobody holds it or is waiting for it.
+     *
+     * @param entityName
+     */
+    protected void unuseLock( String entityName ) {
+        _entityLocks.computeIfPresent( entityName, new BiFunction< String, EntityLock, EntityLock >() {
+            @Override
+            public EntityLock apply( String k, EntityLock l ) {
+                --l._users;
+                return ( l._users > 0 ) ? l : null;
+            }
+        } );
+    }
 
     /**
      * Adds a listener to the specified Entity.
@@ -318,48 +602,44 @@ public class Node {
      * @param entity
      * @param listener
      */
-    public void addEntityListener( String entity, EntityListener listener ) {
-        synchronized( _entityListeners ) {
-            ArrayList< EntityListener > al = _entityListeners.get( entity );
-            if( al == null ) {
-                al = new ArrayList();
-                _entityListeners.put( entity, al );
+    public void addEntityListener( String entity, final EntityListener listener ) {
+        _entityListeners.compute( entity, new BiFunction< String, ArrayList< EntityListener >, ArrayList< EntityListener > >() {
+            @Override
+            public ArrayList< EntityListener > apply( String k, ArrayList< EntityListener > al ) {
+                if( al == null ) {
+                    al = new ArrayList< EntityListener >();
+                }
+                al.add( listener );
+                return al;
             }
-            al.add( listener );
-        }
+        } );
     }
 
-    public void removeEntityListener( String entity, EntityListener el ) {
-        synchronized( _entityListeners ) {
-            ArrayList< EntityListener > al = _entityListeners.get( entity );
-            if( al != null ) {
-                for( EntityListener el2 : al ) {
-                    if( el2.equals( el ) ) {
-                        al.remove( el );
-                    }
-                }
+    public void removeEntityListener( String entity, final EntityListener el ) {
+        _entityListeners.computeIfPresent( entity, new BiFunction< String, ArrayList< EntityListener >, ArrayList< EntityListener > >() {
+            @Override
+            public ArrayList< EntityListener > apply( String k, ArrayList< EntityListener > al ) {
+                al.removeAll( Collections.singleton( el ) ); // all registrations
+                return al.isEmpty() ? null : al;
             }
-        }
+        } );
     }
 
     /**
      * Call any listeners associated with this Entity, and then remove them.
+     * The listeners are taken from the registry first, and then called without holding any lock, so they may add
+     * listeners (for the next call) or lock Entities.
      *
      * @param entity
      */
     public void callEntityListeners( String entity ) {
-        synchronized( _entityListeners ) {
-            ArrayList< EntityListener > al = _entityListeners.get( entity );
-            if( al == null ) {
-                al = new ArrayList< EntityListener >();
-                _entityListeners.put( entity, al );
-            }
-
-            for( EntityListener listener : al ) {
-                listener.onEntityUpdated( entity );
-            }
+        ArrayList< EntityListener > al = _entityListeners.remove( entity ); // nobody else can see it now
+        if( al == null ) {
+            return;
+        }
 
-            al.clear(); // remove references, it doesn't need calling twice.
+        for( EntityListener listener : al ) {
+            listener.onEntityUpdated( entity );
         }
     }
 
@@ -23,6 +23,8 @@ import io.agi.framework.Node;
 import io.agi.framework.persistence.models.ModelData;
 import io.agi.framework.references.DataRef;
 
+import java.util.Collection;
+
 /**
  * Created by dave on 16/02/16.
  */
@@ -52,13 +54,38 @@ public interface Coordination {
      */
     void onSetData( String dataName, String nodeName );
 
+    /**
+     * Notification that an Entity hosted by the local Node has moved to another Node, which will take its Data from
+     * the local Node.
+     *
+     * @param entityName
+     */
+    void onPlaced( String entityName );
+
+    /**
+     * Asks the Node that hosts the Entity to move it to another Node.
+     *
+     * @param entityName
+     * @param nodeName
+     */
+    void doMigrate( String entityName, String nodeName );
+
     /**
      * Fetches a Data from the Node that has the most recent copy.
      *
      * @param dataName
      * @param nodeName
-     * @return
+     * @return the Data, or null if it couldn't be fetched.
+     */
+    DataRef getData( String dataName, String nodeName );
+
+    /**
+     * Fetches several Data from the Node that has the most recent copies, in one request.
+     *
+     * @param dataNames
+     * @param nodeName
+     * @return the Data that could be fetched.
      */
-    ModelData getData( String dataName, String nodeName );
+    Collection< DataRef > getData( Collection< String > dataNames, String nodeName );
 
 }
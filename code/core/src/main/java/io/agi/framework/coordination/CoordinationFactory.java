@@ -20,8 +20,10 @@
 package io.agi.framework.coordination;
 
 import io.agi.core.util.PropertiesUtil;
+import io.agi.framework.coordination.http.BatchedHttpCoordination;
 import io.agi.framework.coordination.http.HttpCoordination;
 import io.agi.framework.coordination.monolithic.SingleProcessCoordination;
+import io.agi.framework.coordination.transfer.DataTransfer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -34,20 +36,33 @@ public class CoordinationFactory {
 
     public static final String PROPERTY_COORDINATION_TYPE = "coordination-type";
     public static final String COORDINATION_TYPE_HTTP = "http";
+    public static final String COORDINATION_TYPE_HTTP_BATCH = "http-batch";
     public static final String COORDINATION_TYPE_NONE = "none";
 
     private static final Logger logger = LogManager.getLogger();
 
     public static Coordination createCoordination( Properties properties ) {
         String type = PropertiesUtil.get( properties, PROPERTY_COORDINATION_TYPE, "http" );
-        Coordination c = null;
+        HttpCoordination c = null;
         if( type.equals( COORDINATION_TYPE_HTTP ) ) {
             logger.info( "Distributed coordination." );
             c = new HttpCoordination();
+        } else if( type.equals( COORDINATION_TYPE_HTTP_BATCH ) ) {
+            logger.info( "Distributed coordination, with batched events." );
+            c = new BatchedHttpCoordination();
         } else {
             logger.info( "Monolithic coordination." );
-            c = new SingleProcessCoordination();
+            return new SingleProcessCoordination();
         }
+
+        int offset = Integer.valueOf( PropertiesUtil.get( properties, DataTransfer.PROPERTY_DATA_TRANSFER_PORT_OFFSET, String.valueOf( DataTransfer.DEFAULT_PORT_OFFSET ) ) );
+        c.setDataTransferPortOffset( offset );
+
+        boolean deltas = Boolean.valueOf( PropertiesUtil.get( properties, DataTransfer.PROPERTY_DATA_TRANSFER_DELTAS, String.valueOf( DataTransfer.DEFAULT_DELTAS ) ) );
+        c.setDataTransferDeltas( deltas );
+
+        long ttl = Long.valueOf( PropertiesUtil.get( properties, NodeDirectory.PROPERTY_NODE_DIRECTORY_TTL, String.valueOf( NodeDirectory.DEFAULT_TTL ) ) );
+        c.setNodeDirectoryTtl( ttl );
         return c;
     }
 
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.coordination;
+
+import io.agi.framework.persistence.Persistence;
+import io.agi.framework.persistence.models.ModelNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * A cache of the Nodes registered in Persistence, so that sending a message doesn't need a Persistence query.
+ *
+ * The cache is refreshed when it is older than the TTL, when it is invalidated (e.g. on a nodes event, when a Node
+ * joins or leaves) and when a Node that isn't in the cache is requested. Only one thread refreshes at a time; the
+ * others keep using the previous copy. Refreshes due to unknown Nodes are rate limited, as these are often the result
+ * of a Node that has left.
+ */
+public class NodeDirectory {
+
+    private static final Logger _logger = LogManager.getLogger();
+
+    public static final String PROPERTY_NODE_DIRECTORY_TTL = "node-directory-ttl";
+    public static final long DEFAULT_TTL = 10000; // millis
+    public static final long MIN_REFRESH_INTERVAL = 1000; // millis, for refreshes due to unknown Nodes
+
+    protected static class Snapshot {
+        public Collection< ModelNode > _nodes;
+        public HashMap< String, ModelNode > _nodesByName;
+        public long _time;
+    }
+
+    protected Persistence _p;
+    protected long _ttl = DEFAULT_TTL;
+    protected volatile Snapshot _snapshot;
+    protected volatile boolean _invalid = true;
+    protected final Object _refreshLock = new Object();
+
+    public NodeDirectory() {
+    }
+
+    public void setPersistence( Persistence p ) {
+        _p = p;
+        invalidate();
+    }
+
+    /**
+     * @param ttl millis. 0 to query Persistence every time.
+     */
+    public void setTtl( long ttl ) {
+        _ttl = ttl;
+    }
+
+    /**
+     * The cached Nodes will be refreshed before next use.
+     */
+    public void invalidate() {
+        _invalid = true;
+    }
+
+    /**
+     * Returns all registered Nodes.
+     *
+     * @return an unmodifiable collection.
+     */
+    public Collection< ModelNode > getNodes() {
+        return getSnapshot()._nodes;
+    }
+
+    /**
+     * Returns the named Node, or null if it isn't registered.
+     *
+     * @param nodeName
+     * @return
+     */
+    public ModelNode getNode( String nodeName ) {
+        Snapshot s = getSnapshot();
+        ModelNode modelNode = s._nodesByName.get( nodeName );
+
+        if( ( modelNode == null ) && ( ( System.currentTimeMillis() - s._time ) >= MIN_REFRESH_INTERVAL ) ) {
+            invalidate(); // may have joined since
+            modelNode = getSnapshot()._nodesByName.get( nodeName );
+        }
+
+        return modelNode;
+    }
+
+    protected Snapshot getSnapshot() {
+        Snapshot s = _snapshot;
+
+        if( ( s != null ) && !isStale( s ) ) {
+            return s;
+        }
+
+        synchronized( _refreshLock ) {
+            s = _snapshot;
+            if( ( s != null ) && !isStale( s ) ) {
+                return s; // refreshed by another thread
+            }
+
+            _invalid = false; // before the query, so later invalidations aren't lost
+
+            try {
+                s = refresh();
+                _snapshot = s;
+            }
+            catch( RuntimeException e ) {
+                if( s == null ) {
+                    throw e;
+                }
+
+                _logger.error( "Unable to refresh Nodes, using previous copy." );
+                _logger.error( e.toString(), e );
+
+                // Don't retry until the TTL has elapsed again
+                Snapshot previous = s;
+                s = new Snapshot();
+                s._nodes = previous._nodes;
+                s._nodesByName = previous._nodesByName;
+                s._time = System.currentTimeMillis();
+                _snapshot = s;
+            }
+        }
+
+        return s;
+    }
+
+    protected boolean isStale( Snapshot s ) {
+        if( _invalid ) {
+            return true;
+        }
+
+        return ( System.currentTimeMillis() - s._time ) >= _ttl;
+    }
+
+    protected Snapshot refresh() {
+        Snapshot s = new Snapshot();
+        s._time = System.currentTimeMillis();
+
+        ArrayList< ModelNode > nodes = new ArrayList< ModelNode >( _p.getNodes() );
+        s._nodes = Collections.unmodifiableList( nodes );
+        s._nodesByName = new HashMap< String, ModelNode >();
+        for( ModelNode modelNode : nodes ) {
+            s._nodesByName.put( modelNode._name, modelNode );
+        }
+
+        _logger.debug( "Refreshed Nodes: " + nodes.size() );
+
+        return s;
+    }
+
+}
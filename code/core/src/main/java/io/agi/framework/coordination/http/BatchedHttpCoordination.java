@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.coordination.http;
+
+import com.google.gson.Gson;
+import io.agi.framework.persistence.models.ModelNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.concurrent.*;
+
+/**
+ * HTTP Coordination that sends events in batches, rather than one request per event per Node.
+ *
+ * Events are queued, and a single sender thread takes everything queued so far and POSTs it to each other Node as one
+ * request, with one JSON event per line. Events raised while a batch is being sent form the next batch, so the batches
+ * grow with the rate of events (e.g. all the set-data events of an update), without adding latency when it is quiet.
+ * Repeated set-data events for the same Data within a batch are only sent once. Batches are sent to every Node
+ * concurrently, and in order to each Node, over persistent (keep-alive) connections.
+ *
+ * Nodes still accept the single event GET requests, so they can be mixed with Nodes using HttpCoordination.
+ */
+public class BatchedHttpCoordination extends HttpCoordination {
+
+    private static final Logger _logger = LogManager.getLogger();
+
+    public static final int POLL_INTERVAL = 100; // millis
+
+    protected LinkedBlockingQueue< HttpCoordinationHandler.Event > _events = new LinkedBlockingQueue< HttpCoordinationHandler.Event >();
+    protected ExecutorService _peerExecutor;
+    protected Thread _sender;
+    protected volatile boolean _running = false;
+    protected Gson _gson = new Gson();
+
+    public BatchedHttpCoordination() {
+    }
+
+    @Override
+    public void start() {
+        super.start();
+
+        _peerExecutor = Executors.newCachedThreadPool();
+        _running = true;
+
+        _sender = new Thread( new Runnable() {
+            @Override
+            public void run() {
+                sendEvents();
+            }
+        }, "coordination-sender" );
+        _sender.setDaemon( true );
+        _sender.start();
+    }
+
+    @Override
+    public void stop() {
+        _running = false; // the sender sends any queued events first
+
+        try {
+            if( _sender != null ) {
+                _sender.join( POLL_INTERVAL * 10 );
+            }
+        }
+        catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+
+        if( _peerExecutor != null ) {
+            _peerExecutor.shutdown();
+        }
+
+        super.stop();
+    }
+
+    @Override
+    public void doUpdateBroadcast( String entityName ) {
+        _logger.debug( "Coordination.doUpdateBroadcast( " + entityName + ")" );
+        queueEvent( entityName, HttpCoordinationHandler.VALUE_UPDATE );
+    }
+
+    @Override
+    public void onSetData( String dataName, String nodeName ) {
+        _logger.debug( "Coordination.onSetData( " + dataName + ")" );
+        queueEvent( dataName, HttpCoordinationHandler.VALUE_SET_DATA );
+    }
+
+    @Override
+    public void onUpdatedBroadcast( String entityName ) {
+        _logger.debug( "Coordination.onUpdatedBroadcast( " + entityName + ")" );
+        queueEvent( entityName, HttpCoordinationHandler.VALUE_UPDATED );
+    }
+
+    @Override
+    public void onPlacedBroadcast( String entityName ) {
+        _logger.debug( "Coordination.onPlacedBroadcast( " + entityName + ")" );
+        queueEvent( entityName, HttpCoordinationHandler.VALUE_PLACED );
+    }
+
+    @Override
+    public void onNodesChangedBroadcast( String nodeName ) {
+        _logger.debug( "Coordination.onNodesChangedBroadcast( " + nodeName + ")" );
+        queueEvent( nodeName, HttpCoordinationHandler.VALUE_NODES );
+    }
+
+    protected void queueEvent( String entityName, String event ) {
+        _events.add( new HttpCoordinationHandler.Event( entityName, event, _n.getName() ) );
+    }
+
+    /**
+     * The loop of the sender thread.
+     */
+    protected void sendEvents() {
+        while( _running || !_events.isEmpty() ) {
+            ArrayList< HttpCoordinationHandler.Event > batch = new ArrayList< HttpCoordinationHandler.Event >();
+
+            try {
+                HttpCoordinationHandler.Event e = _events.poll( POLL_INTERVAL, TimeUnit.MILLISECONDS );
+                if( e == null ) {
+                    continue;
+                }
+
+                batch.add( e );
+            }
+            catch( InterruptedException ie ) {
+                break;
+            }
+
+            _events.drainTo( batch );
+
+            try {
+                sendBatch( batch );
+            }
+            catch( Exception e ) {
+                _logger.error( "Unable to send coordination events." );
+                _logger.error( e.toString(), e );
+            }
+        }
+    }
+
+    /**
+     * Send the events to all other Nodes, and wait until they have all been sent.
+     *
+     * @param batch
+     * @throws InterruptedException
+     */
+    protected void sendBatch( Collection< HttpCoordinationHandler.Event > batch ) throws InterruptedException {
+        final byte[] body = getBody( batch );
+
+        Collection< ModelNode > nodes = _nodeDirectory.getNodes();
+        ArrayList< Future< ? > > futures = new ArrayList< Future< ? > >();
+
+        for( final ModelNode jn : nodes ) {
+            if( jn._name.equals( _n.getName() ) ) {
+                continue; // Nodes ignore their own events
+            }
+
+            futures.add( _peerExecutor.submit( new Runnable() {
+                @Override
+                public void run() {
+                    post( body, jn );
+                }
+            } ) );
+        }
+
+        for( Future< ? > f : futures ) {
+            try {
+                f.get();
+            }
+            catch( ExecutionException e ) {
+                _logger.error( e.toString(), e );
+            }
+        }
+    }
+
+    /**
+     * Serializes the events, one per line, omitting repeated set-data events.
+     *
+     * @param batch
+     * @return
+     */
+    protected byte[] getBody( Collection< HttpCoordinationHandler.Event > batch ) {
+        StringBuilder sb = new StringBuilder();
+        HashSet< String > setData = new HashSet< String >();
+
+        for( HttpCoordinationHandler.Event e : batch ) {
+            if( e.event.equals( HttpCoordinationHandler.VALUE_SET_DATA ) ) {
+                if( !setData.add( e.entity ) ) {
+                    continue; // the Data is already marked as changed
+                }
+            }
+
+            sb.append( _gson.toJson( e ) );
+            sb.append( "\n" );
+        }
+
+        return sb.toString().getBytes( StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * POST the events to the Node. The response is read completely, so that the connection can be reused.
+     *
+     * @param body
+     * @param jn
+     */
+    protected void post( byte[] body, ModelNode jn ) {
+        String url = "http://" + jn._host + ":" + jn._port + HttpCoordinationHandler.CONTEXT;
+
+        try {
+            HttpURLConnection con = ( HttpURLConnection ) new URL( url ).openConnection();
+            con.setRequestMethod( "POST" );
+            con.setDoOutput( true );
+            con.setRequestProperty( "Content-Type", HttpCoordinationHandler.CONTENT_TYPE_EVENTS );
+
+            OutputStream os = con.getOutputStream();
+            try {
+                os.write( body );
+            }
+            finally {
+                os.close();
+            }
+
+            int status = con.getResponseCode();
+
+            InputStream is = ( status < 400 ) ? con.getInputStream() : con.getErrorStream();
+            if( is != null ) {
+                byte[] buffer = new byte[ 1024 ];
+                try {
+                    while( is.read( buffer ) >= 0 ) {
+                        // discard
+                    }
+                }
+                finally {
+                    is.close();
+                }
+            }
+
+            if( status != HttpURLConnection.HTTP_OK ) {
+                _logger.warn( "Node " + jn._name + " rejected coordination events, status: " + status );
+            }
+        }
+        catch( Exception e ) {
+            _logger.warn( "Unable to send coordination events to Node " + jn._name + ": " + e.toString() );
+        }
+    }
+
+}
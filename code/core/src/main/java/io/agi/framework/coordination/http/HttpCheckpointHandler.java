@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.coordination.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import io.agi.framework.Node;
+
+import java.io.IOException;
+
+/**
+ * Asks the Node to make its persisted state durable.
+ */
+public class HttpCheckpointHandler implements HttpHandler {
+
+    public static final String CONTEXT = "/checkpoint";
+
+    public Node _n;
+
+    public HttpCheckpointHandler( Node n ) {
+        _n = n;
+    }
+
+    @Override
+    public void handle( HttpExchange t ) throws IOException {
+        String response = "Persistence doesn't support checkpoints.";
+        int status = 400;
+
+        if( _n.checkpoint() ) {
+            status = 200;
+            response = "Checkpoint complete.";
+        }
+
+        HttpUtil.SendResponse( t, status, response );
+    }
+}
@@ -23,8 +23,17 @@ import com.sun.net.httpserver.HttpServer;
 import io.agi.core.orm.AbstractPair;
 import io.agi.framework.Node;
 import io.agi.framework.coordination.Coordination;
+import io.agi.framework.coordination.NodeDirectory;
+import io.agi.framework.coordination.transfer.DataTransfer;
+import io.agi.framework.coordination.transfer.DataTransferClient;
+import io.agi.framework.coordination.transfer.DataTransferServer;
+import io.agi.framework.persistence.DataBinarySerializer;
 import io.agi.framework.persistence.models.ModelData;
+import io.agi.framework.persistence.models.ModelEntity;
 import io.agi.framework.persistence.models.ModelNode;
+import io.agi.framework.references.DataRef;
+import io.agi.framework.references.DataRefMap;
+import io.agi.framework.references.DataVersions;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -35,7 +44,10 @@ import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -52,16 +64,56 @@ public class HttpCoordination implements Coordination {
     public HttpServer _s;
     public ExecutorService _executor;
 
+    protected int _dataTransferPortOffset = DataTransfer.DEFAULT_PORT_OFFSET;
+    protected boolean _dataTransferDeltas = DataTransfer.DEFAULT_DELTAS;
+    protected DataTransferServer _dataTransferServer;
+    protected DataTransferClient _dataTransferClient = new DataTransferClient();
+    protected NodeDirectory _nodeDirectory = new NodeDirectory();
+
     public HttpCoordination() {
 
     }
 
+    /**
+     * Data is fetched from other Nodes over a dedicated channel, on a port at this offset from the HTTP port of each
+     * Node. If the channel isn't available, Data is fetched via HTTP.
+     *
+     * @param offset 0 to always use HTTP.
+     */
+    public void setDataTransferPortOffset( int offset ) {
+        _dataTransferPortOffset = offset;
+    }
+
+    /**
+     * If enabled, only the changes to Data that this Node already has a copy of are fetched over the Data transfer
+     * channel, rather than the whole Data.
+     *
+     * @param deltas
+     */
+    public void setDataTransferDeltas( boolean deltas ) {
+        _dataTransferDeltas = deltas;
+    }
+
+    /**
+     * The Nodes are cached for this long between queries to Persistence.
+     *
+     * @param ttl millis
+     */
+    public void setNodeDirectoryTtl( long ttl ) {
+        _nodeDirectory.setTtl( ttl );
+    }
+
+    public NodeDirectory getNodeDirectory() {
+        return _nodeDirectory;
+    }
+
     public Node getNode() {
         return _n;
     }
 
     public void setNode( Node n ) {
         _n = n;
+        _nodeDirectory.setPersistence( n.getPersistence() );
     }
 
     /**
@@ -79,6 +131,20 @@ public class HttpCoordination implements Coordination {
         addHandlers();
 
         _s.start();
+
+        if( _dataTransferPortOffset > 0 ) {
+            _dataTransferServer = new DataTransferServer( _n.getDataRefMap() );
+            try {
+                _dataTransferServer.start( _n.getHost(), nodePort + _dataTransferPortOffset );
+            }
+            catch( IOException e ) {
+                _logger.error( "Unable to start Data transfer channel, other Nodes will use HTTP." );
+                _logger.error( e.toString(), e );
+                _dataTransferServer = null;
+            }
+        }
+
+        onNodesChangedBroadcast( _n.getName() ); // this Node has joined
     }
 
     public void addHandlers() {
@@ -92,6 +158,9 @@ public class HttpCoordination implements Coordination {
         HttpVersionHandler vh = new HttpVersionHandler();
         HttpStopHandler sh = new HttpStopHandler( _n );
         HttpImportFileHandler fh = new HttpImportFileHandler();
+        HttpSchedulerHandler uh = new HttpSchedulerHandler( _n );
+        HttpCheckpointHandler kh = new HttpCheckpointHandler( _n );
+        HttpPlacementHandler lh = new HttpPlacementHandler( _n );
 
         HttpUtil.AddHandler( _s, HttpConfigHandler.CONTEXT, ph );
         HttpUtil.AddHandler( _s, HttpDataHandler.CONTEXT, dh );
@@ -103,6 +172,9 @@ public class HttpCoordination implements Coordination {
         HttpUtil.AddHandler( _s, HttpVersionHandler.CONTEXT, vh );
         HttpUtil.AddHandler( _s, HttpStopHandler.CONTEXT, sh );
         HttpUtil.AddHandler( _s, HttpImportFileHandler.CONTEXT, fh );
+        HttpUtil.AddHandler( _s, HttpSchedulerHandler.CONTEXT, uh );
+        HttpUtil.AddHandler( _s, HttpCheckpointHandler.CONTEXT, kh );
+        HttpUtil.AddHandler( _s, HttpPlacementHandler.CONTEXT, lh );
     }
 
     /**
@@ -110,7 +182,15 @@ public class HttpCoordination implements Coordination {
      */
     public void stop() {
         // Shutdown the threads during shutdown of your app.
-        _executor.shutdown();
+        if( _executor != null ) {
+            _executor.shutdown();
+        }
+
+        if( _dataTransferServer != null ) {
+            _dataTransferServer.stop();
+        }
+
+        _dataTransferClient.close();
     }
 
     /**
@@ -186,6 +266,67 @@ public class HttpCoordination implements Coordination {
 //        }
     }
 
+    /**
+     * Broadcast the event that an Entity has moved from this Node.
+     *
+     * @param entityName
+     */
+    public void onPlaced( String entityName ) {
+        _logger.debug( "Coordination.onPlaced( " + entityName + ")" );
+        onPlacedBroadcast( entityName );
+    }
+
+    public void onPlacedBroadcast( String entityName ) {
+        _logger.debug( "Coordination.onPlacedBroadcast( " + entityName + ")" );
+        String query = getQuery( entityName, HttpCoordinationHandler.VALUE_PLACED, _n.getName() );
+        broadcast( query );
+    }
+
+    public void onPlacedExternal( String entityName, String origin ) {
+        _logger.debug( "Coordination.onPlacedExternal( " + entityName + ", " + origin + " )" );
+
+        if( origin == null ) {
+            return; // the Node it moved from must be known
+        }
+
+        if( origin.equals( _n.getName() ) ) {
+            return; // ignore self events
+        }
+
+        _n.onPlaced( entityName, origin );
+    }
+
+    /**
+     * Asks the Node hosting an Entity to migrate it to another Node.
+     *
+     * @param entityName
+     * @param nodeName
+     */
+    public void doMigrate( String entityName, String nodeName ) {
+        _logger.debug( "Coordination.doMigrate( " + entityName + ", " + nodeName + " )" );
+
+        ModelEntity modelEntity = _n.getPersistence().getEntity( entityName );
+        if( modelEntity == null ) {
+            return;
+        }
+
+        if( _n.getName().equals( modelEntity.node ) ) {
+            _n.getEntityPlacement().migrate( entityName, nodeName );
+            return;
+        }
+
+        ModelNode modelNode = getModelNode( modelEntity.node );
+        if( modelNode == null ) {
+            _logger.warn( "Coordination.doMigrate( " + entityName + ", " + nodeName + " ), couldn't find Node " + modelEntity.node );
+            return;
+        }
+
+        String query = HttpPlacementHandler.CONTEXT
+                + "?" + HttpPlacementHandler.PARAMETER_ENTITY + "=" + entityName
+                + "&" + HttpPlacementHandler.PARAMETER_NODE + "=" + nodeName;
+        send( query, modelNode );
+    }
+
     /**
      * Synchronously fetch a Data fom a Node.
      *
@@ -193,43 +334,170 @@ public class HttpCoordination implements Coordination {
      * @param nodeName
      * @return
      */
-    public ModelData getData( String dataName, String nodeName ) {
+    public DataRef getData( String dataName, String nodeName ) {
         _logger.debug( "Coordination.getData( " + dataName + ", " + nodeName + " )" );
-        Collection< ModelNode > nodes = _n.getPersistence().getNodes();
-
-        ModelNode destModelNode = null;
 
-        for( ModelNode modelNode : nodes ) {
-            if( modelNode._name.equals( nodeName ) ) {
-                destModelNode = modelNode;
+        Collection< DataRef > dataRefs = getData( Collections.singletonList( dataName ), nodeName );
+        for( DataRef dataRef : dataRefs ) {
+            if( dataRef._key.equals( dataName ) ) {
+                return dataRef;
             }
         }
 
+        return null; // couldn't be found or fetched for some reason.
+    }
+
+    /**
+     * Synchronously fetch several Data from a Node, in one request.
+     *
+     * @param dataNames
+     * @param nodeName
+     * @return
+     */
+    public Collection< DataRef > getData( Collection< String > dataNames, String nodeName ) {
+        ModelNode destModelNode = getModelNode( nodeName );
+
         // Node not found?
         if( destModelNode == null ) {
-            _logger.warn( "Coordination.getData( " + dataName + ", " + nodeName + " ), couldn't find Node." );
-            return null;
+            _logger.warn( "Coordination.getData( " + dataNames + ", " + nodeName + " ), couldn't find Node." );
+            return new ArrayList< DataRef >();
+        }
+
+        if( _dataTransferPortOffset > 0 ) {
+            HashMap< String, DataRef > copies = null;
+            if( _dataTransferDeltas ) {
+                copies = getDataCopies( dataNames );
+            }
+
+            try {
+                return _dataTransferClient.getData( destModelNode._host, destModelNode._port + _dataTransferPortOffset, dataNames, copies );
+            }
+            catch( IOException e ) {
+                _logger.debug( "Coordination.getData( " + dataNames + ", " + nodeName + " ), Data transfer channel unavailable, using HTTP: " + e.toString() );
+            }
+        }
+
+        String query = HttpDataHandler.CONTEXT;
+        String separator = "?";
+        for( String dataName : dataNames ) {
+            query = query + separator + HttpDataHandler.PARAMETER_NAME + "=" + dataName;
+            separator = "&";
         }
 
-        String query = HttpDataHandler.CONTEXT + "?" + HttpDataHandler.PARAMETER_NAME + "=" + dataName;
         String url = "http://" + destModelNode._host + ":" + destModelNode._port + query;
 
-        AbstractPair< String, Integer > response = Get( url );
+        try {
+            return GetData( url );
+        }
+        catch( Exception e ) {
+            _logger.warn( "Coordination.getData( " + dataNames + ", " + nodeName + " ), couldn't deserialize model datas from response." );
+        }
 
-        if( response._second == HttpURLConnection.HTTP_OK ) {
-            try {
-                Collection< ModelData > modelDatas = ModelData.StringToModelDatas( response._first );
-                for( ModelData modelData : modelDatas ) {
-                    if( modelData.name.equals( dataName ) ) {
-                        return modelData;
-                    }
+        return new ArrayList< DataRef >(); // couldn't be fetched for some reason.
+    }
+
+    /**
+     * Returns the cached copies of the Data that have a version, which changes can be applied to.
+     *
+     * @param dataNames
+     * @return
+     */
+    protected HashMap< String, DataRef > getDataCopies( Collection< String > dataNames ) {
+        DataRefMap dataRefMap = _n.getDataRefMap();
+        HashMap< String, DataRef > copies = new HashMap< String, DataRef >();
+
+        for( String dataName : dataNames ) {
+            DataRef copy = dataRefMap.getCachedData( dataName );
+            if( ( copy != null ) && ( copy._version != DataVersions.NO_VERSION ) ) {
+                copies.put( dataName, copy );
+            }
+        }
+
+        return copies;
+    }
+
+    /**
+     * Returns the address of the named Node, or null if it isn't known.
+     *
+     * @param nodeName
+     * @return
+     */
+    protected ModelNode getModelNode( String nodeName ) {
+        return _nodeDirectory.getNode( nodeName );
+    }
+
+    /**
+     * Fetches Data from a Node, preferring the binary form. Nodes that don't offer it respond with JSON instead.
+     *
+     * @param url
+     * @return
+     * @throws Exception
+     */
+    protected static Collection< DataRef > GetData( String url ) throws Exception {
+        ArrayList< DataRef > dataRefs = new ArrayList<>();
+
+        URL obj = new URL( url );
+        HttpURLConnection con = (HttpURLConnection) obj.openConnection();
+        con.setRequestMethod( "GET" );
+        con.setRequestProperty( "Accept", DataBinarySerializer.CONTENT_TYPE + ", " + HttpUtil.CONTENT_TYPE_JSON );
+
+        if( con.getResponseCode() != HttpURLConnection.HTTP_OK ) {
+            Drain( con.getErrorStream() ); // so the connection can be kept alive and reused
+            return dataRefs;
+        }
+
+        InputStream is = con.getInputStream();
+
+        try {
+            String contentType = con.getContentType();
+            if( ( contentType != null ) && contentType.startsWith( DataBinarySerializer.CONTENT_TYPE ) ) {
+                dataRefs.addAll( DataBinarySerializer.StreamToDataRefs( is, con.getContentLengthLong() ) );
+                return dataRefs;
+            }
+
+            // JSON fallback
+            BufferedReader in = new BufferedReader( new InputStreamReader( is ) );
+            StringBuilder sb = new StringBuilder();
+            String inputLine;
+            while( ( inputLine = in.readLine() ) != null ) {
+                sb.append( inputLine );
+            }
+
+            Collection< ModelData > modelDatas = ModelData.StringToModelDatas( sb.toString() );
+            for( ModelData modelData : modelDatas ) {
+                DataRef dataRef = modelData.deserialize();
+                if( dataRef != null ) {
+                    dataRefs.add( dataRef );
                 }
             }
-            catch( Exception e ) {
-                _logger.warn( "Coordination.getData( " + dataName + ", " + nodeName + " ), couldn't deserialize model datas from response." );
+        }
+        finally {
+            is.close();
+        }
+
+        return dataRefs;
+    }
+
+    /**
+     * Reads the rest of a response body and closes it.
+     *
+     * @param is may be null, if there is no body.
+     * @throws IOException
+     */
+    protected static void Drain( InputStream is ) throws IOException {
+        if( is == null ) {
+            return;
+        }
+
+        try {
+            byte[] buffer = new byte[ 4096 ];
+            while( is.read( buffer ) >= 0 ) {
+                // discard
             }
         }
-        return null; // couldn't be found or fetched for some reason.
+        finally {
+            is.close();
+        }
     }
 
     /**
@@ -274,6 +542,33 @@ public class HttpCoordination implements Coordination {
         _n.onUpdated( entityName );
     }
 
+    /**
+     * Tells all Nodes that the specified Node has joined or left, so that they refresh their cached Nodes.
+     *
+     * @param nodeName
+     */
+    public void onNodesChangedBroadcast( String nodeName ) {
+        _logger.debug( "Coordination.onNodesChangedBroadcast( " + nodeName + ")" );
+        String query = getQuery( nodeName, HttpCoordinationHandler.VALUE_NODES, _n.getName() );
+        broadcast( query );
+    }
+
+    /**
+     * Notification that a Node has joined or left, e.g. from the script that registered it.
+     *
+     * @param nodeName
+     * @param origin
+     */
+    public void onNodesChangedExternal( String nodeName, String origin ) {
+        _logger.debug( "Coordination.onNodesChangedExternal( " + nodeName + ", " + origin + " )" );
+        _nodeDirectory.invalidate();
+
+        if( origin == null ) { // generated outside the network
+            // append origin=this/here and broadcast to rest of network
+            onNodesChangedBroadcast( nodeName );
+        }
+    }
+
     /**
      * Generates the HTTP messages the HTTP layer understands.
      *
@@ -296,7 +591,7 @@ public class HttpCoordination implements Coordination {
      * @param query
      */
     public void broadcast( String query ) {
-        Collection< ModelNode > nodes = _n.getPersistence().getNodes();
+        Collection< ModelNode > nodes = _nodeDirectory.getNodes();
 
         for( ModelNode jn : nodes ) {
             if( jn._name.equals( _n.getName() ) ) {
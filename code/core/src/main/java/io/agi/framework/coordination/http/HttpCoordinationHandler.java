@@ -19,15 +19,22 @@
 
 package io.agi.framework.coordination.http;
 
+import com.google.gson.Gson;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 /**
  * http://stackoverflow.com/questions/3732109/simple-http-server-in-java-using-only-java-se-api
  *
+ * Events are either a GET with one event in the query string, or a POST of many events, one JSON Event per line
+ * (see BatchedHttpCoordination).
+ *
  * Created by dave on 19/02/16.
  */
 public class HttpCoordinationHandler implements HttpHandler {
@@ -41,6 +48,25 @@ public class HttpCoordinationHandler implements HttpHandler {
     public static final String VALUE_UPDATE = "update";
     public static final String VALUE_UPDATED = "updated";
     public static final String VALUE_SET_DATA = "set-data";
+    public static final String VALUE_NODES = "nodes"; // a Node has joined or left; the entity is the Node name
+    public static final String VALUE_PLACED = "placed"; // an Entity has moved from the origin Node
+
+    public static final String CONTENT_TYPE_EVENTS = "application/x-ndjson";
+
+    /**
+     * One event, in a batch of events.
+     */
+    public static class Event {
+        public String entity;
+        public String event;
+        public String origin;
+
+        public Event( String entity, String event, String origin ) {
+            this.entity = entity;
+            this.event = event;
+            this.origin = origin;
+        }
+    }
 
     public HttpCoordination _c;
 
@@ -54,6 +80,14 @@ public class HttpCoordinationHandler implements HttpHandler {
         int status = 400;
 
         try {
+            if( t.getRequestMethod().equalsIgnoreCase( "POST" ) ) {
+                int events = handleEvents( t );
+                status = 200;
+                response = "{ \"events\" : " + events + " }";
+                HttpUtil.SendResponse( t, status, response );
+                return;
+            }
+
             String query = t.getRequestURI().getQuery();
             //System.err.println("Request: " + HttpCoordinationHandler.CONTEXT + " " + query);
 
@@ -67,24 +101,9 @@ public class HttpCoordinationHandler implements HttpHandler {
                 originValue.trim();
             }
 
-            if( entityName != null ) {
-                if( eventValue != null ) {
-                    if( eventValue.equalsIgnoreCase( VALUE_UPDATE ) ) {
-                        _c.doUpdateExternal( entityName, originValue );
-                        status = 200;
-                        response = GetResponse( entityName, VALUE_UPDATE, originValue );
-                    }
-                    else if( eventValue.equalsIgnoreCase( VALUE_UPDATED ) ) {
-                        _c.onUpdatedExternal( entityName, originValue );
-                        status = 200;
-                        response = GetResponse( entityName, VALUE_UPDATED, originValue );
-                    }
-                    else if( eventValue.equalsIgnoreCase( VALUE_SET_DATA ) ) {
-                        _c.onSetDataExternal( entityName, originValue );
-                        status = 200;
-                        response = GetResponse( entityName, VALUE_SET_DATA, originValue );
-                    }
-                }
+            if( handleEvent( entityName, eventValue, originValue ) ) {
+                status = 200;
+                response = GetResponse( entityName, eventValue.toLowerCase(), originValue );
             }
         }
         catch( Exception e ) {
@@ -94,6 +113,67 @@ public class HttpCoordinationHandler implements HttpHandler {
         HttpUtil.SendResponse( t, status, response );
     }
 
+    /**
+     * Handle a batch of events, in order.
+     *
+     * @param t
+     * @return the number of events handled.
+     * @throws IOException
+     */
+    protected int handleEvents( HttpExchange t ) throws IOException {
+        Gson gson = new Gson();
+        BufferedReader br = new BufferedReader( new InputStreamReader( t.getRequestBody(), StandardCharsets.UTF_8 ) );
+        int events = 0;
+
+        try {
+            String line;
+            while( ( line = br.readLine() ) != null ) {
+                if( line.trim().isEmpty() ) {
+                    continue;
+                }
+
+                Event e = gson.fromJson( line, Event.class );
+                if( handleEvent( e.entity, e.event, e.origin ) ) {
+                    ++events;
+                }
+            }
+        }
+        finally {
+            br.close();
+        }
+
+        return events;
+    }
+
+    protected boolean handleEvent( String entityName, String eventValue, String originValue ) {
+        if( entityName != null ) {
+            if( eventValue != null ) {
+                if( eventValue.equalsIgnoreCase( VALUE_UPDATE ) ) {
+                    _c.doUpdateExternal( entityName, originValue );
+                    return true;
+                }
+                else if( eventValue.equalsIgnoreCase( VALUE_UPDATED ) ) {
+                    _c.onUpdatedExternal( entityName, originValue );
+                    return true;
+                }
+                else if( eventValue.equalsIgnoreCase( VALUE_SET_DATA ) ) {
+                    _c.onSetDataExternal( entityName, originValue );
+                    return true;
+                }
+                else if( eventValue.equalsIgnoreCase( VALUE_NODES ) ) {
+                    _c.onNodesChangedExternal( entityName, originValue );
+                    return true;
+                }
+                else if( eventValue.equalsIgnoreCase( VALUE_PLACED ) ) {
+                    _c.onPlacedExternal( entityName, originValue );
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
     protected static String GetResponse( String entity, String event, String origin ) {
         String response = "{ \"entity\" : \"" + entity + "\", \"event\" : \"" + event + "\", \"origin\" : \"" + origin + "\" }";
         return response;
@@ -22,6 +22,7 @@ package io.agi.framework.coordination.http;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import io.agi.core.orm.AbstractPair;
+import io.agi.framework.persistence.DataBinarySerializer;
 import io.agi.framework.persistence.PersistenceUtil;
 import io.agi.framework.references.DataRefMap;
 import io.agi.framework.references.DataRef;
@@ -33,6 +34,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 
@@ -67,7 +69,30 @@ public class HttpDataHandler implements HttpHandler {
 
             ArrayList< AbstractPair< String, String > > parameters = HttpUtil.GetDuplicateQueryParams( query );
 
-            if( method.equalsIgnoreCase( "GET" ) ) {
+            if( method.equalsIgnoreCase( "GET" ) && IsBinaryRequest( t, parameters ) ) {
+
+                // complete data requested by name, in binary form
+                Collection< DataRef > dataRefs = new ArrayList<>();
+
+                for( AbstractPair< String, String > ap : parameters ) {
+                    DataRef dr = dataRefMap.getData( ap._second );
+                    if( dr != null ) {
+                        dataRefs.add( dr );
+                    }
+                }
+
+                // streamed a record at a time, so a large response isn't copied whole
+                long bytes = DataBinarySerializer.GetSize( dataRefs );
+                OutputStream os = HttpUtil.SendResponseHeaders( t, 200, DataBinarySerializer.CONTENT_TYPE, bytes );
+                try {
+                    DataBinarySerializer.DataRefsToStream( dataRefs, os );
+                }
+                finally {
+                    os.close();
+                }
+                return;
+            }
+            else if( method.equalsIgnoreCase( "GET" ) ) {
 
                 // fetch any existing data mentioned..
                 Collection< ModelData > results = new ArrayList<>();
@@ -158,4 +183,30 @@ public class HttpDataHandler implements HttpHandler {
 
         HttpUtil.SendResponse( t, status, response );
     }
+
+    /**
+     * The binary form is only used when the client accepts it, and only asked for complete Data by name.
+     * Anything else (e.g. meta-data queries) gets the JSON response.
+     *
+     * @param t
+     * @param parameters
+     * @return
+     */
+    protected static boolean IsBinaryRequest( HttpExchange t, ArrayList< AbstractPair< String, String > > parameters ) {
+        if( !HttpUtil.Accepts( t, DataBinarySerializer.CONTENT_TYPE ) ) {
+            return false;
+        }
+
+        if( parameters.isEmpty() ) {
+            return false;
+        }
+
+        for( AbstractPair< String, String > ap : parameters ) {
+            if( !ap._first.equalsIgnoreCase( PARAMETER_NAME ) ) {
+                return false;
+            }
+        }
+
+        return true;
+    }
 }
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.coordination.http;
+
+import com.google.gson.GsonBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import io.agi.framework.Node;
+import io.agi.framework.persistence.models.ModelEntity;
+import io.agi.framework.persistence.models.ModelNode;
+import io.agi.framework.placement.EntityPlacement;
+import io.agi.framework.placement.PlacementPlan;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reports where Entities are and where they should be, and moves them between Nodes:
+ *
+ *   /placement                              the Node weights, and the Node and placed Node of each Entity
+ *   /placement?entity=e&node=n              migrate Entity e, hosted by this Node, to Node n
+ *   /placement?rebalance=true               migrate the Entities hosted by this Node that are placed elsewhere
+ *   /placement?node=n&weight=w              set the weight of Node n, persisted so that all Nodes use it
+ *   /placement?optimize=true                a plan that reduces the Data crossing between Nodes, and its traffic
+ *   /placement?optimize=true&apply=true     the plan, after asking the Nodes hosting the Entities to move them
+ */
+public class HttpPlacementHandler implements HttpHandler {
+
+    protected static final Logger _logger = LogManager.getLogger();
+
+    public static final String CONTEXT = "/placement";
+
+    public static final String PARAMETER_ENTITY = "entity";
+    public static final String PARAMETER_NODE = "node";
+    public static final String PARAMETER_WEIGHT = "weight";
+    public static final String PARAMETER_REBALANCE = "rebalance";
+    public static final String PARAMETER_OPTIMIZE = "optimize";
+    public static final String PARAMETER_APPLY = "apply";
+
+    public Node _n;
+
+    public HttpPlacementHandler( Node n ) {
+        _n = n;
+    }
+
+    @Override
+    public void handle( HttpExchange t ) throws IOException {
+        int status = 400;
+        String response = "";
+
+        try {
+            String query = t.getRequestURI().getQuery();
+            Map< String, String > m = new HashMap< String, String >();
+            if( query != null ) {
+                m = HttpUtil.GetQueryParams( query );
+            }
+
+            EntityPlacement ep = _n.getEntityPlacement();
+            String entityName = m.get( PARAMETER_ENTITY );
+            String nodeName = m.get( PARAMETER_NODE );
+            String weight = m.get( PARAMETER_WEIGHT );
+
+            if( Boolean.valueOf( m.get( PARAMETER_OPTIMIZE ) ) ) {
+                PlacementPlan plan = ep.getPlan();
+                if( Boolean.valueOf( m.get( PARAMETER_APPLY ) ) ) {
+                    ep.apply( plan );
+                }
+
+                response = new GsonBuilder().disableHtmlEscaping().create().toJson( plan );
+                status = 200;
+            }
+            else if( Boolean.valueOf( m.get( PARAMETER_REBALANCE ) ) ) {
+                response = "{ \"migrated\": " + GetJson( ep.rebalance(), true ) + " }";
+                status = 200;
+            }
+            else if( ( entityName != null ) && ( nodeName != null ) ) {
+                boolean migrated = ep.migrate( entityName.trim(), nodeName.trim() );
+                response = "{ \"entity\": \"" + entityName + "\", \"node\": \"" + nodeName + "\", \"migrated\": " + migrated + " }";
+                status = migrated ? 200 : 400;
+            }
+            else if( ( nodeName != null ) && ( weight != null ) ) {
+                boolean set = ep.setWeight( nodeName.trim(), Float.valueOf( weight.trim() ) );
+                response = "{ \"node\": \"" + nodeName + "\", \"weight\": " + ep.getWeight( nodeName.trim() ) + " }";
+                status = set ? 200 : 400;
+            }
+            else if( m.isEmpty() ) {
+                response = getPlacement();
+                status = 200;
+            }
+        }
+        catch( Exception e ) {
+            _logger.error( "Unable to handle placement call." );
+            _logger.error( e.toString(), e );
+        }
+
+        HttpUtil.SendResponse( t, status, response );
+    }
+
+    protected String getPlacement() {
+        EntityPlacement ep = _n.getEntityPlacement();
+
+        HashMap< String, String > weights = new HashMap< String, String >();
+        for( ModelNode modelNode : _n.getPersistence().getNodes() ) {
+            weights.put( modelNode._name, String.valueOf( modelNode._weight ) );
+        }
+
+        StringBuilder sb = new StringBuilder( 100 );
+        sb.append( "{ \"weights\": " + GetJson( weights, false ) + ", \"entities\": { " );
+
+        boolean first = true;
+
+        for( ModelEntity modelEntity : _n.getPersistence().getEntities() ) {
+            if( first ) {
+                first = false;
+            } else {
+                sb.append( ", " );
+            }
+
+            sb.append( "\"" + modelEntity.name + "\": { \"node\": \"" + modelEntity.node + "\", \"placed\": \"" + ep.getNode( modelEntity.name ) + "\" }" );
+        }
+
+        sb.append( " } }" );
+        return sb.toString();
+    }
+
+    protected static String GetJson( Map< String, String > m, boolean quoteValues ) {
+        StringBuilder sb = new StringBuilder( 100 );
+        sb.append( "{ " );
+
+        boolean first = true;
+
+        for( Map.Entry< String, String > e : m.entrySet() ) {
+            if( first ) {
+                first = false;
+            } else {
+                sb.append( ", " );
+            }
+
+            String value = quoteValues ? "\"" + e.getValue() + "\"" : e.getValue();
+            sb.append( "\"" + e.getKey() + "\": " + value );
+        }
+
+        sb.append( " }" );
+        return sb.toString();
+    }
+}
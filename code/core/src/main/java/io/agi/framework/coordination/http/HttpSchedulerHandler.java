@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.coordination.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import io.agi.framework.Node;
+import io.agi.framework.scheduling.UpdateScheduler;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Reports the state of the Node's update scheduler: queue depth, active updates and mean wait time per Entity.
+ */
+public class HttpSchedulerHandler implements HttpHandler {
+
+    protected static final Logger _logger = LogManager.getLogger();
+
+    public static final String CONTEXT = "/scheduler";
+
+    public Node _n;
+
+    public HttpSchedulerHandler( Node n ) {
+        _n = n;
+    }
+
+    @Override
+    public void handle( HttpExchange t ) throws IOException {
+        int status = 400;
+        String response = "";
+
+        try {
+            String method = t.getRequestMethod();
+
+            if( method.equalsIgnoreCase( "GET" ) ) {
+                UpdateScheduler s = _n.getUpdateScheduler();
+
+                StringBuilder sb = new StringBuilder( 100 );
+                sb.append( "{ " );
+                sb.append( " \"queueDepth\": " + s.getQueueDepth() + "," );
+                sb.append( " \"activeUpdates\": " + s.getActiveUpdates() + "," );
+                sb.append( " \"waitTimes\": { " );
+
+                boolean first = true;
+
+                for( Map.Entry< String, Double > e : s.getWaitTimes().entrySet() ) {
+                    if( first ) {
+                        first = false;
+                    } else {
+                        sb.append( ", " );
+                    }
+
+                    sb.append( "\"" + e.getKey() + "\": " + e.getValue() );
+                }
+
+                sb.append( " } }" );
+
+                response = sb.toString();
+                status = 200;
+            }
+        }
+        catch( Exception e ) {
+            _logger.error( "Unable to handle scheduler call." );
+            _logger.error( e.toString(), e );
+        }
+
+        HttpUtil.SendResponse( t, status, response );
+    }
+}
@@ -27,8 +27,12 @@ import io.agi.core.orm.AbstractPair;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -36,6 +40,8 @@ import java.util.Map;
  */
 public class HttpUtil {
 
+    public static final String CONTENT_TYPE_JSON = "application/json";
+
     public static void AddHandler( HttpServer server, String handlerContext, HttpHandler h ) {
         server.createContext( handlerContext, h );
     }
@@ -43,6 +49,8 @@ public class HttpUtil {
     public static HttpServer Create( final HttpCoordination c, int port, String handlerContext, HttpCoordinationHandler h ) {
 
         try {
+            // Send small responses immediately. Otherwise every request can wait for a delayed ACK (~40ms).
+            System.setProperty( "sun.net.httpserver.nodelay", "true" ); // must be set before the first server is created
             HttpServer server = HttpServer.create( new InetSocketAddress( port ), 0 );
             AddHandler( server, handlerContext, h );
             server.setExecutor( null ); // creates a default executor
@@ -96,6 +104,65 @@ public class HttpUtil {
         return result;
     }
 
+    /**
+     * Returns true if the request says the client will accept the specified content type.
+     *
+     * @param t
+     * @param contentType
+     * @return
+     */
+    public static boolean Accepts( HttpExchange t, String contentType ) {
+        List< String > accepts = t.getRequestHeaders().get( "Accept" );
+        if( accepts == null ) {
+            return false;
+        }
+
+        for( String accept : accepts ) {
+            if( accept.contains( contentType ) ) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Sends a binary response of the specified content type.
+     *
+     * @param t
+     * @param status
+     * @param contentType
+     * @param response
+     * @throws IOException
+     */
+    public static void SendResponse( HttpExchange t, int status, String contentType, ByteBuffer response ) throws IOException {
+        OutputStream os = SendResponseHeaders( t, status, contentType, response.remaining() );
+        WritableByteChannel channel = Channels.newChannel( os );
+        while( response.hasRemaining() ) {
+            channel.write( response );
+        }
+        os.close();
+    }
+
+    /**
+     * Send the headers of a response whose body is then written to the stream returned, which must be closed.
+     *
+     * @param t
+     * @param status
+     * @param contentType
+     * @param bytes the content length
+     * @return the response body
+     * @throws IOException
+     */
+    public static OutputStream SendResponseHeaders( HttpExchange t, int status, String contentType, long bytes ) throws IOException {
+        ArrayList< String > list = new ArrayList< String >();
+        list.add( "*" );
+        t.getResponseHeaders().put( "Access-Control-Allow-Origin", list );
+        t.getResponseHeaders().set( "Content-Type", contentType );
+        t.sendResponseHeaders( status, bytes );
+        return t.getResponseBody();
+    }
+
     public static void SendResponse( HttpExchange t, int status, String response ) throws IOException {
         ArrayList< String > list = new ArrayList< String >();
         list.add( "*" );
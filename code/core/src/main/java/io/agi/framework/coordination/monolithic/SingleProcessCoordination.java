@@ -21,7 +21,10 @@ package io.agi.framework.coordination.monolithic;
 
 import io.agi.framework.Node;
 import io.agi.framework.coordination.Coordination;
-import io.agi.framework.persistence.models.ModelData;
+import io.agi.framework.references.DataRef;
+
+import java.util.ArrayList;
+import java.util.Collection;
 
 /**
  * Runs everything locally.
@@ -63,6 +66,14 @@ public class SingleProcessCoordination implements Coordination {
         // Nothing to broadcast to.
     }
 
+    public void onPlaced( String entityName ) {
+        // Nowhere else to go.
+    }
+
+    public void doMigrate( String entityName, String nodeName ) {
+        _n.getEntityPlacement().migrate( entityName, nodeName );
+    }
+
     /**
      * Fetches a Data from the Node that has the most recent copy.
      *
@@ -70,8 +81,12 @@ public class SingleProcessCoordination implements Coordination {
      * @param nodeName
      * @return
      */
-    public ModelData getData( String dataName, String nodeName ) {
+    public DataRef getData( String dataName, String nodeName ) {
         return null; // Only 1 Node in this case.
     }
 
+    public Collection< DataRef > getData( Collection< String > dataNames, String nodeName ) {
+        return new ArrayList< DataRef >(); // Only 1 Node in this case.
+    }
+
 }
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.coordination.transfer;
+
+import io.agi.framework.references.DataRef;
+import io.agi.framework.references.DataVersions;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * The protocol of the Data transfer channel between Nodes.
+ *
+ * A client sends requests, each for one or more Data keys, and the server answers each request in order, so requests
+ * can be pipelined on one connection. Each message is a little-endian int byte-count followed by the body:
+ *
+ *   request:  magic (int), count (int), key * count
+ *   response: the DataRefs in the form of DataBinarySerializer
+ *
+ * Keys are an int byte-count followed by UTF-8 bytes. Missing Data are omitted from the response.
+ *
+ * A client that has copies of the Data can ask for only the changes since the version of each copy (see DataVersions):
+ *
+ *   delta request:  magic (int), count (int), [ key, epoch (long), version (long) ] * count
+ *   delta response: magic (int), epoch (long), count (int), [ key, version (long), type (byte), payload ] * count
+ *
+ * The payload depends on the type:
+ *
+ *   full:      the DataRef in the form of DataBinarySerializer
+ *   changes:   length (int), count (int), [ block (int), value (float) * block length ] * count
+ *   unchanged: nothing
+ *
+ * The version of a record is NO_VERSION if the values sent might be newer than any version, e.g. because they were
+ * being modified; a copy without a version is fetched whole next time.
+ */
+public class DataTransfer {
+
+    public static final int MAGIC_REQUEST = 0x41474952; // "AGIR"
+    public static final int MAGIC_DELTA_REQUEST = 0x41474944; // "AGID"
+    public static final int MAGIC_DELTA_RESPONSE = 0x41474956; // "AGIV"
+
+    public static final byte TYPE_FULL = 0;
+    public static final byte TYPE_CHANGES = 1;
+    public static final byte TYPE_UNCHANGED = 2;
+
+    public static final String PROPERTY_DATA_TRANSFER_PORT_OFFSET = "data-transfer-port-offset";
+    public static final int DEFAULT_PORT_OFFSET = 1000; // from the HTTP port of the Node. 0 disables the channel
+
+    public static final String PROPERTY_DATA_TRANSFER_DELTAS = "data-transfer-deltas";
+    public static final boolean DEFAULT_DELTAS = true;
+
+    /**
+     * A request for the changes to a Data since a version.
+     */
+    public static class DeltaRequest {
+        public String _key;
+        public long _epoch;
+        public long _version;
+    }
+
+    public static final int MAX_MESSAGE_BYTES = Integer.MAX_VALUE - 8;
+    public static final int MAX_REQUEST_BYTES = 1024 * 1024; // requests only list keys, and the server trusts no more
+
+    public static ByteBuffer GetRequest( Collection< String > keys ) {
+        ArrayList< byte[] > encoded = new ArrayList< byte[] >( keys.size() );
+        int bytes = 4 + 4 + 4; // length, magic, count
+        for( String key : keys ) {
+            byte[] b = key.getBytes( StandardCharsets.UTF_8 );
+            encoded.add( b );
+            bytes += 4 + b.length;
+        }
+
+        ByteBuffer bb = ByteBuffer.allocate( bytes ).order( ByteOrder.LITTLE_ENDIAN );
+        bb.putInt( bytes - 4 );
+        bb.putInt( MAGIC_REQUEST );
+        bb.putInt( encoded.size() );
+        for( byte[] b : encoded ) {
+            bb.putInt( b.length );
+            bb.put( b );
+        }
+
+        bb.flip();
+        return bb;
+    }
+
+    /**
+     * Returns a request for the changes to the Data since the versions of the copies, if any.
+     *
+     * @param keys
+     * @param copies by key, with their versions.
+     * @return
+     */
+    public static ByteBuffer GetDeltaRequest( Collection< String > keys, Map< String, DataRef > copies ) {
+        ArrayList< byte[] > encoded = new ArrayList< byte[] >( keys.size() );
+        int bytes = 4 + 4 + 4; // length, magic, count
+        for( String key : keys ) {
+            byte[] b = key.getBytes( StandardCharsets.UTF_8 );
+            encoded.add( b );
+            bytes += 4 + b.length + 8 + 8;
+        }
+
+        ByteBuffer bb = ByteBuffer.allocate( bytes ).order( ByteOrder.LITTLE_ENDIAN );
+        bb.putInt( bytes - 4 );
+        bb.putInt( MAGIC_DELTA_REQUEST );
+        bb.putInt( encoded.size() );
+
+        int i = 0;
+        for( String key : keys ) {
+            byte[] b = encoded.get( i++ );
+            bb.putInt( b.length );
+            bb.put( b );
+
+            DataRef copy = copies.get( key );
+            if( copy == null ) {
+                bb.putLong( 0 );
+                bb.putLong( DataVersions.NO_VERSION );
+            }
+            else {
+                bb.putLong( copy._epoch );
+                bb.putLong( copy._version );
+            }
+        }
+
+        bb.flip();
+        return bb;
+    }
+
+    /**
+     * @param body a delta request, without the length.
+     * @return
+     * @throws IOException if it isn't a delta request.
+     */
+    public static Collection< DeltaRequest > ParseDeltaRequest( ByteBuffer body ) throws IOException {
+        body.order( ByteOrder.LITTLE_ENDIAN );
+
+        if( body.getInt() != MAGIC_DELTA_REQUEST ) {
+            throw new IOException( "Not a Data transfer delta request." );
+        }
+
+        int count = GetCount( body, 4 + 8 + 8 );
+        ArrayList< DeltaRequest > requests = new ArrayList< DeltaRequest >( count );
+
+        for( int i = 0; i < count; ++i ) {
+            int length = GetCount( body, 1 );
+            byte[] b = new byte[ length ];
+            body.get( b );
+
+            DeltaRequest r = new DeltaRequest();
+            r._key = new String( b, StandardCharsets.UTF_8 );
+            r._epoch = body.getLong();
+            r._version = body.getLong();
+            requests.add( r );
+        }
+
+        return requests;
+    }
+
+    /**
+     * @param body a request, without the length.
+     * @return the magic number, which identifies the type of request.
+     */
+    public static int GetRequestType( ByteBuffer body ) {
+        return body.order( ByteOrder.LITTLE_ENDIAN ).getInt( body.position() );
+    }
+
+    /**
+     * @param body a request, without the length.
+     * @return the keys requested.
+     * @throws IOException if it isn't a request.
+     */
+    public static Collection< String > ParseRequest( ByteBuffer body ) throws IOException {
+        body.order( ByteOrder.LITTLE_ENDIAN );
+
+        if( body.getInt() != MAGIC_REQUEST ) {
+            throw new IOException( "Not a Data transfer request." );
+        }
+
+        int count = GetCount( body, 4 );
+        ArrayList< String > keys = new ArrayList< String >( count );
+
+        for( int i = 0; i < count; ++i ) {
+            int length = GetCount( body, 1 );
+            byte[] b = new byte[ length ];
+            body.get( b );
+            keys.add( new String( b, StandardCharsets.UTF_8 ) );
+        }
+
+        return keys;
+    }
+
+    /**
+     * Reads a count of things, which must fit in the rest of the body.
+     *
+     * @param body
+     * @param bytesEach the least number of bytes each of the things takes.
+     * @return
+     * @throws IOException if the count is negative or too large.
+     */
+    protected static int GetCount( ByteBuffer body, int bytesEach ) throws IOException {
+        int count = body.getInt();
+        if( ( count < 0 ) || ( ( long ) count * bytesEach > body.remaining() ) ) {
+            throw new IOException( "Bad Data transfer count: " + count );
+        }
+        return count;
+    }
+
+    /**
+     * Returns the header of a message with a body of the specified size.
+     *
+     * @param bytes
+     * @return
+     */
+    public static ByteBuffer GetLength( int bytes ) {
+        ByteBuffer bb = ByteBuffer.allocate( 4 ).order( ByteOrder.LITTLE_ENDIAN );
+        bb.putInt( bytes );
+        bb.flip();
+        return bb;
+    }
+
+    public static int ParseLength( ByteBuffer header ) throws IOException {
+        return ParseLength( header, MAX_MESSAGE_BYTES );
+    }
+
+    /**
+     * @param header
+     * @param maxBytes the largest message body accepted.
+     * @return the size of the message body.
+     * @throws IOException if the size is negative or larger than maxBytes.
+     */
+    public static int ParseLength( ByteBuffer header, int maxBytes ) throws IOException {
+        header.order( ByteOrder.LITTLE_ENDIAN );
+        int bytes = header.getInt( 0 );
+        if( ( bytes < 0 ) || ( bytes > maxBytes ) ) {
+            throw new IOException( "Bad Data transfer message length: " + bytes );
+        }
+        return bytes;
+    }
+
+    /**
+     * Read until the buffer is full, from a blocking channel.
+     *
+     * @param channel
+     * @param bb
+     * @throws IOException
+     */
+    public static void ReadFully( ReadableByteChannel channel, ByteBuffer bb ) throws IOException {
+        while( bb.hasRemaining() ) {
+            if( channel.read( bb ) < 0 ) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    /**
+     * Write all the buffers, to a blocking channel.
+     *
+     * @param channel
+     * @param buffers
+     * @throws IOException
+     */
+    public static void WriteFully( WritableByteChannel channel, ByteBuffer... buffers ) throws IOException {
+        for( ByteBuffer bb : buffers ) {
+            while( bb.hasRemaining() ) {
+                channel.write( bb );
+            }
+        }
+    }
+
+}
@@ -0,0 +1,469 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.coordination.transfer;
+
+import io.agi.core.data.Data;
+import io.agi.framework.persistence.DataBinarySerializer;
+import io.agi.framework.references.DataRef;
+import io.agi.framework.references.DataVersions;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Fetches Data from other Nodes over the Data transfer channel (see DataTransfer).
+ *
+ * There is one persistent connection per Node, which is shared by all threads: requests are pipelined, so a thread
+ * doesn't wait for another thread's response before sending its own request. Whichever waiting thread holds the read
+ * lock reads the next response and hands it to the thread that requested it.
+ *
+ * The sockets are non-blocking, so that reads and writes can time out. Responses are read into a reusable direct buffer
+ * and copied in bulk into the Data. The direct buffer grows to at most MAX_BODY_BYTES; larger responses are read
+ * through it into a heap buffer that isn't kept, so one large response doesn't pin off-heap memory for the life of the
+ * connection.
+ *
+ * Given copies of the Data, only the changes since their versions are fetched. If the changes can't be applied, the
+ * Data is fetched again whole.
+ */
+public class DataTransferClient {
+
+    private static final Logger _logger = LogManager.getLogger();
+
+    public static final int CONNECT_TIMEOUT = 5000; // millis
+    public static final int READ_TIMEOUT = 60000; // millis. Large Data can take a while to serialize.
+
+    public static final int BODY_BYTES = 64 * 1024; // initial size of the reusable buffer of each connection
+    public static final int MAX_BODY_BYTES = 4 * 1024 * 1024;
+
+    protected ConcurrentHashMap< String, Connection > _connections = new ConcurrentHashMap< String, Connection >();
+
+    public DataTransferClient() {
+    }
+
+    /**
+     * Fetch the specified Data from the Node at the address.
+     *
+     * @param host
+     * @param port of the Data transfer channel
+     * @param keys
+     * @return the Data that were found.
+     * @throws IOException if the Node couldn't be reached.
+     */
+    public Collection< DataRef > getData( String host, int port, Collection< String > keys ) throws IOException {
+        return getData( host, port, keys, null );
+    }
+
+    /**
+     * Fetch the specified Data from the Node at the address. Where there is a copy of a Data from that Node, only the
+     * changes since the version of the copy are fetched, and applied to a duplicate of it.
+     *
+     * @param host
+     * @param port of the Data transfer channel
+     * @param keys
+     * @param copies by key, with their versions. If null, all the Data are fetched whole.
+     * @return the Data that were found.
+     * @throws IOException if the Node couldn't be reached.
+     */
+    public Collection< DataRef > getData( String host, int port, Collection< String > keys, Map< String, DataRef > copies ) throws IOException {
+        String address = host + ":" + port;
+
+        Connection c = _connections.get( address );
+        if( c == null ) {
+            Connection c2 = new Connection( host, port );
+            c = _connections.putIfAbsent( address, c2 );
+            if( c == null ) {
+                c = c2;
+            }
+            else {
+                c2.close(); // another thread connected first
+            }
+        }
+
+        try {
+            if( copies == null ) {
+                return c.request( keys, null );
+            }
+
+            Request r = new Request( copies );
+            Collection< DataRef > dataRefs = c.request( keys, r );
+
+            if( !r._refetch.isEmpty() ) {
+                dataRefs.addAll( c.request( r._refetch, null ) ); // couldn't apply the changes, so fetch them whole
+            }
+
+            return dataRefs;
+        }
+        catch( IOException e ) {
+            _connections.remove( address, c );
+            c.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Close all connections.
+     */
+    public void close() {
+        for( Connection c : _connections.values() ) {
+            c.close();
+        }
+        _connections.clear();
+    }
+
+    /**
+     * A request for changes, and the copies they apply to.
+     */
+    protected static class Request {
+
+        protected Map< String, DataRef > _copies;
+        protected ArrayList< String > _refetch = new ArrayList< String >();
+
+        public Request( Map< String, DataRef > copies ) {
+            _copies = copies;
+        }
+
+        public ByteBuffer get( Collection< String > keys ) {
+            return DataTransfer.GetDeltaRequest( keys, _copies );
+        }
+
+        /**
+         * Decode a delta response (see DataTransfer), applying the changes to duplicates of the copies.
+         *
+         * @param bb
+         * @return
+         * @throws IOException
+         */
+        public Collection< DataRef > parse( ByteBuffer bb ) throws IOException {
+            bb.order( ByteOrder.LITTLE_ENDIAN );
+
+            if( bb.getInt() != DataTransfer.MAGIC_DELTA_RESPONSE ) {
+                throw new IOException( "Not a Data transfer delta response." );
+            }
+
+            long epoch = bb.getLong();
+            int count = bb.getInt();
+
+            ArrayList< DataRef > dataRefs = new ArrayList< DataRef >( count );
+
+            for( int i = 0; i < count; ++i ) {
+                String key = DataBinarySerializer.GetString( bb );
+                long version = bb.getLong();
+                byte type = bb.get();
+
+                DataRef dataRef;
+
+                if( type == DataTransfer.TYPE_FULL ) {
+                    dataRef = DataBinarySerializer.GetDataRef( bb );
+                }
+                else {
+                    dataRef = getChanges( key, type, bb );
+                    if( dataRef == null ) {
+                        _refetch.add( key );
+                        continue;
+                    }
+                }
+
+                dataRef._epoch = epoch;
+                dataRef._version = version;
+                dataRefs.add( dataRef );
+            }
+
+            return dataRefs;
+        }
+
+        protected DataRef getChanges( String key, byte type, ByteBuffer bb ) throws IOException {
+            DataRef copy = _copies.get( key );
+
+            if( type == DataTransfer.TYPE_UNCHANGED ) {
+                if( copy == null ) {
+                    return null;
+                }
+                return new DataRef( key, copy._encoding, copy._refKeys, copy._data );
+            }
+
+            if( type != DataTransfer.TYPE_CHANGES ) {
+                throw new IOException( "Unknown Data transfer record type: " + type );
+            }
+
+            int length = bb.getInt();
+            int blocks = bb.getInt();
+
+            Data d = null;
+            if( ( copy != null ) && ( copy._data != null ) && ( copy._data.getSize() == length ) ) {
+                d = new Data( copy._data ); // the copy may be in use
+            }
+
+            for( int n = 0; n < blocks; ++n ) {
+                int b = bb.getInt();
+                int blockLength = DataVersions.GetBlockLength( length, b );
+
+                if( d != null ) {
+                    bb.asFloatBuffer().get( d._values, b * DataVersions.BLOCK_SIZE, blockLength );
+                }
+
+                bb.position( bb.position() + blockLength * 4 );
+            }
+
+            if( d == null ) {
+                return null; // no copy to apply the changes to
+            }
+
+            return new DataRef( key, copy._encoding, copy._refKeys, d );
+        }
+    }
+
+    /**
+     * The response to a request, which is parsed by whichever thread reads it.
+     */
+    protected static class Pending extends CompletableFuture< Collection< DataRef > > {
+
+        protected Request _request;
+
+        public Pending( Request r ) {
+            _request = r;
+        }
+
+        public Collection< DataRef > parse( ByteBuffer body ) throws IOException {
+            try {
+                if( _request == null ) {
+                    return DataBinarySerializer.ByteBufferToDataRefs( body );
+                }
+                return _request.parse( body );
+            }
+            catch( RuntimeException e ) {
+                throw new IOException( "Bad Data transfer response: " + e.toString() ); // e.g. truncated
+            }
+        }
+    }
+
+    /**
+     * A pipelined connection to one Node.
+     */
+    protected static class Connection {
+
+        protected SocketChannel _channel;
+        protected Selector _readSelector;
+        protected Selector _writeSelector;
+        protected final Object _writeLock = new Object();
+        protected final Object _readLock = new Object();
+        protected ArrayDeque< Pending > _pending = new ArrayDeque< Pending >(); // in order of request
+        protected ByteBuffer _header = ByteBuffer.allocateDirect( 4 );
+        protected ByteBuffer _body = ByteBuffer.allocateDirect( BODY_BYTES );
+        protected volatile boolean _failed = false;
+
+        public Connection( String host, int port ) throws IOException {
+            SocketChannel sc = SocketChannel.open();
+
+            try {
+                sc.socket().connect( new InetSocketAddress( host, port ), CONNECT_TIMEOUT );
+                sc.setOption( StandardSocketOptions.TCP_NODELAY, true );
+                sc.configureBlocking( false );
+
+                _readSelector = Selector.open();
+                _writeSelector = Selector.open();
+                sc.register( _readSelector, SelectionKey.OP_READ );
+                sc.register( _writeSelector, SelectionKey.OP_WRITE );
+            }
+            catch( IOException e ) {
+                sc.close();
+                throw e;
+            }
+
+            _channel = sc;
+        }
+
+        /**
+         * @param keys
+         * @param r if not null, a request for changes; otherwise the Data are fetched whole.
+         * @return
+         * @throws IOException
+         */
+        public Collection< DataRef > request( Collection< String > keys, Request r ) throws IOException {
+            Pending response = new Pending( r );
+
+            synchronized( _writeLock ) {
+                if( _failed ) {
+                    throw new IOException( "Data transfer connection failed." ); // the stream may be out of step
+                }
+
+                synchronized( _pending ) {
+                    _pending.add( response );
+                }
+
+                try {
+                    write( ( r == null ) ? DataTransfer.GetRequest( keys ) : r.get( keys ) );
+                }
+                catch( IOException e ) {
+                    fail( e );
+                    throw e;
+                }
+            }
+
+            synchronized( _readLock ) {
+                while( !response.isDone() ) {
+                    try {
+                        ByteBuffer body = read();
+                        Pending next;
+                        synchronized( _pending ) {
+                            next = _pending.poll();
+                        }
+                        try {
+                            next.complete( next.parse( body ) ); // before the buffer is reused
+                        }
+                        catch( IOException e ) {
+                            next.completeExceptionally( e );
+                            throw e;
+                        }
+                    }
+                    catch( IOException e ) {
+                        fail( e );
+                    }
+                }
+            }
+
+            try {
+                return response.get();
+            }
+            catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new IOException( e );
+            }
+            catch( ExecutionException e ) {
+                throw new IOException( e.getCause() );
+            }
+        }
+
+        public void close() {
+            try {
+                _channel.close();
+                _readSelector.close();
+                _writeSelector.close();
+            }
+            catch( IOException e ) {
+                _logger.error( e.toString(), e );
+            }
+        }
+
+        /**
+         * Fail all outstanding requests, because the connection can't be used any more.
+         *
+         * @param e
+         */
+        protected void fail( IOException e ) {
+            _failed = true;
+
+            synchronized( _pending ) {
+                while( !_pending.isEmpty() ) {
+                    _pending.poll().completeExceptionally( e );
+                }
+            }
+        }
+
+        protected void write( ByteBuffer bb ) throws IOException {
+            while( bb.hasRemaining() ) {
+                if( _channel.write( bb ) == 0 ) {
+                    if( _writeSelector.select( READ_TIMEOUT ) == 0 ) {
+                        throw new SocketTimeoutException( "Data transfer write timed out." );
+                    }
+                    _writeSelector.selectedKeys().clear();
+                }
+            }
+        }
+
+        protected ByteBuffer read() throws IOException {
+            _header.clear();
+            readFully( _header );
+
+            int bytes = DataTransfer.ParseLength( _header );
+            if( bytes > MAX_BODY_BYTES ) {
+                return readLarge( bytes );
+            }
+
+            if( _body.capacity() < bytes ) {
+                int capacity = Math.min( Math.max( bytes, _body.capacity() * 2 ), MAX_BODY_BYTES );
+                _body = ByteBuffer.allocateDirect( capacity ); // reused for later responses
+            }
+
+            _body.clear();
+            _body.limit( bytes );
+            readFully( _body );
+            _body.flip();
+
+            return _body;
+        }
+
+        /**
+         * Reads a response too large for the reusable buffer into a heap buffer, for this response only. It is read in
+         * pieces through the reusable buffer, because reading into a heap buffer directly would make the channel cache a
+         * temporary direct buffer of the whole size.
+         *
+         * @param bytes
+         * @return
+         * @throws IOException
+         */
+        protected ByteBuffer readLarge( int bytes ) throws IOException {
+            ByteBuffer large = ByteBuffer.allocate( bytes );
+
+            while( large.hasRemaining() ) {
+                _body.clear();
+                _body.limit( Math.min( _body.capacity(), large.remaining() ) );
+                readFully( _body );
+                _body.flip();
+                large.put( _body );
+            }
+
+            large.flip();
+            return large;
+        }
+
+        protected void readFully( ByteBuffer bb ) throws IOException {
+            while( bb.hasRemaining() ) {
+                int n = _channel.read( bb );
+                if( n < 0 ) {
+                    throw new EOFException( "Data transfer connection closed." );
+                }
+                if( n == 0 ) {
+                    if( _readSelector.select( READ_TIMEOUT ) == 0 ) {
+                        throw new SocketTimeoutException( "Data transfer read timed out." );
+                    }
+                    _readSelector.selectedKeys().clear();
+                }
+            }
+        }
+    }
+
+}
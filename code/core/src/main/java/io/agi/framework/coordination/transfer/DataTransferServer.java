@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.coordination.transfer;
+
+import io.agi.core.data.Data;
+import io.agi.core.data.FloatArray;
+import io.agi.framework.persistence.DataBinarySerializer;
+import io.agi.framework.references.DataRef;
+import io.agi.framework.references.DataRefMap;
+import io.agi.framework.references.DataVersions;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Serves Data from the local DataRefMap to other Nodes, over the Data transfer channel (see DataTransfer).
+ *
+ * Each Node keeps only a few connections to each other Node, so every connection is served by its own thread, which
+ * answers the requests on it in order. The channel isn't authenticated, so the server listens only on the host of the
+ * Node, accepts at most MAX_CONNECTIONS at once, and closes any connection that sends a request larger than
+ * DataTransfer.MAX_REQUEST_BYTES.
+ */
+public class DataTransferServer {
+
+    private static final Logger _logger = LogManager.getLogger();
+
+    public static final int MAX_CONNECTIONS = 64;
+
+    protected DataRefMap _map;
+    protected ServerSocketChannel _channel;
+    protected ExecutorService _executor;
+    protected Semaphore _connections = new Semaphore( MAX_CONNECTIONS );
+
+    public DataTransferServer( DataRefMap map ) {
+        _map = map;
+    }
+
+    /**
+     * @param host the address to listen on, i.e. the host of the Node.
+     * @param port
+     * @throws IOException
+     */
+    public void start( String host, int port ) throws IOException {
+        _channel = ServerSocketChannel.open();
+        _channel.bind( new InetSocketAddress( host, port ) );
+
+        _executor = Executors.newCachedThreadPool( new ThreadFactory() {
+            @Override
+            public Thread newThread( Runnable r ) {
+                Thread t = new Thread( r, "data-transfer" );
+                t.setDaemon( true );
+                return t;
+            }
+        } );
+
+        _executor.execute( new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        } );
+
+        _logger.info( "Serving Data transfers on " + host + ":" + port );
+    }
+
+    /**
+     * @return the port listened on, e.g. if started on port 0.
+     * @throws IOException
+     */
+    public int getPort() throws IOException {
+        return ( ( InetSocketAddress ) _channel.getLocalAddress() ).getPort();
+    }
+
+    public void stop() {
+        try {
+            if( _channel != null ) {
+                _channel.close();
+            }
+        }
+        catch( IOException e ) {
+            _logger.error( e.toString(), e );
+        }
+
+        if( _executor != null ) {
+            _executor.shutdownNow();
+        }
+    }
+
+    protected void accept() {
+        while( _channel.isOpen() ) {
+            try {
+                final SocketChannel sc = _channel.accept();
+
+                if( !_connections.tryAcquire() ) {
+                    _logger.warn( "Too many Data transfer connections, refused " + sc.getRemoteAddress() );
+                    sc.close();
+                    continue;
+                }
+
+                sc.setOption( StandardSocketOptions.TCP_NODELAY, true );
+
+                _executor.execute( new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            serve( sc );
+                        }
+                        finally {
+                            _connections.release();
+                        }
+                    }
+                } );
+            }
+            catch( ClosedChannelException e ) {
+                return; // stopped
+            }
+            catch( IOException e ) {
+                _logger.error( e.toString(), e );
+            }
+        }
+    }
+
+    protected ByteBuffer getResponse( Collection< String > keys ) throws IOException {
+        Collection< DataRef > dataRefs = new ArrayList< DataRef >( keys.size() );
+
+        for( String key : keys ) {
+            DataRef dataRef = _map.getData( key );
+            if( dataRef != null ) {
+                dataRefs.add( dataRef );
+            }
+        }
+
+        return DataBinarySerializer.DataRefsToByteBuffer( dataRefs );
+    }
+
+    /**
+     * A record of a delta response, with the values read from the Data and checked against its version.
+     */
+    protected static class DeltaRecord {
+        public String _key;
+        public long _version = DataVersions.NO_VERSION;
+        public byte _type = DataTransfer.TYPE_FULL;
+        public DataRef _dataRef; // full
+        public int _length; // changes
+        public BitSet _blocks;
+        public FloatArray _values; // of the blocks, in order
+
+        public long getSize() {
+            long bytes = DataBinarySerializer.GetSize( _key ) + 8 + 1;
+
+            if( _type == DataTransfer.TYPE_FULL ) {
+                bytes += DataBinarySerializer.GetSize( _dataRef );
+            }
+            else if( _type == DataTransfer.TYPE_CHANGES ) {
+                bytes += 4 + 4 + _blocks.cardinality() * 4L + _values.getSize() * 4L;
+            }
+
+            return bytes;
+        }
+    }
+
+    protected ByteBuffer getDeltaResponse( Collection< DataTransfer.DeltaRequest > requests ) throws IOException {
+        DataVersions versions = _map.getDataVersions();
+        ArrayList< DeltaRecord > records = new ArrayList< DeltaRecord >( requests.size() );
+
+        long bytes = 4 + 8 + 4; // magic, epoch, count
+        for( DataTransfer.DeltaRequest r : requests ) {
+            DataRef dataRef = _map.getData( r._key );
+            if( dataRef == null ) {
+                continue;
+            }
+
+            DeltaRecord record = getDeltaRecord( versions, r, dataRef );
+            records.add( record );
+            bytes += record.getSize();
+        }
+
+        ByteBuffer bb = DataBinarySerializer.Allocate( bytes );
+        bb.putInt( DataTransfer.MAGIC_DELTA_RESPONSE );
+        bb.putLong( versions.getEpoch() );
+        bb.putInt( records.size() );
+
+        for( DeltaRecord record : records ) {
+            DataBinarySerializer.PutString( bb, record._key );
+            bb.putLong( record._version );
+            bb.put( record._type );
+
+            if( record._type == DataTransfer.TYPE_FULL ) {
+                DataBinarySerializer.PutDataRef( bb, record._dataRef );
+            }
+            else if( record._type == DataTransfer.TYPE_CHANGES ) {
+                bb.putInt( record._length );
+                bb.putInt( record._blocks.cardinality() );
+
+                int offset = 0;
+                for( int b = record._blocks.nextSetBit( 0 ); b >= 0; b = record._blocks.nextSetBit( b + 1 ) ) {
+                    int blockLength = DataVersions.GetBlockLength( record._length, b );
+                    bb.putInt( b );
+                    bb.asFloatBuffer().put( record._values._values, offset, blockLength );
+                    bb.position( bb.position() + blockLength * 4 );
+                    offset += blockLength;
+                }
+            }
+        }
+
+        bb.flip();
+        return bb;
+    }
+
+    /**
+     * Read the changes to the Data since the requested version. The values are copied and compared to the checksums of
+     * the version, in case the Data is being modified; if they differ, the values are sent without a version.
+     *
+     * @param versions
+     * @param r
+     * @param dataRef
+     * @return
+     */
+    protected DeltaRecord getDeltaRecord( DataVersions versions, DataTransfer.DeltaRequest r, DataRef dataRef ) {
+        DeltaRecord record = new DeltaRecord();
+        record._key = r._key;
+
+        Data d = dataRef._data;
+        DataVersions.Changes changes = versions.getChanges( r._key, d, r._epoch, r._version ); // before reading values
+
+        if( changes == null ) {
+            record._dataRef = dataRef; // no Data, e.g. a reference
+            return record;
+        }
+
+        record._version = changes._version;
+
+        if( changes.isUnchanged() ) {
+            record._type = DataTransfer.TYPE_UNCHANGED;
+            return record;
+        }
+
+        float[] values = d._values; // in case it is resized meanwhile
+
+        if( ( changes._blocks != null ) && ( values.length == changes._length ) ) {
+            record._type = DataTransfer.TYPE_CHANGES;
+            record._length = values.length;
+            record._blocks = changes._blocks;
+
+            int size = 0;
+            for( int b = changes._blocks.nextSetBit( 0 ); b >= 0; b = changes._blocks.nextSetBit( b + 1 ) ) {
+                size += DataVersions.GetBlockLength( values.length, b );
+            }
+
+            record._values = new FloatArray( size );
+
+            int offset = 0;
+            for( int b = changes._blocks.nextSetBit( 0 ); b >= 0; b = changes._blocks.nextSetBit( b + 1 ) ) {
+                int blockLength = DataVersions.GetBlockLength( values.length, b );
+                System.arraycopy( values, b * DataVersions.BLOCK_SIZE, record._values._values, offset, blockLength );
+
+                if( record._values.getChecksum( offset, blockLength ) != changes._checksums[ b ] ) {
+                    record._version = DataVersions.NO_VERSION; // being modified
+                }
+
+                offset += blockLength;
+            }
+
+            return record;
+        }
+
+        Data copy = new Data( d );
+        record._dataRef = new DataRef( dataRef._key, dataRef._encoding, dataRef._refKeys, copy );
+
+        if( !Arrays.equals( DataVersions.GetChecksums( copy ), changes._checksums ) ) {
+            record._version = DataVersions.NO_VERSION; // being modified
+        }
+
+        return record;
+    }
+
+    /**
+     * Answer the requests on a connection until it is closed.
+     *
+     * @param sc
+     */
+    protected void serve( SocketChannel sc ) {
+        ByteBuffer header = ByteBuffer.allocate( 4 );
+
+        try {
+            while( true ) {
+                header.clear();
+                try {
+                    DataTransfer.ReadFully( sc, header );
+                }
+                catch( EOFException e ) {
+                    return; // client closed the connection
+                }
+
+                ByteBuffer body = ByteBuffer.allocate( DataTransfer.ParseLength( header, DataTransfer.MAX_REQUEST_BYTES ) ); // else closed
+                DataTransfer.ReadFully( sc, body );
+                body.flip();
+
+                ByteBuffer response;
+                if( DataTransfer.GetRequestType( body ) == DataTransfer.MAGIC_DELTA_REQUEST ) {
+                    response = getDeltaResponse( DataTransfer.ParseDeltaRequest( body ) );
+                }
+                else {
+                    response = getResponse( DataTransfer.ParseRequest( body ) );
+                }
+
+                DataTransfer.WriteFully( sc, DataTransfer.GetLength( response.remaining() ), response );
+            }
+        }
+        catch( Exception e ) {
+            _logger.warn( "Data transfer connection failed: " + e.toString() );
+        }
+        finally {
+            try {
+                sc.close();
+            }
+            catch( IOException e ) {
+                _logger.error( e.toString(), e );
+            }
+        }
+    }
+
+}
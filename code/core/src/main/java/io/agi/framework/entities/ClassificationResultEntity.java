@@ -63,12 +63,12 @@ public class ClassificationResultEntity extends Entity {
 
         ClassificationResultEntityConfig config = ( ClassificationResultEntityConfig ) _config;
 
-        Data labelData = getData( INPUT_LABELS );
+        Data labelData = getDataReadOnly( INPUT_LABELS );
         if( labelData == null ) {
             return;
         }
 
-        Data classData = getData( INPUT_CLASSIFICATIONS );
+        Data classData = getDataReadOnly( INPUT_CLASSIFICATIONS );
         if( classData == null ) {
             return;
         }
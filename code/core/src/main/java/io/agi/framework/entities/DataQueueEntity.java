@@ -73,13 +73,13 @@ public class DataQueueEntity extends Entity {
 
         DataQueueEntityConfig config = (DataQueueEntityConfig)_config;
 
-        Data input = getData( DATA_INPUT );
+        Data input = getDataReadOnly( DATA_INPUT );
 
         if( input == null ) {
             return; // nothing to enqueue
         }
 
-        Data copy = new Data( input ); // create deep copy
+        Data copy = new Data( input ); // create deep copy, as the input will change
 
         String suffix = getDataQueueSuffix( config.queueHead );
 
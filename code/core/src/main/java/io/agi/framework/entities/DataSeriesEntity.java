@@ -67,7 +67,7 @@ public class DataSeriesEntity extends Entity {
 
         DataSeriesEntityConfig config = ( DataSeriesEntityConfig ) _config;
 
-        Data dataInput = getData( INPUT );
+        Data dataInput = getDataReadOnly( INPUT );
 
         int inputs = dataInput.getSize();
 
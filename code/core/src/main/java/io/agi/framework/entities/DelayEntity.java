@@ -64,7 +64,7 @@ public class DelayEntity extends Entity {
 
     public void doUpdateSelf() {
 
-        Data input = getData( DATA_INPUT );
+        Data input = getDataReadOnly( DATA_INPUT );
         if( input == null ) {
             return;
         }
@@ -21,15 +21,14 @@ package io.agi.framework.entities;
 
 import io.agi.core.ann.unsupervised.KSparseAutoencoder;
 import io.agi.core.ann.unsupervised.KSparseAutoencoderConfig;
+import io.agi.core.data.ConcatenatedFloatArray;
 import io.agi.core.data.Data;
-import io.agi.core.data.Data2d;
 import io.agi.core.orm.ObjectMap;
 import io.agi.framework.DataFlags;
 import io.agi.framework.Entity;
 import io.agi.framework.Node;
 import io.agi.framework.persistence.models.ModelEntity;
 
-import java.awt.*;
 import java.util.Collection;
 
 /**
@@ -106,7 +105,7 @@ public class KSparseAutoencoderEntity extends Entity {
     protected void doUpdateSelf() {
 
         // Do nothing unless the input is defined
-        Data input = getData( INPUT );
+        ConcatenatedFloatArray input = getDataSegments( INPUT ); // not combined into one Data, if several
 
         if( input == null ) {
             return; // can't update yet.
@@ -119,11 +118,7 @@ public class KSparseAutoencoderEntity extends Entity {
         // Test parameters
         ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
         // Feedforward size
-        Point inputSize = Data2d.getSize( input );
-
-        int inputWidth = inputSize.x;
-        int inputHeight = inputSize.y;
-        int inputArea = inputWidth * inputHeight;
+        int inputArea = input.getSize();
 
         ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
         // Algorithm specific parameters
@@ -171,15 +166,19 @@ public class KSparseAutoencoderEntity extends Entity {
 
     protected void copyDataFromPersistence( KSparseAutoencoder ksa ) {
 
-        ksa._inputValues = getData( INPUT );
+        // Unless learning, the weights aren't modified, so they aren't persisted again
+        KSparseAutoencoderEntityConfig config = ( KSparseAutoencoderEntityConfig ) _config;
+        boolean learn = config.learn || config.reset;
+
+        ksa._inputSegments = getDataSegments( INPUT );
 
-        ksa._cellWeights = getDataLazyResize( WEIGHTS, ksa._cellWeights._dataSize );
-        ksa._cellBiases1 = getDataLazyResize( BIASES_1, ksa._cellBiases1._dataSize );
-        ksa._cellBiases2 = getDataLazyResize( BIASES_2, ksa._cellBiases2._dataSize );
+        ksa._cellWeights = getDataLazyResize( WEIGHTS, ksa._cellWeights._dataSize, learn );
+        ksa._cellBiases1 = getDataLazyResize( BIASES_1, ksa._cellBiases1._dataSize, learn );
+        ksa._cellBiases2 = getDataLazyResize( BIASES_2, ksa._cellBiases2._dataSize, learn );
 
-        ksa._cellWeightsVelocity = getDataLazyResize( WEIGHTS_VELOCITY, ksa._cellWeightsVelocity._dataSize );
-        ksa._cellBiases1Velocity = getDataLazyResize( BIASES_1_VELOCITY, ksa._cellBiases1Velocity._dataSize );
-        ksa._cellBiases2Velocity = getDataLazyResize( BIASES_2_VELOCITY, ksa._cellBiases2Velocity._dataSize );
+        ksa._cellWeightsVelocity = getDataLazyResize( WEIGHTS_VELOCITY, ksa._cellWeightsVelocity._dataSize, learn );
+        ksa._cellBiases1Velocity = getDataLazyResize( BIASES_1_VELOCITY, ksa._cellBiases1Velocity._dataSize, learn );
+        ksa._cellBiases2Velocity = getDataLazyResize( BIASES_2_VELOCITY, ksa._cellBiases2Velocity._dataSize, learn );
 
         ksa._cellErrors = getDataLazyResize( ERRORS, ksa._cellErrors._dataSize );
         ksa._cellWeightedSum = getDataLazyResize( WEIGHTED_SUM, ksa._cellWeightedSum._dataSize );
@@ -187,12 +186,12 @@ public class KSparseAutoencoderEntity extends Entity {
         ksa._cellSpikesTopK = getDataLazyResize( SPIKES_TOP_K, ksa._cellSpikesTopK._dataSize );
         ksa._inputReconstructionKA = getDataLazyResize( RECONSTRUCTION_KA, ksa._inputReconstructionKA._dataSize );
         ksa._inputReconstructionK = getDataLazyResize( RECONSTRUCTION_K, ksa._inputReconstructionK._dataSize );
-        ksa._cellAges = getDataLazyResize( AGES, ksa._cellAges._dataSize );
+        ksa._cellAges = getDataLazyResize( AGES, ksa._cellAges._dataSize, learn );
 
-        ksa._hiddenErrorsBatch = getDataLazyResize( BATCH_ERROR_GRADIENTS_HIDDEN, ksa._hiddenErrorsBatch._dataSize );
-        ksa._outputErrorsBatch = getDataLazyResize( BATCH_ERROR_GRADIENTS_OUTPUT, ksa._outputErrorsBatch._dataSize );
-        ksa._hiddenInputBatch = getDataLazyResize( BATCH_INPUTS_HIDDEN, ksa._hiddenInputBatch._dataSize );
-        ksa._outputInputBatch = getDataLazyResize( BATCH_INPUTS_OUTPUT, ksa._outputInputBatch._dataSize );
+        ksa._hiddenErrorsBatch = getDataLazyResize( BATCH_ERROR_GRADIENTS_HIDDEN, ksa._hiddenErrorsBatch._dataSize, learn );
+        ksa._outputErrorsBatch = getDataLazyResize( BATCH_ERROR_GRADIENTS_OUTPUT, ksa._outputErrorsBatch._dataSize, learn );
+        ksa._hiddenInputBatch = getDataLazyResize( BATCH_INPUTS_HIDDEN, ksa._hiddenInputBatch._dataSize, learn );
+        ksa._outputInputBatch = getDataLazyResize( BATCH_INPUTS_OUTPUT, ksa._outputInputBatch._dataSize, learn );
     }
 
     protected void copyDataToPersistence( KSparseAutoencoder ksa ) {
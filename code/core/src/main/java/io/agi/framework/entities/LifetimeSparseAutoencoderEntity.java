@@ -182,28 +182,32 @@ public class LifetimeSparseAutoencoderEntity extends Entity {
 
     protected void copyDataFromPersistence( LifetimeSparseAutoencoder ksa ) {
 
+        // Unless learning, the weights aren't modified, so they aren't persisted again
+        LifetimeSparseAutoencoderEntityConfig config = ( LifetimeSparseAutoencoderEntityConfig ) _config;
+        boolean learn = config.learn || config.reset;
+
         ksa._inputValues = getData( INPUT );
 
-        ksa._cellWeights = getDataLazyResize( WEIGHTS, ksa._cellWeights._dataSize );
-        ksa._cellBiases1 = getDataLazyResize( BIASES_1, ksa._cellBiases1._dataSize );
-        ksa._cellBiases2 = getDataLazyResize( BIASES_2, ksa._cellBiases2._dataSize );
+        ksa._cellWeights = getDataLazyResize( WEIGHTS, ksa._cellWeights._dataSize, learn );
+        ksa._cellBiases1 = getDataLazyResize( BIASES_1, ksa._cellBiases1._dataSize, learn );
+        ksa._cellBiases2 = getDataLazyResize( BIASES_2, ksa._cellBiases2._dataSize, learn );
 
-        ksa._cellWeightsVelocity = getDataLazyResize( WEIGHTS_VELOCITY, ksa._cellWeightsVelocity._dataSize );
-        ksa._cellBiases1Velocity = getDataLazyResize( BIASES_1_VELOCITY, ksa._cellBiases1Velocity._dataSize );
-        ksa._cellBiases2Velocity = getDataLazyResize( BIASES_2_VELOCITY, ksa._cellBiases2Velocity._dataSize );
+        ksa._cellWeightsVelocity = getDataLazyResize( WEIGHTS_VELOCITY, ksa._cellWeightsVelocity._dataSize, learn );
+        ksa._cellBiases1Velocity = getDataLazyResize( BIASES_1_VELOCITY, ksa._cellBiases1Velocity._dataSize, learn );
+        ksa._cellBiases2Velocity = getDataLazyResize( BIASES_2_VELOCITY, ksa._cellBiases2Velocity._dataSize, learn );
 
         ksa._cellErrors = getDataLazyResize( ERRORS, ksa._cellErrors._dataSize );
         ksa._cellWeightedSum = getDataLazyResize( WEIGHTED_SUM, ksa._cellWeightedSum._dataSize );
         ksa._cellSpikes = getDataLazyResize( SPIKES, ksa._cellSpikes._dataSize );
         ksa._inputReconstruction = getDataLazyResize( OUTPUT_RECONSTRUCTION, ksa._inputReconstruction._dataSize );
 
-        ksa._batchOutputOutput = getDataLazyResize( BATCH_OUTPUT_OUTPUT, ksa._batchOutputOutput._dataSize );
-        ksa._batchOutputInput = getDataLazyResize( BATCH_OUTPUT_INPUT, ksa._batchOutputInput._dataSize );
-        ksa._batchOutputInputLifetime = getDataLazyResize( BATCH_OUTPUT_INPUT_LIFETIME, ksa._batchOutputInputLifetime._dataSize );
-        ksa._batchOutputErrors = getDataLazyResize( BATCH_OUTPUT_ERRORS, ksa._batchOutputErrors._dataSize );
-        ksa._batchHiddenInput = getDataLazyResize( BATCH_HIDDEN_OUTPUT, ksa._batchHiddenInput._dataSize );
-        ksa._batchHiddenWeightedSum = getDataLazyResize( BATCH_HIDDEN_WEIGHTED_SUM, ksa._batchHiddenWeightedSum._dataSize );
-        ksa._batchHiddenErrors = getDataLazyResize( BATCH_HIDDEN_ERRORS, ksa._batchHiddenErrors._dataSize );
+        ksa._batchOutputOutput = getDataLazyResize( BATCH_OUTPUT_OUTPUT, ksa._batchOutputOutput._dataSize, learn );
+        ksa._batchOutputInput = getDataLazyResize( BATCH_OUTPUT_INPUT, ksa._batchOutputInput._dataSize, learn );
+        ksa._batchOutputInputLifetime = getDataLazyResize( BATCH_OUTPUT_INPUT_LIFETIME, ksa._batchOutputInputLifetime._dataSize, learn );
+        ksa._batchOutputErrors = getDataLazyResize( BATCH_OUTPUT_ERRORS, ksa._batchOutputErrors._dataSize, learn );
+        ksa._batchHiddenInput = getDataLazyResize( BATCH_HIDDEN_OUTPUT, ksa._batchHiddenInput._dataSize, learn );
+        ksa._batchHiddenWeightedSum = getDataLazyResize( BATCH_HIDDEN_WEIGHTED_SUM, ksa._batchHiddenWeightedSum._dataSize, learn );
+        ksa._batchHiddenErrors = getDataLazyResize( BATCH_HIDDEN_ERRORS, ksa._batchHiddenErrors._dataSize, learn );
     }
 
     protected void copyDataToPersistence( LifetimeSparseAutoencoder ksa ) {
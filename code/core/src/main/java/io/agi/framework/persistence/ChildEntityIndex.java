@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.persistence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+
+/**
+ * An index of the children of each Entity, for Persistence implementations that hold all Entities in memory, so that
+ * getChildEntities() doesn't need to scan every Entity.
+ *
+ * The parent of each Entity is recorded when it is put, so an Entity that moves to another parent is removed from the
+ * old parent's children even if the caller modified the ModelEntity in place. Thread safe.
+ */
+public class ChildEntityIndex {
+
+    protected HashMap< String, String > _parents = new HashMap< String, String >(); // Entity to parent
+    protected HashMap< String, LinkedHashSet< String > > _children = new HashMap< String, LinkedHashSet< String > >(); // parent to Entities, in order of creation
+
+    public ChildEntityIndex() {
+    }
+
+    /**
+     * Record the parent of an Entity, which is added or modified.
+     *
+     * @param name
+     * @param parent may be null.
+     */
+    public synchronized void put( String name, String parent ) {
+        if( _parents.containsKey( name ) ) {
+            String oldParent = _parents.get( name );
+            if( ( oldParent == null ) ? ( parent == null ) : oldParent.equals( parent ) ) {
+                return; // unchanged, the usual case
+            }
+
+            remove( name );
+        }
+
+        _parents.put( name, parent );
+
+        if( parent == null ) {
+            return;
+        }
+
+        LinkedHashSet< String > children = _children.get( parent );
+        if( children == null ) {
+            children = new LinkedHashSet< String >();
+            _children.put( parent, children );
+        }
+        children.add( name );
+    }
+
+    public synchronized void remove( String name ) {
+        if( !_parents.containsKey( name ) ) {
+            return;
+        }
+
+        String parent = _parents.remove( name );
+        if( parent == null ) {
+            return;
+        }
+
+        LinkedHashSet< String > children = _children.get( parent );
+        if( children != null ) {
+            children.remove( name );
+            if( children.isEmpty() ) {
+                _children.remove( parent );
+            }
+        }
+    }
+
+    /**
+     * @param parent
+     * @return a copy, which the caller may modify.
+     */
+    public synchronized Collection< String > getChildren( String parent ) {
+        LinkedHashSet< String > children = _children.get( parent );
+        if( children == null ) {
+            return new ArrayList< String >();
+        }
+
+        return new ArrayList< String >( children );
+    }
+
+    public synchronized void clear() {
+        _parents.clear();
+        _children.clear();
+    }
+
+}
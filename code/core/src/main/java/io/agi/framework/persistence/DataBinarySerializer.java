@@ -0,0 +1,636 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.persistence;
+
+import io.agi.core.data.Data;
+import io.agi.core.data.DataSize;
+import io.agi.core.data.FloatArray;
+import io.agi.framework.references.DataRef;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Functions to convert DataRef objects to a compact binary serial form (and back). This is an alternative to
+ * DataJsonSerializer for moving large Data between Nodes; JSON remains the default.
+ *
+ * The format is a little-endian sequence of records. Strings are an int byte-count followed by UTF-8 bytes, or -1 for
+ * null. Each record is:
+ *
+ *   key, refKeys, encoding (byte), dimensions (int), [ size (int), label ] * dimensions, length (int), payload
+ *
+ * The payload depends on the encoding:
+ *
+ *   dense:         float * length
+ *   sparse-binary: count (int), index (int) * count
+ *   sparse-real:   count (int), index (int) * count, value (float) * count
+ *
+ * A record with dimensions = -1 has no Data (e.g. it is a reference), and no length or payload.
+ *
+ * Records are read straight from a stream through one small buffer, rather than copying the whole stream first. The
+ * sizes read are checked against the bytes remaining, where that is known, so that a malformed record fails with an
+ * IOException instead of a huge allocation. Records are written to a stream the same way, with the values copied from
+ * the Data into the buffer a buffer-full at a time.
+ */
+public class DataBinarySerializer {
+
+    public static final String CONTENT_TYPE = "application/x-agief-data";
+
+    public static final int MAGIC = 0x41474946; // "AGIF"
+
+    protected static final byte ENCODING_DENSE = 0;
+    protected static final byte ENCODING_SPARSE_BINARY = 1;
+    protected static final byte ENCODING_SPARSE_REAL = 2;
+
+    protected static final int BUFFER_BYTES = 64 * 1024;
+
+    /**
+     * Write the DataRefs to a stream in binary form.
+     *
+     * @param dataRefs
+     * @param os
+     * @throws IOException
+     */
+    public static void DataRefsToStream( Collection< DataRef > dataRefs, OutputStream os ) throws IOException {
+        DataRefsToChannel( dataRefs, Channels.newChannel( os ) );
+    }
+
+    /**
+     * Write the DataRefs to a channel in binary form, a record at a time through a buffer that is reused for every
+     * record, so that the whole of a large response is never copied. GetSize( dataRefs ) bytes are written.
+     *
+     * @param dataRefs
+     * @param channel
+     * @throws IOException
+     */
+    public static void DataRefsToChannel( Collection< DataRef > dataRefs, WritableByteChannel channel ) throws IOException {
+        Writer w = new Writer( channel );
+        w.putInt( MAGIC );
+        w.putInt( dataRefs.size() );
+
+        for( DataRef dataRef : dataRefs ) {
+            w.putDataRef( dataRef );
+        }
+
+        w.flush();
+    }
+
+    /**
+     * Encode the DataRefs into a single buffer, which is sized exactly. Use DataRefsToStream() for a response that may
+     * be large.
+     *
+     * @param dataRefs
+     * @return buffer, ready to read.
+     * @throws IllegalArgumentException if they don't fit in one buffer.
+     */
+    public static ByteBuffer DataRefsToByteBuffer( Collection< DataRef > dataRefs ) throws IOException {
+        ByteBuffer bb = Allocate( GetSize( dataRefs ) );
+        bb.putInt( MAGIC );
+        bb.putInt( dataRefs.size() );
+
+        for( DataRef dataRef : dataRefs ) {
+            PutDataRef( bb, dataRef );
+        }
+
+        bb.flip();
+        return bb;
+    }
+
+    /**
+     * @param bytes
+     * @return a little-endian buffer of this size.
+     * @throws IllegalArgumentException if it is larger than a buffer can be.
+     */
+    public static ByteBuffer Allocate( long bytes ) {
+        if( bytes > Integer.MAX_VALUE ) {
+            throw new IllegalArgumentException( "Too large for one buffer: " + bytes + " bytes" );
+        }
+        return ByteBuffer.allocate( ( int ) bytes ).order( ByteOrder.LITTLE_ENDIAN );
+    }
+
+    /**
+     * Read all DataRefs in binary form from the stream.
+     *
+     * @param is
+     * @return
+     * @throws IOException
+     */
+    public static Collection< DataRef > StreamToDataRefs( InputStream is ) throws IOException {
+        return StreamToDataRefs( is, -1 );
+    }
+
+    /**
+     * Read all DataRefs in binary form from the stream.
+     *
+     * @param is
+     * @param bytes in the stream, if known (e.g. the content length), otherwise -1.
+     * @return
+     * @throws IOException if the stream isn't in the expected format.
+     */
+    public static Collection< DataRef > StreamToDataRefs( InputStream is, long bytes ) throws IOException {
+        return ChannelToDataRefs( Channels.newChannel( is ), bytes );
+    }
+
+    /**
+     * Read all DataRefs in binary form from the channel, through a buffer that is reused for every record.
+     *
+     * @param channel
+     * @param bytes in the channel, if known, otherwise -1.
+     * @return
+     * @throws IOException if the channel isn't in the expected format.
+     */
+    public static Collection< DataRef > ChannelToDataRefs( ReadableByteChannel channel, long bytes ) throws IOException {
+        return GetDataRefs( new Reader( channel, bytes ) );
+    }
+
+    /**
+     * Decode all DataRefs in the buffer.
+     *
+     * @param bb
+     * @return
+     * @throws IOException if the buffer isn't in the expected format.
+     */
+    public static Collection< DataRef > ByteBufferToDataRefs( ByteBuffer bb ) throws IOException {
+        return GetDataRefs( new Reader( bb ) );
+    }
+
+    protected static Collection< DataRef > GetDataRefs( Reader r ) throws IOException {
+        if( r.getInt() != MAGIC ) {
+            throw new IOException( "Not a binary Data stream." );
+        }
+
+        int count = r.getSize( 4, "count" ); // each record is at least a few bytes
+
+        ArrayList< DataRef > dataRefs = new ArrayList< DataRef >( count );
+
+        for( int i = 0; i < count; ++i ) {
+            dataRefs.add( r.getDataRef() );
+        }
+
+        return dataRefs;
+    }
+
+    /**
+     * @param dataRefs
+     * @return the number of bytes in their binary form, including the magic number and count.
+     */
+    public static long GetSize( Collection< DataRef > dataRefs ) {
+        long bytes = 8; // magic, count
+        for( DataRef dataRef : dataRefs ) {
+            bytes += GetSize( dataRef );
+        }
+        return bytes;
+    }
+
+    public static long GetSize( DataRef dataRef ) {
+        long bytes = GetSize( dataRef._key ) + GetSize( dataRef._refKeys ) + 1 + 4;
+
+        Data d = dataRef._data;
+        if( d == null ) {
+            return bytes;
+        }
+
+        DataSize ds = d._dataSize;
+        for( int i = 0; i < ds._sizes.length; ++i ) {
+            bytes += 4 + GetSize( ds.getLabel( i ) );
+        }
+
+        bytes += 4; // length
+
+        byte encoding = GetEncoding( dataRef._encoding );
+        if( encoding == ENCODING_DENSE ) {
+            bytes += d._values.length * 4L;
+        }
+        else {
+            int count = CountNonZero( d._values );
+            bytes += 4 + count * 4L;
+            if( encoding == ENCODING_SPARSE_REAL ) {
+                bytes += count * 4L;
+            }
+        }
+
+        return bytes;
+    }
+
+    public static int GetSize( String s ) {
+        if( s == null ) {
+            return 4;
+        }
+        return 4 + s.getBytes( StandardCharsets.UTF_8 ).length;
+    }
+
+    /**
+     * Encode the DataRef into the buffer, which must have room for GetSize( dataRef ) bytes.
+     *
+     * @param bb
+     * @param dataRef
+     */
+    public static void PutDataRef( ByteBuffer bb, DataRef dataRef ) throws IOException {
+        new Writer( bb ).putDataRef( dataRef );
+    }
+
+    public static DataRef GetDataRef( ByteBuffer bb ) throws IOException {
+        return new Reader( bb ).getDataRef();
+    }
+
+    public static void PutString( ByteBuffer bb, String s ) {
+        if( s == null ) {
+            bb.putInt( -1 );
+            return;
+        }
+
+        byte[] bytes = s.getBytes( StandardCharsets.UTF_8 );
+        bb.putInt( bytes.length );
+        bb.put( bytes );
+    }
+
+    public static String GetString( ByteBuffer bb ) throws IOException {
+        return new Reader( bb ).getString();
+    }
+
+    protected static byte GetEncoding( String encoding ) {
+        if( DataJsonSerializer.ENCODING_SPARSE_BINARY.equals( encoding ) ) {
+            return ENCODING_SPARSE_BINARY;
+        }
+        if( DataJsonSerializer.ENCODING_SPARSE_REAL.equals( encoding ) ) {
+            return ENCODING_SPARSE_REAL;
+        }
+        return ENCODING_DENSE;
+    }
+
+    protected static String GetEncoding( byte encoding ) {
+        if( encoding == ENCODING_SPARSE_BINARY ) {
+            return DataJsonSerializer.ENCODING_SPARSE_BINARY;
+        }
+        if( encoding == ENCODING_SPARSE_REAL ) {
+            return DataJsonSerializer.ENCODING_SPARSE_REAL;
+        }
+        return DataJsonSerializer.ENCODING_DENSE;
+    }
+
+    protected static int CountNonZero( float[] values ) {
+        int count = 0;
+        for( int i = 0; i < values.length; ++i ) {
+            if( values[ i ] != 0.f ) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes the binary form into a buffer, or to a channel through a reusable buffer. Writing into a buffer moves its
+     * position, and overflows it if it is too small.
+     */
+    protected static class Writer {
+
+        protected ByteBuffer _bb;
+        protected WritableByteChannel _channel; // null if writing into the buffer only
+
+        public Writer( ByteBuffer bb ) {
+            _bb = bb.order( ByteOrder.LITTLE_ENDIAN );
+        }
+
+        public Writer( WritableByteChannel channel ) {
+            _channel = channel;
+            _bb = ByteBuffer.allocate( BUFFER_BYTES ).order( ByteOrder.LITTLE_ENDIAN );
+        }
+
+        /**
+         * Write what is in the buffer to the channel, if any.
+         *
+         * @throws IOException
+         */
+        public void flush() throws IOException {
+            if( _channel == null ) {
+                return;
+            }
+
+            _bb.flip();
+            while( _bb.hasRemaining() ) {
+                _channel.write( _bb );
+            }
+            _bb.clear();
+        }
+
+        /**
+         * Make room for the bytes in the buffer, writing what is there to the channel first if necessary.
+         *
+         * @param bytes no more than the buffer holds.
+         */
+        protected void reserve( int bytes ) throws IOException {
+            if( ( _channel == null ) || ( _bb.remaining() >= bytes ) ) {
+                return; // else overflows, if writing into the buffer only
+            }
+
+            flush();
+        }
+
+        public void put( byte b ) throws IOException {
+            reserve( 1 );
+            _bb.put( b );
+        }
+
+        public void putInt( int i ) throws IOException {
+            reserve( 4 );
+            _bb.putInt( i );
+        }
+
+        public void putFloat( float f ) throws IOException {
+            reserve( 4 );
+            _bb.putFloat( f );
+        }
+
+        public void putString( String s ) throws IOException {
+            if( s == null ) {
+                putInt( -1 );
+                return;
+            }
+
+            byte[] bytes = s.getBytes( StandardCharsets.UTF_8 );
+            putInt( bytes.length );
+
+            int offset = 0;
+            while( offset < bytes.length ) {
+                reserve( 1 );
+                int n = Math.min( _bb.remaining(), bytes.length - offset );
+                _bb.put( bytes, offset, n );
+                offset += n;
+            }
+        }
+
+        public void putFloats( float[] values ) throws IOException {
+            int offset = 0;
+            while( offset < values.length ) {
+                reserve( 4 );
+                int n = Math.min( _bb.remaining() / 4, values.length - offset );
+                if( n == 0 ) {
+                    n = 1; // overflows
+                }
+                _bb.asFloatBuffer().put( values, offset, n ); // bulk copy, doesn't move the position
+                _bb.position( _bb.position() + n * 4 );
+                offset += n;
+            }
+        }
+
+        public void putDataRef( DataRef dataRef ) throws IOException {
+            putString( dataRef._key );
+            putString( dataRef._refKeys );
+
+            byte encoding = GetEncoding( dataRef._encoding );
+            put( encoding );
+
+            Data d = dataRef._data;
+            if( d == null ) {
+                putInt( -1 );
+                return;
+            }
+
+            DataSize ds = d._dataSize;
+            putInt( ds._sizes.length );
+            for( int i = 0; i < ds._sizes.length; ++i ) {
+                putInt( ds._sizes[ i ] );
+                putString( ds.getLabel( i ) );
+            }
+
+            float[] values = d._values;
+            putInt( values.length );
+
+            if( encoding == ENCODING_DENSE ) {
+                putFloats( values );
+                return;
+            }
+
+            int count = CountNonZero( values );
+            putInt( count );
+
+            for( int i = 0; i < values.length; ++i ) {
+                if( values[ i ] != 0.f ) {
+                    putInt( i );
+                }
+            }
+
+            if( encoding == ENCODING_SPARSE_REAL ) {
+                for( int i = 0; i < values.length; ++i ) {
+                    if( values[ i ] != 0.f ) {
+                        putFloat( values[ i ] );
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the binary form from a buffer, or from a channel through a reusable buffer. Reading from a buffer moves its
+     * position, as the ByteBuffer methods do.
+     */
+    protected static class Reader {
+
+        protected ByteBuffer _bb;
+        protected ReadableByteChannel _channel; // null if all the bytes are in the buffer
+        protected long _unread; // bytes in the channel not yet read into the buffer, or < 0 if unknown
+
+        public Reader( ByteBuffer bb ) {
+            _bb = bb.order( ByteOrder.LITTLE_ENDIAN );
+            _unread = 0;
+        }
+
+        public Reader( ReadableByteChannel channel, long bytes ) {
+            _channel = channel;
+            _unread = bytes;
+            _bb = ByteBuffer.allocate( BUFFER_BYTES ).order( ByteOrder.LITTLE_ENDIAN );
+            _bb.limit( 0 );
+        }
+
+        /**
+         * @return the number of bytes left to read, or Long.MAX_VALUE if that isn't known.
+         */
+        public long available() {
+            if( _unread < 0 ) {
+                return Long.MAX_VALUE;
+            }
+            return _bb.remaining() + _unread;
+        }
+
+        public byte get() throws IOException {
+            require( 1 );
+            return _bb.get();
+        }
+
+        public int getInt() throws IOException {
+            require( 4 );
+            return _bb.getInt();
+        }
+
+        /**
+         * Reads the size of something, which must fit in the bytes remaining.
+         *
+         * @param bytesEach the least number of bytes each of the things takes.
+         * @param name for the error message.
+         * @return
+         * @throws IOException if the size is negative or too large.
+         */
+        public int getSize( int bytesEach, String name ) throws IOException {
+            int size = getInt();
+            if( ( size < 0 ) || ( ( long ) size * bytesEach > available() ) ) {
+                throw new IOException( "Bad " + name + " in binary Data: " + size );
+            }
+            return size;
+        }
+
+        public String getString() throws IOException {
+            int length = getInt();
+            if( length < 0 ) {
+                return null;
+            }
+            if( length > available() ) {
+                throw new IOException( "Bad string length in binary Data: " + length );
+            }
+
+            byte[] bytes = new byte[ length ];
+            int offset = 0;
+            while( offset < length ) {
+                require( 1 );
+                int n = Math.min( _bb.remaining(), length - offset );
+                _bb.get( bytes, offset, n );
+                offset += n;
+            }
+
+            return new String( bytes, StandardCharsets.UTF_8 );
+        }
+
+        public void getFloats( float[] values, int offset, int length ) throws IOException {
+            while( length > 0 ) {
+                require( 4 );
+                int n = Math.min( _bb.remaining() / 4, length );
+                _bb.asFloatBuffer().get( values, offset, n ); // bulk copy, doesn't move the position
+                _bb.position( _bb.position() + n * 4 );
+                offset += n;
+                length -= n;
+            }
+        }
+
+        public DataRef getDataRef() throws IOException {
+            String key = getString();
+            String refKeys = getString();
+            byte encoding = get();
+
+            DataRef dataRef = new DataRef( key, GetEncoding( encoding ), refKeys, null );
+
+            int dimensions = getInt();
+            if( dimensions < 0 ) {
+                return dataRef;
+            }
+            if( ( long ) dimensions * 8 > available() ) { // size and label
+                throw new IOException( "Bad dimensions in binary Data: " + dimensions );
+            }
+
+            DataSize ds = new DataSize( dimensions );
+            for( int i = 0; i < dimensions; ++i ) {
+                int size = getSize( 0, "size" );
+                String label = getString();
+                ds.set( i, size, label );
+            }
+
+            boolean dense = ( encoding == ENCODING_DENSE );
+            int length = getSize( dense ? 4 : 0, "length" ); // normally the same as the volume of ds
+            Data d = new Data( ds, new FloatArray( length ) );
+            float[] values = d._values;
+
+            if( dense ) {
+                getFloats( values, 0, length );
+            }
+            else {
+                boolean real = ( encoding == ENCODING_SPARSE_REAL );
+                int count = getSize( real ? 8 : 4, "count" );
+                if( count > length ) {
+                    throw new IOException( "Bad count in binary Data: " + count );
+                }
+
+                int[] indices = new int[ count ];
+                for( int i = 0; i < count; ++i ) {
+                    int index = getInt();
+                    if( ( index < 0 ) || ( index >= length ) ) {
+                        throw new IOException( "Bad index in binary Data: " + index );
+                    }
+                    indices[ i ] = index;
+                }
+
+                if( real ) {
+                    for( int i = 0; i < count; ++i ) {
+                        require( 4 );
+                        values[ indices[ i ] ] = _bb.getFloat();
+                    }
+                }
+                else {
+                    for( int i = 0; i < count; ++i ) {
+                        values[ indices[ i ] ] = 1.f;
+                    }
+                }
+            }
+
+            dataRef._data = d;
+            return dataRef;
+        }
+
+        /**
+         * Ensures the buffer holds at least the number of bytes, reading more from the channel if necessary.
+         *
+         * @param bytes no more than the capacity of the buffer.
+         * @throws IOException if there aren't that many bytes left.
+         */
+        protected void require( int bytes ) throws IOException {
+            if( _bb.remaining() >= bytes ) {
+                return;
+            }
+
+            if( _channel == null ) {
+                throw new EOFException( "Binary Data is truncated." );
+            }
+
+            _bb.compact();
+            try {
+                while( _bb.position() < bytes ) {
+                    int n = _channel.read( _bb );
+                    if( n < 0 ) {
+                        throw new EOFException( "Binary Data is truncated." );
+                    }
+                    if( _unread >= 0 ) {
+                        _unread = Math.max( 0, _unread - n );
+                    }
+                }
+            }
+            finally {
+                _bb.flip();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.persistence;
+
+import io.agi.framework.references.DataRef;
+
+import java.util.Collection;
+
+/**
+ * Optionally implemented by a Persistence that can also store Data. When the Node's Persistence implements this
+ * interface, the Node DataRefMap writes Data through to it, and restores it on startup.
+ */
+public interface DataPersistence {
+
+    Collection< String > getDataKeys(); // list all
+    DataRef getData( String key ); /// retrieves if exists, or null
+    void persistData( DataRef dataRef ); /// creates if nonexistent (upsert)
+    void removeData( String key ); /// removes if exists
+
+    /**
+     * Make everything persisted so far durable, e.g. survive a crash.
+     */
+    void checkpoint();
+
+    /**
+     * @return true if getData() maps the Data from disk, so it is quick to read back without keeping another copy.
+     */
+    default boolean isMapped() {
+        return false;
+    }
+
+}
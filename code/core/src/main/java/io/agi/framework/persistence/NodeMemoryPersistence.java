@@ -43,6 +43,7 @@ public class NodeMemoryPersistence implements Persistence {
     protected HashMap< String, ModelNode > _nodeMap = new HashMap< String, ModelNode >();
     protected HashMap< String, ModelEntity > _entityMap = new HashMap< String, ModelEntity >();
     protected HashMap< String, ModelData > _dataMap = new HashMap< String, ModelData >();
+    protected ChildEntityIndex _childEntityIndex = new ChildEntityIndex();
 
     private static final Logger _logger = LogManager.getLogger();
 
@@ -72,23 +73,12 @@ public class NodeMemoryPersistence implements Persistence {
     }
 
     public Collection< String > getChildEntities( String parent ) {
-        ArrayList< String > children = new ArrayList< String >();
-
-        for( String name : _entityMap.keySet() ) {
-            ModelEntity modelEntity = _entityMap.get( name );
-            String parentName = modelEntity.parent;
-            if( parentName != null ) {
-                if( parentName.equals( parent ) ) {
-                    children.add( modelEntity.name );
-                }
-            }
-        }
-
-        return children;
+        return _childEntityIndex.getChildren( parent );
     }
 
     public void persistEntity( ModelEntity e ) {
         _entityMap.put( e.name, e );
+        _childEntityIndex.put( e.name, e.parent );
     }
 
     public ModelEntity getEntity( String name ) {
@@ -97,6 +87,7 @@ public class NodeMemoryPersistence implements Persistence {
 
     public void removeEntity( String key ) {
         _entityMap.remove( key );
+        _childEntityIndex.remove( key );
     }
 
     // Data
@@ -21,6 +21,7 @@ package io.agi.framework.persistence;
 
 import io.agi.core.util.PropertiesUtil;
 import io.agi.framework.persistence.jdbc.JdbcPersistence;
+import io.agi.framework.persistence.mapped.MappedFilePersistence;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -35,6 +36,7 @@ public class PersistenceFactory {
     public static final String PERSISTENCE_TYPE_COUCHBASE = "couchbase";
     public static final String PERSISTENCE_TYPE_JDBC = "jdbc";
     public static final String PERSISTENCE_TYPE_NODE = "node";
+    public static final String PERSISTENCE_TYPE_MAPPED = "mapped";
 
     private static final Logger logger = LogManager.getLogger();
 
@@ -53,6 +55,10 @@ public class PersistenceFactory {
             logger.info( "Using Node memory for persistence (note: You mustn't have more than one node in this configuration)." );
             p = new NodeMemoryPersistence();
         }
+        else if( type.equals( PERSISTENCE_TYPE_MAPPED ) ) {
+            logger.info( "Using memory-mapped local files for persistence (note: You mustn't have more than one node in this configuration)." );
+            p = MappedFilePersistence.Create( properties );
+        }
 
         return p;
     }
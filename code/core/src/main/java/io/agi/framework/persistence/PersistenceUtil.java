@@ -95,8 +95,20 @@ public class PersistenceUtil {
 
         _logger.debug( "Set config of: " + entityName + " path: " + configPath + " value: " + value );
 
-        Persistence persistence = Node.NodeInstance().getPersistence();
+        Node node = Node.NodeInstance();
+        Persistence persistence = node.getPersistence();
         ModelEntity modelEntity = persistence.getEntity( entityName );
+
+        // if the typed config is cached, modify it directly rather than re-parsing the whole config
+        String configString = node.getEntityConfigCache().setProperty( entityName, modelEntity.config, configPath, value );
+        if( configString != null ) {
+            if( configString != modelEntity.config ) { // skip the write if the value didn't change
+                modelEntity.config = configString;
+                persistence.persistEntity( modelEntity );
+            }
+            return;
+        }
+
         JsonParser parser = new JsonParser();
         JsonObject root = parser.parse( modelEntity.config ).getAsJsonObject();
 
@@ -122,6 +134,11 @@ public class PersistenceUtil {
 
         part = pathParts[ index ];
 
+        JsonElement oldValue = parent.get( part );
+        if( ( oldValue != null ) && oldValue.isJsonPrimitive() && oldValue.getAsString().equals( String.valueOf( value ) ) ) {
+            return; // no change
+        }
+
         // replace the property:
         parent.remove( part );
 
@@ -247,7 +264,7 @@ public class PersistenceUtil {
          *
          * @param name
          * @param type
-         * @param node
+         * @param node null to let EntityPlacement choose
          * @param parent
          * @return name The name of the entity created, which might be the next parent (makes for neat code)
          */
@@ -262,11 +279,17 @@ public class PersistenceUtil {
      * Create an entity in the persistence layer using the model.
      * Create config object from data model, convert to a string, set back to model and persist.
      * The effect is that any undefined fields will still be present (with value of null) in the persistence layer.
+     * If the model has no Node, EntityPlacement chooses one.
      *
      * @param model
      */
     public static void CreateEntity( ModelEntity model ) {
         Node node = Node.NodeInstance();
+
+        if( ( model.node == null ) || model.node.isEmpty() ) {
+            model.node = node.getEntityPlacement().getNode( model.name );
+        }
+
         Entity entity = node.getEntityFactory().create( node.getObjectMap(), model );
         EntityConfig entityConfig = entity.createConfig();
         model.config = Entity.SerializeConfig( entityConfig );
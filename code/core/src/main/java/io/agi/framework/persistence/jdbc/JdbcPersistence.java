@@ -24,14 +24,39 @@ import io.agi.framework.persistence.Persistence;
 import io.agi.framework.persistence.models.ModelData;
 import io.agi.framework.persistence.models.ModelEntity;
 import io.agi.framework.persistence.models.ModelNode;
+import org.apache.commons.dbcp2.BasicDataSource;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Properties;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * Persistence in a SQL database, via a pool of connections and prepared statements.
+ *
+ * Entities and Data are written with the native upsert of the database where it has one (PostgreSQL 9.5+, MySQL, H2),
+ * or with an UPDATE and a conditional INSERT otherwise.
+ *
+ * Entity config is written once per update, which is usually more often than anyone reads it from the database. A
+ * single-Node run can set database-write-delay to defer Entity writes for a short time and coalesce them, and then
+ * write them in a single transaction. Only reads through this object see the deferred writes, so the default is 0,
+ * to write immediately: other Nodes (or processes) read the entities table directly. Deferred writes that fail are
+ * retried up to MAX_WRITE_ATTEMPTS times, and then discarded with an error.
+ *
+ * The children of each Entity are cached, because they are read on every update but rarely change. The cache is
+ * invalidated when this object adds, moves or removes an Entity, and expires after database-cache-ttl, for changes
+ * made by other Nodes.
+ *
+ * An embedded H2 database can be used for local runs, e.g.:
+ *
+ *   database-driver-class=org.h2.Driver
+ *   database-url=jdbc:h2:./agidb;INIT=RUNSCRIPT FROM 'bin/db/agidb-h2.sql'
+ *
  * Created by dave on 16/02/16.
  */
 public class JdbcPersistence implements Persistence {
@@ -44,13 +69,48 @@ public class JdbcPersistence implements Persistence {
     public static final String PROPERTY_DATABASE_PASSWORD = "database-password";
     public static final String PROPERTY_DATABASE_URL = "database-url";
     public static final String PROPERTY_DATABASE_DRIVER_CLASS = "database-driver-class";
+    public static final String PROPERTY_DATABASE_WRITE_DELAY = "database-write-delay"; // millis
+    public static final String PROPERTY_DATABASE_CACHE_TTL = "database-cache-ttl"; // millis
 
     public static final String DRIVER_MYSQL = "com.mysql.jdbc.Driver";
     public static final String DRIVER_POSTGRESQL = "org.postgresql.Driver";
+    public static final String DRIVER_H2 = "org.h2.Driver";
+
+    public static final int MAX_PENDING_ENTITIES = 1000; // written immediately when this many are waiting
+    public static final int MAX_WRITE_ATTEMPTS = 10; // of deferred writes, before they're discarded
+
+    protected static final String[] ENTITY_COLUMNS = { "name", "type", "node", "parent", "config" };
+    protected static final String[] DATA_COLUMNS = { "name", "ref_name", "sizes", "elements" };
 
     protected String _user;
     protected String _password;
     protected String _url; // e.g. jdbc:postgresql://localhost:5432/agidb"; // https://jdbc.postgresql.org/documentation/80/connect.html
+    protected BasicDataSource _dataSource;
+
+    protected String _upsertEntitySql;
+    protected String _upsertDataSql;
+
+    // Deferred entity writes
+    protected final Object _writeLock = new Object(); // held while writing to the entities table
+    protected final Object _pendingLock = new Object();
+    protected LinkedHashMap< String, ModelEntity > _pendingEntities = new LinkedHashMap< String, ModelEntity >();
+    protected LinkedHashMap< String, ModelEntity > _writingEntities = null; // being written, but not yet committed
+    protected int _writeFailures = 0; // consecutive, guarded by _writeLock
+    protected ScheduledExecutorService _writer;
+
+    // Cached children
+    protected static final String NO_PARENT = ""; // as ConcurrentHashMap doesn't allow null values
+
+    protected static class ChildEntities {
+        public Collection< String > _names;
+        public long _time;
+    }
+
+    protected long _cacheTtl = 1000;
+    protected ConcurrentHashMap< String, ChildEntities > _childEntities = new ConcurrentHashMap< String, ChildEntities >(); // by parent
+    protected ConcurrentHashMap< String, String > _entityParents = new ConcurrentHashMap< String, String >(); // last known parent of each Entity
+    protected ConcurrentHashMap< String, String > _movedEntities = new ConcurrentHashMap< String, String >(); // added or moved, but not yet written; to the old parent
+    protected AtomicInteger _childEntitiesVersion = new AtomicInteger( 0 ); // changes on invalidation, so queries that overlap one aren't cached
 
     private static final Logger logger = LogManager.getLogger();
 
@@ -62,11 +122,14 @@ public class JdbcPersistence implements Persistence {
         String databasePassword = PropertiesUtil.get( properties, JdbcPersistence.PROPERTY_DATABASE_PASSWORD, "password" );
         String databaseUrl = PropertiesUtil.get( properties, JdbcPersistence.PROPERTY_DATABASE_URL, "jdbc:postgresql://localhost:5432/agidb" );
         String databaseDriverClass = PropertiesUtil.get( properties, JdbcPersistence.PROPERTY_DATABASE_DRIVER_CLASS, JdbcPersistence.DRIVER_POSTGRESQL );
+        int writeDelay = Integer.valueOf( PropertiesUtil.get( properties, JdbcPersistence.PROPERTY_DATABASE_WRITE_DELAY, "0" ) );
+        long cacheTtl = Long.valueOf( PropertiesUtil.get( properties, JdbcPersistence.PROPERTY_DATABASE_CACHE_TTL, "1000" ) );
 
         JdbcPersistence p = new JdbcPersistence();
+        p.setCacheTtl( cacheTtl );
 
         try {
-            p.setup( databaseDriverClass, databaseUser, databasePassword, databaseUrl );
+            p.setup( databaseDriverClass, databaseUser, databasePassword, databaseUrl, writeDelay );
         }
         catch( ClassNotFoundException e ) {
             e.printStackTrace();
@@ -77,57 +140,158 @@ public class JdbcPersistence implements Persistence {
     }
 
     public void setup( String driver, String user, String password, String url ) throws ClassNotFoundException {
+        setup( driver, user, password, url, 0 );
+    }
+
+    /**
+     * @param driver
+     * @param user
+     * @param password
+     * @param url
+     * @param writeDelay Millis to defer and coalesce Entity writes, or 0 to write them immediately.
+     * @throws ClassNotFoundException
+     */
+    public void setup( String driver, String user, String password, String url, int writeDelay ) throws ClassNotFoundException {
         Class.forName( driver );
         _user = user;
         _password = password;
         _url = url;
+        _dataSource = JdbcUtil.CreateDataSource( url, user, password, driver );
+
+        _upsertEntitySql = GetUpsertSql( driver, "entities", ENTITY_COLUMNS );
+        _upsertDataSql = GetUpsertSql( driver, "data", DATA_COLUMNS );
+
+        if( writeDelay > 0 ) {
+            _writer = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+                @Override
+                public Thread newThread( Runnable r ) {
+                    Thread t = new Thread( r, "jdbc-writer" );
+                    t.setDaemon( true );
+                    return t;
+                }
+            } );
+
+            _writer.scheduleWithFixedDelay( new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, writeDelay, writeDelay, TimeUnit.MILLISECONDS );
+
+            Runtime.getRuntime().addShutdownHook( new Thread( new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            } ) );
+        }
+    }
+
+    /**
+     * @param ttl Millis to cache the children of each Entity, or 0 to query them every time.
+     */
+    public void setCacheTtl( long ttl ) {
+        _cacheTtl = ttl;
+    }
+
+    /**
+     * Returns the native single-statement upsert for the database, keyed on the first column; or null if there isn't one
+     * we know.
+     *
+     * @param driver
+     * @param table
+     * @param columns
+     * @return
+     */
+    protected static String GetUpsertSql( String driver, String table, String[] columns ) {
+        String key = columns[ 0 ];
+        String names = String.join( ", ", columns );
+        String values = String.join( ", ", Collections.nCopies( columns.length, "?" ) );
+
+        if( driver.equals( DRIVER_H2 ) ) {
+            return "MERGE INTO " + table + " (" + names + ") KEY (" + key + ") VALUES (" + values + ")";
+        }
+
+        ArrayList< String > updates = new ArrayList< String >();
+
+        if( driver.equals( DRIVER_POSTGRESQL ) ) {
+            for( int i = 1; i < columns.length; ++i ) {
+                updates.add( columns[ i ] + " = EXCLUDED." + columns[ i ] );
+            }
+            return "INSERT INTO " + table + " (" + names + ") VALUES (" + values + ") ON CONFLICT (" + key + ") DO UPDATE SET " + String.join( ", ", updates );
+        }
+
+        if( driver.equals( DRIVER_MYSQL ) ) {
+            for( int i = 1; i < columns.length; ++i ) {
+                updates.add( columns[ i ] + " = VALUES(" + columns[ i ] + ")" );
+            }
+            return "INSERT INTO " + table + " (" + names + ") VALUES (" + values + ") ON DUPLICATE KEY UPDATE " + String.join( ", ", updates );
+        }
+
+        return null;
     }
 
     // Nodes
     public Collection< ModelNode > getNodes() {
-        String sql = "SELECT name, host, port FROM nodes";
+        String sql = "SELECT name, host, port, weight FROM nodes";
         ResultSetMap rsm = new ResultSetMap();
         rsm._fields.add( "name" );
         rsm._fields.add( "host" );
         rsm._fields.add( "port" );
+        rsm._fields.add( "weight" );
         executeQuery( sql, rsm );
         ArrayList< ModelNode > nodes = new ArrayList< ModelNode >();
         for( int i = 0; i < rsm._rows.size(); ++i ) {
             String key = rsm.getRowValue( i, "name" );
             String host = rsm.getRowValue( i, "host" );
             String port = rsm.getRowValue( i, "port" );
-            ModelNode jn = new ModelNode( key, host, Integer.valueOf( port ) );
+            String weight = rsm.getRowValue( i, "weight" );
+            ModelNode jn = new ModelNode( key, host, Integer.valueOf( port ), GetWeight( weight ) );
             nodes.add( jn );
         }
         return nodes;
     }
 
     public void persistNode( ModelNode e ) {
+        // nodes.name isn't unique in the schema, so there's no native upsert:
         // https://www.sitepoint.com/community/t/how-to-use-on-duplicate-key-update-in-postgresql-with-php/200335/4
-        String sql1 = "UPDATE nodes SET host = '" + e._host + "', port = '" + e._port + "' WHERE name = '" + e._name + "'";
-        execute( sql1 );
-        String sql2 = "INSERT INTO nodes (name, host,port) SELECT '" + e._name + "', '" + e._host + "', '" + e._port + "' WHERE NOT EXISTS (SELECT name from nodes WHERE name = '" + e._name + "')";
-        execute( sql2 );
+        String sql1 = "UPDATE nodes SET host = ?, port = ?, weight = ? WHERE name = ?";
+        execute( sql1, e._host, e._port, e._weight, e._name );
+        String sql2 = "INSERT INTO nodes (name, host, port, weight) SELECT ?, ?, ?, ? WHERE NOT EXISTS (SELECT name from nodes WHERE name = ?)";
+        execute( sql2, e._name, e._host, e._port, e._weight, e._name );
     }
 
     public ModelNode getNode( String nodeName ) {
-        String sql = "SELECT name, host, port FROM nodes where name = '" + nodeName + "'";
+        String sql = "SELECT name, host, port, weight FROM nodes where name = ?";
         ResultSetMap rsm = new ResultSetMap();
         rsm._fields.add( "host" );
         rsm._fields.add( "port" );
-        executeQuery( sql, rsm );
+        rsm._fields.add( "weight" );
+        executeQuery( sql, rsm, nodeName );
         if( rsm._rows.isEmpty() ) {
             return null;
         }
         String host = rsm.getRowValue( 0, "host" );
         String port = rsm.getRowValue( 0, "port" );
-        ModelNode jn = new ModelNode( nodeName, host, Integer.valueOf( port ) );
+        String weight = rsm.getRowValue( 0, "weight" );
+        ModelNode jn = new ModelNode( nodeName, host, Integer.valueOf( port ), GetWeight( weight ) );
         return jn;
     }
 
+    /**
+     * @param weight as stored, or null for a Node registered without a weight.
+     * @return
+     */
+    protected static float GetWeight( String weight ) {
+        if( weight == null ) {
+            return ModelNode.DEFAULT_WEIGHT;
+        }
+        return Float.valueOf( weight );
+    }
+
     public void removeNode( String nodeName ) {
-        String sql = "DELETE FROM nodes WHERE name = '" + nodeName + "'";
-        execute( sql );
+        String sql = "DELETE FROM nodes WHERE name = ?";
+        execute( sql, nodeName );
     }
 
     // Entities
@@ -140,7 +304,7 @@ public class JdbcPersistence implements Persistence {
         rsm._fields.add( "parent" );
         rsm._fields.add( "config" );
         executeQuery( sql, rsm );
-        ArrayList< ModelEntity > nodes = new ArrayList< ModelEntity >();
+        LinkedHashMap< String, ModelEntity > entities = new LinkedHashMap< String, ModelEntity >();
         for( int i = 0; i < rsm._rows.size(); ++i ) {
             String key = rsm.getRowValue( i, "name" );
             String type = rsm.getRowValue( i, "type" );
@@ -148,45 +312,166 @@ public class JdbcPersistence implements Persistence {
             String parent = rsm.getRowValue( i, "parent" );
             String config = rsm.getRowValue( i, "config" );
             ModelEntity je = new ModelEntity( key, type, node, parent, config );
-            nodes.add( je );
+            entities.put( key, je );
         }
-        return nodes;
+
+        for( ModelEntity m : getUnwrittenEntities() ) {
+            entities.put( m.name, m );
+        }
+
+        return new ArrayList< ModelEntity >( entities.values() );
     }
 
     public Collection< String > getChildEntities( String parent ) {
-        // SELECT
-        String sql = "SELECT name, parent FROM entities where parent = '" + parent + "'";
+        LinkedHashSet< String > children = new LinkedHashSet< String >( getWrittenChildEntities( parent ) );
+
+        // the parent of an unwritten entity may have changed
+        for( ModelEntity m : getUnwrittenEntities() ) {
+            if( parent.equals( m.parent ) ) {
+                children.add( m.name );
+            }
+            else {
+                children.remove( m.name );
+            }
+        }
+
+        return new ArrayList< String >( children );
+    }
+
+    /**
+     * Returns the children of the Entity in the database, from the cache if possible.
+     *
+     * @param parent
+     * @return
+     */
+    protected Collection< String > getWrittenChildEntities( String parent ) {
+        long now = System.currentTimeMillis();
+
+        ChildEntities ce = _childEntities.get( parent );
+        if( ( ce != null ) && ( ( now - ce._time ) < _cacheTtl ) ) {
+            return ce._names;
+        }
+
+        int version = _childEntitiesVersion.get();
+
+        // SELECT, using the index on parent
+        String sql = "SELECT name FROM entities where parent = ?";
         ResultSetMap rsm = new ResultSetMap();
         rsm._fields.add( "name" );
-        rsm._fields.add( "parent" );
-        executeQuery( sql, rsm );
+        executeQuery( sql, rsm, parent );
 
-        ArrayList< String > children = new ArrayList< String >();
+        ArrayList< String > names = new ArrayList< String >();
 
         for( int i = 0; i < rsm._rows.size(); ++i ) {
             String key = rsm.getRowValue( i, "name" );
-            children.add( key );
+            names.add( key );
+            _entityParents.put( key, parent );
+        }
+
+        ce = new ChildEntities();
+        ce._names = Collections.unmodifiableList( names );
+        ce._time = now;
+
+        if( _cacheTtl > 0 ) {
+            _childEntities.put( parent, ce );
+
+            if( _childEntitiesVersion.get() != version ) {
+                _childEntities.remove( parent, ce ); // may be out of date already
+            }
+        }
+
+        return ce._names;
+    }
+
+    /**
+     * Forget the cached children of the old and new parent, if the Entity has been added or moved. This is repeated
+     * when the change is written, as the children may have been read from the database in the meantime.
+     *
+     * @param name
+     * @param parent
+     */
+    protected void onParentChanged( String name, String parent ) {
+        String newParent = ( parent == null ) ? NO_PARENT : parent;
+        String oldParent = _entityParents.put( name, newParent );
+
+        if( newParent.equals( oldParent ) ) {
+            return; // the usual case
+        }
+
+        _movedEntities.putIfAbsent( name, ( oldParent == null ) ? NO_PARENT : oldParent );
+
+        invalidateChildEntities( newParent, oldParent );
+    }
+
+    /**
+     * Forget the cached children of the old and new parents of Entities that have been added or moved.
+     *
+     * @param entities written to the database.
+     */
+    protected void onEntitiesWritten( Collection< ModelEntity > entities ) {
+        if( _movedEntities.isEmpty() ) {
+            return;
         }
 
-        return children;
+        for( ModelEntity m : entities ) {
+            String oldParent = _movedEntities.remove( m.name );
+            if( oldParent != null ) {
+                invalidateChildEntities( ( m.parent == null ) ? NO_PARENT : m.parent, oldParent );
+            }
+        }
+    }
+
+    protected void invalidateChildEntities( String newParent, String oldParent ) {
+        _childEntitiesVersion.incrementAndGet();
+        _childEntities.remove( newParent );
+        if( oldParent != null ) {
+            _childEntities.remove( oldParent );
+        }
     }
 
     public void persistEntity( ModelEntity e ) {
-        // https://www.sitepoint.com/community/t/how-to-use-on-duplicate-key-update-in-postgresql-with-php/200335/4
-        String sql1 = "UPDATE entities SET type = '" + e.type + "', node = '" + e.node + "', parent = '" + e.parent + "', config = '" + e.config + "' WHERE name = '" + e.name + "'";
-        execute( sql1 );
-        String sql2 = "INSERT INTO entities (name, type, node, parent, config) SELECT '" + e.name + "', '" + e.type + "', '" + e.node + "', '" + e.parent + "', '" + e.config + "' WHERE NOT EXISTS (SELECT name from entities WHERE name = '" + e.name + "')";
-        execute( sql2 );
+        // copy, because the caller will modify it later
+        ModelEntity m = new ModelEntity( e.name, e.type, e.node, e.parent, e.config );
+
+        onParentChanged( m.name, m.parent );
+
+        if( _writer == null ) {
+            synchronized( _writeLock ) {
+                writeEntities( Collections.singletonList( m ) );
+            }
+            return;
+        }
+
+        int pending;
+
+        synchronized( _pendingLock ) {
+            _pendingEntities.put( m.name, m ); // replaces any earlier unwritten config
+            pending = _pendingEntities.size();
+        }
+
+        if( pending >= MAX_PENDING_ENTITIES ) {
+            flush();
+        }
     }
 
     public ModelEntity getEntity( String name ) {
-        String sql = "SELECT type, node, parent, config FROM entities where name = '" + name + "'";
+        synchronized( _pendingLock ) {
+            ModelEntity m = _pendingEntities.get( name );
+            if( ( m == null ) && ( _writingEntities != null ) ) {
+                m = _writingEntities.get( name );
+            }
+            if( m != null ) {
+                return new ModelEntity( m.name, m.type, m.node, m.parent, m.config );
+            }
+        }
+
+        String sql = "SELECT type, node, parent, config FROM entities where name = ?";
         ResultSetMap rsm = new ResultSetMap();
         rsm._fields.add( "type" );
         rsm._fields.add( "node" );
         rsm._fields.add( "parent" );
         rsm._fields.add( "config" );
-        executeQuery( sql, rsm );
+        executeQuery( sql, rsm, name );
         if( rsm._rows.isEmpty() ) {
             return null;
         }
@@ -200,30 +485,121 @@ public class JdbcPersistence implements Persistence {
     }
 
     public void removeEntity( String key ) {
-        String sql = "DELETE FROM entities WHERE name = '" + key + "'";
-        execute( sql );
+        synchronized( _writeLock ) {
+            synchronized( _pendingLock ) {
+                _pendingEntities.remove( key );
+            }
+
+            String sql = "DELETE FROM entities WHERE name = ?";
+            execute( sql, key );
+        }
+
+        _movedEntities.remove( key );
+
+        String oldParent = _entityParents.remove( key );
+        if( oldParent != null ) {
+            invalidateChildEntities( oldParent, null );
+        }
+        else {
+            _childEntitiesVersion.incrementAndGet();
+            _childEntities.clear(); // parent unknown
+        }
+    }
+
+    /**
+     * Write all deferred Entity changes to the database, in one transaction.
+     */
+    public void flush() {
+        synchronized( _writeLock ) {
+            LinkedHashMap< String, ModelEntity > writing;
+
+            synchronized( _pendingLock ) {
+                if( _pendingEntities.isEmpty() ) {
+                    return;
+                }
+
+                writing = _pendingEntities;
+                _writingEntities = writing;
+                _pendingEntities = new LinkedHashMap< String, ModelEntity >();
+            }
+
+            boolean written = false;
+            boolean discard = false;
+
+            try {
+                written = writeEntities( writing.values() );
+            }
+            finally {
+                if( written ) {
+                    _writeFailures = 0;
+                }
+                else {
+                    discard = ( ++_writeFailures >= MAX_WRITE_ATTEMPTS );
+                }
+
+                synchronized( _pendingLock ) {
+                    _writingEntities = null;
+
+                    if( !written && !discard ) { // try again later, unless superseded
+                        for( ModelEntity m : writing.values() ) {
+                            if( !_pendingEntities.containsKey( m.name ) ) {
+                                _pendingEntities.put( m.name, m );
+                            }
+                        }
+                    }
+                }
+            }
+
+            if( discard ) {
+                _writeFailures = 0;
+                logger.error( "Discarded " + writing.size() + " Entity writes after " + MAX_WRITE_ATTEMPTS + " failed attempts: " + writing.keySet() );
+                onEntitiesWritten( writing.values() ); // don't cache children on the assumption they were written
+            }
+        }
+    }
+
+    protected Collection< ModelEntity > getUnwrittenEntities() {
+        ArrayList< ModelEntity > unwritten = new ArrayList< ModelEntity >();
+
+        synchronized( _pendingLock ) {
+            if( _writingEntities != null ) {
+                unwritten.addAll( _writingEntities.values() );
+            }
+            unwritten.addAll( _pendingEntities.values() ); // newer
+        }
+
+        return unwritten;
+    }
+
+    protected boolean writeEntities( Collection< ModelEntity > entities ) {
+        ArrayList< Object[] > rows = new ArrayList< Object[] >();
+
+        for( ModelEntity e : entities ) {
+            rows.add( new Object[]{ e.name, e.type, e.node, e.parent, e.config } );
+        }
+
+        boolean written = upsert( _upsertEntitySql, "entities", ENTITY_COLUMNS, rows );
+        if( written ) {
+            onEntitiesWritten( entities );
+        }
+
+        return written;
     }
 
     // Data
     public void persistData( ModelData modelData ) {
-        String refKeyString = ( modelData.refKeys != null ) ? "'" + modelData.refKeys + "'" : "null";
-        //_logger.info( "persistData T: {} @1 ", System.currentTimeMillis() );
-        String sql1 = "UPDATE data SET ref_name = '" + modelData.refKeys + "', sizes = '" + modelData.sizes + "', elements = '" + modelData.elements + "' WHERE name = '" + modelData.name + "'";
-        execute( sql1 );
-        //_logger.info( "persistData T: {} @2 ", System.currentTimeMillis() );
-        String sql2 = "INSERT INTO data (name, ref_name, sizes, elements) SELECT '" + modelData.name + "', " + refKeyString + ", '" + modelData.sizes + "', '" + modelData.elements + "' WHERE NOT EXISTS (SELECT name from data WHERE name = '" + modelData.name + "' )";
-        execute( sql2 );
-        //_logger.info( "persistData T: {} @3 ", System.currentTimeMillis() );
+        Object[] row = new Object[]{ modelData.name, modelData.refKeys, modelData.sizes, modelData.elements };
+        upsert( _upsertDataSql, "data", DATA_COLUMNS, Collections.singletonList( row ) );
     }
 
     public Collection< ModelData > getDataMeta( String filter ) {
-        String sql = "SELECT name, ref_name, sizes FROM data where name like '%" + filter + "%'";
+        String sql = "SELECT name, ref_name, sizes FROM data where name like ?";
 
         ResultSetMap rsm = new ResultSetMap();
         rsm._fields.add( "name" );
         rsm._fields.add( "ref_name" );
         rsm._fields.add( "sizes" );
-        executeQuery( sql, rsm );
+        executeQuery( sql, rsm, "%" + filter + "%" );
 
         ArrayList< ModelData > al = new ArrayList< ModelData >();
 
@@ -260,19 +636,19 @@ public class JdbcPersistence implements Persistence {
     }
 
     public ModelData getData( String key ) {
-        String sql = "SELECT ref_name, sizes, elements FROM data where name = '" + key + "'";
+        String sql = "SELECT ref_name, sizes, elements FROM data where name = ?";
         ResultSetMap rsm = new ResultSetMap();
         rsm._fields.add( "ref_name" );
         rsm._fields.add( "sizes" );
         rsm._fields.add( "elements" );
-        executeQuery( sql, rsm );
+        executeQuery( sql, rsm, key );
         String refKey = null;
         if( rsm._rows.isEmpty() ) {
             return null;
         } else {
             refKey = rsm.getRowValue( 0, "ref_name" );
             if( refKey != null ) {
-                if( refKey.equals( "null" ) ) {
+                if( refKey.equals( "null" ) ) { // written by older versions
                     refKey = null;
                 }
             }
@@ -290,17 +666,56 @@ public class JdbcPersistence implements Persistence {
     }
 
     public void removeData( String key ) {
-        String sql = "DELETE FROM data WHERE name = '" + key + "'";
-        execute( sql );
+        String sql = "DELETE FROM data WHERE name = ?";
+        execute( sql, key );
     }
 
-    public void execute( String sql ) {
-        JdbcUtil.Execute( _url, _user, _password, sql );
+    /**
+     * Insert or update rows, keyed on the first column, in one transaction.
+     *
+     * @param upsertSql the native upsert, or null to use UPDATE then INSERT.
+     * @param table
+     * @param columns
+     * @param rows
+     * @return true if committed
+     */
+    protected boolean upsert( String upsertSql, String table, String[] columns, List< Object[] > rows ) {
+        if( upsertSql != null ) {
+            return JdbcUtil.ExecuteBatch( _dataSource, upsertSql, rows );
+        }
+
+        String key = columns[ 0 ];
+        ArrayList< String > updates = new ArrayList< String >();
+        for( int i = 1; i < columns.length; ++i ) {
+            updates.add( columns[ i ] + " = ?" );
+        }
+
+        String values = String.join( ", ", Collections.nCopies( columns.length, "?" ) );
+        String sql1 = "UPDATE " + table + " SET " + String.join( ", ", updates ) + " WHERE " + key + " = ?";
+        String sql2 = "INSERT INTO " + table + " (" + String.join( ", ", columns ) + ") SELECT " + values + " WHERE NOT EXISTS (SELECT " + key + " from " + table + " WHERE " + key + " = ?)";
+
+        ArrayList< Object[] > rows1 = new ArrayList< Object[] >();
+        ArrayList< Object[] > rows2 = new ArrayList< Object[] >();
+
+        for( Object[] row : rows ) {
+            Object[] row1 = Arrays.copyOf( Arrays.copyOfRange( row, 1, row.length ), row.length ); // values then key
+            row1[ row.length - 1 ] = row[ 0 ];
+            rows1.add( row1 );
+
+            Object[] row2 = Arrays.copyOf( row, row.length + 1 ); // values then key
+            row2[ row.length ] = row[ 0 ];
+            rows2.add( row2 );
+        }
+
+        return JdbcUtil.ExecuteBatch( _dataSource, sql1, rows1 ) && JdbcUtil.ExecuteBatch( _dataSource, sql2, rows2 );
     }
 
-    public void executeQuery( String sql, ResultSetCallback cb ) {
-        JdbcUtil.ExecuteQuery( _url, _user, _password, sql, cb );
+    public void execute( String sql, Object... parameters ) {
+        JdbcUtil.Execute( _dataSource, sql, parameters );
     }
 
+    public void executeQuery( String sql, ResultSetCallback cb, Object... parameters ) {
+        JdbcUtil.ExecuteQuery( _dataSource, sql, cb, parameters );
+    }
 
 }
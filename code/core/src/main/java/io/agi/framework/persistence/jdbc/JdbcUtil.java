@@ -23,12 +23,13 @@ import org.apache.commons.dbcp2.BasicDataSource;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import javax.sql.DataSource;
 import java.sql.*;
+import java.util.List;
 
 /**
- * TODO - implement some performance improvements, this list seems sensible:
- * http://javarevisited.blogspot.com.au/2012/01/improve-performance-java-database.html
- * Also try to reduce writes by having a flag whether the data has changed.
+ * Helpers for JDBC access. The DataSource variants use pooled connections and prepared statements, and should be
+ * preferred; the url variants open a connection per call.
  * <p/>
  * Created by dave on 17/02/16.
  */
@@ -141,13 +142,15 @@ public class JdbcUtil {
 
     private static BasicDataSource _dataSource;
 
-    public static void CreateDataSource( String dbUrl, String user, String password, String driverClassName ) {
+    public static BasicDataSource CreateDataSource( String dbUrl, String user, String password, String driverClassName ) {
         _dataSource = new BasicDataSource();
         _dataSource.setDriverClassName( driverClassName );
         _dataSource.setUrl( dbUrl );
         _dataSource.setUsername( user );
         _dataSource.setPassword( password );
         _dataSource.setMaxIdle( 100 );
+        _dataSource.setPoolPreparedStatements( true ); // statements are reused per connection
+        return _dataSource;
     }
 
     public static Connection GetConnection( String dbUrl, String user, String password ) {
@@ -164,4 +167,145 @@ public class JdbcUtil {
             return null;
         }
     }
+
+    /**
+     * Execute a parameterized INSERT, UPDATE or DELETE statement using a pooled connection.
+     *
+     * @param ds
+     * @param sql
+     * @param parameters values for each '?' in the sql
+     * @return true if successful
+     */
+    public static boolean Execute( DataSource ds, String sql, Object... parameters ) {
+        Connection c = null;
+        PreparedStatement s = null;
+        try {
+            c = ds.getConnection();
+            s = c.prepareStatement( sql );
+            SetParameters( s, parameters );
+            s.execute();
+            return true;
+        }
+        catch( SQLException se ) {
+            logger.error( se.toString(), se );
+            return false;
+        }
+        finally {
+            Close( s, c );
+        }
+    }
+
+    /**
+     * Execute the same parameterized statement for every row of parameters, as a single transaction.
+     *
+     * @param ds
+     * @param sql
+     * @param rows parameters for each execution of the statement
+     * @return true if the transaction was committed
+     */
+    public static boolean ExecuteBatch( DataSource ds, String sql, List< Object[] > rows ) {
+        Connection c = null;
+        PreparedStatement s = null;
+        try {
+            c = ds.getConnection();
+            c.setAutoCommit( false );
+            s = c.prepareStatement( sql );
+
+            for( Object[] parameters : rows ) {
+                SetParameters( s, parameters );
+                s.addBatch();
+            }
+
+            s.executeBatch();
+            c.commit();
+            return true;
+        }
+        catch( SQLException se ) {
+            logger.error( se.toString(), se );
+
+            try {
+                if( c != null ) c.rollback();
+            }
+            catch( SQLException se2 ) {
+                logger.error( se2.toString(), se2 );
+            }
+
+            return false;
+        }
+        finally {
+            try {
+                if( c != null ) c.setAutoCommit( true ); // before it goes back to the pool
+            }
+            catch( SQLException se ) {
+                logger.error( se.toString(), se );
+            }
+
+            Close( s, c );
+        }
+    }
+
+    /**
+     * Execute a parameterized SQL query that returns data, using a pooled connection.
+     *
+     * @param ds
+     * @param sql
+     * @param cb
+     * @param parameters values for each '?' in the sql
+     */
+    public static void ExecuteQuery( DataSource ds, String sql, ResultSetCallback cb, Object... parameters ) {
+        Connection c = null;
+        PreparedStatement s = null;
+        ResultSet rs = null;
+        try {
+            c = ds.getConnection();
+            s = c.prepareStatement( sql );
+            SetParameters( s, parameters );
+            rs = s.executeQuery();
+
+            if( cb != null ) {
+                cb.onResultSet( rs );
+            }
+        }
+        catch( SQLException se ) {
+            logger.error( se.toString(), se );
+        }
+        finally {
+            try {
+                if( rs != null ) rs.close();
+            }
+            catch( SQLException se ) {
+                logger.error( se.toString(), se );
+            }
+
+            Close( s, c );
+        }
+    }
+
+    protected static void SetParameters( PreparedStatement s, Object... parameters ) throws SQLException {
+        for( int i = 0; i < parameters.length; ++i ) {
+            Object parameter = parameters[ i ];
+            if( parameter == null ) {
+                s.setNull( i + 1, Types.VARCHAR ); // 1-based. All nullable columns are text
+            }
+            else {
+                s.setObject( i + 1, parameter );
+            }
+        }
+    }
+
+    protected static void Close( Statement s, Connection c ) {
+        try {
+            if( s != null ) s.close();
+        }
+        catch( SQLException se ) {
+            logger.error( se.toString(), se );
+        }
+
+        try {
+            if( c != null ) c.close(); // returns it to the pool
+        }
+        catch( SQLException se ) {
+            logger.error( se.toString(), se );
+        }
+    }
 }
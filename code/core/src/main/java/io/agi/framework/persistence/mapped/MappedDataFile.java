@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.persistence.mapped;
+
+import io.agi.core.data.Data;
+import io.agi.core.data.DataSize;
+import io.agi.core.data.FloatArray;
+import io.agi.framework.references.DataRef;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A single Data, stored in its own memory-mapped file. The file is sized from the DataSize, and is only remapped when
+ * the size or references change; otherwise persisting the Data is a copy into the mapped pages.
+ *
+ * The file is little-endian:
+ *
+ *   magic (int), key, encoding, refKeys, dimensions (int), [ size (int), label ] * dimensions, length (int), float * length
+ *
+ * Strings are an int byte-count followed by UTF-8 bytes, or -1 for null. A file with dimensions = -1 has no Data, and
+ * ends there.
+ *
+ * A file left truncated or corrupt, e.g. by a crash, is detected when it is read: every count and size is checked
+ * against the bytes remaining, and an IOException thrown.
+ *
+ * Thread safe: each file has its own lock, so Data in different files is read and written concurrently.
+ */
+public class MappedDataFile {
+
+    public static final int MAGIC = 0x41474944; // "AGID"
+    public static final String QUARANTINE_SUFFIX = ".bad";
+
+    protected File _file;
+    protected MappedByteBuffer _buffer;
+    protected int _headerBytes = 0;
+    protected boolean _deleted = false;
+
+    public MappedDataFile( File file ) {
+        _file = file;
+    }
+
+    public File getFile() {
+        return _file;
+    }
+
+    /**
+     * Write the DataRef into the mapped file, remapping if necessary.
+     *
+     * @param dataRef
+     * @return false if the file has been deleted, so nothing was written.
+     * @throws IOException
+     */
+    public synchronized boolean write( DataRef dataRef ) throws IOException {
+        if( _deleted ) {
+            return false;
+        }
+
+        ByteBuffer header = GetHeader( dataRef );
+        int length = ( dataRef._data != null ) ? dataRef._data._values.length : 0;
+        int bytes = header.remaining() + length * 4;
+
+        if( !isHeaderSameAs( header, bytes ) ) {
+            map( bytes );
+            _buffer.position( 0 );
+            _buffer.put( header );
+            _headerBytes = _buffer.position();
+        }
+
+        if( length > 0 ) {
+            _buffer.position( _headerBytes );
+            _buffer.asFloatBuffer().put( dataRef._data._values );
+        }
+
+        return true;
+    }
+
+    /**
+     * Read the file into a new DataRef.
+     *
+     * @return null if the file has been deleted.
+     * @throws IOException if the file can't be read, or is truncated or corrupt.
+     */
+    public synchronized DataRef read() throws IOException {
+        if( _deleted ) {
+            return null;
+        }
+
+        if( _buffer == null ) {
+            long bytes = _file.length();
+            if( bytes > Integer.MAX_VALUE ) {
+                throw new IOException( "Mapped Data file too large: " + _file );
+            }
+            map( ( int ) bytes );
+        }
+
+        ByteBuffer bb = _buffer.duplicate().order( ByteOrder.LITTLE_ENDIAN );
+        bb.position( 0 );
+
+        if( ( bb.remaining() < 4 ) || ( bb.getInt() != MAGIC ) ) {
+            throw new IOException( "Not a mapped Data file: " + _file );
+        }
+
+        String key = GetString( bb );
+        String encoding = GetString( bb );
+        String refKeys = GetString( bb );
+
+        DataRef dataRef = new DataRef( key, encoding, refKeys, null );
+
+        int dimensions = GetInt( bb );
+        if( dimensions < 0 ) {
+            _headerBytes = bb.position();
+            return dataRef;
+        }
+        if( ( long ) dimensions * 8 > bb.remaining() ) { // size and label
+            throw new IOException( "Bad dimensions in mapped Data file: " + dimensions );
+        }
+
+        DataSize ds = new DataSize( dimensions );
+        for( int i = 0; i < dimensions; ++i ) {
+            int size = GetInt( bb );
+            if( size < 0 ) {
+                throw new IOException( "Bad size in mapped Data file: " + size );
+            }
+            String label = GetString( bb );
+            ds.set( i, size, label );
+        }
+
+        int length = GetInt( bb );
+        if( ( length < 0 ) || ( ( long ) length * 4 > bb.remaining() ) ) {
+            throw new IOException( "Bad length in mapped Data file: " + length );
+        }
+        _headerBytes = bb.position();
+
+        Data d = new Data( ds, new FloatArray( length ) ); // sized by the length read, not the dimensions
+        bb.asFloatBuffer().get( d._values );
+        dataRef._data = d;
+
+        return dataRef;
+    }
+
+    /**
+     * Flush changes in the mapped pages to disk.
+     */
+    public synchronized void force() {
+        if( _buffer != null ) {
+            _buffer.force();
+        }
+    }
+
+    /**
+     * Release the mapping and remove the file.
+     */
+    public synchronized void delete() {
+        _deleted = true;
+        _buffer = null; // unmapped when collected
+        _file.delete();
+    }
+
+    /**
+     * Release the mapping and set the file aside, so that it isn't read again but can still be inspected.
+     *
+     * @return the file it was moved to, or null if it couldn't be moved and was removed instead.
+     */
+    public synchronized File quarantine() {
+        _deleted = true;
+        _buffer = null;
+        File bad = new File( _file.getPath() + QUARANTINE_SUFFIX );
+        if( _file.renameTo( bad ) ) {
+            return bad;
+        }
+
+        _file.delete();
+        return null;
+    }
+
+    protected boolean isHeaderSameAs( ByteBuffer header, int bytes ) {
+        if( _buffer == null ) {
+            return false;
+        }
+        if( _buffer.capacity() != bytes ) {
+            return false;
+        }
+        if( _headerBytes != header.remaining() ) {
+            return false;
+        }
+
+        ByteBuffer existing = _buffer.duplicate();
+        existing.position( 0 );
+        existing.limit( _headerBytes );
+        return existing.equals( header );
+    }
+
+    protected void map( int bytes ) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile( _file, "rw" );
+        try {
+            raf.setLength( bytes );
+            FileChannel channel = raf.getChannel();
+            _buffer = channel.map( FileChannel.MapMode.READ_WRITE, 0, bytes ); // the mapping outlives the channel
+            _buffer.order( ByteOrder.LITTLE_ENDIAN );
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    protected static ByteBuffer GetHeader( DataRef dataRef ) {
+        Data d = dataRef._data;
+
+        int bytes = 4 + GetSize( dataRef._key ) + GetSize( dataRef._encoding ) + GetSize( dataRef._refKeys ) + 4;
+
+        if( d != null ) {
+            DataSize ds = d._dataSize;
+            for( int i = 0; i < ds._sizes.length; ++i ) {
+                bytes += 4 + GetSize( ds.getLabel( i ) );
+            }
+            bytes += 4;
+        }
+
+        ByteBuffer bb = ByteBuffer.allocate( bytes ).order( ByteOrder.LITTLE_ENDIAN );
+        bb.putInt( MAGIC );
+        PutString( bb, dataRef._key );
+        PutString( bb, dataRef._encoding );
+        PutString( bb, dataRef._refKeys );
+
+        if( d == null ) {
+            bb.putInt( -1 );
+        }
+        else {
+            DataSize ds = d._dataSize;
+            bb.putInt( ds._sizes.length );
+            for( int i = 0; i < ds._sizes.length; ++i ) {
+                bb.putInt( ds._sizes[ i ] );
+                PutString( bb, ds.getLabel( i ) );
+            }
+            bb.putInt( d._values.length );
+        }
+
+        bb.flip();
+        return bb;
+    }
+
+    protected static int GetSize( String s ) {
+        if( s == null ) {
+            return 4;
+        }
+        return 4 + s.getBytes( StandardCharsets.UTF_8 ).length;
+    }
+
+    protected static void PutString( ByteBuffer bb, String s ) {
+        if( s == null ) {
+            bb.putInt( -1 );
+            return;
+        }
+
+        byte[] bytes = s.getBytes( StandardCharsets.UTF_8 );
+        bb.putInt( bytes.length );
+        bb.put( bytes );
+    }
+
+    protected static int GetInt( ByteBuffer bb ) throws IOException {
+        if( bb.remaining() < 4 ) {
+            throw new IOException( "Truncated mapped Data file." );
+        }
+        return bb.getInt();
+    }
+
+    protected static String GetString( ByteBuffer bb ) throws IOException {
+        int length = GetInt( bb );
+        if( length < 0 ) {
+            return null;
+        }
+        if( length > bb.remaining() ) {
+            throw new IOException( "Bad string length in mapped Data file: " + length );
+        }
+
+        byte[] bytes = new byte[ length ];
+        bb.get( bytes );
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+}
@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.persistence.mapped;
+
+import com.google.gson.Gson;
+import io.agi.core.util.PropertiesUtil;
+import io.agi.framework.persistence.ChildEntityIndex;
+import io.agi.framework.persistence.DataPersistence;
+import io.agi.framework.persistence.Persistence;
+import io.agi.framework.persistence.models.ModelEntity;
+import io.agi.framework.persistence.models.ModelNode;
+import io.agi.framework.references.DataRef;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Persistence on the local disk of a single Node.
+ *
+ * Nodes and Entities are kept in memory and every change is appended to a log, which is replayed when the Node
+ * restarts. The log is compacted when it contains mostly superseded records. Each Data is kept in its own
+ * memory-mapped file (see MappedDataFile), so persisting Data is a memory copy and a checkpoint is only a flush of the
+ * mapped pages and the log.
+ *
+ * Each Data file has its own lock (see MappedDataFile), so the Entities' outputs are persisted concurrently. Only the
+ * Nodes, Entities and their log share a lock.
+ *
+ * Like NodeMemoryPersistence, you mustn't have more than one Node in this configuration.
+ */
+public class MappedFilePersistence implements Persistence, DataPersistence {
+
+    public static final String PROPERTY_PERSISTENCE_PATH = "persistence-path";
+
+    public static final String LOG_FILE = "entities.log";
+    public static final String DATA_FOLDER = "data";
+    public static final String DATA_FILE_SUFFIX = ".dat";
+
+    public static final int COMPACT_MIN_RECORDS = 1000;
+
+    private static final Logger _logger = LogManager.getLogger();
+
+    protected File _folder;
+    protected File _dataFolder;
+    protected FileOutputStream _logStream;
+    protected Writer _logWriter;
+    protected int _logRecords = 0;
+    protected Gson _gson = new Gson();
+
+    protected HashMap< String, ModelNode > _nodeMap = new HashMap< String, ModelNode >();
+    protected HashMap< String, ModelEntity > _entityMap = new HashMap< String, ModelEntity >();
+    protected ConcurrentHashMap< String, MappedDataFile > _dataMap = new ConcurrentHashMap< String, MappedDataFile >();
+    protected ChildEntityIndex _childEntityIndex = new ChildEntityIndex();
+
+    /**
+     * One line of the log.
+     */
+    protected static class LogRecord {
+        public static final String OP_PERSIST_NODE = "persist-node";
+        public static final String OP_REMOVE_NODE = "remove-node";
+        public static final String OP_PERSIST_ENTITY = "persist-entity";
+        public static final String OP_REMOVE_ENTITY = "remove-entity";
+
+        public String op;
+        public String name;
+        public ModelNode node;
+        public ModelEntity entity;
+    }
+
+    public MappedFilePersistence() {
+    }
+
+    public static MappedFilePersistence Create( Properties properties ) {
+        String path = PropertiesUtil.get( properties, PROPERTY_PERSISTENCE_PATH, "./persistence" );
+
+        MappedFilePersistence p = new MappedFilePersistence();
+
+        try {
+            p.setup( path );
+        }
+        catch( IOException e ) {
+            _logger.error( "Unable to open persistence at: " + path );
+            _logger.error( e.toString(), e );
+            return null;
+        }
+
+        return p;
+    }
+
+    /**
+     * Opens (or creates) the persistence in the specified folder, replaying the log and finding the Data files.
+     *
+     * @param path
+     * @throws IOException
+     */
+    public synchronized void setup( String path ) throws IOException {
+        _folder = new File( path );
+        _dataFolder = new File( _folder, DATA_FOLDER );
+        _dataFolder.mkdirs();
+
+        replayLog();
+        compactLog(); // start with a clean log
+
+        File[] files = _dataFolder.listFiles();
+        if( files != null ) {
+            for( File file : files ) {
+                String fileName = file.getName();
+                if( !fileName.endsWith( DATA_FILE_SUFFIX ) ) {
+                    continue;
+                }
+
+                String key = FileNameToKey( fileName );
+                _dataMap.put( key, new MappedDataFile( file ) );
+            }
+        }
+
+        _logger.info( "Opened persistence at " + _folder + " with " + _entityMap.size() + " entities and " + _dataMap.size() + " data." );
+    }
+
+    // Nodes
+    public synchronized Collection< ModelNode > getNodes() {
+        return new ArrayList< ModelNode >( _nodeMap.values() );
+    }
+
+    public synchronized ModelNode getNode( String nodeName ) {
+        return _nodeMap.get( nodeName );
+    }
+
+    public synchronized void persistNode( ModelNode m ) {
+        _nodeMap.put( m._name, m );
+
+        LogRecord r = new LogRecord();
+        r.op = LogRecord.OP_PERSIST_NODE;
+        r.node = m;
+        appendLog( r );
+    }
+
+    public synchronized void removeNode( String nodeName ) {
+        _nodeMap.remove( nodeName );
+
+        LogRecord r = new LogRecord();
+        r.op = LogRecord.OP_REMOVE_NODE;
+        r.name = nodeName;
+        appendLog( r );
+    }
+
+    // Entities
+    public synchronized Collection< ModelEntity > getEntities() {
+        return new ArrayList< ModelEntity >( _entityMap.values() );
+    }
+
+    public synchronized Collection< String > getChildEntities( String parent ) {
+        return _childEntityIndex.getChildren( parent );
+    }
+
+    public synchronized ModelEntity getEntity( String name ) {
+        return _entityMap.get( name );
+    }
+
+    public synchronized void persistEntity( ModelEntity m ) {
+        _entityMap.put( m.name, m );
+        _childEntityIndex.put( m.name, m.parent );
+
+        LogRecord r = new LogRecord();
+        r.op = LogRecord.OP_PERSIST_ENTITY;
+        r.entity = m;
+        appendLog( r );
+    }
+
+    public synchronized void removeEntity( String name ) {
+        _entityMap.remove( name );
+        _childEntityIndex.remove( name );
+
+        LogRecord r = new LogRecord();
+        r.op = LogRecord.OP_REMOVE_ENTITY;
+        r.name = name;
+        appendLog( r );
+    }
+
+    // Data
+    public Collection< String > getDataKeys() {
+        return new ArrayList< String >( _dataMap.keySet() );
+    }
+
+    public DataRef getData( String key ) {
+        MappedDataFile mdf = _dataMap.get( key );
+        if( mdf == null ) {
+            return null;
+        }
+
+        try {
+            return mdf.read();
+        }
+        catch( IOException e ) {
+            // e.g. left truncated by a crash: set it aside, so the Node can start without it
+            _logger.error( "Unable to read data: " + key );
+            _logger.error( e.toString(), e );
+            File bad = mdf.quarantine();
+            _dataMap.remove( key, mdf );
+            if( bad != null ) {
+                _logger.error( "Moved unreadable data file to: " + bad );
+            }
+            return null;
+        }
+    }
+
+    public void persistData( DataRef dataRef ) {
+        try {
+            while( true ) {
+                MappedDataFile mdf = _dataMap.get( dataRef._key );
+                if( mdf == null ) {
+                    File file = new File( _dataFolder, KeyToFileName( dataRef._key ) );
+                    MappedDataFile created = new MappedDataFile( file );
+                    mdf = _dataMap.putIfAbsent( dataRef._key, created );
+                    if( mdf == null ) {
+                        mdf = created;
+                    }
+                }
+
+                if( mdf.write( dataRef ) ) {
+                    return;
+                }
+                // else: being removed; written to a new file once it has been
+            }
+        }
+        catch( IOException e ) {
+            _logger.error( "Unable to write data: " + dataRef._key );
+            _logger.error( e.toString(), e );
+        }
+    }
+
+    public void removeData( String key ) {
+        MappedDataFile mdf = _dataMap.get( key );
+        if( mdf != null ) {
+            mdf.delete(); // before it's removed, so a new file for the key can't be created until this one is gone
+            _dataMap.remove( key, mdf );
+        }
+    }
+
+    /**
+     * @return true, as Data is read back from its mapped file with a bulk copy.
+     */
+    public boolean isMapped() {
+        return true;
+    }
+
+    /**
+     * Flush the mapped Data and the log to disk. The Data files are flushed in parallel, so that the writes can be
+     * queued at the disk together.
+     */
+    public void checkpoint() {
+        new ArrayList< MappedDataFile >( _dataMap.values() ).parallelStream().forEach( new Consumer< MappedDataFile >() {
+            @Override
+            public void accept( MappedDataFile mdf ) {
+                mdf.force();
+            }
+        } );
+
+        syncLog();
+    }
+
+    protected synchronized void syncLog() {
+        try {
+            _logWriter.flush();
+            _logStream.getFD().sync();
+        }
+        catch( IOException e ) {
+            _logger.error( "Unable to sync persistence log." );
+            _logger.error( e.toString(), e );
+        }
+    }
+
+    protected void appendLog( LogRecord r ) {
+        try {
+            _logWriter.write( _gson.toJson( r ) );
+            _logWriter.write( "\n" );
+            _logWriter.flush(); // to the OS, not necessarily the disk: see checkpoint()
+            ++_logRecords;
+        }
+        catch( IOException e ) {
+            _logger.error( "Unable to append to persistence log." );
+            _logger.error( e.toString(), e );
+        }
+
+        int liveRecords = _nodeMap.size() + _entityMap.size();
+        if( _logRecords > Math.max( COMPACT_MIN_RECORDS, liveRecords * 4 ) ) {
+            compactLog();
+        }
+    }
+
+    protected void replayLog() throws IOException {
+        File logFile = new File( _folder, LOG_FILE );
+        if( !logFile.exists() ) {
+            return;
+        }
+
+        BufferedReader br = new BufferedReader( new InputStreamReader( new FileInputStream( logFile ), StandardCharsets.UTF_8 ) );
+
+        try {
+            String line;
+            while( ( line = br.readLine() ) != null ) {
+                LogRecord r;
+                try {
+                    r = _gson.fromJson( line, LogRecord.class );
+                }
+                catch( Exception e ) {
+                    _logger.warn( "Ignoring incomplete record at the end of the persistence log." );
+                    break; // a partial write at the time of a crash
+                }
+
+                if( r == null ) {
+                    continue;
+                }
+
+                if( LogRecord.OP_PERSIST_NODE.equals( r.op ) ) {
+                    _nodeMap.put( r.node._name, r.node );
+                }
+                else if( LogRecord.OP_REMOVE_NODE.equals( r.op ) ) {
+                    _nodeMap.remove( r.name );
+                }
+                else if( LogRecord.OP_PERSIST_ENTITY.equals( r.op ) ) {
+                    _entityMap.put( r.entity.name, r.entity );
+                    _childEntityIndex.put( r.entity.name, r.entity.parent );
+                }
+                else if( LogRecord.OP_REMOVE_ENTITY.equals( r.op ) ) {
+                    _entityMap.remove( r.name );
+                    _childEntityIndex.remove( r.name );
+                }
+            }
+        }
+        finally {
+            br.close();
+        }
+    }
+
+    /**
+     * Rewrite the log with only the current state, then replace the old log with it.
+     */
+    protected void compactLog() {
+        File logFile = new File( _folder, LOG_FILE );
+        File tempFile = new File( _folder, LOG_FILE + ".tmp" );
+
+        try {
+            if( _logWriter != null ) {
+                _logWriter.close();
+            }
+
+            FileOutputStream fos = new FileOutputStream( tempFile );
+            Writer w = new BufferedWriter( new OutputStreamWriter( fos, StandardCharsets.UTF_8 ) );
+
+            for( ModelNode m : _nodeMap.values() ) {
+                LogRecord r = new LogRecord();
+                r.op = LogRecord.OP_PERSIST_NODE;
+                r.node = m;
+                w.write( _gson.toJson( r ) );
+                w.write( "\n" );
+            }
+
+            for( ModelEntity m : _entityMap.values() ) {
+                LogRecord r = new LogRecord();
+                r.op = LogRecord.OP_PERSIST_ENTITY;
+                r.entity = m;
+                w.write( _gson.toJson( r ) );
+                w.write( "\n" );
+            }
+
+            w.flush();
+            fos.getFD().sync();
+            w.close();
+
+            Files.move( tempFile.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+
+            _logRecords = _nodeMap.size() + _entityMap.size();
+            _logStream = new FileOutputStream( logFile, true );
+            _logWriter = new BufferedWriter( new OutputStreamWriter( _logStream, StandardCharsets.UTF_8 ) );
+        }
+        catch( IOException e ) {
+            _logger.error( "Unable to compact persistence log." );
+            _logger.error( e.toString(), e );
+        }
+    }
+
+    protected static String KeyToFileName( String key ) {
+        try {
+            return URLEncoder.encode( key, "UTF-8" ) + DATA_FILE_SUFFIX;
+        }
+        catch( UnsupportedEncodingException e ) {
+            return key + DATA_FILE_SUFFIX; // UTF-8 is always supported
+        }
+    }
+
+    protected static String FileNameToKey( String fileName ) {
+        String encoded = fileName.substring( 0, fileName.length() - DATA_FILE_SUFFIX.length() );
+        try {
+            return URLDecoder.decode( encoded, "UTF-8" );
+        }
+        catch( UnsupportedEncodingException e ) {
+            return encoded;
+        }
+    }
+
+}
@@ -22,13 +22,23 @@ package io.agi.framework.persistence.models;
 import io.agi.framework.Node;
 
 /**
+ * A Node, as registered in Persistence. The placement weight is held here, rather than by each Node, so that every Node
+ * places Entities the same way (see EntityPlacement).
+ *
  * Created by dave on 17/02/16.
  */
 public class ModelNode {
 
+    public static final float DEFAULT_WEIGHT = 1.f;
+
     public String _name;
     public String _host;
     public int _port;
+    public float _weight = DEFAULT_WEIGHT; // relative share of Entities placed at the Node
+
+    protected ModelNode() {
+        // for deserialization, so that a Node persisted without a weight has the default
+    }
 
     public ModelNode( String key, String host, int port ) {
         _name = key;
@@ -36,6 +46,11 @@ public class ModelNode {
         _port = port;
     }
 
+    public ModelNode( String key, String host, int port, float weight ) {
+        this( key, host, port );
+        _weight = weight;
+    }
+
     public ModelNode( Node n ) {
         _name = n.getName();
         _host = n.getHost();
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.placement;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Assigns names to Nodes by consistent hashing. Each Node has points on a ring in proportion to its weight, and a name
+ * belongs to the Node of the first point at or after the hash of the name. When a Node joins or leaves, or its weight
+ * changes, only the names in the arcs next to its points move.
+ *
+ * The ring depends only on the Node names and weights, so every Node builds the same ring.
+ */
+public class ConsistentHashRing {
+
+    public static final int POINTS_PER_WEIGHT = 100;
+
+    protected TreeMap< Long, String > _points = new TreeMap< Long, String >();
+
+    /**
+     * @param weights of each Node. Nodes with no weight are left out.
+     */
+    public ConsistentHashRing( Map< String, Float > weights ) {
+        TreeMap< String, Float > sorted = new TreeMap< String, Float >( weights ); // so collisions resolve the same way
+
+        for( Map.Entry< String, Float > e : sorted.entrySet() ) {
+            String node = e.getKey();
+            float weight = e.getValue();
+            if( weight <= 0.f ) {
+                continue;
+            }
+
+            int points = Math.max( 1, Math.round( weight * POINTS_PER_WEIGHT ) );
+
+            for( int i = 0; i < points; ++i ) {
+                Long hash = Hash( node + "#" + i );
+                if( !_points.containsKey( hash ) ) {
+                    _points.put( hash, node );
+                }
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return _points.isEmpty();
+    }
+
+    /**
+     * @param name
+     * @return the Node, or null if the ring is empty.
+     */
+    public String getNode( String name ) {
+        if( _points.isEmpty() ) {
+            return null;
+        }
+
+        Map.Entry< Long, String > e = _points.ceilingEntry( Hash( name ) );
+        if( e == null ) {
+            e = _points.firstEntry(); // wrap around
+        }
+
+        return e.getValue();
+    }
+
+    /**
+     * A 64 bit hash of the string that is the same in every process: FNV-1a, with a final mix so that similar strings
+     * are spread around the ring.
+     *
+     * @param s
+     * @return
+     */
+    public static long Hash( String s ) {
+        long h = 0xcbf29ce484222325L;
+
+        for( int i = 0; i < s.length(); ++i ) {
+            h ^= s.charAt( i );
+            h *= 0x100000001b3L;
+        }
+
+        h ^= ( h >>> 33 );
+        h *= 0xff51afd7ed558ccdL;
+        h ^= ( h >>> 33 );
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= ( h >>> 33 );
+
+        return h;
+    }
+
+}
@@ -0,0 +1,390 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.placement;
+
+import io.agi.core.orm.Keys;
+import io.agi.framework.Entity;
+import io.agi.framework.Node;
+import io.agi.framework.persistence.Persistence;
+import io.agi.framework.persistence.jdbc.JdbcPersistence;
+import io.agi.framework.persistence.models.ModelEntity;
+import io.agi.framework.persistence.models.ModelNode;
+import io.agi.framework.references.DataRef;
+import io.agi.framework.references.DataRefMap;
+import io.agi.framework.references.DataRefResolver;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * Decides which Node hosts each Entity, and moves Entities between Nodes.
+ *
+ * Entities created without a Node are placed by consistent hashing of their names over the registered Nodes (see
+ * ConsistentHashRing), in proportion to the weights of the Nodes. The weights are persisted with the Nodes (see
+ * ModelNode), so every Node builds the same ring and places a new Entity at the same Node. A Node's Entities can be
+ * moved to other Nodes between updates, one by one (migrate()) or all those that the ring now places elsewhere, e.g.
+ * after Nodes have joined or changed weight (rebalance()). A Node with weight 0 gets no Entities, so it can be emptied before it leaves.
+ *
+ * Alternatively, PlacementOptimizer can find a placement with less Data crossing between Nodes, from the references
+ * between Entities. Its plan can be reviewed before it is applied.
+ *
+ * Moving an Entity changes its Node in Persistence, which also holds its config, and then the coordination layer tells
+ * the other Nodes. The new Node takes the Entity's output Data from the old one before the Entity's next update there.
+ */
+public class EntityPlacement {
+
+    private static final Logger _logger = LogManager.getLogger();
+
+    public static final String PROPERTY_PLACEMENT_WEIGHTS = "placement-weights"; // e.g. node-1=2,node-2=1
+    public static final float DEFAULT_WEIGHT = ModelNode.DEFAULT_WEIGHT;
+    public static final long RING_TTL = 10000; // millis, as Nodes may join, leave or change weight at any time
+
+    protected Node _n;
+    protected volatile ConsistentHashRing _ring;
+    protected volatile long _ringTime = 0;
+
+    public EntityPlacement() {
+    }
+
+    public void setNode( Node n ) {
+        _n = n;
+    }
+
+    /**
+     * Set the weights of Nodes, in the form of the placement-weights property. Only registered Nodes can have a weight.
+     *
+     * @param weights e.g. node-1=2,node-2=1
+     */
+    public void setWeights( String weights ) {
+        if( weights == null ) {
+            return;
+        }
+
+        for( String nodeWeight : weights.split( "," ) ) {
+            nodeWeight = nodeWeight.trim();
+            if( nodeWeight.isEmpty() ) {
+                continue;
+            }
+
+            int equals = nodeWeight.lastIndexOf( "=" );
+            if( equals < 0 ) {
+                _logger.error( "Bad Node weight: " + nodeWeight );
+                continue;
+            }
+
+            try {
+                float weight = Float.valueOf( nodeWeight.substring( equals + 1 ).trim() );
+                setWeight( nodeWeight.substring( 0, equals ).trim(), weight );
+            }
+            catch( NumberFormatException e ) {
+                _logger.error( "Bad Node weight: " + nodeWeight );
+            }
+        }
+    }
+
+    /**
+     * Persist the weight of a registered Node. The other Nodes use it when they next rebuild their ring, within RING_TTL.
+     *
+     * @param nodeName
+     * @param weight
+     * @return false if there is no such Node.
+     */
+    public boolean setWeight( String nodeName, float weight ) {
+        Persistence p = _n.getPersistence();
+
+        ModelNode modelNode = p.getNode( nodeName );
+        if( modelNode == null ) {
+            _logger.warn( "Can't set the weight of " + nodeName + ", no such Node." );
+            return false;
+        }
+
+        modelNode._weight = Math.max( 0.f, weight );
+        p.persistNode( modelNode );
+        _ring = null;
+        return true;
+    }
+
+    public float getWeight( String nodeName ) {
+        ModelNode modelNode = _n.getPersistence().getNode( nodeName );
+        if( modelNode == null ) {
+            return DEFAULT_WEIGHT;
+        }
+        return modelNode._weight;
+    }
+
+    /**
+     * Returns the Node that the Entity should be hosted by, which may not be the one that hosts it now.
+     *
+     * @param entityName
+     * @return this Node if no Nodes are registered.
+     */
+    public String getNode( String entityName ) {
+        String nodeName = getRing().getNode( entityName );
+        if( nodeName == null ) {
+            return _n.getName();
+        }
+        return nodeName;
+    }
+
+    protected ConsistentHashRing getRing() {
+        ConsistentHashRing ring = _ring;
+        long now = System.currentTimeMillis();
+
+        if( ( ring != null ) && ( ( now - _ringTime ) < RING_TTL ) ) {
+            return ring;
+        }
+
+        HashMap< String, Float > weights = new HashMap< String, Float >();
+        for( ModelNode modelNode : _n.getPersistence().getNodes() ) {
+            weights.put( modelNode._name, modelNode._weight );
+        }
+
+        ring = new ConsistentHashRing( weights );
+        _ring = ring;
+        _ringTime = now;
+        return ring;
+    }
+
+    /**
+     * Move all the Entities hosted by this Node that the ring places at other Nodes.
+     *
+     * @return the Entities moved, and the Node each was moved to.
+     */
+    public Map< String, String > rebalance() {
+        HashMap< String, String > moved = new HashMap< String, String >();
+        _ring = null; // use the current Nodes
+
+        for( ModelEntity modelEntity : _n.getPersistence().getEntities() ) {
+            if( !_n.getName().equals( modelEntity.node ) ) {
+                continue;
+            }
+
+            String nodeName = getNode( modelEntity.name );
+            if( nodeName.equals( modelEntity.node ) ) {
+                continue;
+            }
+
+            if( migrate( modelEntity.name, nodeName ) ) {
+                moved.put( modelEntity.name, nodeName );
+            }
+        }
+
+        _logger.info( "Rebalanced " + moved.size() + " Entities to other Nodes." );
+        return moved;
+    }
+
+    /**
+     * Plan a placement of all Entities that reduces the Data fetched from other Nodes each step, without moving any.
+     * Only the references known to this Node are used (see DataRefMap.getReferences()), each weighted by the size of
+     * the referenced Data if this Node holds a copy.
+     *
+     * @return
+     */
+    public PlacementPlan getPlan() {
+        Persistence p = _n.getPersistence();
+        PlacementOptimizer po = new PlacementOptimizer();
+
+        for( ModelNode modelNode : p.getNodes() ) {
+            po.addNode( modelNode._name, modelNode._weight );
+        }
+
+        HashSet< String > entityNames = new HashSet< String >();
+        for( ModelEntity modelEntity : p.getEntities() ) {
+            po.addEntity( modelEntity.name, modelEntity.node );
+            entityNames.add( modelEntity.name );
+        }
+
+        DataRefMap dataRefMap = _n.getDataRefMap();
+
+        for( Map.Entry< String, String > e : dataRefMap.getReferences().entrySet() ) {
+            String consumer = GetEntity( e.getKey(), entityNames );
+            if( consumer == null ) {
+                continue;
+            }
+
+            for( String refKey : DataRefResolver.GetRefKeys( e.getValue() ) ) {
+                String producer = GetEntity( refKey, entityNames );
+                if( producer == null ) {
+                    continue;
+                }
+
+                long bytes = Math.max( DataRefMap.DATA_OVERHEAD, dataRefMap.getDataBytes( refKey ) );
+                po.addReference( refKey, producer, bytes, consumer );
+            }
+        }
+
+        return po.optimize();
+    }
+
+    /**
+     * Ask the Nodes hosting the Entities in the plan to move them.
+     *
+     * @param plan
+     */
+    public void apply( PlacementPlan plan ) {
+        for( PlacementPlan.Move move : plan.moves ) {
+            if( _n.getName().equals( move.from ) ) {
+                migrate( move.entity, move.to );
+            }
+            else {
+                _n.getCoordination().doMigrate( move.entity, move.to );
+            }
+        }
+
+        plan.applied = true;
+    }
+
+    /**
+     * Returns the Entity whose name is the longest prefix of the Data key, or null if none.
+     *
+     * @param key
+     * @param entityNames
+     * @return
+     */
+    protected static String GetEntity( String key, HashSet< String > entityNames ) {
+        int i = key.lastIndexOf( Keys.DELIMITER );
+
+        while( i > 0 ) {
+            String prefix = key.substring( 0, i );
+            if( entityNames.contains( prefix ) ) {
+                return prefix;
+            }
+
+            i = key.lastIndexOf( Keys.DELIMITER, i - 1 );
+        }
+
+        return null;
+    }
+
+    /**
+     * Move an Entity hosted by this Node to another Node, when it isn't updating.
+     *
+     * @param entityName
+     * @param nodeName
+     * @return true if the Entity is now hosted by the Node.
+     */
+    public boolean migrate( String entityName, String nodeName ) {
+        Persistence p = _n.getPersistence();
+
+        ModelEntity modelEntity = p.getEntity( entityName );
+        if( modelEntity == null ) {
+            _logger.warn( "Can't migrate " + entityName + ", no such Entity." );
+            return false;
+        }
+
+        if( nodeName.equals( modelEntity.node ) ) {
+            return true;
+        }
+
+        if( !_n.getName().equals( modelEntity.node ) ) {
+            _logger.warn( "Can't migrate " + entityName + ", it can only be migrated by its Node " + modelEntity.node );
+            return false;
+        }
+
+        if( p.getNode( nodeName ) == null ) {
+            _logger.warn( "Can't migrate " + entityName + ", no such Node " + nodeName );
+            return false;
+        }
+
+        if( !_n.lock( entityName ) ) { // wait for any update to finish
+            return false;
+        }
+
+        try {
+            modelEntity = p.getEntity( entityName ); // may have changed while waiting
+            if( !_n.getName().equals( modelEntity.node ) ) {
+                return nodeName.equals( modelEntity.node );
+            }
+
+            modelEntity.node = nodeName;
+            p.persistEntity( modelEntity );
+
+            if( p instanceof JdbcPersistence ) {
+                ( ( JdbcPersistence ) p ).flush(); // the new Node reads its Entities from the database
+            }
+
+            _n.getEntityConfigCache().remove( entityName );
+            _n.getCoordination().onPlaced( entityName );
+        }
+        finally {
+            _n.unlock( entityName );
+        }
+
+        _logger.info( "Migrated " + entityName + " to " + nodeName );
+        return true;
+    }
+
+    /**
+     * Called when an Entity has moved from a Node. If it is now hosted by this Node, take its output Data from the Node
+     * it moved from, before its next update here.
+     *
+     * @param entityName
+     * @param fromNodeName
+     */
+    public void onPlaced( final String entityName, final String fromNodeName ) {
+        ModelEntity modelEntity = _n.getPersistence().getEntity( entityName );
+        if( ( modelEntity == null ) || !_n.getName().equals( modelEntity.node ) ) {
+            return; // not moved here
+        }
+
+        _n.getUpdateScheduler().schedule( entityName, new Runnable() {
+            @Override
+            public void run() {
+                if( !_n.lock( entityName ) ) {
+                    return;
+                }
+
+                try {
+                    takeData( entityName, fromNodeName );
+                }
+                finally {
+                    _n.unlock( entityName );
+                }
+            }
+        } );
+    }
+
+    protected void takeData( String entityName, String fromNodeName ) {
+        ModelEntity modelEntity = _n.getPersistence().getEntity( entityName );
+        if( ( modelEntity == null ) || !_n.getName().equals( modelEntity.node ) ) {
+            return; // moved again
+        }
+
+        Entity e = _n.getEntityFactory().create( _n.getObjectMap(), modelEntity );
+        Collection< String > keys = e.getOutputKeys();
+
+        Collection< DataRef > dataRefs = new ArrayList< DataRef >();
+        if( !keys.isEmpty() ) {
+            dataRefs = _n.doGetData( keys, fromNodeName );
+        }
+
+        for( DataRef dataRef : dataRefs ) {
+            _n.getDataRefMap().setData( dataRef._key, dataRef ); // this Node now has the most recent copy
+        }
+
+        _logger.info( "Took " + dataRefs.size() + " of " + keys.size() + " Data of " + entityName + " from " + fromNodeName );
+    }
+
+}
@@ -0,0 +1,377 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.placement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Partitions the Entities across Nodes so that less Data crosses between Nodes each step.
+ *
+ * The graph has an edge for each Data that one Entity reads from another, weighted by the size of the Data. Its cost is
+ * the size times the number of other Nodes that read it, as each Node fetches a Data once per step however many of its
+ * Entities read it.
+ *
+ * Starting from the current placement, Entities are first moved off Nodes that have more than their share (by weight),
+ * with the least added cost. Then each Entity is moved to the Node of one of its neighbours if that reduces the cost and
+ * the Node has room, until no such move remains (a greedy refinement, as in Kernighan-Lin). Starting from the current
+ * placement keeps the moves few; the result is a local minimum.
+ */
+public class PlacementOptimizer {
+
+    public static final float IMBALANCE = 0.1f; // a Node may have this much more than its share of Entities
+    public static final int MAX_PASSES = 10;
+
+    /**
+     * A Data, the Entity that writes it and the Entities that read it.
+     */
+    protected static class Edge {
+        public String _key;
+        public String _producer;
+        public long _bytes;
+        public HashSet< String > _consumers = new HashSet< String >();
+    }
+
+    protected TreeMap< String, Float > _weights = new TreeMap< String, Float >(); // by Node
+    protected TreeMap< String, String > _placement = new TreeMap< String, String >(); // Entity to Node
+    protected HashMap< String, Edge > _edges = new HashMap< String, Edge >(); // by Data key
+    protected HashMap< String, ArrayList< Edge > > _entityEdges = new HashMap< String, ArrayList< Edge > >();
+    protected HashMap< String, Integer > _capacities = new HashMap< String, Integer >();
+    protected HashMap< String, Integer > _loads = new HashMap< String, Integer >();
+
+    public PlacementOptimizer() {
+    }
+
+    /**
+     * @param nodeName
+     * @param weight relative share of the Entities; 0 for none.
+     */
+    public void addNode( String nodeName, float weight ) {
+        _weights.put( nodeName, Math.max( 0.f, weight ) );
+    }
+
+    /**
+     * Entities at Nodes that weren't added aren't moved, but Data they exchange with other Entities is counted.
+     *
+     * @param entityName
+     * @param nodeName the Node that hosts it now.
+     */
+    public void addEntity( String entityName, String nodeName ) {
+        if( nodeName != null ) {
+            _placement.put( entityName, nodeName );
+        }
+    }
+
+    /**
+     * Add an Entity that reads a Data written by another Entity. Both Entities must have been added.
+     *
+     * @param key of the Data
+     * @param producer the Entity that writes it
+     * @param bytes size of the Data
+     * @param consumer the Entity that reads it
+     */
+    public void addReference( String key, String producer, long bytes, String consumer ) {
+        if( !_placement.containsKey( producer ) || !_placement.containsKey( consumer ) || producer.equals( consumer ) ) {
+            return;
+        }
+
+        Edge edge = _edges.get( key );
+        if( edge == null ) {
+            edge = new Edge();
+            edge._key = key;
+            edge._producer = producer;
+            edge._bytes = bytes;
+            _edges.put( key, edge );
+            getEntityEdges( producer ).add( edge );
+        }
+
+        if( edge._consumers.add( consumer ) ) {
+            getEntityEdges( consumer ).add( edge );
+        }
+    }
+
+    protected ArrayList< Edge > getEntityEdges( String entityName ) {
+        ArrayList< Edge > edges = _entityEdges.get( entityName );
+        if( edges == null ) {
+            edges = new ArrayList< Edge >();
+            _entityEdges.put( entityName, edges );
+        }
+        return edges;
+    }
+
+    /**
+     * Find a better placement. The result is only a plan; no Entities are moved.
+     *
+     * @return
+     */
+    public PlacementPlan optimize() {
+        HashMap< String, String > before = new HashMap< String, String >( _placement );
+
+        PlacementPlan plan = new PlacementPlan();
+        plan.cutBytesBefore = getCutBytes();
+        plan.entitiesBefore = getEntitiesPerNode();
+
+        if( setCapacities() ) {
+            balance();
+            refine();
+        }
+
+        plan.cutBytesAfter = getCutBytes();
+        plan.entitiesAfter = getEntitiesPerNode();
+        plan.trafficAfter = getTraffic();
+
+        for( Map.Entry< String, String > e : _placement.entrySet() ) {
+            String from = before.get( e.getKey() );
+            if( !from.equals( e.getValue() ) ) {
+                plan.moves.add( new PlacementPlan.Move( e.getKey(), from, e.getValue() ) );
+            }
+        }
+
+        return plan;
+    }
+
+    /**
+     * @return false if there is nowhere to put Entities.
+     */
+    protected boolean setCapacities() {
+        float totalWeight = 0.f;
+        for( float weight : _weights.values() ) {
+            totalWeight += weight;
+        }
+
+        if( totalWeight <= 0.f ) {
+            return false;
+        }
+
+        int entities = 0;
+        for( String nodeName : _placement.values() ) {
+            if( _weights.containsKey( nodeName ) ) {
+                ++entities;
+            }
+        }
+
+        for( Map.Entry< String, Float > e : _weights.entrySet() ) {
+            String nodeName = e.getKey();
+            float share = entities * e.getValue() / totalWeight;
+            int capacity = ( int ) Math.ceil( share * ( 1.f + IMBALANCE ) );
+            _capacities.put( nodeName, capacity );
+            _loads.put( nodeName, 0 );
+        }
+
+        for( String nodeName : _placement.values() ) {
+            Integer load = _loads.get( nodeName );
+            if( load != null ) {
+                _loads.put( nodeName, load + 1 );
+            }
+        }
+
+        return true;
+    }
+
+    protected boolean isMovable( String entityName ) {
+        return _weights.containsKey( _placement.get( entityName ) );
+    }
+
+    protected boolean hasRoom( String nodeName ) {
+        return _loads.get( nodeName ) < _capacities.get( nodeName );
+    }
+
+    /**
+     * Move Entities off Nodes that have more than their capacity, adding as little cost as possible.
+     */
+    protected void balance() {
+        for( String nodeName : _weights.keySet() ) {
+            while( _loads.get( nodeName ) > _capacities.get( nodeName ) ) {
+                String bestEntity = null;
+                String bestNode = null;
+                long bestDelta = Long.MAX_VALUE;
+
+                for( Map.Entry< String, String > e : _placement.entrySet() ) {
+                    if( !e.getValue().equals( nodeName ) ) {
+                        continue;
+                    }
+
+                    for( String toNodeName : _weights.keySet() ) {
+                        if( toNodeName.equals( nodeName ) || !hasRoom( toNodeName ) ) {
+                            continue;
+                        }
+
+                        long delta = getMoveDelta( e.getKey(), toNodeName );
+                        if( delta < bestDelta ) {
+                            bestDelta = delta;
+                            bestEntity = e.getKey();
+                            bestNode = toNodeName;
+                        }
+                    }
+                }
+
+                if( bestEntity == null ) {
+                    break; // nowhere has room
+                }
+
+                move( bestEntity, bestNode );
+            }
+        }
+    }
+
+    /**
+     * Move Entities to the Nodes of their neighbours while that reduces the cost.
+     */
+    protected void refine() {
+        ArrayList< String > entityNames = new ArrayList< String >( _entityEdges.keySet() );
+        Collections.sort( entityNames ); // deterministic
+
+        for( int pass = 0; pass < MAX_PASSES; ++pass ) {
+            boolean moved = false;
+
+            for( String entityName : entityNames ) {
+                if( !isMovable( entityName ) ) {
+                    continue;
+                }
+
+                String nodeName = _placement.get( entityName );
+                String bestNode = null;
+                long bestDelta = 0;
+
+                for( String toNodeName : getNeighbourNodes( entityName ) ) {
+                    if( toNodeName.equals( nodeName ) || !_weights.containsKey( toNodeName ) || !hasRoom( toNodeName ) ) {
+                        continue;
+                    }
+
+                    long delta = getMoveDelta( entityName, toNodeName );
+                    if( ( delta < bestDelta ) || ( ( delta == bestDelta ) && ( bestNode != null ) && ( toNodeName.compareTo( bestNode ) < 0 ) ) ) {
+                        bestDelta = delta;
+                        bestNode = toNodeName;
+                    }
+                }
+
+                if( ( bestNode != null ) && ( bestDelta < 0 ) ) {
+                    move( entityName, bestNode );
+                    moved = true;
+                }
+            }
+
+            if( !moved ) {
+                break;
+            }
+        }
+    }
+
+    protected HashSet< String > getNeighbourNodes( String entityName ) {
+        HashSet< String > nodeNames = new HashSet< String >();
+
+        for( Edge edge : getEntityEdges( entityName ) ) {
+            nodeNames.add( _placement.get( edge._producer ) );
+            for( String consumer : edge._consumers ) {
+                nodeNames.add( _placement.get( consumer ) );
+            }
+        }
+
+        return nodeNames;
+    }
+
+    protected void move( String entityName, String toNodeName ) {
+        String nodeName = _placement.put( entityName, toNodeName );
+        _loads.put( nodeName, _loads.get( nodeName ) - 1 );
+        _loads.put( toNodeName, _loads.get( toNodeName ) + 1 );
+    }
+
+    /**
+     * @param entityName
+     * @param toNodeName
+     * @return the change in cost if the Entity moved to the Node.
+     */
+    protected long getMoveDelta( String entityName, String toNodeName ) {
+        String nodeName = _placement.get( entityName );
+        long delta = 0;
+
+        for( Edge edge : getEntityEdges( entityName ) ) {
+            delta += getCost( edge, entityName, toNodeName ) - getCost( edge, entityName, nodeName );
+        }
+
+        return delta;
+    }
+
+    /**
+     * @param edge
+     * @param entityName an Entity to consider at another Node, or null
+     * @param nodeName the Node of that Entity
+     * @return the bytes per step of the Data that cross Nodes.
+     */
+    protected long getCost( Edge edge, String entityName, String nodeName ) {
+        return edge._bytes * getReaderNodes( edge, entityName, nodeName ).size();
+    }
+
+    /**
+     * @return the Nodes other than the writer's that read the Data.
+     */
+    protected HashSet< String > getReaderNodes( Edge edge, String entityName, String nodeName ) {
+        String producerNode = edge._producer.equals( entityName ) ? nodeName : _placement.get( edge._producer );
+        HashSet< String > nodeNames = new HashSet< String >();
+
+        for( String consumer : edge._consumers ) {
+            String consumerNode = consumer.equals( entityName ) ? nodeName : _placement.get( consumer );
+            if( !consumerNode.equals( producerNode ) ) {
+                nodeNames.add( consumerNode );
+            }
+        }
+
+        return nodeNames;
+    }
+
+    public long getCutBytes() {
+        long bytes = 0;
+        for( Edge edge : _edges.values() ) {
+            bytes += getCost( edge, null, null );
+        }
+        return bytes;
+    }
+
+    protected HashMap< String, Long > getTraffic() {
+        HashMap< String, Long > traffic = new HashMap< String, Long >();
+
+        for( Edge edge : _edges.values() ) {
+            String producerNode = _placement.get( edge._producer );
+            for( String consumerNode : getReaderNodes( edge, null, null ) ) {
+                String route = producerNode + " -> " + consumerNode;
+                Long bytes = traffic.get( route );
+                traffic.put( route, ( ( bytes == null ) ? 0 : bytes ) + edge._bytes );
+            }
+        }
+
+        return traffic;
+    }
+
+    protected HashMap< String, Integer > getEntitiesPerNode() {
+        HashMap< String, Integer > entities = new HashMap< String, Integer >();
+
+        for( String nodeName : _placement.values() ) {
+            Integer count = entities.get( nodeName );
+            entities.put( nodeName, ( ( count == null ) ? 0 : count ) + 1 );
+        }
+
+        return entities;
+    }
+
+}
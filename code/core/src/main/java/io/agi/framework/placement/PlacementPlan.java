@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.placement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * The Entity moves proposed by PlacementOptimizer, and the cross-Node traffic expected before and after them. Traffic
+ * is in bytes per step, assuming each Node fetches each Data it uses from another Node once per step.
+ *
+ * Serialized as JSON for the dry-run report.
+ */
+public class PlacementPlan {
+
+    public static class Move {
+        public String entity;
+        public String from;
+        public String to;
+
+        public Move( String entity, String from, String to ) {
+            this.entity = entity;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    public long cutBytesBefore;
+    public long cutBytesAfter;
+    public ArrayList< Move > moves = new ArrayList< Move >();
+    public HashMap< String, Integer > entitiesBefore = new HashMap< String, Integer >(); // by Node
+    public HashMap< String, Integer > entitiesAfter = new HashMap< String, Integer >();
+    public HashMap< String, Long > trafficAfter = new HashMap< String, Long >(); // bytes per step, by "from -> to"
+    public boolean applied = false;
+
+    public PlacementPlan() {
+    }
+
+}
@@ -34,6 +34,11 @@ public class DataRef {
     public String _refKeys;
     public Data _data;
 
+    // The version of a copy fetched from another Node, at that Node; see DataVersions. Changes since this version can
+    // be fetched instead of the whole Data.
+    public long _epoch = 0;
+    public long _version = DataVersions.NO_VERSION;
+
     public DataRef( String key, String encoding, String refKeys, Data d ) {
         _key = key;
         _encoding = encoding;
@@ -19,28 +19,93 @@
 
 package io.agi.framework.references;
 
+import io.agi.core.data.Data;
+import io.agi.core.data.DataSize;
+import io.agi.core.data.FloatArray;
+import io.agi.core.data.FloatBufferStore;
+import io.agi.core.data.FloatBufferStoreFactory;
 import io.agi.core.orm.Keys;
 import io.agi.framework.Node;
 import io.agi.framework.coordination.Coordination;
+import io.agi.framework.persistence.DataPersistence;
 import io.agi.framework.persistence.Persistence;
 import io.agi.framework.persistence.models.ModelData;
 import io.agi.framework.persistence.models.ModelEntity;
 import io.agi.framework.references.DataRef;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
 
 /**
  * An in-memory cache of data structures, using their unique keys.
- * Thread safe.
+ * Thread safe. There is no global lock: a slow fetch of a Data from a remote Node only blocks readers of that key, and
+ * concurrent readers of the same dirty key share a single fetch. Likewise, evicting a Data or reading it back only
+ * blocks readers of that key.
+ * <p/>
+ * The memory used by cached Data can be limited. When the budget is exceeded, the least recently used Data are evicted:
+ * Data that has been written to DataPersistence is simply dropped, and other Data (e.g. copies from other Nodes) is
+ * spilled to a local file. Evicted Data is read back when it is next requested.
+ * <p/>
+ * Data whose keys have opted in (see FloatBufferStoreFactory) is instead held off the heap when evicted, in a direct
+ * or memory-mapped buffer, and read back with a bulk copy rather than deserialized; unless the DataPersistence maps
+ * Data from disk already.
  * <p/>
  * Created by dave on 28/03/16.
  */
 public class DataRefMap {
 
+    private static final Logger _logger = LogManager.getLogger();
+
+    public static final String PROPERTY_DATA_CACHE_BUDGET = "data-cache-budget"; // bytes. 0 for no limit
+    public static final String PROPERTY_DATA_CACHE_SPILL_PATH = "data-cache-spill-path";
+    public static final String PROPERTY_DATA_CACHE_STORE_TYPE = "data-cache-store-type"; // direct or mapped
+    public static final String PROPERTY_DATA_CACHE_STORE_KEYS = "data-cache-store-keys"; // key suffixes held off-heap when evicted, e.g. -weights
+    public static final long DEFAULT_CACHE_BUDGET = 0;
+    public static final float EVICTION_TARGET = 0.9f; // of the budget, so that each eviction frees some space
+    public static final long DATA_OVERHEAD = 64; // bytes per cached Data, in addition to its values
+
+    /**
+     * What is needed to read back an evicted Data, and describe it meanwhile.
+     */
+    protected static class Evicted {
+        public boolean _spilled; // else off-heap or in DataPersistence
+        public FloatBufferStore _store; // if off-heap
+        public String _encoding;
+        public String _refKeys;
+        public DataSize _dataSize;
+    }
+
     protected Node _n;
-    protected HashMap< String, DataRef > _cache = new HashMap< String, DataRef >();
+    protected ConcurrentHashMap< String, DataRef > _cache = new ConcurrentHashMap< String, DataRef >();
 //    protected HashMap< String, HashSet< String > > _cachedReferences = new HashMap< String, HashSet< String > >();
-    protected HashMap< String, String > _dirtyKeyNodes = new HashMap< String, String >();
+    protected ConcurrentHashMap< String, String > _dirtyKeyNodes = new ConcurrentHashMap< String, String >();
+    protected ConcurrentHashMap< String, CompletableFuture< DataRef > > _fetches = new ConcurrentHashMap< String, CompletableFuture< DataRef > >(); // in-flight remote fetches
+    protected ConcurrentHashMap< String, String > _references = new ConcurrentHashMap< String, String >(); // key to refKeys, for cached references only
+    protected AtomicInteger _referencesVersion = new AtomicInteger( 0 );
+    protected ExecutorService _prefetchExecutor;
+    protected DataVersions _versions = new DataVersions(); // of the Data held by this Node, for other Nodes' copies
+
+    protected long _cacheBudget = DEFAULT_CACHE_BUDGET;
+    protected AtomicLong _cacheBytes = new AtomicLong( 0 );
+    protected ConcurrentHashMap< String, Long > _cacheSizes = new ConcurrentHashMap< String, Long >(); // bytes counted for each cached Data
+    protected LinkedHashMap< String, Boolean > _cacheAccess = new LinkedHashMap< String, Boolean >( 16, 0.75f, true ); // least recently used first, if there is a budget. Guarded by itself
+    protected ConcurrentHashMap< String, Boolean > _copies = new ConcurrentHashMap< String, Boolean >(); // keys of copies of other Nodes' Data
+    protected ConcurrentHashMap< String, Evicted > _evicted = new ConcurrentHashMap< String, Evicted >();
+    protected DataSpill _spill = new DataSpill( System.getProperty( "java.io.tmpdir" ) );
+    protected FloatBufferStoreFactory _storeFactory = new FloatBufferStoreFactory();
+    protected ConcurrentHashMap< String, CompletableFuture< DataRef > > _evictions = new ConcurrentHashMap< String, CompletableFuture< DataRef > >(); // in-flight evictions and read-backs
+    protected AtomicBoolean _evicting = new AtomicBoolean( false ); // one thread chooses and evicts Data at a time
 
     public DataRefMap() {
 
@@ -50,6 +115,111 @@ public class DataRefMap {
         _n = n;
     }
 
+    /**
+     * Limit the memory used by cached Data. Data over the budget is evicted, least recently used first.
+     *
+     * @param budget bytes, estimated from the size of each Data. 0 for no limit.
+     * @param spillPath a directory for Data that must be saved when evicted.
+     */
+    public void setCacheBudget( long budget, String spillPath ) {
+        _cacheBudget = budget;
+        _spill = new DataSpill( spillPath );
+        evict( null );
+    }
+
+    /**
+     * @return the factory of off-heap stores for evicted Data, which Data keys can opt in to.
+     */
+    public FloatBufferStoreFactory getStoreFactory() {
+        return _storeFactory;
+    }
+
+    /**
+     * @return the estimated size of the cached Data, in bytes.
+     */
+    public long getCacheBytes() {
+        return _cacheBytes.get();
+    }
+
+    /**
+     * Returns the versions of the Data held by this Node, so that other Nodes can fetch only what has changed.
+     *
+     * @return
+     */
+    public DataVersions getDataVersions() {
+        return _versions;
+    }
+
+    /**
+     * Returns the persistence layer, if it can store Data.
+     *
+     * @return
+     */
+    protected DataPersistence getDataPersistence() {
+        Persistence p = _n.getPersistence();
+        if( p instanceof DataPersistence ) {
+            return ( DataPersistence ) p;
+        }
+        return null;
+    }
+
+    /**
+     * Load all Data previously persisted by this Node into the cache, e.g. after a restart.
+     * There is no notification, as other Nodes can't have a newer copy.
+     */
+    public void restoreData() {
+        DataPersistence dp = getDataPersistence();
+        if( dp == null ) {
+            return;
+        }
+
+        for( String key : dp.getDataKeys() ) {
+            DataRef dataRef = dp.getData( key );
+            if( dataRef != null ) {
+                cachePut( key, dataRef, false );
+                updateReferences( key, dataRef );
+            }
+        }
+    }
+
+    /**
+     * Returns the keys referenced by each cached reference Data, e.g. the output of another Entity that is the input of
+     * an Entity.
+     *
+     * @return a copy, keyed by the Data key.
+     */
+    public HashMap< String, String > getReferences() {
+        return new HashMap< String, String >( _references );
+    }
+
+    /**
+     * Returns a number that changes whenever the cached references change.
+     *
+     * @return
+     */
+    public int getReferencesVersion() {
+        return _referencesVersion.get();
+    }
+
+    protected void updateReferences( String key, DataRef dataRef ) {
+        String refKeys = null;
+        if( ( dataRef != null ) && dataRef.isReference() ) {
+            refKeys = dataRef._refKeys;
+        }
+
+        String oldRefKeys;
+        if( refKeys == null ) {
+            oldRefKeys = _references.remove( key );
+        }
+        else {
+            oldRefKeys = _references.put( key, refKeys );
+        }
+
+        if( !Objects.equals( refKeys, oldRefKeys ) ) {
+            _referencesVersion.incrementAndGet();
+        }
+    }
+
     /**
      * This notifies the Node that a Data is out of date.
      * @param key
@@ -78,13 +248,11 @@ public class DataRefMap {
      */
     public void onSetData( String key, String node ) {
         // invalidate local copy, store who has most recent copy
-        synchronized( _cache ) {
-            if( node.equals( _n.getName() ) ) {
-                _dirtyKeyNodes.remove( key ); // not dirty if this node
-            }
-            else {
-                _dirtyKeyNodes.put( key, node );
-            }
+        if( node.equals( _n.getName() ) ) {
+            _dirtyKeyNodes.remove( key ); // not dirty if this node
+        }
+        else {
+            _dirtyKeyNodes.put( key, node );
         }
     }
 
@@ -97,27 +265,24 @@ public class DataRefMap {
      */
     public void onGetData( String key, String node, ModelData modelData ) {
         DataRef dataRef = modelData.deserialize();
-        synchronized( _cache ) {
-            onGetDataUpdateUnsafe( key, node, dataRef );
-        }
+        onGetDataUpdate( key, node, dataRef );
     }
 
 
-    public void onGetDataUpdateUnsafe( String key, String node, DataRef dataRef ) {
+    protected void onGetDataUpdate( String key, String node, DataRef dataRef ) {
 
         if( dataRef != null ) {
-            _cache.put( key, dataRef );
+            _copies.put( key, true );
+            cachePut( key, dataRef, false );
         }
         else{
-            _cache.remove( key );
+            cacheRemove( key, null );
         }
 
-        String cleanNode = _dirtyKeyNodes.get( key );
-        if( cleanNode != null ) {
-            if( cleanNode.equals( node ) ) {
-                _dirtyKeyNodes.remove( key ); // no longer dirty
-            }
-        }
+        updateReferences( key, dataRef );
+        _versions.remove( key ); // a copy of another Node's Data
+
+        _dirtyKeyNodes.remove( key, node ); // no longer dirty, unless a newer copy is now at another Node
 
         // No notification, we got this from another Node so there was already a notification.
     }
@@ -236,10 +401,8 @@ public class DataRefMap {
      */
     public Collection< String > getDataKeys() {
         HashSet< String > keys = new HashSet< String >();
-        synchronized( _cache ) {
-            Set< String > keySet = _cache.keySet();
-            keys.addAll( keySet );
-        }
+        keys.addAll( _cache.keySet() );
+        keys.addAll( _evicted.keySet() );
         return keys;
     }
 
@@ -251,46 +414,587 @@ public class DataRefMap {
      */
     public Collection< ModelData > getDataMeta( String filter ) {
         ArrayList< ModelData > meta = new ArrayList< ModelData >();
-        synchronized( _cache ) {
-            Set< String > keySet = _cache.keySet();
-            for( String key : keySet ) {
-                if( filter.isEmpty() || ( key.indexOf( filter ) < 0 ) ) {
-                    continue; // not to include
-                }
+        for( Map.Entry< String, DataRef > e : _cache.entrySet() ) {
+            String key = e.getKey();
+            if( filter.isEmpty() || ( key.indexOf( filter ) < 0 ) ) {
+                continue; // not to include
+            }
 
-                DataRef dataRef = _cache.get( key );
-                ModelData modelData = new ModelData();
-                modelData.serializeMeta( dataRef );
-                meta.add( modelData );
+            DataRef dataRef = e.getValue();
+            ModelData modelData = new ModelData();
+            modelData.serializeMeta( dataRef );
+            meta.add( modelData );
+        }
+
+        for( Map.Entry< String, Evicted > e : _evicted.entrySet() ) {
+            String key = e.getKey();
+            if( filter.isEmpty() || ( key.indexOf( filter ) < 0 ) || _cache.containsKey( key ) ) {
+                continue; // not to include, or already included
             }
+
+            Evicted evicted = e.getValue();
+            Data d = new Data( evicted._dataSize, new FloatArray() ); // no values, just the size
+            ModelData modelData = new ModelData();
+            modelData.serializeMeta( new DataRef( key, evicted._encoding, evicted._refKeys, d ) );
+            meta.add( modelData );
         }
 
         return meta;
     }
 
     public boolean hasData( String name ) {
-        synchronized( _cache ) {
-            return _cache.keySet().contains( name );
-        }
+        return _cache.containsKey( name ) || _evicted.containsKey( name );
+    }
+
+    /**
+     * Returns the cached copy of the Data, without fetching it even if another Node has a newer copy.
+     *
+     * @param name
+     * @return
+     */
+    public DataRef getCachedData( String name ) {
+        return _cache.get( name );
     }
 
     public DataRef getData( String name ) {
-        synchronized( _cache ) {
-            String cleanNode = _dirtyKeyNodes.get( name );
-            if( cleanNode != null ) {
-                // perform a synchronous fetch
-                ModelData modelData = _n.doGetData( name, cleanNode );
-                DataRef d = modelData.deserialize();
-                onGetDataUpdateUnsafe( name, cleanNode, d );
+        String cleanNode = _dirtyKeyNodes.get( name );
+        if( cleanNode == null ) {
+            DataRef d = cacheGet( name );
+            return d;
+        }
+
+        // Join a fetch of this key that is already in progress, if any
+        CompletableFuture< DataRef > fetch = new CompletableFuture< DataRef >();
+        CompletableFuture< DataRef > existingFetch = _fetches.putIfAbsent( name, fetch );
+        if( existingFetch != null ) {
+            return existingFetch.join();
+        }
+
+        // perform a synchronous fetch
+        DataRef d = null;
+        try {
+            d = _n.doGetData( name, cleanNode );
+            if( d != null ) {
+                onGetDataUpdate( name, cleanNode, d );
+            }
+            else {
+                _logger.warn( "Unable to fetch " + name + " from " + cleanNode + ", using local copy." );
+                d = cacheGet( name );
+            }
+        }
+        finally {
+            _fetches.remove( name, fetch );
+            fetch.complete( d );
+        }
+
+        return d;
+    }
+
+    /**
+     * Fetch all the dirty Data among the keys, so that subsequent getData() calls don't block. Each Node holding some of
+     * the Data is asked for all of them in one request, and Nodes are asked concurrently.
+     *
+     * @param keys
+     */
+    public void prefetchData( Collection< String > keys ) {
+        HashMap< String, ArrayList< String > > nodeKeys = new HashMap< String, ArrayList< String > >();
+
+        for( String key : keys ) {
+            String cleanNode = _dirtyKeyNodes.get( key );
+            if( cleanNode == null ) {
+                continue; // not dirty
+            }
+
+            ArrayList< String > al = nodeKeys.get( cleanNode );
+            if( al == null ) {
+                al = new ArrayList< String >();
+                nodeKeys.put( cleanNode, al );
+            }
+            if( !al.contains( key ) ) {
+                al.add( key );
+            }
+        }
+
+        ArrayList< CompletableFuture< Void > > futures = new ArrayList< CompletableFuture< Void > >();
+        Iterator< Map.Entry< String, ArrayList< String > > > i = nodeKeys.entrySet().iterator();
+
+        while( i.hasNext() ) {
+            Map.Entry< String, ArrayList< String > > e = i.next();
+            final String node = e.getKey();
+
+            // Claim the keys that nobody else is fetching
+            final HashMap< String, CompletableFuture< DataRef > > claimed = new HashMap< String, CompletableFuture< DataRef > >();
+            for( String key : e.getValue() ) {
+                CompletableFuture< DataRef > fetch = new CompletableFuture< DataRef >();
+                if( _fetches.putIfAbsent( key, fetch ) == null ) {
+                    claimed.put( key, fetch );
+                }
+            }
+
+            if( claimed.isEmpty() ) {
+                continue;
+            }
+
+            if( !i.hasNext() ) {
+                fetchData( node, claimed ); // the last Node in this thread
+                break;
+            }
+
+            futures.add( CompletableFuture.runAsync( new Runnable() {
+                @Override
+                public void run() {
+                    fetchData( node, claimed );
+                }
+            }, getPrefetchExecutor() ) );
+        }
+
+        for( CompletableFuture< Void > f : futures ) {
+            f.join();
+        }
+    }
+
+    protected synchronized ExecutorService getPrefetchExecutor() {
+        if( _prefetchExecutor == null ) {
+            _prefetchExecutor = Executors.newCachedThreadPool( new ThreadFactory() {
+                @Override
+                public Thread newThread( Runnable r ) {
+                    Thread t = new Thread( r, "data-prefetch" );
+                    t.setDaemon( true );
+                    return t;
+                }
+            } );
+        }
+        return _prefetchExecutor;
+    }
+
+    /**
+     * Fetch the claimed keys from the Node, and complete their fetches.
+     *
+     * @param node
+     * @param claimed
+     */
+    protected void fetchData( String node, HashMap< String, CompletableFuture< DataRef > > claimed ) {
+        HashMap< String, DataRef > fetched = new HashMap< String, DataRef >();
+
+        try {
+            Collection< DataRef > dataRefs = _n.doGetData( claimed.keySet(), node );
+            for( DataRef d : dataRefs ) {
+                if( claimed.containsKey( d._key ) ) {
+                    onGetDataUpdate( d._key, node, d );
+                    fetched.put( d._key, d );
+                }
+            }
+        }
+        catch( Exception e ) {
+            _logger.error( e.toString(), e );
+        }
+        finally {
+            for( Map.Entry< String, CompletableFuture< DataRef > > e : claimed.entrySet() ) {
+                String key = e.getKey();
+                DataRef d = fetched.get( key );
+                if( d == null ) {
+                    _logger.warn( "Unable to fetch " + key + " from " + node + ", using local copy." );
+                    d = cacheGet( key );
+                }
+
+                _fetches.remove( key, e.getValue() );
+                e.getValue().complete( d );
+            }
+        }
+    }
+
+    /**
+     * Returns the cached Data, reading it back if it was evicted.
+     * Concurrent readers of the same evicted key share a single read-back, and wait for an eviction of the key to finish.
+     *
+     * @param key
+     * @return
+     */
+    protected DataRef cacheGet( String key ) {
+        while( true ) {
+            DataRef d = _cache.get( key );
+            if( d != null ) {
+                touch( key );
                 return d;
             }
+
+            if( !_evicted.containsKey( key ) ) {
+                return null;
+            }
+
+            CompletableFuture< DataRef > readBack = new CompletableFuture< DataRef >();
+            CompletableFuture< DataRef > pending = _evictions.putIfAbsent( key, readBack );
+            if( pending != null ) {
+                d = pending.join();
+                if( d != null ) {
+                    return d; // read back by another thread
+                }
+                continue; // evicted meanwhile, or the read-back failed
+            }
+
+            try {
+                d = readBack( key );
+            }
+            finally {
+                _evictions.remove( key, readBack );
+                readBack.complete( d );
+            }
+
+            evict( key ); // after other readers of the key are released
+            return d;
+        }
+    }
+
+    /**
+     * Read back an evicted Data, and cache it. The caller must have claimed the key in _evictions.
+     *
+     * @param key
+     * @return the Data now cached, or null.
+     */
+    protected DataRef readBack( String key ) {
+        Evicted evicted = _evicted.get( key );
+        if( evicted == null ) {
+            return _cache.get( key ); // read back or replaced meanwhile
+        }
+
+        DataRef d = null;
+
+        try {
+            if( evicted._store != null ) {
+                Data data = new Data( evicted._dataSize );
+                data.setSize( evicted._store.getSize() );
+                evicted._store.get( data._values );
+                d = new DataRef( key, evicted._encoding, evicted._refKeys, data );
+            }
+            else if( evicted._spilled ) {
+                d = _spill.read( key );
+            }
             else {
-                DataRef d = _cache.get( name );
+                DataPersistence dp = getDataPersistence();
+                if( dp != null ) {
+                    d = dp.getData( key );
+                }
+            }
+        }
+        catch( IOException e ) {
+            _logger.error( "Unable to read back evicted Data: " + key );
+            _logger.error( e.toString(), e );
+        }
+
+        if( d != null ) {
+            d = cacheInsert( key, d, true ); // unless replaced meanwhile
+        }
+        else {
+            d = _cache.get( key ); // may have been replaced meanwhile
+        }
+
+        if( _evicted.remove( key, evicted ) ) { // else superseded, and discarded, by a new Data
+            discard( key, evicted );
+        }
+
+        return d;
+    }
+
+    /**
+     * Put the Data in the cache, and evict other Data if the cache is over budget.
+     *
+     * @param key
+     * @param d
+     * @param ifAbsent only if there is no Data cached for the key.
+     * @return the Data now cached.
+     */
+    protected DataRef cachePut( String key, DataRef d, boolean ifAbsent ) {
+        DataRef cached = cacheInsert( key, d, ifAbsent );
+        evict( key );
+        return cached;
+    }
+
+    /**
+     * Put the Data in the cache, without evicting other Data.
+     *
+     * @param key
+     * @param d
+     * @param ifAbsent only if there is no Data cached for the key.
+     * @return the Data now cached.
+     */
+    protected DataRef cacheInsert( final String key, final DataRef d, final boolean ifAbsent ) {
+        DataRef cached = _cache.compute( key, new BiFunction< String, DataRef, DataRef >() {
+            @Override
+            public DataRef apply( String k, DataRef old ) {
+                if( ifAbsent && ( old != null ) ) {
+                    return old;
+                }
+
+                long bytes = GetSize( d );
+                Long oldBytes = _cacheSizes.put( key, bytes );
+                _cacheBytes.addAndGet( bytes - ( ( oldBytes == null ) ? 0 : oldBytes ) );
                 return d;
             }
+        } );
+
+        if( !ifAbsent ) {
+            Evicted evicted = _evicted.remove( key ); // superseded
+            discard( key, evicted );
+        }
+
+        touch( key );
+        return cached;
+    }
+
+    /**
+     * Remove the Data from the cache, including any evicted copy.
+     *
+     * @param key
+     * @param d only if this is the Data cached, unless null.
+     * @return true if removed.
+     */
+    protected boolean cacheRemove( final String key, final DataRef d ) {
+        final boolean[] removed = { false };
+
+        _cache.computeIfPresent( key, new BiFunction< String, DataRef, DataRef >() {
+            @Override
+            public DataRef apply( String k, DataRef old ) {
+                if( ( d != null ) && ( old != d ) ) {
+                    return old;
+                }
+
+                Long oldBytes = _cacheSizes.remove( key );
+                if( oldBytes != null ) {
+                    _cacheBytes.addAndGet( -oldBytes );
+                }
+
+                removed[ 0 ] = true;
+                return null;
+            }
+        } );
+
+        if( removed[ 0 ] ) {
+            synchronized( _cacheAccess ) {
+                _cacheAccess.remove( key );
+            }
+        }
+
+        if( d == null ) {
+            _copies.remove( key );
+            Evicted evicted = _evicted.remove( key );
+            discard( key, evicted );
+        }
+
+        return removed[ 0 ];
+    }
+
+    protected void touch( String key ) {
+        if( _cacheBudget > 0 ) {
+            synchronized( _cacheAccess ) {
+                _cacheAccess.put( key, Boolean.TRUE ); // now the most recently used
+            }
+        }
+    }
+
+    /**
+     * If the cache is over budget, evict the least recently used Data until it is comfortably within budget.
+     * If another thread is already evicting, it is left to do so.
+     *
+     * @param except a key not to evict, e.g. the Data just added.
+     */
+    protected void evict( String except ) {
+        while( ( _cacheBudget > 0 ) && ( _cacheBytes.get() > _cacheBudget ) && _evicting.compareAndSet( false, true ) ) {
+            int evicted = 0;
+
+            try {
+                long target = ( long ) ( _cacheBudget * EVICTION_TARGET );
+                ArrayList< String > keys = getLeastRecentlyUsed( _cacheBytes.get() - target, except );
+
+                for( String key : keys ) {
+                    if( _cacheBytes.get() <= target ) {
+                        break;
+                    }
+
+                    if( evict( key, _cache.get( key ) ) ) {
+                        ++evicted;
+                    }
+                }
+
+                _logger.debug( "Evicted " + evicted + " Data, cache now " + _cacheBytes.get() + " bytes." );
+            }
+            finally {
+                _evicting.set( false );
+            }
+
+            if( evicted == 0 ) {
+                break; // nothing can be evicted now
+            }
         }
     }
 
+    /**
+     * Returns the least recently used cached Data that can be evicted, in order, until they would free the bytes.
+     * Walks the access order from the oldest, so only the Data returned (and any skipped) are visited.
+     *
+     * @param bytes
+     * @param except a key not to return.
+     * @return
+     */
+    protected ArrayList< String > getLeastRecentlyUsed( long bytes, String except ) {
+        ArrayList< String > keys = new ArrayList< String >();
+        long freed = 0;
+
+        synchronized( _cacheAccess ) {
+            Iterator< String > i = _cacheAccess.keySet().iterator();
+            while( i.hasNext() && ( freed < bytes ) ) {
+                String key = i.next();
+                DataRef d = _cache.get( key );
+                if( d == null ) {
+                    i.remove(); // removed, but touched meanwhile
+                    continue;
+                }
+
+                if( ( d._data == null ) || key.equals( except ) || _fetches.containsKey( key ) || _evictions.containsKey( key ) ) {
+                    continue;
+                }
+
+                Long size = _cacheSizes.get( key );
+                if( size != null ) {
+                    freed += size;
+                }
+                keys.add( key );
+            }
+        }
+
+        return keys;
+    }
+
+    /**
+     * Evict the Data, unless it is being read back or replaced meanwhile. Its copy is written without any lock held
+     * other than the claim on its key in _evictions.
+     *
+     * @param key
+     * @param d
+     * @return true if evicted.
+     */
+    protected boolean evict( String key, DataRef d ) {
+        if( ( d == null ) || ( d._data == null ) ) {
+            return false; // not worth evicting, e.g. a reference
+        }
+
+        CompletableFuture< DataRef > eviction = new CompletableFuture< DataRef >();
+        if( _evictions.putIfAbsent( key, eviction ) != null ) {
+            return false; // being read back or evicted
+        }
+
+        try {
+            return evictClaimed( key, d );
+        }
+        finally {
+            _evictions.remove( key, eviction );
+            eviction.complete( null ); // readers look again
+        }
+    }
+
+    protected boolean evictClaimed( String key, DataRef d ) {
+        if( _cache.get( key ) != d ) {
+            return false; // replaced meanwhile
+        }
+
+        DataPersistence dp = getDataPersistence();
+
+        Evicted evicted = new Evicted();
+        evicted._spilled = ( dp == null ) || _copies.containsKey( key );
+        evicted._encoding = d._encoding;
+        evicted._refKeys = d._refKeys;
+        evicted._dataSize = new DataSize( d._data._dataSize );
+
+        if( _storeFactory.isOffHeap( key ) && ( evicted._spilled || !dp.isMapped() ) ) {
+            try {
+                FloatBufferStore store = _storeFactory.create( key, d._data._values.length );
+                store.put( d._data._values );
+                evicted._store = store;
+                evicted._spilled = false;
+            }
+            catch( IOException | IllegalArgumentException e ) {
+                _logger.warn( "Unable to store evicted Data off-heap: " + key + ", " + e.toString() );
+            }
+            catch( OutOfMemoryError e ) { // e.g. at the direct memory limit, as direct buffers are only freed by GC
+                _logger.warn( "Unable to store evicted Data off-heap: " + key + ", " + e.toString() );
+            }
+        }
+
+        if( evicted._spilled ) {
+            try {
+                _spill.write( d );
+            }
+            catch( IOException e ) {
+                _logger.error( "Unable to spill evicted Data: " + key );
+                _logger.error( e.toString(), e );
+                return false;
+            }
+        }
+
+        _evicted.put( key, evicted ); // before it is removed, so that it can always be found
+
+        if( !cacheRemove( key, d ) ) {
+            if( _evicted.remove( key, evicted ) ) { // replaced meanwhile
+                discard( key, evicted );
+            }
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Free the copy of an evicted Data that is no longer needed.
+     *
+     * @param key
+     * @param evicted may be null
+     */
+    protected void discard( String key, Evicted evicted ) {
+        if( evicted == null ) {
+            return;
+        }
+
+        if( evicted._store != null ) {
+            evicted._store.release();
+        }
+        else if( evicted._spilled ) {
+            _spill.remove( key );
+        }
+    }
+
+    /**
+     * Returns the estimated memory used by the Data, in bytes.
+     *
+     * @param d
+     * @return
+     */
+    public static long GetSize( DataRef d ) {
+        long bytes = DATA_OVERHEAD;
+        if( d._data != null ) {
+            bytes += d._data.getSize() * 4L;
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the estimated size of a Data held by this Node, without fetching or reloading it.
+     *
+     * @param key
+     * @return bytes, or 0 if the Data isn't held by this Node.
+     */
+    public long getDataBytes( String key ) {
+        DataRef d = _cache.get( key );
+        if( d != null ) {
+            return GetSize( d );
+        }
+
+        Evicted evicted = _evicted.get( key );
+        if( ( evicted != null ) && ( evicted._dataSize != null ) ) {
+            return DATA_OVERHEAD + evicted._dataSize.getVolume() * 4L;
+        }
+
+        return 0;
+    }
+
     public DataRef setData( ModelData md ) {
         DataRef dataRef = md.deserialize();
         if( dataRef != null ) {
@@ -300,9 +1004,16 @@ public class DataRefMap {
     }
 
     public void setData( String name, DataRef d ) {
-        synchronized( _cache ) {
-            _cache.put( name, d );
+        _copies.remove( name );
+        cachePut( name, d, false );
+        updateReferences( name, d );
+        _versions.onSetData( name, d._data ); // after the new copy is visible to other Nodes
+
+        DataPersistence dp = getDataPersistence();
+        if( dp != null ) {
+            dp.persistData( d );
         }
+
         notifySetData( name );
     }
 
@@ -311,16 +1022,36 @@ public class DataRefMap {
      */
     public void removeData() {
         Collection< String > keys = getDataKeys();
-        synchronized( _cache ) {
-            _cache.clear();
+        for( String key : keys ) {
+            cacheRemove( key, null );
         }
+        _references.keySet().removeAll( keys );
+        _referencesVersion.incrementAndGet();
+
+        for( String key : keys ) {
+            _versions.remove( key );
+        }
+
+        DataPersistence dp = getDataPersistence();
+        if( dp != null ) {
+            for( String key : keys ) {
+                dp.removeData( key );
+            }
+        }
+
         notifySetData( keys );
     }
 
     public void removeData( String name ) {
-        synchronized( _cache ) {
-            _cache.remove( name );
+        cacheRemove( name, null );
+        updateReferences( name, null );
+        _versions.remove( name );
+
+        DataPersistence dp = getDataPersistence();
+        if( dp != null ) {
+            dp.removeData( name );
         }
+
         notifySetData( name );
     }
 
@@ -19,6 +19,7 @@
 
 package io.agi.framework.references;
 
+import io.agi.core.data.ConcatenatedFloatArray;
 import io.agi.core.data.Data;
 import io.agi.framework.Node;
 
@@ -52,11 +53,64 @@ public abstract class DataRefResolver {
     }
 
     public Data getData( Node n, DataRef dataRef ) {
+        return getData( n, dataRef, false );
+    }
+
+    /**
+     * Like getData(), except that a reference may share the storage of the referenced Data, rather than copying it. The
+     * result must be copied before it is modified (see IsShared).
+     *
+     * @param n
+     * @param dataRef
+     * @return
+     */
+    public Data getDataView( Node n, DataRef dataRef ) {
+        return getData( n, dataRef, true );
+    }
+
+    protected Data getData( Node n, DataRef dataRef, boolean view ) {
         if( !dataRef.isReference() ) {
             return dataRef._data;
         }
 
         // Create an output matrix which is a composite of all the referenced inputs.
+        HashMap< String, DataRef > allRefs = getReferred( n, dataRef );
+        if( allRefs == null ) {
+            return null;
+        }
+
+        if( view ) {
+            return getCombinedDataView( dataRef, allRefs );
+        }
+
+        Data combinedData = getCombinedData( dataRef, allRefs );
+        return combinedData;
+    }
+
+    /**
+     * Returns the Data as segments, which aren't copied; the Data referred to, if it is a reference.
+     *
+     * @param n
+     * @param dataRef
+     * @return null if the Data or any Data it refers to is missing.
+     */
+    public ConcatenatedFloatArray getDataSegments( Node n, DataRef dataRef ) {
+        if( !dataRef.isReference() ) {
+            if( dataRef._data == null ) {
+                return null;
+            }
+            return new ConcatenatedFloatArray( dataRef._data );
+        }
+
+        HashMap< String, DataRef > allRefs = getReferred( n, dataRef );
+        if( allRefs == null ) {
+            return null;
+        }
+
+        return getCombinedDataSegments( dataRef, allRefs );
+    }
+
+    protected HashMap< String, DataRef > getReferred( Node n, DataRef dataRef ) {
         HashMap< String, DataRef > allRefs = new HashMap<>();
         HashSet< String > refKeys = GetRefKeys( dataRef._refKeys );
 
@@ -72,11 +126,62 @@ public abstract class DataRefResolver {
             allRefs.put( refKey, dataRef2 );
         }
 
-        Data combinedData = getCombinedData( dataRef, allRefs );
-        return combinedData;
+        return allRefs;
+    }
+
+    /**
+     * Returns true if the Data shares its storage with any Data the reference refers to.
+     *
+     * @param n
+     * @param dataRef
+     * @param d
+     * @return
+     */
+    public static boolean IsShared( Node n, DataRef dataRef, Data d ) {
+        if( ( d == null ) || !dataRef.isReference() ) {
+            return false;
+        }
+
+        DataRefMap dc = n.getDataRefMap();
+        for( String refKey : GetRefKeys( dataRef._refKeys ) ) {
+            DataRef dataRef2 = dc.getData( refKey );
+            if( ( dataRef2 != null ) && ( dataRef2._data != null ) && ( dataRef2._data._values == d._values ) ) {
+                return true;
+            }
+        }
+
+        return false;
     }
 
     public abstract Data getCombinedData( DataRef dataRef, HashMap< String, DataRef > referred );
+
+    /**
+     * Combine the referred Data, without copying them where possible. By default, a copy.
+     *
+     * @param dataRef
+     * @param referred
+     * @return
+     */
+    public Data getCombinedDataView( DataRef dataRef, HashMap< String, DataRef > referred ) {
+        return getCombinedData( dataRef, referred );
+    }
+
+    /**
+     * Returns the combination of the referred Data as segments, in the order of getCombinedData(). By default, the
+     * combined Data as one segment.
+     *
+     * @param dataRef
+     * @param referred
+     * @return
+     */
+    public ConcatenatedFloatArray getCombinedDataSegments( DataRef dataRef, HashMap< String, DataRef > referred ) {
+        Data d = getCombinedData( dataRef, referred );
+        if( d == null ) {
+            return null;
+        }
+        return new ConcatenatedFloatArray( d );
+    }
+
     public abstract String getCombinedEncoding( String key );
 
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.references;
+
+import io.agi.framework.persistence.DataBinarySerializer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Local files holding Data evicted from the DataRefMap, one per Data, in the form of DataBinarySerializer.
+ *
+ * The files are in a new directory, created on first use, and are deleted when the Data is read back or on exit; they
+ * don't survive a restart.
+ */
+public class DataSpill {
+
+    private static final Logger _logger = LogManager.getLogger();
+
+    public static final String PREFIX = "agief-spill-";
+    public static final String SUFFIX = ".data";
+
+    protected String _path;
+    protected File _directory;
+
+    /**
+     * @param path the directory in which to create the spill directory.
+     */
+    public DataSpill( String path ) {
+        _path = path;
+    }
+
+    public void write( DataRef dataRef ) throws IOException {
+        File f = getFile( dataRef._key );
+        f.deleteOnExit();
+
+        OutputStream os = new BufferedOutputStream( new FileOutputStream( f ) );
+        try {
+            DataBinarySerializer.DataRefsToStream( Collections.singletonList( dataRef ), os );
+        }
+        finally {
+            os.close();
+        }
+    }
+
+    /**
+     * @param key
+     * @return the Data, or null if there is no file.
+     * @throws IOException
+     */
+    public DataRef read( String key ) throws IOException {
+        File f = getFile( key );
+        if( !f.exists() ) {
+            return null;
+        }
+
+        FileChannel channel = FileChannel.open( f.toPath(), StandardOpenOption.READ );
+        try {
+            Collection< DataRef > dataRefs = DataBinarySerializer.ChannelToDataRefs( channel, channel.size() );
+            if( dataRefs.isEmpty() ) {
+                return null;
+            }
+            return dataRefs.iterator().next();
+        }
+        finally {
+            channel.close();
+        }
+    }
+
+    public void remove( String key ) {
+        try {
+            File f = getFile( key );
+            if( f.exists() && !f.delete() ) {
+                _logger.warn( "Unable to delete spilled Data: " + f );
+            }
+        }
+        catch( IOException e ) {
+            _logger.error( e.toString(), e );
+        }
+    }
+
+    protected synchronized File getDirectory() throws IOException {
+        if( _directory == null ) {
+            File parent = new File( _path );
+            parent.mkdirs();
+            _directory = Files.createTempDirectory( Paths.get( _path ), PREFIX ).toFile();
+            _directory.deleteOnExit(); // after the files, which are registered later
+
+            _logger.info( "Spilling evicted Data to " + _directory );
+        }
+        return _directory;
+    }
+
+    protected File getFile( String key ) throws IOException {
+        String name = URLEncoder.encode( key, "UTF-8" ) + SUFFIX;
+        return new File( getDirectory(), name );
+    }
+
+}
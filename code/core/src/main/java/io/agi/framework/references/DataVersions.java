@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.references;
+
+import io.agi.core.data.Data;
+import io.agi.core.data.DataSize;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versions of the Data held by this Node, so that other Nodes can fetch only what changed since their copy.
+ *
+ * Each Data is divided into blocks of BLOCK_SIZE values. The checksum of each block is kept, and when the Data is set
+ * the blocks whose checksums differ are recorded as the changes of a new version. The changes of the last HISTORY
+ * versions are kept; a copy older than that, or from before a restart (a different epoch), must be fetched whole.
+ *
+ * Data are only versioned once another Node has fetched them, so Data that is never fetched costs nothing. Thread
+ * safe.
+ */
+public class DataVersions {
+
+    public static final long NO_VERSION = -1;
+    public static final int BLOCK_SIZE = 256; // values
+    public static final int HISTORY = 16; // versions
+
+    /**
+     * The changes since a version.
+     */
+    public static class Changes {
+        public long _version; // the current version
+        public BitSet _blocks; // changed since the version asked for; null if the whole Data must be fetched
+        public long[] _checksums; // of each block at the current version, which mustn't be modified
+        public int _length; // at the current version
+
+        public boolean isUnchanged() {
+            return ( _blocks != null ) && _blocks.isEmpty();
+        }
+    }
+
+    protected static class Change {
+        public long _version;
+        public BitSet _blocks; // null if all changed
+    }
+
+    protected static class Versions {
+        public long _version;
+        public long _base; // the oldest version that the changes can be applied to
+        public long[] _checksums;
+        public DataSize _dataSize;
+        public int _length;
+        public ArrayDeque< Change > _changes = new ArrayDeque< Change >(); // of the most recent versions, oldest first
+    }
+
+    protected long _epoch = new Random().nextLong();
+    protected AtomicLong _clock = new AtomicLong( 0 ); // versions of all Data, so they aren't reused if a Data is versioned again
+    protected ConcurrentHashMap< String, Versions > _versions = new ConcurrentHashMap< String, Versions >();
+
+    public DataVersions() {
+    }
+
+    /**
+     * Identifies this set of versions, which don't survive a restart.
+     *
+     * @return
+     */
+    public long getEpoch() {
+        return _epoch;
+    }
+
+    /**
+     * Record a new version of the Data, if it is versioned. Must be called after the Data is visible to getChanges().
+     *
+     * @param key
+     * @param d
+     */
+    public void onSetData( String key, Data d ) {
+        Versions v = _versions.get( key );
+        if( v == null ) {
+            return; // not fetched by any other Node yet
+        }
+
+        if( d == null ) {
+            _versions.remove( key );
+            return;
+        }
+
+        long[] checksums = GetChecksums( d );
+
+        synchronized( v ) {
+            Change change = new Change(); // all changed, unless the size is the same
+
+            if( ( d.getSize() == v._length ) && d._dataSize.isSameAs( v._dataSize ) ) {
+                change._blocks = new BitSet( checksums.length );
+                for( int b = 0; b < checksums.length; ++b ) {
+                    if( checksums[ b ] != v._checksums[ b ] ) {
+                        change._blocks.set( b );
+                    }
+                }
+
+                if( change._blocks.isEmpty() ) {
+                    return; // same as the current version
+                }
+            }
+
+            change._version = _clock.incrementAndGet();
+
+            v._version = change._version;
+            v._checksums = checksums;
+            v._dataSize = new DataSize( d._dataSize );
+            v._length = d.getSize();
+            v._changes.add( change );
+
+            while( v._changes.size() > HISTORY ) {
+                v._base = v._changes.poll()._version;
+            }
+        }
+    }
+
+    /**
+     * Forget the versions of the Data, e.g. because it was removed or another Node now holds it.
+     *
+     * @param key
+     */
+    public void remove( String key ) {
+        _versions.remove( key );
+    }
+
+    /**
+     * Returns the changes to the Data since a version of it, which starts versioning the Data if necessary. Must be
+     * called before the values to be sent are read, so that they are no older than the version returned.
+     *
+     * @param key
+     * @param d the current Data.
+     * @param epoch of the version.
+     * @param version NO_VERSION if there isn't one.
+     * @return null if the Data is null.
+     */
+    public Changes getChanges( String key, Data d, long epoch, long version ) {
+        if( d == null ) {
+            return null;
+        }
+
+        Versions v = _versions.get( key );
+        if( v == null ) {
+            Versions v2 = new Versions();
+            v2._version = _clock.incrementAndGet();
+            v2._base = v2._version;
+            v2._checksums = GetChecksums( d );
+            v2._dataSize = new DataSize( d._dataSize );
+            v2._length = d.getSize();
+
+            v = _versions.putIfAbsent( key, v2 );
+            if( v == null ) {
+                v = v2;
+            }
+        }
+
+        Changes c = new Changes();
+
+        synchronized( v ) {
+            c._version = v._version;
+            c._checksums = v._checksums;
+            c._length = v._length;
+
+            if( ( epoch != _epoch ) || ( version > v._version ) || ( version < v._base ) ) {
+                return c; // unknown or too old
+            }
+
+            if( ( d.getSize() != v._length ) || !d._dataSize.isSameAs( v._dataSize ) ) {
+                return c; // resized, not yet recorded
+            }
+
+            c._blocks = new BitSet( v._checksums.length );
+
+            Iterator< Change > i = v._changes.descendingIterator(); // most recent first
+
+            while( i.hasNext() ) {
+                Change change = i.next();
+                if( change._version <= version ) {
+                    break;
+                }
+
+                if( change._blocks == null ) {
+                    c._blocks = null;
+                    break;
+                }
+
+                c._blocks.or( change._blocks );
+            }
+        }
+
+        return c;
+    }
+
+    /**
+     * Returns the number of blocks in a Data of the specified size.
+     *
+     * @param length
+     * @return
+     */
+    public static int GetBlocks( int length ) {
+        return ( length + BLOCK_SIZE - 1 ) / BLOCK_SIZE;
+    }
+
+    public static int GetBlockLength( int length, int block ) {
+        return Math.min( BLOCK_SIZE, length - block * BLOCK_SIZE );
+    }
+
+    public static long[] GetChecksums( Data d ) {
+        int length = d.getSize();
+        long[] checksums = new long[ GetBlocks( length ) ];
+
+        for( int b = 0; b < checksums.length; ++b ) {
+            checksums[ b ] = d.getChecksum( b * BLOCK_SIZE, GetBlockLength( length, b ) );
+        }
+
+        return checksums;
+    }
+
+}
@@ -19,10 +19,13 @@
 
 package io.agi.framework.references;
 
+import io.agi.core.data.ConcatenatedFloatArray;
 import io.agi.core.data.Data;
+import io.agi.core.data.DataSize;
 import io.agi.framework.persistence.DataJsonSerializer;
 import io.agi.framework.persistence.models.ModelData;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 
 /**
@@ -76,6 +79,41 @@ public class DenseDataRefResolver  extends DataRefResolver {
         return d;
     }
 
+    @Override
+    public Data getCombinedDataView( DataRef dataRef, HashMap< String, DataRef > referred ) {
+
+        // Single input: share the elements, but not the size, which the consumer may change
+        if( referred.size() == 1 ) {
+            DataRef dataRef2 = referred.values().iterator().next();
+            if( dataRef2._data == null ) {
+                return null;
+            }
+            Data d = new Data( new DataSize( dataRef2._data._dataSize ), dataRef2._data );
+            return d;
+        }
+
+        return getCombinedData( dataRef, referred );
+    }
+
+    @Override
+    public ConcatenatedFloatArray getCombinedDataSegments( DataRef dataRef, HashMap< String, DataRef > referred ) {
+        if( referred.size() == 0 ) {
+            return null;
+        }
+
+        ArrayList< Data > segments = new ArrayList< Data >();
+
+        for( String refKey : referred.keySet() ) { // same order as getCombinedData()
+            DataRef dataRef2 = referred.get( refKey );
+            if( dataRef2._data == null ) {
+                return null; // missing data
+            }
+            segments.add( dataRef2._data );
+        }
+
+        return new ConcatenatedFloatArray( segments );
+    }
+
     public String getCombinedEncoding( String key ) {
         return DataJsonSerializer.ENCODING_DENSE;
     }
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.scheduling;
+
+import io.agi.core.math.OnlineVariance;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the statistics common to all schedulers. Derived classes only decide where the work runs.
+ */
+public abstract class AbstractUpdateScheduler implements UpdateScheduler {
+
+    protected static final Logger _logger = LogManager.getLogger();
+
+    protected AtomicInteger _queued = new AtomicInteger( 0 );
+    protected AtomicInteger _active = new AtomicInteger( 0 );
+    protected ConcurrentHashMap< String, OnlineVariance > _waitTimes = new ConcurrentHashMap<>();
+
+    public void schedule( String entityName, Runnable update ) {
+        final long scheduledTime = System.currentTimeMillis();
+
+        _queued.incrementAndGet();
+
+        Runnable r = new Runnable() {
+            @Override
+            public void run() {
+                _queued.decrementAndGet();
+                _active.incrementAndGet();
+
+                onStarted( entityName, System.currentTimeMillis() - scheduledTime );
+
+                try {
+                    update.run();
+                }
+                catch( Exception e ) {
+                    _logger.error( "Update of " + entityName + " failed." );
+                    _logger.error( e.toString(), e );
+                }
+                finally {
+                    _active.decrementAndGet();
+                }
+            }
+        };
+
+        try {
+            execute( r );
+        }
+        catch( Exception e ) {
+            _queued.decrementAndGet();
+            _logger.error( "Unable to schedule update of " + entityName );
+            _logger.error( e.toString(), e );
+        }
+    }
+
+    /**
+     * Actually run the (wrapped) update somewhere.
+     *
+     * @param r
+     */
+    protected abstract void execute( Runnable r );
+
+    protected void onStarted( String entityName, long waitTime ) {
+        OnlineVariance ov = _waitTimes.computeIfAbsent( entityName, k -> new OnlineVariance() );
+        synchronized( ov ) {
+            ov.update( ( double ) waitTime );
+        }
+    }
+
+    public int getQueueDepth() {
+        return _queued.get();
+    }
+
+    public int getActiveUpdates() {
+        return _active.get();
+    }
+
+    public Map< String, Double > getWaitTimes() {
+        HashMap< String, Double > waitTimes = new HashMap<>();
+        for( Map.Entry< String, OnlineVariance > e : _waitTimes.entrySet() ) {
+            OnlineVariance ov = e.getValue();
+            synchronized( ov ) {
+                waitTimes.put( e.getKey(), ov.mean() );
+            }
+        }
+        return waitTimes;
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.scheduling;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs updates on a bounded work-stealing pool, so threads are reused between steps.
+ *
+ * Updates may block waiting for an Entity lock; Node does this via ForkJoinPool.managedBlock() so the pool can add
+ * compensating threads rather than deadlock when every worker is waiting.
+ */
+public class PooledUpdateScheduler extends AbstractUpdateScheduler {
+
+    protected ForkJoinPool _pool;
+
+    public PooledUpdateScheduler( int threads ) {
+        _pool = new ForkJoinPool( threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true ); // async (FIFO) mode suits event-style tasks
+    }
+
+    protected void execute( Runnable r ) {
+        _pool.execute( r );
+    }
+
+    public void stop() {
+        _pool.shutdown();
+    }
+
+    public int getThreads() {
+        return _pool.getParallelism();
+    }
+
+}
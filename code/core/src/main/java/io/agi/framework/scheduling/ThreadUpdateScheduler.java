@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.scheduling;
+
+/**
+ * The original behaviour: a new Thread for every update. Simple, but expensive for long runs of small Entities.
+ */
+public class ThreadUpdateScheduler extends AbstractUpdateScheduler {
+
+    public ThreadUpdateScheduler() {
+    }
+
+    protected void execute( Runnable r ) {
+        Thread t = new Thread( r );
+        t.start();
+    }
+
+    public void stop() {
+        // Nothing to release.
+    }
+
+}
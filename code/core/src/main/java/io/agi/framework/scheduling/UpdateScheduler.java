@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.scheduling;
+
+import java.util.Map;
+
+/**
+ * Executes Entity updates on behalf of a Node.
+ * The Node hands each update to the scheduler, which decides which thread actually runs it. Implementations also
+ * report how busy they are, so that Nodes can be sized appropriately.
+ */
+public interface UpdateScheduler {
+
+    /**
+     * Schedule the update of the named Entity. Returns immediately.
+     *
+     * @param entityName
+     * @param update the work to do
+     */
+    void schedule( String entityName, Runnable update );
+
+    /**
+     * Stop accepting updates and release the threads.
+     */
+    void stop();
+
+    /**
+     * @return the number of updates scheduled but not yet started.
+     */
+    int getQueueDepth();
+
+    /**
+     * @return the number of updates currently executing.
+     */
+    int getActiveUpdates();
+
+    /**
+     * @return the mean time in milliseconds between scheduling and starting an update, for each Entity.
+     */
+    Map< String, Double > getWaitTimes();
+
+}
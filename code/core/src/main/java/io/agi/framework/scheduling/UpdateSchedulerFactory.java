@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.scheduling;
+
+import io.agi.core.util.PropertiesUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Properties;
+
+/**
+ * Creates the UpdateScheduler specified in the Node properties.
+ */
+public class UpdateSchedulerFactory {
+
+    public static final String PROPERTY_UPDATE_SCHEDULER_TYPE = "update-scheduler-type";
+    public static final String PROPERTY_UPDATE_SCHEDULER_THREADS = "update-scheduler-threads";
+
+    public static final String UPDATE_SCHEDULER_TYPE_POOL = "pool";
+    public static final String UPDATE_SCHEDULER_TYPE_VIRTUAL = "virtual";
+    public static final String UPDATE_SCHEDULER_TYPE_THREAD = "thread";
+
+    private static final Logger logger = LogManager.getLogger();
+
+    public static UpdateScheduler createUpdateScheduler( Properties properties ) {
+        String type = PropertiesUtil.get( properties, PROPERTY_UPDATE_SCHEDULER_TYPE, UPDATE_SCHEDULER_TYPE_POOL );
+        int threads = Integer.valueOf( PropertiesUtil.get( properties, PROPERTY_UPDATE_SCHEDULER_THREADS, String.valueOf( Runtime.getRuntime().availableProcessors() ) ) );
+
+        if( type.equals( UPDATE_SCHEDULER_TYPE_THREAD ) ) {
+            logger.info( "Updates will run in a new thread each." );
+            return new ThreadUpdateScheduler();
+        }
+
+        if( type.equals( UPDATE_SCHEDULER_TYPE_VIRTUAL ) ) {
+            UpdateScheduler s = VirtualThreadUpdateScheduler.Create();
+            if( s != null ) {
+                logger.info( "Updates will run in virtual threads." );
+                return s;
+            }
+            logger.warn( "Virtual threads not supported by this JVM, using a pool instead." );
+        }
+
+        logger.info( "Updates will run in a pool of " + threads + " threads." );
+        return new PooledUpdateScheduler( threads );
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.scheduling;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs each update in its own virtual thread, which is cheap to create and to block.
+ *
+ * The code is compiled for older JVMs, so the virtual thread executor is obtained by reflection. Use Create(), which
+ * returns null when the running JVM doesn't support virtual threads.
+ */
+public class VirtualThreadUpdateScheduler extends AbstractUpdateScheduler {
+
+    protected ExecutorService _executor;
+
+    protected VirtualThreadUpdateScheduler( ExecutorService executor ) {
+        _executor = executor;
+    }
+
+    public static VirtualThreadUpdateScheduler Create() {
+        try {
+            Method m = Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" );
+            ExecutorService executor = ( ExecutorService ) m.invoke( null );
+            return new VirtualThreadUpdateScheduler( executor );
+        }
+        catch( Exception e ) {
+            return null; // not available in this JVM
+        }
+    }
+
+    protected void execute( Runnable r ) {
+        _executor.execute( r );
+    }
+
+    public void stop() {
+        _executor.shutdown();
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.core.ann.supervised;
+
+import io.agi.core.data.FloatArray;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares BackPropagation.StochasticGradientDescent() with a naive loop over each weight and each sample.
+ */
+public class BackPropagationTest {
+
+    protected static final int[][] SIZES = { { 1, 1, 1 }, { 4, 3, 5 }, { 7, 16, 9 } }; // batch, inputs, cells
+
+    public static final float TOLERANCE = 1e-5f; // the kernel sums the batch in a different order
+
+    protected Random _r = new Random( 1 );
+
+    @Test
+    public void stochasticGradientDescent() {
+        for( int[] size : SIZES ) {
+            int B = size[ 0 ];
+            int K = size[ 1 ];
+            int J = size[ 2 ];
+
+            FloatArray errorBatch = random( B * J );
+            FloatArray inputBatch = random( B * K );
+            FloatArray weights = random( J * K );
+            FloatArray biases = random( J );
+            FloatArray expectedWeights = new FloatArray( weights );
+            FloatArray expectedBiases = new FloatArray( biases );
+
+            float learningRate = 0.1f;
+            float regularization = 0.01f;
+
+            expected( errorBatch, expectedWeights, expectedBiases, inputBatch, B, learningRate, regularization );
+            BackPropagation.StochasticGradientDescent( errorBatch, weights, new FloatArray( J * K ), biases, inputBatch, B, learningRate, regularization );
+
+            assertArrayEquals( expectedWeights._values, weights._values, TOLERANCE );
+            assertArrayEquals( expectedBiases._values, biases._values, 0f );
+        }
+    }
+
+    /**
+     * The mean gradient of each weight over the batch.
+     */
+    protected static void expected(
+            FloatArray errorBatch,
+            FloatArray weights,
+            FloatArray biases,
+            FloatArray inputBatch,
+            int miniBatchSize,
+            float learningRate,
+            float regularization ) {
+        float miniBatchNorm = 1.f / (float)miniBatchSize;
+        float l2RegularizationTerm = 1f - ( ( learningRate * regularization ) * miniBatchNorm );
+
+        int B = miniBatchSize;
+        int K = inputBatch.getSize() / B;
+        int J = errorBatch.getSize() / B;
+
+        for( int j = 0; j < J; ++j ) {
+            for( int k = 0; k < K; ++k ) {
+                float sumErrorGradient = 0f;
+
+                for( int b = 0; b < B; ++b ) {
+                    float a = inputBatch._values[ b * K + k ];
+                    float errorGradient = errorBatch._values[ b * J + j ] * a;
+                    sumErrorGradient += errorGradient;
+                }
+
+                float errorGradient = sumErrorGradient * miniBatchNorm;
+                errorGradient = BackPropagation.ClipErrorGradient( errorGradient, BackPropagation.AbsMaxErrorGradient );
+
+                int wOffset = j * K + k;
+                weights._values[ wOffset ] = l2RegularizationTerm * weights._values[ wOffset ] - learningRate * errorGradient;
+            }
+
+            float sumErrorGradient = 0f;
+
+            for( int b = 0; b < B; ++b ) {
+                sumErrorGradient += errorBatch._values[ b * J + j ];
+            }
+
+            float errorGradient = sumErrorGradient * miniBatchNorm;
+            errorGradient = BackPropagation.ClipErrorGradient( errorGradient, BackPropagation.AbsMaxErrorGradient );
+
+            biases._values[ j ] = biases._values[ j ] - learningRate * errorGradient;
+        }
+    }
+
+    protected FloatArray random( int size ) {
+        FloatArray fa = new FloatArray( size );
+        for( int i = 0; i < size; ++i ) {
+            fa._values[ i ] = _r.nextFloat() * 2f - 1f;
+        }
+        return fa;
+    }
+
+}
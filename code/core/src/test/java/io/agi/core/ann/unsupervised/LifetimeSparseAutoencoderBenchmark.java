@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.core.ann.unsupervised;
+
+import io.agi.core.data.Data;
+import io.agi.core.data.FloatMatrix;
+import io.agi.core.orm.ObjectMap;
+import io.agi.core.orm.UnitTest;
+
+import java.util.Random;
+
+/**
+ * Times LifetimeSparseAutoencoder.batchBackpropagateError() against the original loop, and against a whole-batch
+ * Gemm followed by masking, for a k-sparse hidden layer. Only the K active cells of each sample need their error, so
+ * a Gemm does CELLS / K times the work. Run with -Xbatch or after warm-up. Args: [repeats].
+ */
+public class LifetimeSparseAutoencoderBenchmark implements UnitTest {
+
+    public static final int INPUTS = 784;
+    public static final int CELLS = 1000;
+    public static final int K = 25;
+    public static final int BATCH_SIZE = 32;
+    public static final String[] METHODS = { "loop", "gemm", "active" };
+
+    public static void main( String[] args ) {
+        LifetimeSparseAutoencoderBenchmark t = new LifetimeSparseAutoencoderBenchmark();
+        t.test( args );
+    }
+
+    public float _sink = 0f; // keeps the results live
+
+    public void test( String[] args ) {
+        int repeats = 200;
+        if( args.length > 0 ) {
+            repeats = Integer.valueOf( args[ 0 ] );
+        }
+
+        Random r = new Random( 1 );
+
+        LifetimeSparseAutoencoderConfig c = new LifetimeSparseAutoencoderConfig();
+        c.setup( new ObjectMap(), "lsa", r, INPUTS, CELLS, 1, 0.01f, 0f, K, K, K, 0.01f, 0, BATCH_SIZE );
+
+        Data weights = random( new Data( CELLS * INPUTS ), r, 0.01f );
+        Data hiddenInput = random( new Data( BATCH_SIZE * INPUTS ), r, 1f );
+        Data outputOutput = random( new Data( BATCH_SIZE * INPUTS ), r, 1f );
+        Data outputInput = new Data( BATCH_SIZE * CELLS );
+        for( int b = 0; b < BATCH_SIZE; ++b ) {
+            for( int i = 0; i < K; ++i ) {
+                outputInput._values[ b * CELLS + r.nextInt( CELLS ) ] = 1f; // about K active cells per sample
+            }
+        }
+
+        Data outputErrors = new Data( BATCH_SIZE * INPUTS );
+        Data[] hiddenErrors = new Data[ METHODS.length ];
+        long[] nanos = new long[ METHODS.length ];
+
+        for( int m = 0; m < METHODS.length; ++m ) {
+            hiddenErrors[ m ] = new Data( BATCH_SIZE * CELLS );
+            time( m, c, weights, hiddenInput, hiddenErrors[ m ], outputInput, outputErrors, outputOutput, repeats ); // warm up
+        }
+
+        for( int m = 0; m < METHODS.length; ++m ) {
+            nanos[ m ] = time( m, c, weights, hiddenInput, hiddenErrors[ m ], outputInput, outputErrors, outputOutput, repeats );
+        }
+
+        for( int m = 0; m < METHODS.length; ++m ) {
+            float micros = ( float ) nanos[ m ] / ( float ) repeats / 1000f;
+            float maxDiff = 0f;
+            for( int i = 0; i < hiddenErrors[ m ].getSize(); ++i ) {
+                maxDiff = Math.max( maxDiff, Math.abs( hiddenErrors[ m ]._values[ i ] - hiddenErrors[ 0 ]._values[ i ] ) );
+            }
+            System.out.println( String.format( "%-8s %10.1f us   x%.2f   max diff %g", METHODS[ m ], micros, ( float ) nanos[ 0 ] / ( float ) nanos[ m ], maxDiff ) );
+        }
+
+        System.out.println( "(" + _sink + ")" );
+    }
+
+    protected long time( int method, LifetimeSparseAutoencoderConfig c, Data weights, Data hiddenInput, Data hiddenErrors, Data outputInput, Data outputErrors, Data outputOutput, int repeats ) {
+        long t0 = System.nanoTime();
+
+        for( int i = 0; i < repeats; ++i ) {
+            switch( method ) {
+                case 0: Loop( weights, hiddenInput, hiddenErrors, outputInput, outputErrors, outputOutput ); break;
+                case 1: Gemm( weights, hiddenInput, hiddenErrors, outputInput, outputErrors, outputOutput ); break;
+                case 2: LifetimeSparseAutoencoder.batchBackpropagateError( c, weights, hiddenInput, hiddenErrors, outputInput, outputErrors, outputOutput ); break;
+            }
+            _sink += hiddenErrors._values[ 0 ];
+        }
+
+        return System.nanoTime() - t0;
+    }
+
+    protected static void OutputErrors( Data hiddenInput, Data outputErrors, Data outputOutput ) {
+        for( int i = 0; i < outputErrors.getSize(); ++i ) {
+            outputErrors._values[ i ] = outputOutput._values[ i ] - hiddenInput._values[ i ];
+        }
+    }
+
+    /**
+     * The original loop: each active cell's products, clipped, summed.
+     */
+    protected static void Loop( Data weights, Data hiddenInput, Data hiddenErrors, Data outputInput, Data outputErrors, Data outputOutput ) {
+        OutputErrors( hiddenInput, outputErrors, outputOutput );
+
+        float clip = 10.f;
+        for( int b = 0; b < BATCH_SIZE; ++b ) {
+            for( int c = 0; c < CELLS; ++c ) {
+                float sum = 0f;
+                int batchOffsetCell = b * CELLS + c;
+                if( outputInput._values[ batchOffsetCell ] > 0f ) {
+                    for( int i = 0; i < INPUTS; ++i ) {
+                        float product = outputErrors._values[ b * INPUTS + i ] * weights._values[ c * INPUTS + i ];
+                        product = Math.max( -clip, Math.min( clip, product ) );
+                        sum += product;
+                    }
+                }
+                hiddenErrors._values[ batchOffsetCell ] = sum;
+            }
+        }
+    }
+
+    /**
+     * d * W^T for every cell of every sample, then the inactive cells zeroed.
+     */
+    protected static void Gemm( Data weights, Data hiddenInput, Data hiddenErrors, Data outputInput, Data outputErrors, Data outputOutput ) {
+        OutputErrors( hiddenInput, outputErrors, outputOutput );
+
+        FloatMatrix.Gemm( outputErrors._values, false, weights._values, true, hiddenErrors._values, BATCH_SIZE, CELLS, INPUTS, 1f, 0f );
+        for( int i = 0; i < BATCH_SIZE * CELLS; ++i ) {
+            if( !( outputInput._values[ i ] > 0f ) ) {
+                hiddenErrors._values[ i ] = 0f;
+            }
+        }
+    }
+
+    protected static Data random( Data d, Random r, float scale ) {
+        for( int i = 0; i < d.getSize(); ++i ) {
+            d._values[ i ] = ( r.nextFloat() - 0.5f ) * scale;
+        }
+        return d;
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.core.ann.unsupervised;
+
+import io.agi.core.ann.supervised.BackPropagation;
+import io.agi.core.data.Data;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares KSparseAutoencoder.StochasticGradientDescent() with a naive loop over each weight and each sample, in both
+ * weight orders and with and without momentum.
+ */
+public class StochasticGradientDescentTest {
+
+    public static final float TOLERANCE = 1e-5f; // the kernel sums the batch in a different order
+
+    protected static final int[][] SIZES = { { 1, 1, 1 }, { 4, 3, 5 }, { 10, 17, 9 } }; // batch, inputs, cells
+
+    protected Random _r = new Random( 1 );
+
+    @Test
+    public void stochasticGradientDescent() {
+        for( int[] size : SIZES ) {
+            for( boolean weightsInputMajor : new boolean[]{ false, true } ) {
+                for( float momentum : new float[]{ 0f, 0.5f } ) {
+                    check( size[ 0 ], size[ 1 ], size[ 2 ], weightsInputMajor, momentum );
+                }
+            }
+        }
+    }
+
+    protected void check( int batchSize, int inputSize, int layerSize, boolean weightsInputMajor, float momentum ) {
+        float learningRate = 0.1f;
+
+        Data batchInput = random( batchSize * inputSize );
+        Data batchErrors = random( batchSize * layerSize );
+        Data weights = random( inputSize * layerSize );
+        Data weightsVelocity = random( inputSize * layerSize );
+        Data biases = random( layerSize );
+        Data biasesVelocity = random( layerSize );
+
+        Data expectedWeights = new Data( weights );
+        Data expectedWeightsVelocity = new Data( weightsVelocity );
+        Data expectedBiases = new Data( biases );
+        Data expectedBiasesVelocity = new Data( biasesVelocity );
+
+        KSparseAutoencoder.StochasticGradientDescent(
+                inputSize, layerSize, batchSize, learningRate, momentum, weightsInputMajor,
+                batchInput, batchErrors,
+                weights, weightsVelocity, new Data( inputSize * layerSize ), biases, biasesVelocity );
+
+        float miniBatchNorm = 1f / (float)batchSize;
+
+        for( int c = 0; c < layerSize; ++c ) {
+            for( int i = 0; i < inputSize; ++i ) {
+                float sumErrorGradient = 0f;
+
+                for( int b = 0; b < batchSize; ++b ) {
+                    sumErrorGradient += batchErrors._values[ b * layerSize + c ] * batchInput._values[ b * inputSize + i ];
+                }
+
+                float errorGradient = miniBatchNorm * sumErrorGradient;
+                errorGradient = BackPropagation.ClipErrorGradient( errorGradient, BackPropagation.AbsMaxErrorGradient );
+
+                int weightsOffset = c * inputSize + i;
+                if( weightsInputMajor ) {
+                    weightsOffset = i * layerSize + c;
+                }
+
+                update( expectedWeights, expectedWeightsVelocity, weightsOffset, learningRate * errorGradient, momentum );
+            }
+
+            float sumErrorGradient = 0f;
+
+            for( int b = 0; b < batchSize; ++b ) {
+                sumErrorGradient += batchErrors._values[ b * layerSize + c ];
+            }
+
+            float errorGradient = miniBatchNorm * sumErrorGradient;
+            errorGradient = BackPropagation.ClipErrorGradient( errorGradient, BackPropagation.AbsMaxErrorGradient );
+
+            update( expectedBiases, expectedBiasesVelocity, c, learningRate * errorGradient, momentum );
+        }
+
+        assertArrayEquals( expectedWeights._values, weights._values, TOLERANCE );
+        assertArrayEquals( expectedWeightsVelocity._values, weightsVelocity._values, TOLERANCE );
+        assertArrayEquals( expectedBiases._values, biases._values, TOLERANCE );
+        assertArrayEquals( expectedBiasesVelocity._values, biasesVelocity._values, TOLERANCE );
+    }
+
+    protected static void update( Data values, Data velocity, int offset, float delta, float momentum ) {
+        if( momentum == 0f ) {
+            values._values[ offset ] -= delta;
+            return;
+        }
+
+        float vNew = ( velocity._values[ offset ] * momentum ) - delta;
+        values._values[ offset ] += vNew;
+        velocity._values[ offset ] = vNew;
+    }
+
+    protected Data random( int size ) {
+        Data d = new Data( size );
+        for( int i = 0; i < size; ++i ) {
+            d._values[ i ] = _r.nextFloat() * 2f - 1f;
+        }
+        return d;
+    }
+
+}
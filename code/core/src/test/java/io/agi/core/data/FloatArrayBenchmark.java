@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.core.data;
+
+import io.agi.core.orm.UnitTest;
+
+import java.util.Random;
+
+/**
+ * Times the FloatArray reductions over lanes against the scalar loops, at the sizes of typical layers (784 inputs,
+ * 1000 cells), and the weighted sums of a whole layer of CELLS cells, as in the autoencoders and FloatMatrix.Gemv().
+ * Run with -Xbatch or after warm-up, as timings of unoptimised code mean nothing. Args: [repeats].
+ */
+public class FloatArrayBenchmark implements UnitTest {
+
+    public static final int[] SIZES = { 784, 1000 };
+    public static final String[] OPS = { "dotProduct", "sum", "sumAbs", "sumSq", "layer" };
+    public static final int CELLS = 1000;
+
+    public static void main( String[] args ) {
+        FloatArrayBenchmark t = new FloatArrayBenchmark();
+        t.test( args );
+    }
+
+    public float _sink = 0f; // keeps the results live
+
+    public void test( String[] args ) {
+        int repeats = 200000;
+        if( args.length > 0 ) {
+            repeats = Integer.valueOf( args[ 0 ] );
+        }
+
+        Random r = new Random( 1 );
+
+        for( int size : SIZES ) {
+            FloatArray x = new FloatArray( size );
+            FloatArray y = new FloatArray( size );
+            FloatArray weights = new FloatArray( CELLS * size );
+            FloatArray weightedSums = new FloatArray( CELLS );
+            x.setRandom( r );
+            y.setRandom( r );
+            weights.setRandom( r );
+
+            for( int op = 0; op < OPS.length; ++op ) {
+                int opRepeats = repeats;
+                if( OPS[ op ].equals( "layer" ) ) {
+                    opRepeats = Math.max( 1, repeats / CELLS ); // each is CELLS dot products
+                }
+
+                // warm up both, then time
+                time( op, x, y, weights, weightedSums, opRepeats, false );
+                time( op, x, y, weights, weightedSums, opRepeats, true );
+
+                long scalar = time( op, x, y, weights, weightedSums, opRepeats, false );
+                long lanes = time( op, x, y, weights, weightedSums, opRepeats, true );
+
+                float nanosScalar = ( float ) scalar / ( float ) opRepeats;
+                float nanosLanes = ( float ) lanes / ( float ) opRepeats;
+                System.out.println( String.format( "%-10s %5d   scalar %8.1f ns   lanes %8.1f ns   x%.2f", OPS[ op ], size, nanosScalar, nanosLanes, nanosScalar / nanosLanes ) );
+            }
+        }
+
+        FloatArray.SetLanes( false );
+        System.out.println( "(" + _sink + ")" );
+    }
+
+    protected long time( int op, FloatArray x, FloatArray y, FloatArray weights, FloatArray weightedSums, int repeats, boolean lanes ) {
+        FloatArray.SetLanes( lanes );
+        float sink = 0f;
+
+        long t0 = System.nanoTime();
+
+        for( int i = 0; i < repeats; ++i ) {
+            switch( op ) {
+                case 0: sink += x.dotProduct( y ); break;
+                case 1: sink += x.sum(); break;
+                case 2: sink += x.sumAbs(); break;
+                case 3: sink += x.sumSq(); break;
+                case 4: FloatMatrix.Gemv( weights._values, CELLS, x._values.length, x._values, weightedSums._values, 1f, 0f ); sink += weightedSums._values[ 0 ]; break;
+            }
+        }
+
+        long t1 = System.nanoTime();
+
+        _sink += sink;
+        return t1 - t0;
+    }
+
+}
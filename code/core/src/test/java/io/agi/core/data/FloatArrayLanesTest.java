@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.core.data;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the FloatArray reductions over lanes with the scalar loops, for lengths with and without a tail, and at
+ * offsets as in the weighted sums of a layer.
+ */
+public class FloatArrayLanesTest {
+
+    public static final float TOLERANCE = 1e-5f; // relative, as the lanes add in a different order
+
+    protected static final int[] SIZES = { 0, 1, 7, 8, 9, 784, 1000, 1003 };
+
+    protected Random _r = new Random( 1 );
+
+    @After
+    public void restore() {
+        FloatArray.SetLanes( false );
+    }
+
+    @Test
+    public void reductions() {
+        for( int size : SIZES ) {
+            FloatArray x = random( size );
+            FloatArray y = random( size );
+
+            FloatArray.SetLanes( false );
+            float dot = x.dotProduct( y );
+            float sum = x.sum();
+            float sumSq = x.sumSq();
+            float sumAbs = x.sumAbs();
+
+            FloatArray.SetLanes( true );
+            assertClose( dot, x.dotProduct( y ) );
+            assertClose( sum, x.sum() );
+            assertClose( sumSq, x.sumSq() );
+            assertClose( sumAbs, x.sumAbs() );
+        }
+    }
+
+    @Test
+    public void dotAtOffsets() {
+        for( int size : SIZES ) {
+            int rows = 3;
+            FloatArray x = random( size );
+            FloatArray weights = random( rows * size );
+
+            for( int row = 0; row < rows; ++row ) {
+                float expected = 0f;
+                for( int i = 0; i < size; ++i ) {
+                    expected += x._values[ i ] * weights._values[ row * size + i ];
+                }
+
+                FloatArray.SetLanes( false );
+                assertEquals( expected, FloatArray.Dot( x._values, 0, weights._values, row * size, size ), 0f );
+
+                FloatArray.SetLanes( true );
+                assertClose( expected, FloatArray.Dot( x._values, 0, weights._values, row * size, size ) );
+            }
+        }
+    }
+
+    protected FloatArray random( int size ) {
+        FloatArray fa = new FloatArray( size );
+        for( int i = 0; i < size; ++i ) {
+            fa._values[ i ] = _r.nextFloat() * 2f - 1f;
+        }
+        return fa;
+    }
+
+    protected static void assertClose( float expected, float actual ) {
+        assertEquals( expected, actual, TOLERANCE * Math.max( 1f, Math.abs( expected ) ) );
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.core.data;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips of values through direct and mapped stores, and the choice of keys held off-heap.
+ */
+public class FloatBufferStoreTest {
+
+    @Test
+    public void direct() {
+        FloatArray fa = random( 1003 );
+        FloatBufferStore store = FloatBufferStore.Direct( fa.getSize() );
+        store.put( fa._values );
+
+        assertFalse( store.isMapped() );
+        assertEquals( fa.getSize(), store.getSize() );
+        assertArrayEquals( fa._values, store.get()._values, 0f );
+    }
+
+    @Test
+    public void mapped() throws Exception {
+        File directory = Files.createTempDirectory( "store-test" ).toFile();
+        directory.deleteOnExit();
+
+        FloatBufferStoreFactory factory = new FloatBufferStoreFactory();
+        factory.setup( FloatBufferStoreFactory.TYPE_MAPPED, "-weights", directory.getPath() );
+
+        FloatArray fa = random( 784 );
+        FloatBufferStore store = factory.create( "entity-weights", fa.getSize() );
+        store.put( fa._values );
+
+        assertTrue( store.isMapped() );
+
+        float[] values = new float[ fa.getSize() ];
+        store.get( values );
+        assertArrayEquals( fa._values, values, 0f );
+
+        File f = store._file;
+        assertTrue( f.exists() );
+
+        store.release();
+        assertFalse( f.exists() ); // deleted on release, not at exit
+        assertArrayEquals( fa._values, store.get()._values, 0f ); // still readable until collected
+    }
+
+    @Test
+    public void keys() {
+        FloatBufferStoreFactory factory = new FloatBufferStoreFactory();
+        assertFalse( factory.isOffHeap( "entity-weights" ) );
+
+        factory.setup( FloatBufferStoreFactory.TYPE_DIRECT, " -weights, ,other-biases ", null );
+        assertTrue( factory.isOffHeap( "entity-weights" ) );
+        assertTrue( factory.isOffHeap( "other-biases" ) );
+        assertFalse( factory.isOffHeap( "entity-biases" ) );
+        assertFalse( factory.isOffHeap( "entity-weights-velocity" ) );
+
+        factory.removeKeySuffix( "-weights" );
+        assertFalse( factory.isOffHeap( "entity-weights" ) );
+
+        factory.addKey( "entity-biases" );
+        assertTrue( factory.isOffHeap( "entity-biases" ) );
+        assertFalse( factory.isOffHeap( "other-entity-biases" ) );
+
+        factory.removeKey( "entity-biases" );
+        assertFalse( factory.isOffHeap( "entity-biases" ) );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void tooLarge() {
+        FloatBufferStore.Direct( FloatBufferStore.MAX_SIZE + 1 );
+    }
+
+    protected static FloatArray random( int size ) {
+        Random r = new Random( size );
+        FloatArray fa = new FloatArray( size );
+        for( int i = 0; i < size; ++i ) {
+            fa._values[ i ] = r.nextFloat() * 2f - 1f;
+        }
+        return fa;
+    }
+
+}
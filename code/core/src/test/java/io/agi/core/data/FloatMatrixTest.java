@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.core.data;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the FloatMatrix kernels with naive loops, for sizes that aren't multiples of the unrolling or the blocks,
+ * with and without parallel execution.
+ */
+public class FloatMatrixTest {
+
+    public static final float TOLERANCE = 1e-4f; // relative, as the kernels sum in a different order
+
+    protected static final int[][] SIZES = {
+            { 1, 1, 1 }, { 3, 5, 7 }, { 17, 4, 33 }, { 64, 65, 3 }, { 130, 9, 300 }, { 5, 600, 270 }
+    };
+
+    protected Random _r = new Random( 1 );
+    protected ForkJoinPool _pool = new ForkJoinPool( 4 );
+    protected ForkJoinPool _poolBefore = FloatMatrix.GetPool();
+
+    @After
+    public void restore() {
+        FloatMatrix.SetPool( _poolBefore, FloatMatrix.DEFAULT_PARALLEL_THRESHOLD );
+        _pool.shutdown();
+    }
+
+    @Test
+    public void gemv() {
+        for( boolean parallel : new boolean[]{ false, true } ) {
+            setParallel( parallel );
+
+            for( int[] size : SIZES ) {
+                int rows = size[ 0 ];
+                int cols = size[ 1 ];
+                float[] a = random( rows * cols );
+                float[] x = random( cols );
+                float[] y = random( rows );
+                float[] expected = y.clone();
+
+                for( int i = 0; i < rows; ++i ) {
+                    float sum = 0f;
+                    for( int j = 0; j < cols; ++j ) {
+                        sum += a[ i * cols + j ] * x[ j ];
+                    }
+                    expected[ i ] = 0.5f * sum + 2f * expected[ i ];
+                }
+
+                FloatMatrix.Gemv( a, rows, cols, x, y, 0.5f, 2f );
+                assertClose( expected, y );
+            }
+        }
+    }
+
+    @Test
+    public void gemvTransposed() {
+        for( boolean parallel : new boolean[]{ false, true } ) {
+            setParallel( parallel );
+
+            for( int[] size : SIZES ) {
+                int rows = size[ 0 ];
+                int cols = size[ 1 ];
+                float[] a = random( rows * cols );
+                float[] x = random( rows );
+                float[] y = random( cols );
+                float[] expected = new float[ cols ];
+
+                for( int j = 0; j < cols; ++j ) {
+                    float sum = 0f;
+                    for( int i = 0; i < rows; ++i ) {
+                        sum += a[ i * cols + j ] * x[ i ];
+                    }
+                    expected[ j ] = -1f * sum;
+                }
+
+                y[ 0 ] = Float.NaN; // beta 0 ignores the old values
+                FloatMatrix.GemvTransposed( a, rows, cols, x, y, -1f, 0f );
+                assertClose( expected, y );
+            }
+        }
+    }
+
+    @Test
+    public void gemm() {
+        for( boolean parallel : new boolean[]{ false, true } ) {
+            setParallel( parallel );
+
+            for( boolean transposeA : new boolean[]{ false, true } ) {
+                for( boolean transposeB : new boolean[]{ false, true } ) {
+                    for( int[] size : SIZES ) {
+                        gemm( size[ 0 ], size[ 1 ], size[ 2 ], transposeA, transposeB );
+                    }
+                }
+            }
+        }
+    }
+
+    protected void gemm( int m, int n, int k, boolean transposeA, boolean transposeB ) {
+        float[] a = random( m * k );
+        float[] b = random( k * n );
+        float[] c = random( m * n );
+        float[] expected = c.clone();
+
+        a[ 0 ] = 0f; // zeros are skipped
+
+        for( int i = 0; i < m; ++i ) {
+            for( int j = 0; j < n; ++j ) {
+                float sum = 0f;
+                for( int p = 0; p < k; ++p ) {
+                    float aip = transposeA ? a[ p * m + i ] : a[ i * k + p ];
+                    float bpj = transposeB ? b[ j * k + p ] : b[ p * n + j ];
+                    sum += aip * bpj;
+                }
+                expected[ i * n + j ] = 1.5f * sum + 0.25f * expected[ i * n + j ];
+            }
+        }
+
+        FloatMatrix.Gemm( a, transposeA, b, transposeB, c, m, n, k, 1.5f, 0.25f );
+        assertClose( expected, c );
+    }
+
+    @Test
+    public void ger() {
+        for( boolean parallel : new boolean[]{ false, true } ) {
+            setParallel( parallel );
+
+            for( int[] size : SIZES ) {
+                int rows = size[ 0 ];
+                int cols = size[ 1 ];
+                float[] a = random( rows * cols );
+                float[] x = random( rows );
+                float[] y = random( cols );
+                float[] expected = a.clone();
+
+                for( int i = 0; i < rows; ++i ) {
+                    for( int j = 0; j < cols; ++j ) {
+                        expected[ i * cols + j ] += 3f * x[ i ] * y[ j ];
+                    }
+                }
+
+                FloatMatrix.Ger( a, rows, cols, x, y, 3f );
+                assertClose( expected, a );
+            }
+        }
+    }
+
+    @Test
+    public void outerProducts() {
+        for( boolean parallel : new boolean[]{ false, true } ) {
+            setParallel( parallel );
+
+            for( int[] size : SIZES ) {
+                int batchSize = size[ 0 ];
+                int rows = size[ 1 ];
+                int cols = size[ 2 ];
+                float[] x = random( batchSize * rows );
+                float[] y = random( batchSize * cols );
+                float[] a = random( rows * cols );
+                float[] expected = a.clone();
+
+                for( int i = 0; i < rows; ++i ) {
+                    for( int j = 0; j < cols; ++j ) {
+                        float sum = 0f;
+                        for( int b = 0; b < batchSize; ++b ) {
+                            sum += x[ b * rows + i ] * y[ b * cols + j ];
+                        }
+                        expected[ i * cols + j ] += sum / batchSize;
+                    }
+                }
+
+                FloatMatrix.OuterProducts( x, y, a, batchSize, rows, cols, 1f / batchSize, 1f );
+                assertClose( expected, a );
+            }
+        }
+    }
+
+    protected void setParallel( boolean parallel ) {
+        if( parallel ) {
+            FloatMatrix.SetPool( _pool, 1 ); // split even small problems
+        }
+        else {
+            FloatMatrix.SetPool( null, FloatMatrix.DEFAULT_PARALLEL_THRESHOLD );
+        }
+    }
+
+    protected float[] random( int size ) {
+        float[] values = new float[ size ];
+        for( int i = 0; i < size; ++i ) {
+            values[ i ] = _r.nextFloat() * 2f - 1f;
+        }
+        return values;
+    }
+
+    protected static void assertClose( float[] expected, float[] actual ) {
+        assertEquals( expected.length, actual.length );
+
+        for( int i = 0; i < expected.length; ++i ) {
+            float tolerance = TOLERANCE * Math.max( 1f, Math.abs( expected[ i ] ) );
+            assertEquals( "at " + i, expected[ i ], actual[ i ], tolerance );
+        }
+    }
+
+}
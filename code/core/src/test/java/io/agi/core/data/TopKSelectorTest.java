@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.core.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * TopKSelector gives the same selections as Ranking, including the random tie-break's draws.
+ */
+public class TopKSelectorTest {
+
+    public static final int TRIALS = 500;
+    public static final float[] VALUES = { 0f, -0f, 1f, -1f, 0.5f, Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY }; // few, so many ties
+
+    @Test
+    public void range() {
+        Random r = new Random( 1 );
+        TopKSelector selector = new TopKSelector();
+
+        for( int t = 0; t < TRIALS; ++t ) {
+            int offset = r.nextInt( 5 );
+            int length = r.nextInt( 40 );
+            float[] values = random( offset + length + r.nextInt( 5 ), r );
+            int k = getK( length, r );
+            boolean max = r.nextBoolean();
+
+            TreeMap< Float, ArrayList< Integer > > ranking = Ranking.CreateRanking();
+            for( int i = 0; i < length; ++i ) {
+                Ranking.add( ranking, values[ offset + i ], i );
+            }
+
+            int n = selector.select( values, offset, length, k, max );
+            assertSelected( getBestValues( ranking, max, k ), selector, n );
+
+            long seed = r.nextLong();
+            Random r1 = new Random( seed );
+            Random r2 = new Random( seed );
+            n = selector.selectRandomTieBreak( values, offset, length, k, max, r1 );
+            assertSelected( getBestValuesRandomTieBreak( ranking, max, k, r2 ), selector, n );
+            assertEquals( r2.nextLong(), r1.nextLong() ); // the same number of draws
+        }
+    }
+
+    @Test
+    public void stride() {
+        Random r = new Random( 2 );
+        TopKSelector selector = new TopKSelector();
+
+        for( int t = 0; t < TRIALS; ++t ) {
+            int offset = r.nextInt( 5 );
+            int stride = 1 + r.nextInt( 4 );
+            int length = r.nextInt( 40 );
+            float[] values = random( offset + length * stride, r );
+            int k = getK( length, r );
+            boolean max = r.nextBoolean();
+
+            TreeMap< Float, ArrayList< Integer > > ranking = Ranking.CreateRanking();
+            for( int i = 0; i < length; ++i ) {
+                Ranking.add( ranking, values[ offset + i * stride ], i );
+            }
+
+            int n = selector.select( values, offset, stride, length, k, max );
+            assertSelected( getBestValues( ranking, max, k ), selector, n );
+
+            long seed = r.nextLong();
+            Random r1 = new Random( seed );
+            Random r2 = new Random( seed );
+            n = selector.selectRandomTieBreak( values, offset, stride, length, k, max, r1 );
+            assertSelected( getBestValuesRandomTieBreak( ranking, max, k, r2 ), selector, n );
+            assertEquals( r2.nextLong(), r1.nextLong() );
+        }
+    }
+
+    @Test
+    public void candidates() {
+        Random r = new Random( 3 );
+        TopKSelector selector = new TopKSelector();
+
+        for( int t = 0; t < TRIALS; ++t ) {
+            float[] values = random( r.nextInt( 60 ), r );
+
+            int[] candidates = new int[ values.length ];
+            int count = 0;
+            for( int i = 0; i < values.length; ++i ) {
+                if( r.nextFloat() < 0.7f ) {
+                    candidates[ count ] = i; // ascending
+                    ++count;
+                }
+            }
+
+            int k = getK( count, r );
+            boolean max = r.nextBoolean();
+
+            TreeMap< Float, ArrayList< Integer > > ranking = Ranking.CreateRanking();
+            for( int i = 0; i < count; ++i ) {
+                Ranking.add( ranking, values[ candidates[ i ] ], candidates[ i ] );
+            }
+
+            int n = selector.select( values, candidates, count, k, max );
+            assertSelected( getBestValues( ranking, max, k ), selector, n );
+
+            long seed = r.nextLong();
+            Random r1 = new Random( seed );
+            Random r2 = new Random( seed );
+            n = selector.selectRandomTieBreak( values, candidates, count, k, max, r1 );
+            assertSelected( getBestValuesRandomTieBreak( ranking, max, k, r2 ), selector, n );
+            assertEquals( r2.nextLong(), r1.nextLong() );
+        }
+    }
+
+    @Test
+    public void zeroSelectsNothing() {
+        // Ranking returns the best value when asked for none; the selector returns none
+        float[] values = { 1f, 2f, 3f };
+        TopKSelector selector = new TopKSelector();
+        assertEquals( 0, selector.select( values, 0, values.length, 0, true ) );
+        assertEquals( 0, selector.select( values, 0, values.length, -1, true ) );
+        assertEquals( 0, selector.selectRandomTieBreak( values, 0, values.length, 0, true, new Random( 4 ) ) );
+    }
+
+    protected static float[] random( int length, Random r ) {
+        float[] values = new float[ length ];
+        for( int i = 0; i < length; ++i ) {
+            values[ i ] = VALUES[ r.nextInt( VALUES.length ) ];
+        }
+        return values;
+    }
+
+    /**
+     * @return 0 (which Ranking treats as 1, see zeroSelectsNothing()), or up to more than there are.
+     */
+    protected static int getK( int length, Random r ) {
+        return r.nextInt( length + 3 );
+    }
+
+    protected static ArrayList< Integer > getBestValues( TreeMap< Float, ArrayList< Integer > > ranking, boolean max, int k ) {
+        ArrayList< Integer > best = new ArrayList< Integer >();
+        if( k > 0 ) {
+            Ranking.getBestValues( ranking, max, k, best );
+        }
+        return best;
+    }
+
+    protected static ArrayList< Integer > getBestValuesRandomTieBreak( TreeMap< Float, ArrayList< Integer > > ranking, boolean max, int k, Random random ) {
+        ArrayList< Integer > best = new ArrayList< Integer >();
+        if( k > 0 ) {
+            Ranking.getBestValuesRandomTieBreak( ranking, max, k, best, random );
+        }
+        return best;
+    }
+
+    protected static void assertSelected( ArrayList< Integer > expected, TopKSelector selector, int n ) {
+        assertEquals( expected.size(), n );
+        for( int i = 0; i < n; ++i ) {
+            assertEquals( expected.get( i ).intValue(), selector._indices[ i ] );
+        }
+    }
+
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework;
+
+import io.agi.core.data.Data;
+import io.agi.core.data.DataSize;
+import io.agi.core.orm.ObjectMap;
+import io.agi.framework.persistence.DataPersistence;
+import io.agi.framework.persistence.models.ModelEntity;
+import io.agi.framework.references.DataRef;
+import io.agi.framework.references.DataRefMap;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import static org.junit.Assert.*;
+
+/**
+ * Which outputs an Entity persists at the end of an update.
+ */
+public class EntityTest {
+
+    public static final String WEIGHTS = "weights";
+    public static final String ERRORS = "errors";
+
+    @Test
+    public void unchangedOutputSkipped() {
+        TestDataRefMap map = new TestDataRefMap();
+        TestEntity e = createEntity( map );
+        Data weights = fetch( e, WEIGHTS, 10 );
+        fetch( e, ERRORS, 10 );
+
+        // as an Entity that isn't learning: the weights are only read, and set back as they were
+        Data w = e.getDataLazyResize( WEIGHTS, weights._dataSize, false );
+        assertSame( weights, w );
+        Data errors = e.getData( ERRORS );
+        errors._values[ 0 ] = 1f;
+        e.setData( WEIGHTS, w );
+        e.setData( ERRORS, errors );
+
+        e.persistData( e.getOutputs() );
+
+        assertFalse( map._set.contains( e.getKey( WEIGHTS ) ) );
+        assertFalse( map._notified.contains( e.getKey( WEIGHTS ) ) );
+        assertTrue( map._set.contains( e.getKey( ERRORS ) ) );
+        assertTrue( map._notified.contains( e.getKey( ERRORS ) ) );
+    }
+
+    @Test
+    public void fetchedOutputNotMarked() {
+        TestDataRefMap map = new TestDataRefMap();
+        TestEntity e = createEntity( map );
+        fetch( e, WEIGHTS, 10 );
+        fetch( e, ERRORS, 10 );
+
+        // fetching to modify doesn't mark the Data; setting it does
+        e.getData( WEIGHTS );
+        e.getDataLazyResize( ERRORS, new DataSize( 10 ) );
+        e.persistData( e.getOutputs() );
+        assertTrue( map._set.isEmpty() );
+        assertTrue( map._notified.isEmpty() );
+
+        Data w = e.getData( WEIGHTS );
+        w._values[ 0 ] = 1f; // modified in place
+        e.setData( WEIGHTS, w );
+        e.persistData( e.getOutputs() );
+        assertTrue( map._set.contains( e.getKey( WEIGHTS ) ) );
+        assertFalse( map._set.contains( e.getKey( ERRORS ) ) );
+    }
+
+    @Test
+    public void readOnlyOutputModified() {
+        TestDataRefMap map = new TestDataRefMap();
+        TestEntity e = createEntity( map );
+        fetch( e, WEIGHTS, 10 );
+
+        // handed out read-only, but then to be modified, e.g. on reset
+        assertNotNull( e.getDataReadOnly( WEIGHTS ) );
+        Data w = e.getData( WEIGHTS );
+        w._values[ 0 ] = 1f;
+        e.setData( WEIGHTS, w );
+        e.persistData( e.getOutputs() );
+        assertTrue( map._set.contains( e.getKey( WEIGHTS ) ) );
+    }
+
+    @Test
+    public void readOnlyOutputCreated() {
+        TestDataRefMap map = new TestDataRefMap();
+        TestEntity e = createEntity( map );
+        fetch( e, ERRORS, 5 );
+
+        // not fetched, or not the right size: created, so persisted although read-only
+        DataSize size = new DataSize( 10 );
+        e.setData( WEIGHTS, e.getDataLazyResize( WEIGHTS, size, false ) );
+        e.setData( ERRORS, e.getDataLazyResize( ERRORS, size, false ) );
+        e.persistData( e.getOutputs() );
+        assertTrue( map._set.contains( e.getKey( WEIGHTS ) ) );
+        assertTrue( map._set.contains( e.getKey( ERRORS ) ) );
+    }
+
+    protected static TestEntity createEntity( DataRefMap map ) {
+        Node n = Node.NodeInstance();
+        n._dataRefMap = map;
+        ModelEntity model = new ModelEntity( "e", "test", "node", null, null );
+        return new TestEntity( new ObjectMap(), n, model );
+    }
+
+    /**
+     * As if the output had been fetched at the start of the update.
+     */
+    protected static Data fetch( Entity e, String attribute, int size ) {
+        Data d = new Data( size );
+        e._data.put( e.getKey( attribute ), d );
+        return d;
+    }
+
+    /**
+     * Records what is set, and which keys other Nodes would be notified of.
+     */
+    protected static class TestDataRefMap extends DataRefMap {
+
+        public ArrayList< String > _set = new ArrayList< String >();
+        public ArrayList< String > _notified = new ArrayList< String >();
+
+        @Override
+        protected DataPersistence getDataPersistence() {
+            return null;
+        }
+
+        @Override
+        public void setData( String name, DataRef d ) {
+            _set.add( name );
+            super.setData( name, d );
+        }
+
+        @Override
+        protected void notifySetData( String key ) {
+            _notified.add( key );
+        }
+    }
+
+    protected static class TestEntity extends Entity {
+
+        public TestEntity( ObjectMap om, Node n, ModelEntity model ) {
+            super( om, n, model );
+        }
+
+        public Collection< String > getOutputs() {
+            ArrayList< String > attributes = new ArrayList< String >();
+            getOutputAttributes( attributes, _dataFlags );
+            return attributes;
+        }
+
+        @Override
+        public void getInputAttributes( Collection< String > attributes ) {
+        }
+
+        @Override
+        public void getOutputAttributes( Collection< String > attributes, DataFlags flags ) {
+            attributes.add( WEIGHTS );
+            attributes.add( ERRORS );
+        }
+
+        @Override
+        public Class getConfigClass() {
+            return EntityConfig.class;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.coordination.transfer;
+
+import io.agi.core.data.Data;
+import io.agi.framework.persistence.DataJsonSerializer;
+import io.agi.framework.persistence.DataPersistence;
+import io.agi.framework.references.DataRef;
+import io.agi.framework.references.DataRefMap;
+import io.agi.framework.references.DataVersions;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * The framing of Data transfer messages, and requests to a server over loopback.
+ */
+public class DataTransferTest {
+
+    public static final String HOST = "127.0.0.1";
+
+    @Test
+    public void request() throws IOException {
+        ByteBuffer bb = DataTransfer.GetRequest( Arrays.asList( "a", "bé", "" ) );
+        ByteBuffer body = getBody( bb );
+
+        assertEquals( DataTransfer.MAGIC_REQUEST, DataTransfer.GetRequestType( body ) );
+        assertEquals( Arrays.asList( "a", "bé", "" ), DataTransfer.ParseRequest( body ) );
+        assertFalse( body.hasRemaining() );
+    }
+
+    @Test
+    public void deltaRequest() throws IOException {
+        HashMap< String, DataRef > copies = new HashMap< String, DataRef >();
+        DataRef copy = new DataRef( "a", DataJsonSerializer.ENCODING_DENSE, null, new Data( 10 ) );
+        copy._epoch = 1234L;
+        copy._version = 56L;
+        copies.put( "a", copy );
+
+        ByteBuffer body = getBody( DataTransfer.GetDeltaRequest( Arrays.asList( "a", "b" ), copies ) );
+        assertEquals( DataTransfer.MAGIC_DELTA_REQUEST, DataTransfer.GetRequestType( body ) );
+
+        Iterator< DataTransfer.DeltaRequest > i = DataTransfer.ParseDeltaRequest( body ).iterator();
+        DataTransfer.DeltaRequest a = i.next();
+        DataTransfer.DeltaRequest b = i.next();
+        assertFalse( i.hasNext() );
+
+        assertEquals( "a", a._key );
+        assertEquals( 1234L, a._epoch );
+        assertEquals( 56L, a._version );
+        assertEquals( "b", b._key );
+        assertEquals( DataVersions.NO_VERSION, b._version );
+    }
+
+    @Test
+    public void badMessages() {
+        assertBadLength( -1, DataTransfer.MAX_MESSAGE_BYTES );
+        assertBadLength( DataTransfer.MAX_REQUEST_BYTES + 1, DataTransfer.MAX_REQUEST_BYTES );
+
+        ByteBuffer body = getBody( DataTransfer.GetRequest( Arrays.asList( "a", "b" ) ) );
+        body.putInt( 4, 1 << 30 ); // count
+        try {
+            DataTransfer.ParseRequest( body );
+            fail( "Parsed a request with a bad count." );
+        }
+        catch( IOException e ) {
+            // expected
+        }
+
+        body = getBody( DataTransfer.GetRequest( Arrays.asList( "a", "b" ) ) );
+        body.putInt( 8, -2 ); // length of the first key
+        try {
+            DataTransfer.ParseRequest( body );
+            fail( "Parsed a request with a bad key length." );
+        }
+        catch( IOException e ) {
+            // expected
+        }
+    }
+
+    @Test
+    public void transfer() throws IOException {
+        DataRefMap map = new TestDataRefMap();
+        Data d = new Data( 1000 );
+        randomize( d, new Random( 1 ) );
+        map.setData( "a", new DataRef( "a", DataJsonSerializer.ENCODING_DENSE, null, d ) );
+
+        DataTransferServer server = new DataTransferServer( map );
+        server.start( HOST, 0 );
+        DataTransferClient client = new DataTransferClient();
+
+        try {
+            int port = server.getPort();
+
+            Collection< DataRef > dataRefs = client.getData( HOST, port, Arrays.asList( "a", "missing" ) );
+            assertEquals( 1, dataRefs.size() );
+            assertArrayEquals( d._values, dataRefs.iterator().next()._data._values, 0f );
+
+            // fetch with versions, then change one block and fetch only the changes
+            HashMap< String, DataRef > copies = new HashMap< String, DataRef >();
+            DataRef copy = client.getData( HOST, port, Arrays.asList( "a" ), copies ).iterator().next();
+            assertNotEquals( DataVersions.NO_VERSION, copy._version );
+            copies.put( "a", copy );
+
+            Data d2 = new Data( d );
+            d2._values[ 700 ] = 42f;
+            map.setData( "a", new DataRef( "a", DataJsonSerializer.ENCODING_DENSE, null, d2 ) );
+
+            DataRef changed = client.getData( HOST, port, Arrays.asList( "a" ), copies ).iterator().next();
+            assertTrue( changed._version > copy._version );
+            assertArrayEquals( d2._values, changed._data._values, 0f );
+            assertEquals( d._values[ 700 ], copy._data._values[ 700 ], 0f ); // the copy isn't modified
+        }
+        finally {
+            client.close();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void largeResponse() throws IOException {
+        DataRefMap map = new TestDataRefMap();
+        Data d = new Data( DataTransferClient.MAX_BODY_BYTES / 4 + 1000 ); // larger than the reusable buffer
+        randomize( d, new Random( 2 ) );
+        map.setData( "large", new DataRef( "large", DataJsonSerializer.ENCODING_DENSE, null, d ) );
+
+        DataTransferServer server = new DataTransferServer( map );
+        server.start( HOST, 0 );
+        DataTransferClient client = new DataTransferClient();
+
+        try {
+            for( int i = 0; i < 2; ++i ) { // the connection is still in step after a large response
+                Collection< DataRef > dataRefs = client.getData( HOST, server.getPort(), Arrays.asList( "large" ) );
+                assertArrayEquals( d._values, dataRefs.iterator().next()._data._values, 0f );
+            }
+        }
+        finally {
+            client.close();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void oversizedRequest() throws IOException {
+        DataTransferServer server = new DataTransferServer( new TestDataRefMap() );
+        server.start( HOST, 0 );
+
+        try {
+            SocketChannel sc = SocketChannel.open( new InetSocketAddress( HOST, server.getPort() ) );
+            try {
+                DataTransfer.WriteFully( sc, DataTransfer.GetLength( DataTransfer.MAX_REQUEST_BYTES + 1 ) );
+                assertEquals( -1, sc.read( ByteBuffer.allocate( 4 ) ) ); // closed without allocating the body
+            }
+            finally {
+                sc.close();
+            }
+        }
+        finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * A DataRefMap without a Node, for a server to read from.
+     */
+    protected static class TestDataRefMap extends DataRefMap {
+
+        @Override
+        protected DataPersistence getDataPersistence() {
+            return null;
+        }
+
+        @Override
+        protected void notifySetData( String key ) {
+        }
+    }
+
+    protected static void assertBadLength( int bytes, int maxBytes ) {
+        try {
+            DataTransfer.ParseLength( DataTransfer.GetLength( bytes ), maxBytes );
+            fail( "Parsed a bad length: " + bytes );
+        }
+        catch( IOException e ) {
+            // expected
+        }
+    }
+
+    /**
+     * @param message
+     * @return the body of the message, after the length.
+     */
+    protected static ByteBuffer getBody( ByteBuffer message ) {
+        message.order( ByteOrder.LITTLE_ENDIAN );
+        int bytes = message.getInt();
+        assertEquals( message.remaining(), bytes );
+        return message.slice().order( ByteOrder.LITTLE_ENDIAN );
+    }
+
+    protected static void randomize( Data d, Random r ) {
+        for( int i = 0; i < d.getSize(); ++i ) {
+            d._values[ i ] = r.nextFloat();
+        }
+    }
+
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.persistence;
+
+import io.agi.core.data.Data;
+import io.agi.core.data.DataSize;
+import io.agi.framework.references.DataRef;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips of DataRefs through the binary form, from buffers and streams, and rejection of malformed input.
+ */
+public class DataBinarySerializerTest {
+
+    @Test
+    public void buffer() throws IOException {
+        ArrayList< DataRef > dataRefs = getDataRefs( 100 );
+        ByteBuffer bb = DataBinarySerializer.DataRefsToByteBuffer( dataRefs );
+
+        assertDataRefsEqual( dataRefs, DataBinarySerializer.ByteBufferToDataRefs( bb ) );
+        assertFalse( bb.hasRemaining() );
+    }
+
+    @Test
+    public void stream() throws IOException {
+        ArrayList< DataRef > dataRefs = getDataRefs( 100000 ); // larger than the read buffer
+        byte[] bytes = toBytes( dataRefs );
+
+        assertDataRefsEqual( dataRefs, DataBinarySerializer.StreamToDataRefs( new ByteArrayInputStream( bytes ) ) );
+        assertDataRefsEqual( dataRefs, DataBinarySerializer.StreamToDataRefs( new ByteArrayInputStream( bytes ), bytes.length ) );
+    }
+
+    @Test
+    public void streamWrite() throws IOException {
+        ArrayList< DataRef > dataRefs = getDataRefs( 100000 ); // larger than the write buffer
+        char[] longKey = new char[ DataBinarySerializer.BUFFER_BYTES * 2 + 3 ];
+        Arrays.fill( longKey, 'k' );
+        dataRefs.add( new DataRef( new String( longKey ), DataJsonSerializer.ENCODING_DENSE, null, new Data( 3 ) ) );
+
+        // written through the reused buffer, never more than a buffer-full at a time
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final int[] maxWrite = { 0 };
+        WritableByteChannel channel = new WritableByteChannel() {
+            @Override
+            public int write( ByteBuffer src ) {
+                int n = src.remaining();
+                maxWrite[ 0 ] = Math.max( maxWrite[ 0 ], n );
+                byte[] bytes = new byte[ n ];
+                src.get( bytes );
+                baos.write( bytes, 0, n );
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        DataBinarySerializer.DataRefsToChannel( dataRefs, channel );
+        byte[] bytes = baos.toByteArray();
+
+        assertTrue( maxWrite[ 0 ] <= DataBinarySerializer.BUFFER_BYTES );
+        assertEquals( DataBinarySerializer.GetSize( dataRefs ), bytes.length );
+
+        ByteBuffer bb = DataBinarySerializer.DataRefsToByteBuffer( dataRefs );
+        byte[] buffered = new byte[ bb.remaining() ];
+        bb.get( buffered );
+        assertArrayEquals( buffered, bytes );
+
+        assertDataRefsEqual( dataRefs, DataBinarySerializer.StreamToDataRefs( new ByteArrayInputStream( bytes ) ) );
+    }
+
+    @Test
+    public void truncated() throws IOException {
+        byte[] bytes = toBytes( getDataRefs( 1000 ) );
+
+        for( int length : new int[]{ 0, 6, 20, bytes.length / 2, bytes.length - 1 } ) {
+            byte[] truncated = Arrays.copyOf( bytes, length );
+
+            try {
+                DataBinarySerializer.StreamToDataRefs( new ByteArrayInputStream( truncated ) );
+                fail( "Read truncated stream of " + length + " bytes." );
+            }
+            catch( IOException e ) {
+                // expected
+            }
+
+            try {
+                DataBinarySerializer.ByteBufferToDataRefs( ByteBuffer.wrap( truncated ) );
+                fail( "Read truncated buffer of " + length + " bytes." );
+            }
+            catch( IOException e ) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void badSizes() {
+        ArrayList< DataRef > dataRefs = new ArrayList< DataRef >();
+        Data d = new Data( 4 );
+        dataRefs.add( new DataRef( "a", DataJsonSerializer.ENCODING_DENSE, null, d ) );
+        byte[] bytes = toBytes( dataRefs );
+
+        // magic, count, key "a", refKeys null, encoding, dimensions, size, label "x", length
+        int dimensions = 4 + 4 + 5 + 4 + 1;
+        int size = dimensions + 4;
+        int length = size + 4 + 5;
+
+        assertRejected( bytes, dimensions, Integer.MAX_VALUE );
+        assertRejected( bytes, size, -1 );
+        assertRejected( bytes, length, -5 );
+        assertRejected( bytes, length, 1 << 28 ); // more than the bytes remaining
+    }
+
+    protected static void assertRejected( byte[] bytes, int offset, int value ) {
+        ByteBuffer bb = ByteBuffer.wrap( bytes.clone() ).order( ByteOrder.LITTLE_ENDIAN );
+        bb.putInt( offset, value );
+
+        try {
+            DataBinarySerializer.ByteBufferToDataRefs( bb );
+            fail( "Read " + value + " at " + offset );
+        }
+        catch( IOException e ) {
+            // expected
+        }
+    }
+
+    protected static byte[] toBytes( Collection< DataRef > dataRefs ) {
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            DataBinarySerializer.DataRefsToStream( dataRefs, baos );
+            return baos.toByteArray();
+        }
+        catch( IOException e ) {
+            throw new RuntimeException( e );
+        }
+    }
+
+    protected static ArrayList< DataRef > getDataRefs( int size ) {
+        Random r = new Random( 42 );
+        ArrayList< DataRef > dataRefs = new ArrayList< DataRef >();
+
+        DataSize ds = DataSize.create( size, 2 );
+
+        Data dense = new Data( ds );
+        Data sparse = new Data( ds );
+        Data binary = new Data( ds );
+        for( int i = 0; i < dense.getSize(); ++i ) {
+            dense._values[ i ] = r.nextFloat() - 0.5f;
+            if( r.nextFloat() < 0.1f ) {
+                sparse._values[ i ] = r.nextFloat();
+                binary._values[ i ] = 1.f;
+            }
+        }
+
+        dataRefs.add( new DataRef( "dense", DataJsonSerializer.ENCODING_DENSE, null, dense ) );
+        dataRefs.add( new DataRef( "sparse-real", DataJsonSerializer.ENCODING_SPARSE_REAL, "a,b", sparse ) );
+        dataRefs.add( new DataRef( "sparse-binary", DataJsonSerializer.ENCODING_SPARSE_BINARY, null, binary ) );
+        dataRefs.add( new DataRef( "reference", DataJsonSerializer.ENCODING_DENSE, "dense", null ) );
+        dataRefs.add( new DataRef( "empty", DataJsonSerializer.ENCODING_DENSE, null, new Data( 0 ) ) );
+        return dataRefs;
+    }
+
+    protected static void assertDataRefsEqual( Collection< DataRef > expected, Collection< DataRef > actual ) {
+        assertEquals( expected.size(), actual.size() );
+
+        Iterator< DataRef > i = actual.iterator();
+        for( DataRef e : expected ) {
+            DataRef a = i.next();
+            assertEquals( e._key, a._key );
+            assertEquals( e._encoding, a._encoding );
+            assertEquals( e._refKeys, a._refKeys );
+
+            if( e._data == null ) {
+                assertNull( a._data );
+                continue;
+            }
+
+            assertTrue( e._data._dataSize.isSameAs( a._data._dataSize ) );
+            for( int d = 0; d < e._data._dataSize._sizes.length; ++d ) {
+                assertEquals( e._data._dataSize.getLabel( d ), a._data._dataSize.getLabel( d ) );
+            }
+            assertArrayEquals( e._data._values, a._data._values, 0f );
+        }
+    }
+
+}
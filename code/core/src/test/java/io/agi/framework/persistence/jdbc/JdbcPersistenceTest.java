@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.persistence.jdbc;
+
+import io.agi.framework.persistence.models.ModelNode;
+import org.junit.Test;
+
+import java.util.Collection;
+
+import static org.junit.Assert.*;
+
+/**
+ * Nodes in an embedded H2 database, created by the schema script.
+ */
+public class JdbcPersistenceTest {
+
+    public static final String SCRIPT = "../../bin/db/agidb-h2.sql";
+
+    @Test
+    public void nodeWeightPersisted() throws Exception {
+        JdbcPersistence p = createPersistence( "weights" );
+
+        p.persistNode( new ModelNode( "node-1", "localhost", 8491, 2.f ) );
+        p.persistNode( new ModelNode( "node-2", "localhost", 8492 ) );
+        assertEquals( 2.f, p.getNode( "node-1" )._weight, 0.f );
+        assertEquals( ModelNode.DEFAULT_WEIGHT, p.getNode( "node-2" )._weight, 0.f );
+
+        ModelNode modelNode = p.getNode( "node-2" );
+        modelNode._weight = 0.f;
+        p.persistNode( modelNode ); // as another Node would see it
+
+        Collection< ModelNode > nodes = p.getNodes();
+        assertEquals( 2, nodes.size() );
+        for( ModelNode m : nodes ) {
+            assertEquals( m._name.equals( "node-1" ) ? 2.f : 0.f, m._weight, 0.f );
+        }
+    }
+
+    @Test
+    public void nodeWithoutWeight() throws Exception {
+        JdbcPersistence p = createPersistence( "noweight" );
+
+        p.execute( "INSERT INTO nodes (name, host, port, weight) VALUES (?, ?, ?, NULL)", "node-1", "localhost", 8491 );
+        assertEquals( ModelNode.DEFAULT_WEIGHT, p.getNode( "node-1" )._weight, 0.f );
+        assertEquals( ModelNode.DEFAULT_WEIGHT, p.getNodes().iterator().next()._weight, 0.f );
+    }
+
+    protected static JdbcPersistence createPersistence( String database ) throws ClassNotFoundException {
+        JdbcPersistence p = new JdbcPersistence();
+        p.setup( "org.h2.Driver", "sa", "", "jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1;INIT=RUNSCRIPT FROM '" + SCRIPT + "'" );
+        return p;
+    }
+}
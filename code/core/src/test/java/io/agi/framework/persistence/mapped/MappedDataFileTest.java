@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.persistence.mapped;
+
+import io.agi.core.data.Data;
+import io.agi.core.data.DataSize;
+import io.agi.framework.persistence.DataJsonSerializer;
+import io.agi.framework.references.DataRef;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips of a DataRef through a mapped file, and rejection of truncated or corrupt files.
+ */
+public class MappedDataFileTest {
+
+    @Test
+    public void roundTrip() throws IOException {
+        File folder = Files.createTempDirectory( "mapped" ).toFile();
+        File file = new File( folder, "a.dat" );
+        DataRef dataRef = getDataRef();
+
+        try {
+            new MappedDataFile( file ).write( dataRef );
+            DataRef read = new MappedDataFile( file ).read();
+
+            assertEquals( dataRef._key, read._key );
+            assertEquals( dataRef._encoding, read._encoding );
+            assertNull( read._refKeys );
+            assertTrue( read._data._dataSize.isSameAs( dataRef._data._dataSize ) );
+            assertArrayEquals( dataRef._data._values, read._data._values, 0f );
+        }
+        finally {
+            Delete( folder );
+        }
+    }
+
+    @Test
+    public void truncated() throws IOException {
+        File folder = Files.createTempDirectory( "mapped" ).toFile();
+        File file = new File( folder, "a.dat" );
+
+        try {
+            new MappedDataFile( file ).write( getDataRef() );
+            byte[] bytes = Files.readAllBytes( file.toPath() );
+
+            for( int length = 0; length < bytes.length; ++length ) {
+                File truncated = new File( folder, "t" + length + ".dat" );
+                Files.write( truncated.toPath(), Arrays.copyOf( bytes, length ) );
+                assertUnreadable( truncated );
+            }
+        }
+        finally {
+            Delete( folder );
+        }
+    }
+
+    @Test
+    public void corrupt() throws IOException {
+        File folder = Files.createTempDirectory( "mapped" ).toFile();
+        File file = new File( folder, "a.dat" );
+
+        try {
+            new MappedDataFile( file ).write( getDataRef() );
+            byte[] bytes = Files.readAllBytes( file.toPath() );
+
+            // each int of the header, made negative or too large: an IOException, or a different DataRef, but
+            // nothing else, e.g. BufferUnderflowException or OutOfMemoryError
+            int headerBytes = bytes.length - 100 * 4;
+            for( int offset = 4; offset + 4 <= headerBytes; ++offset ) {
+                for( int value : new int[]{ Integer.MIN_VALUE, -2, Integer.MAX_VALUE } ) {
+                    File corrupt = new File( folder, "c" + offset + "_" + value + ".dat" );
+                    Files.write( corrupt.toPath(), bytes );
+                    RandomAccessFile raf = new RandomAccessFile( corrupt, "rw" );
+                    try {
+                        raf.seek( offset );
+                        raf.writeInt( Integer.reverseBytes( value ) ); // little-endian
+                    }
+                    finally {
+                        raf.close();
+                    }
+
+                    try {
+                        new MappedDataFile( corrupt ).read();
+                    }
+                    catch( IOException e ) {
+                        // expected
+                    }
+                }
+            }
+        }
+        finally {
+            Delete( folder );
+        }
+    }
+
+    @Test
+    public void quarantined() throws IOException {
+        File folder = Files.createTempDirectory( "mapped" ).toFile();
+
+        try {
+            MappedFilePersistence p = new MappedFilePersistence();
+            p.setup( folder.getPath() );
+            p.persistData( getDataRef() );
+            p.checkpoint();
+
+            // a crash leaves the file truncated
+            File file = new File( new File( folder, MappedFilePersistence.DATA_FOLDER ), MappedFilePersistence.KeyToFileName( "a" ) );
+            byte[] bytes = Files.readAllBytes( file.toPath() );
+            Files.write( file.toPath(), Arrays.copyOf( bytes, bytes.length - 10 ) );
+
+            MappedFilePersistence restarted = new MappedFilePersistence();
+            restarted.setup( folder.getPath() );
+            assertTrue( restarted.getDataKeys().contains( "a" ) );
+            assertNull( restarted.getData( "a" ) );
+            assertFalse( restarted.getDataKeys().contains( "a" ) );
+            assertFalse( file.exists() );
+            assertTrue( new File( file.getPath() + MappedDataFile.QUARANTINE_SUFFIX ).exists() );
+
+            restarted.persistData( getDataRef() ); // written afresh
+            assertNotNull( restarted.getData( "a" ) );
+        }
+        finally {
+            Delete( folder );
+        }
+    }
+
+    @Test
+    public void concurrent() throws Exception {
+        final File folder = Files.createTempDirectory( "mapped" ).toFile();
+
+        try {
+            final MappedFilePersistence p = new MappedFilePersistence();
+            p.setup( folder.getPath() );
+
+            // each thread writes, reads back and removes its own keys, while the others do the same
+            int threads = 8;
+            final AtomicInteger errors = new AtomicInteger();
+            ArrayList< Thread > started = new ArrayList< Thread >();
+
+            for( int t = 0; t < threads; ++t ) {
+                final String prefix = "t" + t + "-";
+                Thread thread = new Thread( new Runnable() {
+                    @Override
+                    public void run() {
+                        for( int i = 0; i < 200; ++i ) {
+                            String key = prefix + ( i % 5 );
+                            DataRef dataRef = getDataRef();
+                            dataRef._key = key;
+                            dataRef._data._values[ 0 ] = i;
+                            p.persistData( dataRef );
+
+                            DataRef read = p.getData( key );
+                            if( ( read == null ) || ( read._data._values[ 0 ] != i ) ) {
+                                errors.incrementAndGet();
+                            }
+
+                            if( ( i % 7 ) == 0 ) {
+                                p.removeData( key );
+                            }
+                        }
+                    }
+                } );
+                thread.start();
+                started.add( thread );
+            }
+
+            for( Thread thread : started ) {
+                thread.join();
+            }
+
+            assertEquals( 0, errors.get() );
+        }
+        finally {
+            Delete( folder );
+        }
+    }
+
+    protected static void assertUnreadable( File file ) {
+        try {
+            new MappedDataFile( file ).read();
+            fail( "Read bad file: " + file );
+        }
+        catch( IOException e ) {
+            // expected
+        }
+    }
+
+    protected static DataRef getDataRef() {
+        DataSize ds = DataSize.create( 10, 10 );
+        Data d = new Data( ds );
+        for( int i = 0; i < d.getSize(); ++i ) {
+            d._values[ i ] = i * 0.5f;
+        }
+        return new DataRef( "a", DataJsonSerializer.ENCODING_DENSE, null, d );
+    }
+
+    protected static void Delete( File file ) {
+        File[] files = file.listFiles();
+        if( files != null ) {
+            for( File f : files ) {
+                Delete( f );
+            }
+        }
+        file.delete();
+    }
+
+}
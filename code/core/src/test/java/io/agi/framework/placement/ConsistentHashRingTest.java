@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.placement;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Assignment of names to Nodes: the same in every process, in proportion to weight, and stable as Nodes join.
+ */
+public class ConsistentHashRingTest {
+
+    public static final int NAMES = 20000;
+
+    @Test
+    public void assignment() {
+        HashMap< String, Float > weights = new HashMap< String, Float >();
+        assertNull( new ConsistentHashRing( weights ).getNode( "entity" ) );
+
+        weights.put( "a", 1f );
+        weights.put( "b", 3f );
+        weights.put( "none", 0f );
+
+        ConsistentHashRing ring = new ConsistentHashRing( weights );
+        ConsistentHashRing same = new ConsistentHashRing( new HashMap< String, Float >( weights ) );
+
+        int b = 0;
+        for( int i = 0; i < NAMES; ++i ) {
+            String node = ring.getNode( "entity-" + i );
+            assertEquals( node, same.getNode( "entity-" + i ) );
+            assertNotEquals( "none", node );
+            if( node.equals( "b" ) ) {
+                ++b;
+            }
+        }
+
+        assertEquals( 0.75f, ( float ) b / NAMES, 0.05f );
+    }
+
+    @Test
+    public void join() {
+        HashMap< String, Float > weights = new HashMap< String, Float >();
+        weights.put( "a", 1f );
+        weights.put( "b", 1f );
+        ConsistentHashRing before = new ConsistentHashRing( weights );
+
+        weights.put( "c", 1f );
+        ConsistentHashRing after = new ConsistentHashRing( weights );
+
+        int moved = 0;
+        for( int i = 0; i < NAMES; ++i ) {
+            String name = "entity-" + i;
+            String node = after.getNode( name );
+            if( !node.equals( before.getNode( name ) ) ) {
+                assertEquals( "c", node ); // names only move to the new Node
+                ++moved;
+            }
+        }
+
+        assertEquals( 1f / 3f, ( float ) moved / NAMES, 0.05f );
+    }
+
+}
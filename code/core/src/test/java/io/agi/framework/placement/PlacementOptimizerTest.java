@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.placement;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Placements that cut less Data between Nodes, within the share of each Node.
+ */
+public class PlacementOptimizerTest {
+
+    public static final long BYTES = 100;
+
+    @Test
+    public void chains() {
+        PlacementOptimizer po = new PlacementOptimizer();
+        po.addNode( "n1", 1f );
+        po.addNode( "n2", 1f );
+
+        // two chains of Entities, with every reference crossing Nodes
+        po.addEntity( "a0", "n1" );
+        po.addEntity( "a1", "n2" );
+        po.addEntity( "a2", "n1" );
+        po.addEntity( "b0", "n2" );
+        po.addEntity( "b1", "n1" );
+        po.addEntity( "b2", "n2" );
+        addChain( po, "a" );
+        addChain( po, "b" );
+
+        PlacementPlan plan = po.optimize();
+
+        assertEquals( 4 * BYTES, plan.cutBytesBefore );
+        assertEquals( 0, plan.cutBytesAfter );
+        assertEquals( plan.cutBytesAfter, po.getCutBytes() );
+        assertFalse( plan.moves.isEmpty() );
+        assertTrue( plan.entitiesAfter.get( "n1" ) <= 4 ); // ceil( 3 * ( 1 + IMBALANCE ) )
+        assertTrue( plan.entitiesAfter.get( "n2" ) <= 4 );
+        assertTrue( plan.trafficAfter.isEmpty() );
+    }
+
+    @Test
+    public void balance() {
+        PlacementOptimizer po = new PlacementOptimizer();
+        po.addNode( "n1", 1f );
+        po.addNode( "n2", 1f );
+
+        for( String chain : new String[]{ "a", "b" } ) {
+            for( int i = 0; i < 3; ++i ) {
+                po.addEntity( chain + i, "n1" );
+            }
+            addChain( po, chain );
+        }
+
+        po.addEntity( "fixed", "elsewhere" ); // at a Node that wasn't added, so not moved
+        po.addReference( "fixed-output", "fixed", BYTES, "a0" );
+
+        PlacementPlan plan = po.optimize();
+
+        assertEquals( 6, ( int ) plan.entitiesBefore.get( "n1" ) );
+        assertEquals( 3, ( int ) plan.entitiesAfter.get( "n1" ) );
+        assertEquals( 3, ( int ) plan.entitiesAfter.get( "n2" ) );
+        assertEquals( BYTES, plan.cutBytesAfter ); // only the Data of the fixed Entity; each chain is on one Node
+
+        for( PlacementPlan.Move move : plan.moves ) {
+            assertNotEquals( "fixed", move.entity );
+        }
+    }
+
+    protected static void addChain( PlacementOptimizer po, String chain ) {
+        po.addReference( chain + "0-output", chain + "0", BYTES, chain + "1" );
+        po.addReference( chain + "1-output", chain + "1", BYTES, chain + "2" );
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.references;
+
+import io.agi.core.data.Data;
+import io.agi.core.data.FloatBufferStore;
+import io.agi.core.data.FloatBufferStoreFactory;
+import io.agi.framework.persistence.DataJsonSerializer;
+import io.agi.framework.persistence.DataPersistence;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Eviction of the least recently used Data when the cache is over budget, and reading it back.
+ */
+public class DataRefMapTest {
+
+    public static final int SIZE = 100;
+    public static final long BYTES = DataRefMap.DATA_OVERHEAD + SIZE * 4;
+
+    @Test
+    public void leastRecentlyUsedEvicted() throws IOException {
+        TestDataRefMap map = new TestDataRefMap( BYTES * 3 );
+
+        map.cachePut( "a", getDataRef( "a", 1f ), false );
+        map.cachePut( "b", getDataRef( "b", 2f ), false );
+        map.cachePut( "c", getDataRef( "c", 3f ), false );
+        map.cacheGet( "a" ); // now more recent than b
+        map.cachePut( "d", getDataRef( "d", 4f ), false );
+
+        assertNull( map.getCachedData( "b" ) );
+        assertNotNull( map.getCachedData( "a" ) );
+        assertNotNull( map.getCachedData( "d" ) );
+        assertTrue( map.getCacheBytes() <= BYTES * 3 );
+
+        DataRef b = map.cacheGet( "b" ); // read back from the spill file
+        assertNotNull( b );
+        assertEquals( 2f, b._data._values[ SIZE - 1 ], 0f );
+        assertEquals( BYTES, map.getDataBytes( "c" ) );
+    }
+
+    @Test
+    public void concurrentReadBack() throws Exception {
+        final int keys = 20;
+        final TestDataRefMap map = new TestDataRefMap( BYTES * 5 );
+
+        for( int k = 0; k < keys; ++k ) {
+            map.cachePut( "k" + k, getDataRef( "k" + k, k ), false );
+        }
+
+        final AtomicInteger errors = new AtomicInteger( 0 );
+        ArrayList< Thread > threads = new ArrayList< Thread >();
+
+        for( int t = 0; t < 8; ++t ) {
+            final Random r = new Random( t );
+            Thread thread = new Thread() {
+                public void run() {
+                    for( int i = 0; i < 500; ++i ) {
+                        int k = r.nextInt( keys );
+                        DataRef d = map.cacheGet( "k" + k );
+                        if( ( d == null ) || ( d._data._values[ SIZE - 1 ] != k ) ) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads.add( thread );
+            thread.start();
+        }
+
+        for( Thread thread : threads ) {
+            thread.join();
+        }
+
+        assertEquals( 0, errors.get() );
+        assertTrue( map._evictions.isEmpty() );
+
+        for( int k = 0; k < keys; ++k ) {
+            assertEquals( BYTES, map.getDataBytes( "k" + k ) ); // cached or evicted, never lost
+        }
+    }
+
+    @Test
+    public void offHeapOutOfMemorySpilled() throws IOException {
+        TestDataRefMap map = new TestDataRefMap( BYTES * 2 );
+        map._storeFactory = new FloatBufferStoreFactory() {
+            @Override
+            public FloatBufferStore create( String key, int size ) throws IOException {
+                throw new OutOfMemoryError( "Direct buffer memory" ); // as at the direct memory limit
+            }
+        };
+        map._storeFactory.addKey( "a" );
+
+        map.cachePut( "a", getDataRef( "a", 1f ), false );
+        map.cachePut( "b", getDataRef( "b", 2f ), false );
+        map.cachePut( "c", getDataRef( "c", 3f ), false ); // evicts a, to the spill file instead
+
+        assertNull( map.getCachedData( "a" ) );
+        DataRef a = map.cacheGet( "a" );
+        assertNotNull( a );
+        assertEquals( 1f, a._data._values[ 0 ], 0f );
+    }
+
+    protected static DataRef getDataRef( String key, float value ) {
+        Data d = new Data( SIZE );
+        d.set( value );
+        return new DataRef( key, DataJsonSerializer.ENCODING_DENSE, null, d );
+    }
+
+    /**
+     * Without a Node: evicted Data is spilled to a temporary directory.
+     */
+    protected static class TestDataRefMap extends DataRefMap {
+
+        public TestDataRefMap( long budget ) throws IOException {
+            setCacheBudget( budget, Files.createTempDirectory( "spill" ).toString() );
+        }
+
+        @Override
+        protected DataPersistence getDataPersistence() {
+            return null;
+        }
+    }
+}
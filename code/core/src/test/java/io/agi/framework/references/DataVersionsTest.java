@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2026.
+ *
+ * This file is part of Project AGI. <http://agi.io>
+ *
+ * Project AGI is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Project AGI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Project AGI.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.agi.framework.references;
+
+import io.agi.core.data.Data;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * The changes between versions of a Data, and applying them to a copy.
+ */
+public class DataVersionsTest {
+
+    public static final int SIZE = DataVersions.BLOCK_SIZE * 10 + 17; // the last block is short
+
+    @Test
+    public void deltaApply() {
+        DataVersions versions = new DataVersions();
+        long epoch = versions.getEpoch();
+
+        Data d = random( SIZE, 1 );
+        DataVersions.Changes c0 = versions.getChanges( "a", d, epoch, DataVersions.NO_VERSION );
+        assertNull( c0._blocks ); // no copy yet, so fetched whole
+        Data copy = new Data( d );
+
+        versions.onSetData( "a", new Data( d ) ); // no change, no new version
+        assertTrue( versions.getChanges( "a", d, epoch, c0._version ).isUnchanged() );
+
+        Data d1 = new Data( d );
+        d1._values[ 3 ] += 1f; // block 0
+        d1._values[ SIZE - 1 ] = -1f; // the last block
+        versions.onSetData( "a", d1 );
+
+        DataVersions.Changes c1 = versions.getChanges( "a", d1, epoch, c0._version );
+        assertTrue( c1._version > c0._version );
+        assertEquals( SIZE, c1._length );
+        BitSet expected = new BitSet();
+        expected.set( 0 );
+        expected.set( DataVersions.GetBlocks( SIZE ) - 1 );
+        assertEquals( expected, c1._blocks );
+
+        apply( c1, d1, copy );
+        assertArrayEquals( d1._values, copy._values, 0f );
+
+        Data d2 = new Data( d1 );
+        d2._values[ DataVersions.BLOCK_SIZE * 5 ] += 1f;
+        versions.onSetData( "a", d2 );
+
+        DataVersions.Changes c2 = versions.getChanges( "a", d2, epoch, c0._version ); // both versions' changes
+        expected.set( 5 );
+        assertEquals( expected, c2._blocks );
+
+        DataVersions.Changes c3 = versions.getChanges( "a", d2, epoch, c1._version ); // only the latest
+        BitSet latest = new BitSet();
+        latest.set( 5 );
+        assertEquals( latest, c3._blocks );
+
+        apply( c3, d2, copy );
+        assertArrayEquals( d2._values, copy._values, 0f );
+        assertArrayEquals( DataVersions.GetChecksums( copy ), c3._checksums );
+    }
+
+    @Test
+    public void fetchedWhole() {
+        DataVersions versions = new DataVersions();
+        long epoch = versions.getEpoch();
+
+        Data d = random( SIZE, 2 );
+        versions.onSetData( "a", d ); // not versioned until fetched
+        DataVersions.Changes c0 = versions.getChanges( "a", d, epoch, DataVersions.NO_VERSION );
+
+        assertNull( versions.getChanges( "a", d, epoch + 1, c0._version )._blocks ); // another epoch
+        assertNull( versions.getChanges( "a", d, epoch, c0._version + 1000 )._blocks ); // unknown version
+        assertNull( versions.getChanges( "b", null, epoch, c0._version ) ); // no Data
+
+        Data resized = random( SIZE + 1, 3 );
+        versions.onSetData( "a", resized );
+        assertNull( versions.getChanges( "a", resized, epoch, c0._version )._blocks );
+
+        // changes older than the history can't be applied
+        DataVersions.Changes c1 = versions.getChanges( "a", resized, epoch, DataVersions.NO_VERSION );
+        for( int i = 0; i <= DataVersions.HISTORY; ++i ) {
+            Data changed = new Data( resized );
+            changed._values[ 0 ] = i;
+            versions.onSetData( "a", changed );
+        }
+        assertNull( versions.getChanges( "a", resized, epoch, c1._version )._blocks );
+
+        versions.remove( "a" );
+        assertNull( versions.getChanges( "a", resized, epoch, c1._version )._blocks );
+    }
+
+    protected static void apply( DataVersions.Changes c, Data from, Data to ) {
+        for( int b = c._blocks.nextSetBit( 0 ); b >= 0; b = c._blocks.nextSetBit( b + 1 ) ) {
+            int offset = b * DataVersions.BLOCK_SIZE;
+            System.arraycopy( from._values, offset, to._values, offset, DataVersions.GetBlockLength( c._length, b ) );
+        }
+    }
+
+    protected static Data random( int size, long seed ) {
+        Random r = new Random( seed );
+        Data d = new Data( size );
+        for( int i = 0; i < size; ++i ) {
+            d._values[ i ] = r.nextFloat();
+        }
+        return d;
+    }
+
+}